@@ -0,0 +1,90 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai;
+
+import java.util.Arrays;
+
+import com.google.common.base.Supplier;
+
+/**
+ * An {@link AStarStorage} for {@link GridNode}s, backed by a {@link GridSearchState}.<br/>
+ * Nodes with the same grid key are treated as the same node, so each position is opened at most once
+ * per cost improvement.
+ */
+public class GridAStarStorage implements AStarStorage {
+	private final GridSearchState state = new GridSearchState();
+	private AStarNode[] nodes = new AStarNode[64];
+
+	@Override
+	public void close(AStarNode node) {
+		// The node left the open set when it was removed, and its cost stays recorded for shouldExamine
+	}
+
+	@Override
+	public AStarNode getBestNode() {
+		int best = state.peek();
+		return best < 0 ? null : nodes[best];
+	}
+
+	@Override
+	public void open(AStarNode node) {
+		long key = ((GridNode) node).getGridKey();
+		int index = state.get(key);
+		if (index < 0) {
+			index = state.add(key);
+			if (index == nodes.length) {
+				nodes = Arrays.copyOf(nodes, index << 1);
+			}
+		}
+		nodes[index] = node;
+		state.open(index, node.g, node.f);
+	}
+
+	@Override
+	public AStarNode removeBestNode() {
+		int best = state.poll();
+		return best < 0 ? null : nodes[best];
+	}
+
+	@Override
+	public boolean shouldExamine(AStarNode neighbour) {
+		int index = state.get(((GridNode) neighbour).getGridKey());
+		return index < 0 || neighbour.f < state.getF(index);
+	}
+
+	@Override
+	public String toString() {
+		return "GridAStarStorage [nodes=" + state.size() + "]";
+	}
+
+	public static final Supplier<AStarStorage> FACTORY = new Supplier<AStarStorage>() {
+		@Override
+		public AStarStorage get() {
+			return new GridAStarStorage();
+		}
+	};
+}
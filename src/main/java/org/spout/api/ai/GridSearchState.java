@@ -0,0 +1,262 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai;
+
+import java.util.Arrays;
+
+/**
+ * Primitive search state for A* over nodes identified by long keys.<br/>
+ * Nodes are numbered in the order they are added, and their keys, costs and parents are kept in
+ * parallel arrays. An open addressing table maps keys to node numbers, and the open set is a binary
+ * heap of node numbers ordered by f cost, which supports lowering the cost of an open node in place.
+ * <p>
+ * The arrays are kept between searches, so a state cleared with {@link #clear()} can be reused
+ * without allocating. A state must only be used by one search at a time.
+ */
+public class GridSearchState {
+	private static final int INITIAL_CAPACITY = 256;
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private float[] g = new float[INITIAL_CAPACITY];
+	private float[] f = new float[INITIAL_CAPACITY];
+	private int[] parents = new int[INITIAL_CAPACITY];
+	private int[] heapIndexes = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	/**
+	 * Node number + 1 for each slot, 0 for an empty slot
+	 */
+	private int[] table = new int[INITIAL_CAPACITY << 1];
+	private int[] heap = new int[INITIAL_CAPACITY];
+	private int heapSize = 0;
+
+	/**
+	 * Removes every node, keeping the allocated arrays
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(table, 0);
+		}
+		size = 0;
+		heapSize = 0;
+	}
+
+	/**
+	 * Gets the number of nodes added since the state was last cleared
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of the node with the given key
+	 * @param key of the node
+	 * @return the node number, or -1 if there is no such node
+	 */
+	public int get(long key) {
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return -1;
+			}
+			if (keys[entry - 1] == key) {
+				return entry - 1;
+			}
+		}
+	}
+
+	/**
+	 * Adds a node which is neither open nor closed.<br/>
+	 * The key must not belong to a node already in the state.
+	 * @param key of the node
+	 * @return the node number
+	 */
+	public int add(long key) {
+		if (size == keys.length) {
+			grow();
+		}
+		int node = size++;
+		keys[node] = key;
+		parents[node] = -1;
+		heapIndexes[node] = -1;
+		g[node] = Float.POSITIVE_INFINITY;
+		f[node] = Float.POSITIVE_INFINITY;
+		insert(key, node);
+		return node;
+	}
+
+	public long getKey(int node) {
+		return keys[node];
+	}
+
+	public float getG(int node) {
+		return g[node];
+	}
+
+	public float getF(int node) {
+		return f[node];
+	}
+
+	public int getParent(int node) {
+		return parents[node];
+	}
+
+	public void setParent(int node, int parent) {
+		parents[node] = parent;
+	}
+
+	/**
+	 * Gets if the node is in the open set
+	 * @param node number
+	 * @return true if open
+	 */
+	public boolean isOpen(int node) {
+		return heapIndexes[node] >= 0;
+	}
+
+	/**
+	 * Sets the costs of the node and puts it in the open set, or moves it if it is already open
+	 * @param node number
+	 * @param g cost from the start
+	 * @param f estimated total cost
+	 */
+	public void open(int node, float g, float f) {
+		this.g[node] = g;
+		this.f[node] = f;
+		int index = heapIndexes[node];
+		if (index < 0) {
+			index = heapSize++;
+			heap[index] = node;
+			heapIndexes[node] = index;
+			siftUp(index);
+		} else {
+			siftUp(index);
+			siftDown(heapIndexes[node]);
+		}
+	}
+
+	/**
+	 * Gets the open node with the lowest f cost
+	 * @return the node number, or -1 if no node is open
+	 */
+	public int peek() {
+		return heapSize == 0 ? -1 : heap[0];
+	}
+
+	/**
+	 * Removes the open node with the lowest f cost from the open set
+	 * @return the node number, or -1 if no node is open
+	 */
+	public int poll() {
+		if (heapSize == 0) {
+			return -1;
+		}
+		int best = heap[0];
+		heapIndexes[best] = -1;
+		int last = heap[--heapSize];
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapIndexes[last] = 0;
+			siftDown(0);
+		}
+		return best;
+	}
+
+	private boolean before(int a, int b) {
+		// Prefer the deeper node on equal cost, it is usually closer to the goal
+		return f[a] < f[b] || (f[a] == f[b] && g[a] > g[b]);
+	}
+
+	private void siftUp(int index) {
+		int node = heap[index];
+		while (index > 0) {
+			int parentIndex = (index - 1) >> 1;
+			int parent = heap[parentIndex];
+			if (!before(node, parent)) {
+				break;
+			}
+			heap[index] = parent;
+			heapIndexes[parent] = index;
+			index = parentIndex;
+		}
+		heap[index] = node;
+		heapIndexes[node] = index;
+	}
+
+	private void siftDown(int index) {
+		int node = heap[index];
+		while (true) {
+			int child = (index << 1) + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], node)) {
+				break;
+			}
+			heap[index] = heap[child];
+			heapIndexes[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = node;
+		heapIndexes[node] = index;
+	}
+
+	private void insert(long key, int node) {
+		int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = node + 1;
+	}
+
+	private void grow() {
+		int capacity = keys.length << 1;
+		keys = Arrays.copyOf(keys, capacity);
+		g = Arrays.copyOf(g, capacity);
+		f = Arrays.copyOf(f, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		heapIndexes = Arrays.copyOf(heapIndexes, capacity);
+		heap = Arrays.copyOf(heap, capacity);
+		table = new int[capacity << 1];
+		for (int node = 0; node < size; node++) {
+			insert(keys[node], node);
+		}
+	}
+
+	private static int hash(long key) {
+		// Keys are packed coordinates, so every bit has to reach the low bits used by the table
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		return (int) (key ^ (key >>> 33));
+	}
+}
@@ -0,0 +1,427 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.spout.api.ai.GridSearchState;
+import org.spout.api.ai.pathfinder.PathPoint.PathCallback;
+import org.spout.api.geo.cuboid.Chunk;
+
+/**
+ * The passable blocks of one chunk, the portals on its faces and the costs of travelling between them.
+ * <p>
+ * A portal is one block of each entrance, where an entrance is a connected area of a chunk face in which
+ * both the block inside and the block outside the chunk are passable. The block chosen for an entrance
+ * only depends on the blocks on either side of the face, so the neighbouring chunk picks the matching
+ * block on its side.
+ * <p>
+ * Graphs are immutable once built. Blocks are addressed by their index in the chunk, (x << 8) | (y << 4) | z.
+ * Callbacks given by the examiners for blocks of the chunk are kept with the graph, by block key.
+ */
+final class ChunkPortalGraph {
+	static final int BITS = Chunk.BLOCKS.BITS;
+	static final int SIZE = Chunk.BLOCKS.SIZE;
+	static final int MASK = Chunk.BLOCKS.MASK;
+	static final int VOLUME = SIZE * SIZE * SIZE;
+	/**
+	 * Face normals, in the order -x, +x, -y, +y, -z, +z
+	 */
+	static final int[] FACE_X = {-1, 1, 0, 0, 0, 0};
+	static final int[] FACE_Y = {0, 0, -1, 1, 0, 0};
+	static final int[] FACE_Z = {0, 0, 0, 0, -1, 1};
+	private static final int[] MOVE_X = new int[26];
+	private static final int[] MOVE_Y = new int[26];
+	private static final int[] MOVE_Z = new int[26];
+	private static final float[] MOVE_COST = new float[26];
+	private static final float MOVE_COST_2 = (float) Math.sqrt(2);
+	private static final float MOVE_COST_3 = (float) Math.sqrt(3);
+	private final int chunkX, chunkY, chunkZ;
+	private final long[] passable = new long[VOLUME >> 6];
+	/**
+	 * Examiner cost of each block, or null when every block costs nothing
+	 */
+	private final float[] blockCosts;
+	private final TLongObjectHashMap<List<PathCallback>> callbacks;
+	private final int[] portals;
+	private final byte[] portalFaces;
+	private final float[][] portalCosts;
+
+	static {
+		int move = 0;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dz = -1; dz <= 1; dz++) {
+					if (dx == 0 && dy == 0 && dz == 0) {
+						continue;
+					}
+					MOVE_X[move] = dx;
+					MOVE_Y[move] = dy;
+					MOVE_Z[move] = dz;
+					MOVE_COST[move] = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+					move++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Examines the chunk and its faces, and computes the costs between its portals
+	 * @param chunkX coordinate of the chunk
+	 * @param chunkY coordinate of the chunk
+	 * @param chunkZ coordinate of the chunk
+	 * @param source of blocks
+	 * @param examiners which decide passability and cost
+	 * @param point to examine blocks with
+	 * @param state to search with
+	 */
+	ChunkPortalGraph(int chunkX, int chunkY, int chunkZ, BlockSource source, BlockExaminer[] examiners, ScratchPathPoint point, GridSearchState state) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.chunkZ = chunkZ;
+		int baseX = chunkX << BITS, baseY = chunkY << BITS, baseZ = chunkZ << BITS;
+		float[] costs = null;
+		TLongObjectHashMap<List<PathCallback>> recorded = new TLongObjectHashMap<List<PathCallback>>();
+		point.recordCallbacks(recorded);
+		for (int index = 0; index < VOLUME; index++) {
+			point.examine(baseX + (index >> (BITS << 1)), baseY + ((index >> BITS) & MASK), baseZ + (index & MASK));
+			if (point.isPassable(source, examiners)) {
+				passable[index >> 6] |= 1L << index;
+				float cost = point.getCost(source, examiners);
+				if (cost != 0f) {
+					if (costs == null) {
+						costs = new float[VOLUME];
+					}
+					costs[index] = cost;
+				}
+			}
+		}
+		blockCosts = costs;
+		callbacks = recorded.isEmpty() ? null : recorded;
+		// Blocks outside the chunk keep the callbacks given when their own chunk is examined
+		point.recordCallbacks(null);
+
+		// Find the entrances on each face, merging portals which lie on more than one face
+		byte[] faces = new byte[VOLUME];
+		int portalCount = 0;
+		boolean[] open = new boolean[SIZE * SIZE];
+		int[] queue = new int[SIZE * SIZE];
+		for (int face = 0; face < 6; face++) {
+			for (int cell = 0; cell < open.length; cell++) {
+				int index = faceIndex(face, cell >> BITS, cell & MASK);
+				open[cell] = false;
+				if (isPassable(index)) {
+					int x = baseX + (index >> (BITS << 1)) + FACE_X[face];
+					int y = baseY + ((index >> BITS) & MASK) + FACE_Y[face];
+					int z = baseZ + (index & MASK) + FACE_Z[face];
+					open[cell] = point.set(x, y, z).isPassable(source, examiners);
+				}
+			}
+			for (int seed = 0; seed < open.length; seed++) {
+				if (!open[seed]) {
+					continue;
+				}
+				int cell = collectEntrance(open, queue, seed);
+				int index = faceIndex(face, cell >> BITS, cell & MASK);
+				if (faces[index] == 0) {
+					portalCount++;
+				}
+				faces[index] |= 1 << face;
+			}
+		}
+		portals = new int[portalCount];
+		portalFaces = new byte[portalCount];
+		for (int index = 0, portal = 0; portal < portalCount; index++) {
+			if (faces[index] != 0) {
+				portals[portal] = index;
+				portalFaces[portal++] = faces[index];
+			}
+		}
+
+		portalCosts = new float[portalCount][portalCount];
+		for (int i = 0; i < portalCount; i++) {
+			float[] row = distances(portals[i], state);
+			for (int j = 0; j < portalCount; j++) {
+				portalCosts[i][j] = row[j];
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of the block at a cell of a face
+	 */
+	private static int faceIndex(int face, int u, int v) {
+		int edge = (face & 1) == 0 ? 0 : MASK;
+		switch (face >> 1) {
+			case 0:
+				return (edge << (BITS << 1)) | (u << BITS) | v;
+			case 1:
+				return (u << (BITS << 1)) | (edge << BITS) | v;
+			default:
+				return (u << (BITS << 1)) | (v << BITS) | edge;
+		}
+	}
+
+	/**
+	 * Flood fills the entrance containing the seed cell, clearing its cells
+	 * @return the cell chosen as the portal of the entrance
+	 */
+	private static int collectEntrance(boolean[] open, int[] queue, int seed) {
+		int size = 0;
+		queue[size++] = seed;
+		open[seed] = false;
+		float sumU = 0, sumV = 0;
+		for (int head = 0; head < size; head++) {
+			int cell = queue[head];
+			int u = cell >> BITS, v = cell & MASK;
+			sumU += u;
+			sumV += v;
+			if (u > 0 && open[cell - SIZE]) {
+				open[cell - SIZE] = false;
+				queue[size++] = cell - SIZE;
+			}
+			if (u < MASK && open[cell + SIZE]) {
+				open[cell + SIZE] = false;
+				queue[size++] = cell + SIZE;
+			}
+			if (v > 0 && open[cell - 1]) {
+				open[cell - 1] = false;
+				queue[size++] = cell - 1;
+			}
+			if (v < MASK && open[cell + 1]) {
+				open[cell + 1] = false;
+				queue[size++] = cell + 1;
+			}
+		}
+		// The cell nearest the centre, ties going to the lowest cell
+		float centreU = sumU / size, centreV = sumV / size;
+		int best = -1;
+		float bestDistance = Float.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			int cell = queue[i];
+			float du = (cell >> BITS) - centreU, dv = (cell & MASK) - centreV;
+			float distance = du * du + dv * dv;
+			if (distance < bestDistance || (distance == bestDistance && cell < best)) {
+				bestDistance = distance;
+				best = cell;
+			}
+		}
+		return best;
+	}
+
+	int getChunkX() {
+		return chunkX;
+	}
+
+	int getChunkY() {
+		return chunkY;
+	}
+
+	int getChunkZ() {
+		return chunkZ;
+	}
+
+	boolean isPassable(int index) {
+		return (passable[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Gets the callbacks recorded for the blocks of the chunk
+	 * @return the callbacks by block key, or null if there are none
+	 */
+	TLongObjectHashMap<List<PathCallback>> getCallbacks() {
+		return callbacks;
+	}
+
+	float getBlockCost(int index) {
+		return blockCosts == null ? 0f : blockCosts[index];
+	}
+
+	int getPortalCount() {
+		return portals.length;
+	}
+
+	int getPortal(int portal) {
+		return portals[portal];
+	}
+
+	/**
+	 * Gets the faces the portal leads through, as a bit per face
+	 * @param portal number
+	 * @return the face mask
+	 */
+	int getPortalFaces(int portal) {
+		return portalFaces[portal];
+	}
+
+	/**
+	 * Gets the cost of travelling between two portals inside the chunk
+	 * @return the cost, or positive infinity if one can't be reached from the other
+	 */
+	float getPortalCost(int from, int to) {
+		return portalCosts[from][to];
+	}
+
+	/**
+	 * Gets the number of the portal at the block
+	 * @param index of the block
+	 * @return the portal number, or -1 if the block is not a portal
+	 */
+	int findPortal(int index) {
+		int portal = Arrays.binarySearch(portals, index);
+		return portal < 0 ? -1 : portal;
+	}
+
+	/**
+	 * Gets the costs of travelling inside the chunk from a block to each portal
+	 * @param from index of the block
+	 * @param state to search with
+	 * @return the cost of each portal, positive infinity for those which can't be reached
+	 */
+	float[] distances(int from, GridSearchState state) {
+		float[] result = new float[portals.length];
+		Arrays.fill(result, Float.POSITIVE_INFINITY);
+		if (!isPassable(from)) {
+			return result;
+		}
+		search(from, -1, state);
+		for (int portal = 0; portal < portals.length; portal++) {
+			int node = state.get(portals[portal]);
+			if (node >= 0) {
+				result[portal] = state.getG(node);
+			}
+		}
+		state.clear();
+		return result;
+	}
+
+	/**
+	 * Gets the cost of travelling inside the chunk between two blocks
+	 * @param from index of the block
+	 * @param to index of the block
+	 * @param state to search with
+	 * @return the cost, or positive infinity if one can't be reached from the other
+	 */
+	float distance(int from, int to, GridSearchState state) {
+		if (!isPassable(from) || !isPassable(to)) {
+			return Float.POSITIVE_INFINITY;
+		}
+		int node = search(from, to, state);
+		float cost = node < 0 ? Float.POSITIVE_INFINITY : state.getG(node);
+		state.clear();
+		return cost;
+	}
+
+	/**
+	 * Finds the cheapest route inside the chunk between two blocks
+	 * @param from index of the block
+	 * @param to index of the block
+	 * @param state to search with
+	 * @return the indexes of the blocks after from, ending with to, or null if there is no route
+	 */
+	int[] route(int from, int to, GridSearchState state) {
+		if (!isPassable(from) || !isPassable(to)) {
+			return null;
+		}
+		int node = search(from, to, state);
+		int[] route = null;
+		if (node >= 0) {
+			int length = 0;
+			for (int step = node; state.getParent(step) >= 0; step = state.getParent(step)) {
+				length++;
+			}
+			route = new int[length];
+			for (int step = node; state.getParent(step) >= 0; step = state.getParent(step)) {
+				route[--length] = (int) state.getKey(step);
+			}
+		}
+		state.clear();
+		return route;
+	}
+
+	/**
+	 * Runs A* from a block inside the chunk, or Dijkstra over the whole chunk if there is no target
+	 * @return the node of the target, or -1 if it was not reached
+	 */
+	private int search(int from, int to, GridSearchState state) {
+		int toX = to >> (BITS << 1), toY = (to >> BITS) & MASK, toZ = to & MASK;
+		state.open(state.add(from), 0f, to < 0 ? 0f : heuristic(from, toX, toY, toZ));
+		int node;
+		while ((node = state.poll()) >= 0) {
+			int index = (int) state.getKey(node);
+			if (index == to) {
+				return node;
+			}
+			int x = index >> (BITS << 1), y = (index >> BITS) & MASK, z = index & MASK;
+			float g = state.getG(node);
+			for (int move = 0; move < MOVE_COST.length; move++) {
+				int nx = x + MOVE_X[move], ny = y + MOVE_Y[move], nz = z + MOVE_Z[move];
+				if (nx < 0 || nx > MASK || ny < 0 || ny > MASK || nz < 0 || nz > MASK) {
+					continue;
+				}
+				int neighbourIndex = (nx << (BITS << 1)) | (ny << BITS) | nz;
+				if (!isPassable(neighbourIndex)) {
+					continue;
+				}
+				float neighbourG = g + MOVE_COST[move] + getBlockCost(neighbourIndex);
+				int neighbour = state.get(neighbourIndex);
+				if (neighbour < 0) {
+					neighbour = state.add(neighbourIndex);
+				} else if (neighbourG >= state.getG(neighbour)) {
+					continue;
+				}
+				state.setParent(neighbour, node);
+				state.open(neighbour, neighbourG, to < 0 ? neighbourG : neighbourG + heuristic(neighbourIndex, toX, toY, toZ));
+			}
+		}
+		return -1;
+	}
+
+	private static float heuristic(int index, int toX, int toY, int toZ) {
+		return octile((index >> (BITS << 1)) - toX, ((index >> BITS) & MASK) - toY, (index & MASK) - toZ);
+	}
+
+	/**
+	 * Gets the cost of the shortest move sequence along the offset through open space, a lower bound for any route
+	 * @param dx offset
+	 * @param dy offset
+	 * @param dz offset
+	 * @return the cost
+	 */
+	static float octile(int dx, int dy, int dz) {
+		dx = Math.abs(dx);
+		dy = Math.abs(dy);
+		dz = Math.abs(dz);
+		int max = Math.max(dx, Math.max(dy, dz));
+		int min = Math.min(dx, Math.min(dy, dz));
+		int mid = dx + dy + dz - max - min;
+		return MOVE_COST_3 * min + MOVE_COST_2 * (mid - min) + (max - mid);
+	}
+}
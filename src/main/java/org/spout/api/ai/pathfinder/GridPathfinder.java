@@ -0,0 +1,177 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.spout.api.ai.GridSearchState;
+import org.spout.api.ai.pathfinder.PathPoint.PathCallback;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * A* over the block grid which works on packed coordinates instead of {@link VectorNode}s.<br/>
+ * It uses the same costs as {@link VectorGoal}, but keeps the search in a per-thread
+ * {@link GridSearchState}, so searching does not allocate a node per neighbour.
+ * Nodes are only created for the returned {@link Path}.
+ * <p>
+ * Examiners are given a reused {@link PathPoint}. Callbacks added to it are recorded by block, and added
+ * to the nodes of the returned path.
+ */
+public class GridPathfinder {
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+	private final BlockSource source;
+	private final BlockExaminer[] examiners;
+
+	public GridPathfinder(BlockSource source, BlockExaminer... examiners) {
+		this.source = source;
+		this.examiners = examiners == null ? new BlockExaminer[] {} : examiners;
+	}
+
+	/**
+	 * Searches for a path until it is found or no more blocks can be reached
+	 * @param start to search from
+	 * @param goal to search to
+	 * @return the path, or null if none was found
+	 */
+	public Path findPath(Vector3 start, Vector3 goal) {
+		return findPath(start, goal, -1);
+	}
+
+	/**
+	 * Searches for a path, expanding at most the given number of blocks
+	 * @param start to search from
+	 * @param goal to search to
+	 * @param maxIterations the maximum number of iterations, or -1 for no limit
+	 * @return the path, or null if none was found
+	 */
+	public Path findPath(Vector3 start, Vector3 goal, int maxIterations) {
+		Scratch scratch = SCRATCH.get();
+		if (scratch.inUse) {
+			// An examiner started another search on this thread
+			scratch = new Scratch();
+		}
+		scratch.inUse = true;
+		try {
+			return search(scratch, start, goal, maxIterations);
+		} finally {
+			scratch.state.clear();
+			scratch.callbacks.clear();
+			scratch.inUse = false;
+		}
+	}
+
+	private Path search(Scratch scratch, Vector3 start, Vector3 goal, int maxIterations) {
+		GridSearchState state = scratch.state;
+		ScratchPathPoint point = scratch.point;
+		float goalX = goal.getX(), goalY = goal.getY(), goalZ = goal.getZ();
+		int sx = start.getFloorX(), sy = start.getFloorY(), sz = start.getFloorZ();
+		int startNode = state.add(Int21TripleHashed.key(sx, sy, sz));
+		point.examine(sx, sy, sz);
+		state.open(startNode, 0f, heuristic(point, sx, sy, sz, goalX, goalY, goalZ));
+		int iterations = 0;
+		int node;
+		while ((node = state.poll()) >= 0) {
+			long key = state.getKey(node);
+			int x = Int21TripleHashed.key1(key), y = Int21TripleHashed.key2(key), z = Int21TripleHashed.key3(key);
+			if (distanceSquared(x, y, z, goalX, goalY, goalZ) <= 10) {
+				return buildPath(state, node, scratch.callbacks);
+			}
+			float g = state.getG(node);
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dz = -1; dz <= 1; dz++) {
+						if (dx == 0 && dy == 0 && dz == 0) {
+							continue;
+						}
+						int nx = x + dx, ny = y + dy, nz = z + dz;
+						if (!point.examine(nx, ny, nz).isPassable(source, examiners)) {
+							continue;
+						}
+						float neighbourG = g + dx * dx + dy * dy + dz * dz;
+						float neighbourF = neighbourG + heuristic(point, nx, ny, nz, goalX, goalY, goalZ);
+						long neighbourKey = Int21TripleHashed.key(nx, ny, nz);
+						int neighbour = state.get(neighbourKey);
+						if (neighbour < 0) {
+							neighbour = state.add(neighbourKey);
+						} else if (neighbourF >= state.getF(neighbour)) {
+							continue;
+						}
+						state.setParent(neighbour, node);
+						state.open(neighbour, neighbourG, neighbourF);
+					}
+				}
+			}
+			if (maxIterations >= 0 && iterations++ >= maxIterations) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private Path buildPath(GridSearchState state, int node, TLongObjectHashMap<List<PathCallback>> callbacks) {
+		List<VectorNode> nodes = new ArrayList<VectorNode>();
+		for (; node >= 0; node = state.getParent(node)) {
+			long key = state.getKey(node);
+			Vector3 location = new Vector3(Int21TripleHashed.key1(key), Int21TripleHashed.key2(key), Int21TripleHashed.key3(key));
+			VectorNode vectorNode = new VectorNode(location, source, examiners);
+			ScratchPathPoint.attachCallbacks(callbacks, vectorNode);
+			nodes.add(vectorNode);
+		}
+		Collections.reverse(nodes);
+		return new Path(nodes, true);
+	}
+
+	private float heuristic(ScratchPathPoint point, int x, int y, int z, float goalX, float goalY, float goalZ) {
+		return distanceSquared(x, y, z, goalX, goalY, goalZ) + point.set(x, y, z).getCost(source, examiners);
+	}
+
+	private static float distanceSquared(int x, int y, int z, float goalX, float goalY, float goalZ) {
+		float dx = x - goalX, dy = y - goalY, dz = z - goalZ;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static final class Scratch {
+		private final GridSearchState state = new GridSearchState();
+		private final ScratchPathPoint point = new ScratchPathPoint();
+		private final TLongObjectHashMap<List<PathCallback>> callbacks = new TLongObjectHashMap<List<PathCallback>>();
+		private boolean inUse = false;
+
+		private Scratch() {
+			point.recordCallbacks(callbacks);
+		}
+	}
+}
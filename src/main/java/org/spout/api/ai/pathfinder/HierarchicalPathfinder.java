@@ -0,0 +1,283 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spout.api.ai.GridSearchState;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * Finds long paths by searching between chunk portals first, and only then between blocks.
+ * <p>
+ * The abstract search runs A* over the portals of the {@link ChunkPortalGraph}s held by a
+ * {@link PortalGraphCache}, with the start and goal blocks joined to the portals of their chunks.
+ * The chosen portals are then joined by block level searches inside each chunk on the route,
+ * so only the corridor of the path is expanded block by block.
+ * <p>
+ * Unlike {@link VectorGoal}, costs are euclidean distances plus the examiner cost of each block entered,
+ * and a path must end at the goal block itself. Moves between chunks only go through chunk faces, so
+ * paths may be slightly longer than the shortest block path.
+ * <p>
+ * Callbacks given by the examiners when a chunk graph is built are added to the path nodes at their blocks.
+ */
+public class HierarchicalPathfinder {
+	private static final int BITS = ChunkPortalGraph.BITS;
+	private static final int MASK = ChunkPortalGraph.MASK;
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+	private final PortalGraphCache cache;
+
+	public HierarchicalPathfinder(PortalGraphCache cache) {
+		this.cache = cache;
+	}
+
+	public PortalGraphCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Searches for a path until it is found or no more portals can be reached
+	 * @param start to search from
+	 * @param goal to search to
+	 * @return the path, or null if none was found
+	 */
+	public Path findPath(Vector3 start, Vector3 goal) {
+		return findPath(start, goal, -1);
+	}
+
+	/**
+	 * Searches for a path, expanding at most the given number of portals
+	 * @param start to search from
+	 * @param goal to search to
+	 * @param maxIterations the maximum number of iterations, or -1 for no limit
+	 * @return the path, or null if none was found
+	 */
+	public Path findPath(Vector3 start, Vector3 goal, int maxIterations) {
+		Scratch scratch = SCRATCH.get();
+		if (scratch.inUse) {
+			// An examiner started another search on this thread
+			scratch = new Scratch();
+		}
+		scratch.inUse = true;
+		try {
+			int[] blocks = search(scratch, start.getFloorX(), start.getFloorY(), start.getFloorZ(), goal.getFloorX(), goal.getFloorY(), goal.getFloorZ(), maxIterations);
+			if (blocks == null) {
+				return null;
+			}
+			List<VectorNode> nodes = new ArrayList<VectorNode>(blocks.length / 3);
+			for (int i = 0; i < blocks.length; i += 3) {
+				int x = blocks[i], y = blocks[i + 1], z = blocks[i + 2];
+				VectorNode node = new VectorNode(new Vector3(x, y, z), cache.getSource(), cache.getExaminers());
+				ChunkPortalGraph graph = cache.get(x >> BITS, y >> BITS, z >> BITS, scratch.point, scratch.blocks);
+				ScratchPathPoint.attachCallbacks(graph.getCallbacks(), node);
+				nodes.add(node);
+			}
+			return new Path(nodes, true);
+		} finally {
+			scratch.portals.clear();
+			scratch.blocks.clear();
+			scratch.inUse = false;
+		}
+	}
+
+	/**
+	 * Runs the abstract search and refines it
+	 * @return the coordinates of each block on the path, or null if there is none
+	 */
+	private int[] search(Scratch scratch, int sx, int sy, int sz, int gx, int gy, int gz, int maxIterations) {
+		GridSearchState portals = scratch.portals;
+		GridSearchState blocks = scratch.blocks;
+		ScratchPathPoint point = scratch.point;
+		ChunkPortalGraph startGraph = cache.get(sx >> BITS, sy >> BITS, sz >> BITS, point, blocks);
+		ChunkPortalGraph goalGraph = cache.get(gx >> BITS, gy >> BITS, gz >> BITS, point, blocks);
+		int startIndex = index(sx, sy, sz), goalIndex = index(gx, gy, gz);
+		if (!startGraph.isPassable(startIndex) || !goalGraph.isPassable(goalIndex)) {
+			return null;
+		}
+		float[] startCosts = startGraph.distances(startIndex, blocks);
+		float[] goalCosts = goalGraph.distances(goalIndex, blocks);
+		float direct = sameChunk(startGraph, goalGraph) ? startGraph.distance(startIndex, goalIndex, blocks) : Float.POSITIVE_INFINITY;
+
+		long goalKey = Int21TripleHashed.key(gx, gy, gz);
+		int startNode = portals.add(Int21TripleHashed.key(sx, sy, sz));
+		portals.open(startNode, 0f, distance(sx, sy, sz, gx, gy, gz));
+		int iterations = 0;
+		int node;
+		while ((node = portals.poll()) >= 0) {
+			long key = portals.getKey(node);
+			if (key == goalKey) {
+				return refine(portals, node, point, blocks);
+			}
+			int x = Int21TripleHashed.key1(key), y = Int21TripleHashed.key2(key), z = Int21TripleHashed.key3(key);
+			ChunkPortalGraph graph = cache.get(x >> BITS, y >> BITS, z >> BITS, point, blocks);
+			int portal = graph.findPortal(index(x, y, z));
+			float g = portals.getG(node);
+			if (node == startNode) {
+				for (int to = 0; to < startCosts.length; to++) {
+					relax(portals, node, graph, to, g + startCosts[to], gx, gy, gz);
+				}
+				relax(portals, node, goalKey, g + direct, gx, gy, gz);
+			} else if (portal >= 0) {
+				for (int to = 0; to < graph.getPortalCount(); to++) {
+					if (to != portal) {
+						relax(portals, node, graph, to, g + graph.getPortalCost(portal, to), gx, gy, gz);
+					}
+				}
+				if (sameChunk(graph, goalGraph)) {
+					relax(portals, node, goalKey, g + goalCosts[portal], gx, gy, gz);
+				}
+			}
+			if (portal >= 0) {
+				// Step through each face of the portal into the matching portal of the next chunk
+				int faces = graph.getPortalFaces(portal);
+				for (int face = 0; face < 6; face++) {
+					if ((faces & (1 << face)) == 0) {
+						continue;
+					}
+					int nx = x + ChunkPortalGraph.FACE_X[face], ny = y + ChunkPortalGraph.FACE_Y[face], nz = z + ChunkPortalGraph.FACE_Z[face];
+					ChunkPortalGraph next = cache.get(nx >> BITS, ny >> BITS, nz >> BITS, point, blocks);
+					int nextIndex = index(nx, ny, nz);
+					long nextKey = Int21TripleHashed.key(nx, ny, nz);
+					if (next.findPortal(nextIndex) >= 0 || nextKey == goalKey) {
+						relax(portals, node, nextKey, g + 1f + next.getBlockCost(nextIndex), gx, gy, gz);
+					}
+				}
+			}
+			if (maxIterations >= 0 && iterations++ >= maxIterations) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private void relax(GridSearchState portals, int from, ChunkPortalGraph graph, int portal, float g, int gx, int gy, int gz) {
+		int index = graph.getPortal(portal);
+		int x = (graph.getChunkX() << BITS) | (index >> (BITS << 1));
+		int y = (graph.getChunkY() << BITS) | ((index >> BITS) & MASK);
+		int z = (graph.getChunkZ() << BITS) | (index & MASK);
+		relax(portals, from, Int21TripleHashed.key(x, y, z), g, gx, gy, gz);
+	}
+
+	private void relax(GridSearchState portals, int from, long key, float g, int gx, int gy, int gz) {
+		if (g == Float.POSITIVE_INFINITY) {
+			return;
+		}
+		int node = portals.get(key);
+		if (node < 0) {
+			node = portals.add(key);
+		} else if (g >= portals.getG(node)) {
+			return;
+		}
+		portals.setParent(node, from);
+		portals.open(node, g, g + distance(Int21TripleHashed.key1(key), Int21TripleHashed.key2(key), Int21TripleHashed.key3(key), gx, gy, gz));
+	}
+
+	/**
+	 * Joins the portals on the route to the goal node with block level routes inside each chunk
+	 */
+	private int[] refine(GridSearchState portals, int goalNode, ScratchPathPoint point, GridSearchState blocks) {
+		int count = 0;
+		for (int node = goalNode; node >= 0; node = portals.getParent(node)) {
+			count++;
+		}
+		long[] waypoints = new long[count];
+		for (int node = goalNode; node >= 0; node = portals.getParent(node)) {
+			waypoints[--count] = portals.getKey(node);
+		}
+
+		int[] path = new int[64];
+		int length = 0;
+		long first = waypoints[0];
+		path[length++] = Int21TripleHashed.key1(first);
+		path[length++] = Int21TripleHashed.key2(first);
+		path[length++] = Int21TripleHashed.key3(first);
+		for (int i = 1; i < waypoints.length; i++) {
+			long from = waypoints[i - 1], to = waypoints[i];
+			int fx = Int21TripleHashed.key1(from), fy = Int21TripleHashed.key2(from), fz = Int21TripleHashed.key3(from);
+			int tx = Int21TripleHashed.key1(to), ty = Int21TripleHashed.key2(to), tz = Int21TripleHashed.key3(to);
+			if ((fx >> BITS) != (tx >> BITS) || (fy >> BITS) != (ty >> BITS) || (fz >> BITS) != (tz >> BITS)) {
+				// A single step through a chunk face
+				path = ensureCapacity(path, length + 3);
+				path[length++] = tx;
+				path[length++] = ty;
+				path[length++] = tz;
+				continue;
+			}
+			ChunkPortalGraph graph = cache.get(fx >> BITS, fy >> BITS, fz >> BITS, point, blocks);
+			int[] route = graph.route(index(fx, fy, fz), index(tx, ty, tz), blocks);
+			if (route == null) {
+				// The chunk changed since the abstract search
+				return null;
+			}
+			path = ensureCapacity(path, length + route.length * 3);
+			int baseX = fx & ~MASK, baseY = fy & ~MASK, baseZ = fz & ~MASK;
+			for (int index : route) {
+				path[length++] = baseX | (index >> (BITS << 1));
+				path[length++] = baseY | ((index >> BITS) & MASK);
+				path[length++] = baseZ | (index & MASK);
+			}
+		}
+		int[] result = new int[length];
+		System.arraycopy(path, 0, result, 0, length);
+		return result;
+	}
+
+	private static int[] ensureCapacity(int[] array, int capacity) {
+		if (array.length >= capacity) {
+			return array;
+		}
+		int[] grown = new int[Math.max(capacity, array.length << 1)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static boolean sameChunk(ChunkPortalGraph a, ChunkPortalGraph b) {
+		return a.getChunkX() == b.getChunkX() && a.getChunkY() == b.getChunkY() && a.getChunkZ() == b.getChunkZ();
+	}
+
+	private static int index(int x, int y, int z) {
+		return ((x & MASK) << (BITS << 1)) | ((y & MASK) << BITS) | (z & MASK);
+	}
+
+	private static float distance(int x, int y, int z, int gx, int gy, int gz) {
+		return ChunkPortalGraph.octile(x - gx, y - gy, z - gz);
+	}
+
+	private static final class Scratch {
+		private final GridSearchState portals = new GridSearchState();
+		private final GridSearchState blocks = new GridSearchState();
+		private final ScratchPathPoint point = new ScratchPathPoint();
+		private boolean inUse = false;
+	}
+}
@@ -42,14 +42,23 @@ public class Path implements Plan<Entity> {
 	private final PathEntry[] path;
 
 	Path(Iterable<VectorNode> unfiltered) {
-		this.path = cull(unfiltered);
+		this(unfiltered, false);
 	}
 
-	private PathEntry[] cull(Iterable<VectorNode> unfiltered) {
+	/**
+	 * Creates a path
+	 * @param unfiltered nodes of the path
+	 * @param keepCallbacks true to keep the nodes which have callbacks, so their callbacks are run, rather than culling them
+	 */
+	Path(Iterable<VectorNode> unfiltered, boolean keepCallbacks) {
+		this.path = cull(unfiltered, keepCallbacks);
+	}
+
+	private PathEntry[] cull(Iterable<VectorNode> unfiltered, boolean keepCallbacks) {
 		// TODO: possibly expose cullability in an API
 		List<PathEntry> path = Lists.newArrayList();
 		for (VectorNode node : unfiltered) {
-			if (node.callbacks != null)
+			if (!keepCallbacks && node.callbacks != null)
 				continue;
 			Vector3 vector = node.location;
 			path.add(new PathEntry(vector, node.callbacks));
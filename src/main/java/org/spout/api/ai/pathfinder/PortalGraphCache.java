@@ -0,0 +1,223 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.cache.CacheBuilder;
+
+import org.spout.api.ai.GridSearchState;
+import org.spout.api.event.EventHandler;
+import org.spout.api.event.Listener;
+import org.spout.api.event.Order;
+import org.spout.api.event.block.BlockChangeEvent;
+import org.spout.api.event.block.CuboidChangeEvent;
+import org.spout.api.event.chunk.ChunkUnloadEvent;
+import org.spout.api.event.chunk.ChunkUpdatedEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * Caches the portal graph of each chunk used by a {@link HierarchicalPathfinder}.<br/>
+ * Graphs are built on first use, and dropped when a block they depend on changes or their chunk is unloaded.
+ * Register the cache as a listener to have block changes, cuboid changes, chunk updates and chunk unloads invalidate it,
+ * or call the invalidate methods directly. Beyond the maximum size, the least recently used graphs are dropped.<br/>
+ * Block and cuboid change events are fired before the change is applied, so a graph built between the event and the
+ * change may still be cached; it is dropped by the {@link ChunkUpdatedEvent} fired once the change has been applied.
+ */
+public class PortalGraphCache implements Listener {
+	/**
+	 * The default maximum number of cached graphs
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+	private final World world;
+	private final BlockSource source;
+	private final BlockExaminer[] examiners;
+	private final ConcurrentMap<Long, ChunkPortalGraph> graphs;
+	/**
+	 * Incremented by each invalidation, so graphs built during one are not cached
+	 */
+	private final AtomicInteger invalidations = new AtomicInteger();
+
+	public PortalGraphCache(BlockSource source, BlockExaminer... examiners) {
+		this(null, source, examiners);
+	}
+
+	/**
+	 * Creates a cache which only listens to block changes in the given world
+	 * @param world of the blocks, or null to listen to every world
+	 * @param source of blocks
+	 * @param examiners which decide passability and cost
+	 */
+	public PortalGraphCache(World world, BlockSource source, BlockExaminer... examiners) {
+		this(world, source, DEFAULT_MAXIMUM_SIZE, examiners);
+	}
+
+	/**
+	 * Creates a cache which only listens to block changes in the given world
+	 * @param world of the blocks, or null to listen to every world
+	 * @param source of blocks
+	 * @param maximumSize the maximum number of graphs to cache
+	 * @param examiners which decide passability and cost
+	 */
+	public PortalGraphCache(World world, BlockSource source, int maximumSize, BlockExaminer... examiners) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive");
+		}
+		this.world = world;
+		this.source = source;
+		this.examiners = examiners == null ? new BlockExaminer[] {} : examiners;
+		this.graphs = CacheBuilder.newBuilder().maximumSize(maximumSize).<Long, ChunkPortalGraph>build().asMap();
+	}
+
+	BlockSource getSource() {
+		return source;
+	}
+
+	BlockExaminer[] getExaminers() {
+		return examiners;
+	}
+
+	/**
+	 * Gets the graph of a chunk, building it if it is not cached
+	 */
+	ChunkPortalGraph get(int chunkX, int chunkY, int chunkZ, ScratchPathPoint point, GridSearchState state) {
+		Long key = Int21TripleHashed.key(chunkX, chunkY, chunkZ);
+		ChunkPortalGraph graph = graphs.get(key);
+		if (graph == null) {
+			int before = invalidations.get();
+			graph = new ChunkPortalGraph(chunkX, chunkY, chunkZ, source, examiners, point, state);
+			if (invalidations.get() == before) {
+				ChunkPortalGraph existing = graphs.putIfAbsent(key, graph);
+				if (existing != null) {
+					graph = existing;
+				} else if (invalidations.get() != before) {
+					// An invalidation may have removed the key before the graph was put
+					graphs.remove(key, graph);
+				}
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Gets the number of cached chunk graphs
+	 * @return the number of graphs
+	 */
+	public int size() {
+		return graphs.size();
+	}
+
+	/**
+	 * Drops every cached graph
+	 */
+	public void clear() {
+		invalidations.incrementAndGet();
+		graphs.clear();
+	}
+
+	/**
+	 * Drops the graphs which depend on the block
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 */
+	public void invalidate(int x, int y, int z) {
+		invalidate(x, y, z, x, y, z);
+	}
+
+	/**
+	 * Drops the graphs which depend on any block inside the cuboid
+	 * @param minX lower x coordinate, inclusive
+	 * @param minY lower y coordinate, inclusive
+	 * @param minZ lower z coordinate, inclusive
+	 * @param maxX upper x coordinate, inclusive
+	 * @param maxY upper y coordinate, inclusive
+	 * @param maxZ upper z coordinate, inclusive
+	 */
+	public void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		invalidations.incrementAndGet();
+		int bits = ChunkPortalGraph.BITS;
+		// Blocks on a chunk face are also examined by the neighbouring chunk for its portals
+		for (int cx = (minX - 1) >> bits; cx <= (maxX + 1) >> bits; cx++) {
+			for (int cy = (minY - 1) >> bits; cy <= (maxY + 1) >> bits; cy++) {
+				for (int cz = (minZ - 1) >> bits; cz <= (maxZ + 1) >> bits; cz++) {
+					graphs.remove(Int21TripleHashed.key(cx, cy, cz));
+				}
+			}
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	public void onBlockChange(BlockChangeEvent event) {
+		Block block = event.getBlock();
+		if (!event.isCancelled() && (world == null || world.equals(block.getWorld()))) {
+			invalidate(block.getX(), block.getY(), block.getZ());
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		Chunk chunk = event.getChunk();
+		if (!event.isCancelled() && (world == null || world.equals(chunk.getWorld()))) {
+			graphs.remove(Int21TripleHashed.key(chunk.getX(), chunk.getY(), chunk.getZ()));
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	public void onCuboidChange(CuboidChangeEvent event) {
+		// Changes fired without their world invalidate every cache
+		World changed = event.getWorld();
+		if (!event.isCancelled() && (world == null || changed == null || world.equals(changed))) {
+			Vector3 base = event.getCuboid().getBase();
+			Vector3 top = event.getCuboid().getTop();
+			invalidate(base.getFloorX(), base.getFloorY(), base.getFloorZ(), top.getFloorX() - 1, top.getFloorY() - 1, top.getFloorZ() - 1);
+		}
+	}
+
+	@EventHandler(order = Order.MONITOR)
+	public void onChunkUpdated(ChunkUpdatedEvent event) {
+		Chunk chunk = event.getChunk();
+		if (world != null && !world.equals(chunk.getWorld())) {
+			return;
+		}
+		int x = chunk.getBlockX(), y = chunk.getBlockY(), z = chunk.getBlockZ();
+		if (event.isWholeChunkUpdate()) {
+			int last = Chunk.BLOCKS.SIZE - 1;
+			invalidate(x, y, z, x + last, y + last, z + last);
+		} else {
+			for (int i = 0; i < event.getBlockUpdateCount(); i++) {
+				Vector3 block = event.getBlockUpdate(i);
+				invalidate(x + block.getFloorX(), y + block.getFloorY(), z + block.getFloorZ());
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * A {@link PathPoint} which is moved to each block as it is examined, so examining does not allocate.<br/>
+ * Its vector is only created if an examiner asks for it.
+ * <p>
+ * Callbacks are recorded by block key, so they can be attached to the nodes of the path once it is built.
+ * The callbacks of a block are replaced each time the block is examined again.
+ */
+final class ScratchPathPoint implements PathPoint {
+	private int x, y, z;
+	private Vector3 vector;
+	private TLongObjectHashMap<List<PathCallback>> callbacks;
+	private boolean examining = false;
+
+	ScratchPathPoint set(int x, int y, int z) {
+		if (this.x != x || this.y != y || this.z != z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			vector = null;
+			examining = false;
+		}
+		return this;
+	}
+
+	/**
+	 * Moves the point to the block, starting a new examination of it
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 * @return this point
+	 */
+	ScratchPathPoint examine(int x, int y, int z) {
+		set(x, y, z);
+		examining = false;
+		return this;
+	}
+
+	/**
+	 * Sets the map callbacks are recorded in, by block key
+	 * @param callbacks to record in, or null to drop callbacks
+	 */
+	void recordCallbacks(TLongObjectHashMap<List<PathCallback>> callbacks) {
+		this.callbacks = callbacks;
+		examining = false;
+	}
+
+	@Override
+	public void addCallback(PathCallback callback) {
+		if (callbacks == null) {
+			return;
+		}
+		long key = Int21TripleHashed.key(x, y, z);
+		List<PathCallback> list = examining ? callbacks.get(key) : null;
+		if (list == null) {
+			list = new ArrayList<PathCallback>(2);
+			callbacks.put(key, list);
+			examining = true;
+		}
+		list.add(callback);
+	}
+
+	/**
+	 * Adds the callbacks recorded for each block to the node at that block
+	 * @param callbacks recorded by block key
+	 * @param node to add to
+	 */
+	static void attachCallbacks(TLongObjectHashMap<List<PathCallback>> callbacks, VectorNode node) {
+		if (callbacks == null || callbacks.isEmpty()) {
+			return;
+		}
+		List<PathCallback> list = callbacks.get(node.getGridKey());
+		if (list != null) {
+			for (PathCallback callback : list) {
+				node.addCallback(callback);
+			}
+		}
+	}
+
+	@Override
+	public Vector3 getVector() {
+		if (vector == null) {
+			vector = new Vector3(x, y, z);
+		}
+		return vector;
+	}
+
+	/**
+	 * Gets if every examiner allows passing through the block at this point
+	 * @param source of blocks
+	 * @param examiners to ask
+	 * @return true if passable
+	 */
+	boolean isPassable(BlockSource source, BlockExaminer[] examiners) {
+		for (BlockExaminer examiner : examiners) {
+			if (!examiner.isPassable(source, this)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the total cost the examiners give to the block at this point
+	 * @param source of blocks
+	 * @param examiners to ask
+	 * @return the cost
+	 */
+	float getCost(BlockSource source, BlockExaminer[] examiners) {
+		float cost = 0f;
+		for (BlockExaminer examiner : examiners) {
+			cost += examiner.getCost(source, this);
+		}
+		return cost;
+	}
+}
@@ -29,11 +29,13 @@ package org.spout.api.ai.pathfinder;
 import java.util.List;
 
 import org.spout.api.ai.AStarNode;
+import org.spout.api.ai.GridNode;
 import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.Int21TripleHashed;
 
 import com.google.common.collect.Lists;
 
-public class VectorNode extends AStarNode implements PathPoint {
+public class VectorNode extends AStarNode implements PathPoint, GridNode {
 	private float blockCost = -1;
 	final BlockSource blockSource;
 	List<PathCallback> callbacks;
@@ -98,6 +100,11 @@ public class VectorNode extends AStarNode implements PathPoint {
 		return nodes;
 	}
 
+	@Override
+	public long getGridKey() {
+		return Int21TripleHashed.key(location.getFloorX(), location.getFloorY(), location.getFloorZ());
+	}
+
 	private VectorNode getNewNode(Vector3 mod) {
 		return new VectorNode(mod, blockSource, examiners);
 	}
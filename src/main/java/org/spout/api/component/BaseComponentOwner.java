@@ -26,14 +26,17 @@
  */
 package org.spout.api.component;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.spout.api.Spout;
 import org.spout.api.datatable.ManagedHashMap;
@@ -44,6 +47,10 @@ public class BaseComponentOwner implements ComponentOwner {
 	 */
 	protected final BiMap<Class<? extends Component>, Component> components = HashBiMap.create();
 	protected final ManagedHashMap data;
+	/**
+	 * Immutable snapshot of the components, replaced whenever the map changes
+	 */
+	private volatile ComponentIndex index = ComponentIndex.EMPTY;
 
 	public BaseComponentOwner() {
 		data = new ManagedHashMap();
@@ -128,6 +135,7 @@ public class BaseComponentOwner implements ComponentOwner {
 	protected void attachComponent(Class<? extends Component> key, Component component, boolean attach) throws Exception {
 		if (component.attachTo(this)) {
 			components.put(key, component);
+			updateIndex();
 			if (attach) {
 				try {
 					component.onAttached();
@@ -135,6 +143,7 @@ public class BaseComponentOwner implements ComponentOwner {
 					// Remove the component from the component map if onAttached can't be
 					// called, pass exception to next catch block.
 					components.remove(key);
+					updateIndex();
 					throw e;
 				}
 			}
@@ -150,6 +159,7 @@ public class BaseComponentOwner implements ComponentOwner {
 
 			if (component != null && component.isDetachable()) {
 				components.inverse().remove(component);
+				updateIndex();
 				try {
 					component.onDetached();
 				} catch (Exception e) {
@@ -165,10 +175,11 @@ public class BaseComponentOwner implements ComponentOwner {
 	@Override
 	public <T extends Component> T get(Class<T> type) {
 		Preconditions.checkNotNull(type);
-		Component component = components.get(type);
+		ComponentIndex index = this.index;
+		Component component = index.exact.get(type);
 
 		if (component == null) {
-			component = findComponent(type);
+			component = (Component) index.first(type);
 		}
 		return (T) component;
 	}
@@ -176,56 +187,31 @@ public class BaseComponentOwner implements ComponentOwner {
 	@Override
 	public <T> T getType(Class<T> type) {
 		Preconditions.checkNotNull(type);
-
-		T component = findComponent(type);
-
-		return component;
+		return index.first(type);
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Component> T getExact(Class<T> type) {
 		Preconditions.checkNotNull(type);
-		synchronized (components) {
-			return (T) components.get(type);
-		}
+		return (T) index.exact.get(type);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Component> Collection<T> getAll(Class<T> type) {
 		Preconditions.checkNotNull(type);
-		synchronized (components) {
-			ArrayList<T> matches = new ArrayList<T>();
-			for (Component component : components.values()) {
-				if (type.isAssignableFrom(component.getClass())) {
-					matches.add((T) component);
-				}
-			}
-			return matches;
-		}
+		return index.all(type);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Object> Collection<T> getAllOfType(Class<T> type) {
 		Preconditions.checkNotNull(type);
-		synchronized (components) {
-			ArrayList<T> matches = new ArrayList<T>();
-			for (Component component : components.values()) {
-				if (type.isAssignableFrom(component.getClass())) {
-					matches.add((T) component);
-				}
-			}
-			return matches;
-		}
+		return index.all(type);
 	}
 
 	@Override
 	public Collection<Component> values() {
-		synchronized (components) {
-			return new ArrayList<Component>(components.values());
-		}
+		return index.values;
 	}
 
 	@Override
@@ -233,17 +219,48 @@ public class BaseComponentOwner implements ComponentOwner {
 		return data;
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T> T findComponent(Class<T> type) {
-		Preconditions.checkNotNull(type);
-		synchronized (components) {
-			for (Component component : values()) {
-				if (type.isAssignableFrom(component.getClass())) {
-					return (T) component;
+	/**
+	 * Rebuilds the lookup snapshot from the component map.<br/>
+	 * Must be called while holding the lock on the component map, after any modification to it.
+	 */
+	protected final void updateIndex() {
+		index = new ComponentIndex(components);
+	}
+
+	/**
+	 * Copy-on-write view of the component map.<br/>
+	 * Lookups by supertype or interface are resolved once per snapshot and cached.
+	 */
+	private static final class ComponentIndex {
+		private static final ComponentIndex EMPTY = new ComponentIndex(HashBiMap.<Class<? extends Component>, Component>create());
+		private final ImmutableMap<Class<? extends Component>, Component> exact;
+		private final ImmutableList<Component> values;
+		private final ConcurrentHashMap<Class<?>, ImmutableList<?>> byType = new ConcurrentHashMap<Class<?>, ImmutableList<?>>(8, 0.75f, 1);
+
+		private ComponentIndex(BiMap<Class<? extends Component>, Component> components) {
+			this.exact = ImmutableMap.copyOf(components);
+			this.values = ImmutableList.copyOf(exact.values());
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T> ImmutableList<T> all(Class<T> type) {
+			ImmutableList<?> matches = byType.get(type);
+			if (matches == null) {
+				ImmutableList.Builder<T> builder = ImmutableList.builder();
+				for (Component component : values) {
+					if (type.isInstance(component)) {
+						builder.add((T) component);
+					}
 				}
+				matches = builder.build();
+				byType.put(type, matches);
 			}
+			return (ImmutableList<T>) matches;
 		}
 
-		return null;
+		private <T> T first(Class<T> type) {
+			List<T> matches = all(type);
+			return matches.isEmpty() ? null : matches.get(0);
+		}
 	}
 }
@@ -0,0 +1,247 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage for the state of every instance of a component type.<br/>
+ * Subclasses keep one primitive array per field, indexed by {@link StoredComponent#getStoreIndex()},
+ * and tick all instances in a single pass over those arrays with {@link #tick(float, int, int)}.
+ * The arrays should be created in the subclass constructor with a length of {@link #getCapacity()}.
+ * <p>
+ * Live instances always occupy indexes 0 to {@link #size()} - 1. Releasing an instance moves the
+ * last instance into the freed index, so the arrays stay packed.
+ * <p>
+ * Allocation, release and ticking all synchronize on the store, so a tick never sees the columns
+ * change under it. Components allocated or released by the ticking thread during a tick are queued
+ * and applied once the tick completes.
+ * @param <T> the component type held by the store
+ */
+public abstract class ComponentStore<T extends StoredComponent> {
+	private static final int DEFAULT_CAPACITY = 64;
+	private StoredComponent[] components;
+	private int size = 0;
+	private boolean ticking = false;
+	private final List<StoredComponent> pendingAllocations = new ArrayList<StoredComponent>();
+	private final List<StoredComponent> pendingReleases = new ArrayList<StoredComponent>();
+
+	public ComponentStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ComponentStore(int initialCapacity) {
+		if (initialCapacity < 1) {
+			throw new IllegalArgumentException("Initial capacity must be positive");
+		}
+		components = new StoredComponent[initialCapacity];
+	}
+
+	/**
+	 * Allocates an index for the component and sets it on the component.<br/>
+	 * During a tick the allocation is queued until the tick completes and -1 is returned.
+	 * @param component to allocate for
+	 * @return the allocated index, or -1 if the allocation was queued
+	 */
+	public final synchronized int allocate(T component) {
+		if (ticking) {
+			if (!removePending(pendingReleases, component)) {
+				if (component.getStoreIndex() != -1 || containsPending(pendingAllocations, component)) {
+					throw new IllegalStateException("Component is already allocated in a store");
+				}
+				pendingAllocations.add(component);
+			}
+			return component.getStoreIndex();
+		}
+		if (component.getStoreIndex() != -1) {
+			throw new IllegalStateException("Component is already allocated in a store");
+		}
+		if (size == components.length) {
+			int capacity = components.length << 1;
+			components = Arrays.copyOf(components, capacity);
+			resize(capacity);
+		}
+		int index = size++;
+		components[index] = component;
+		component.setStoreIndex(index);
+		reset(index);
+		return index;
+	}
+
+	/**
+	 * Releases the index held by the component, moving the last component into it.<br/>
+	 * During a tick the release is queued until the tick completes.
+	 * @param component to release
+	 */
+	public final synchronized void release(T component) {
+		if (ticking && removePending(pendingAllocations, component)) {
+			return;
+		}
+		int index = component.getStoreIndex();
+		if (index < 0 || index >= size || components[index] != component) {
+			throw new IllegalStateException("Component is not allocated in this store");
+		}
+		if (ticking) {
+			if (!containsPending(pendingReleases, component)) {
+				pendingReleases.add(component);
+			}
+			return;
+		}
+		int last = --size;
+		if (index != last) {
+			StoredComponent moved = components[last];
+			move(last, index);
+			components[index] = moved;
+			moved.setStoreIndex(index);
+		}
+		components[last] = null;
+		component.setStoreIndex(-1);
+	}
+
+	/**
+	 * Gets the number of components held by the store
+	 * @return the size
+	 */
+	public final synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of components the columns of the store can currently hold
+	 * @return the capacity
+	 */
+	protected final synchronized int getCapacity() {
+		return components.length;
+	}
+
+	/**
+	 * Gets the component at the given index
+	 * @param index of the component
+	 * @return the component
+	 */
+	@SuppressWarnings("unchecked")
+	public final synchronized T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for store of size " + size);
+		}
+		return (T) components[index];
+	}
+
+	/**
+	 * Ticks every component held by the store
+	 * @param dt time since the last tick in seconds
+	 */
+	public final synchronized void tickAll(float dt) {
+		tickAll(dt, 0, size);
+	}
+
+	/**
+	 * Ticks the components at indexes start (inclusive) to end (exclusive)
+	 * @param dt time since the last tick in seconds
+	 * @param start the first index
+	 * @param end the index after the last
+	 */
+	public final synchronized void tickAll(float dt, int start, int end) {
+		if (start < 0 || end > size || start > end) {
+			throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds for store of size " + size);
+		}
+		if (ticking) {
+			throw new IllegalStateException("Store is already ticking");
+		}
+		ticking = true;
+		try {
+			tick(dt, start, end);
+		} finally {
+			ticking = false;
+			applyPending();
+		}
+	}
+
+	/**
+	 * Applies the allocations and releases queued during a tick
+	 */
+	@SuppressWarnings("unchecked")
+	private void applyPending() {
+		for (StoredComponent component : pendingReleases) {
+			release((T) component);
+		}
+		pendingReleases.clear();
+		for (StoredComponent component : pendingAllocations) {
+			allocate((T) component);
+		}
+		pendingAllocations.clear();
+	}
+
+	private static boolean containsPending(List<StoredComponent> pending, StoredComponent component) {
+		for (StoredComponent queued : pending) {
+			if (queued == component) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean removePending(List<StoredComponent> pending, StoredComponent component) {
+		for (int i = 0; i < pending.size(); i++) {
+			if (pending.get(i) == component) {
+				pending.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Ticks the components at indexes start (inclusive) to end (exclusive).<br/>
+	 * Called while holding the lock on the store.
+	 * @param dt time since the last tick in seconds
+	 * @param start the first index
+	 * @param end the index after the last
+	 */
+	protected abstract void tick(float dt, int start, int end);
+
+	/**
+	 * Grows every column of the store to the given capacity, keeping existing values
+	 * @param capacity the new capacity
+	 */
+	protected abstract void resize(int capacity);
+
+	/**
+	 * Copies every column of the store from one index to another
+	 * @param from the index to copy from
+	 * @param to the index to copy to
+	 */
+	protected abstract void move(int from, int to);
+
+	/**
+	 * Sets every column of the store at the given index to its initial value
+	 * @param index to reset
+	 */
+	protected abstract void reset(int index);
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.spout.api.component.Component;
+
+/**
+ * Registry of the {@link ComponentStore}s used by component types which opt into columnar storage.<br/>
+ * The engine ticks every registered store once per tick, after the owners have been ticked.
+ */
+public final class ComponentStoreRegistry {
+	private static final ConcurrentMap<Class<? extends Component>, ComponentStore<?>> STORES = new ConcurrentHashMap<Class<? extends Component>, ComponentStore<?>>();
+
+	private ComponentStoreRegistry() {
+	}
+
+	/**
+	 * Registers the store for a component type, if the type has none yet
+	 * @param type of component
+	 * @param store to register
+	 * @return the store registered for the type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Component & StoredComponent, S extends ComponentStore<T>> S register(Class<T> type, S store) {
+		ComponentStore<?> existing = STORES.putIfAbsent(type, store);
+		return existing == null ? store : (S) existing;
+	}
+
+	/**
+	 * Gets the store registered for a component type
+	 * @param type of component
+	 * @return the store, or null if the type has none
+	 */
+	public static ComponentStore<?> get(Class<? extends Component> type) {
+		return STORES.get(type);
+	}
+
+	/**
+	 * Removes the store registered for a component type
+	 * @param type of component
+	 * @return the removed store, or null if the type had none
+	 */
+	public static ComponentStore<?> unregister(Class<? extends Component> type) {
+		return STORES.remove(type);
+	}
+
+	/**
+	 * Gets all registered stores
+	 * @return the stores
+	 */
+	public static Collection<ComponentStore<?>> getAll() {
+		return new ArrayList<ComponentStore<?>>(STORES.values());
+	}
+
+	/**
+	 * Ticks every registered store
+	 * @param dt time since the last tick in seconds
+	 */
+	public static void tickAll(float dt) {
+		for (ComponentStore<?> store : STORES.values()) {
+			store.tickAll(dt);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component.store;
+
+/**
+ * A component whose state lives in a {@link ComponentStore} instead of in its own fields.<br/>
+ * The store assigns each instance an index, which it may change when other instances are released.
+ * <p>
+ * Implementations should allocate their slot in {@link org.spout.api.component.Component#onAttached()},
+ * release it in {@link org.spout.api.component.Component#onDetached()}, and return false from
+ * {@link org.spout.api.component.Component#canTick()} so they are only ticked by the store.
+ */
+public interface StoredComponent {
+	/**
+	 * Gets the index of this component's state in its store
+	 * @return the index, or -1 if it has none
+	 */
+	public int getStoreIndex();
+
+	/**
+	 * Sets the index of this component's state in its store.<br/>
+	 * This should only be called by the store.
+	 * @param index the new index, or -1 when released
+	 */
+	public void setStoreIndex(int index);
+}
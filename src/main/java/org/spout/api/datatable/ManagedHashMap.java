@@ -49,13 +49,17 @@ public class ManagedHashMap extends SerializableHashMap implements ManagedMap {
 
 	@Override
 	public Serializable putIfAbsent(String key, Serializable value) {
-		delta.putIfAbsent(key, value);
-		return super.putIfAbsent(key, value);
+		Serializable old = super.putIfAbsent(key, value);
+		if (old == null || value == null || NILTYPE.equals(value)) {
+			delta.put(key, value);
+		}
+		return old;
 	}
 
 	@Override
 	public Serializable put(String key, Serializable value) {
-		delta.putIfAbsent(key, value);
+		// The delta keeps the latest value, so changes made during a tick are coalesced
+		delta.put(key, value);
 		return super.put(key, value);
 	}
 
@@ -0,0 +1,449 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spout.api.datatable.delta.DeltaMap;
+import org.spout.api.math.Vector3;
+
+/**
+ * Serializes the contents of {@link SerializableMap}s using a tagged binary format.<br>
+ * <br>
+ * Each value is written with a one byte tag followed by the data for its type.  Primitive wrappers, strings, UUIDs, {@link Vector3}s,
+ * byte and int arrays and nested {@link SerializableHashMap}s and {@link DeltaMap}s have built in codecs, and codecs for other types
+ * can be registered with {@link #register(int, Class, MapValueCodec)}.  Values of any other class, including subclasses of the
+ * types above, are written using Java serialization.<br>
+ * <br>
+ * Data written by Java serialization, the format used before this one, is still read.
+ */
+public final class MapSerializer {
+	private static final int MAGIC = 0x534D;
+	private static final int VERSION = 1;
+	private static final int JAVA_MAGIC = 0xACED;
+
+	/**
+	 * The lowest id which can be used for registered codecs.  Lower ids are reserved for the built in codecs.
+	 */
+	public static final int FIRST_CUSTOM_ID = 32;
+	private static final int MAX_ID = 255;
+	private static final int JAVA_ID = 0;
+
+	private static final Map<Class<?>, Integer> ids = new ConcurrentHashMap<Class<?>, Integer>();
+	private static final Map<Integer, MapValueCodec<?>> codecs = new ConcurrentHashMap<Integer, MapValueCodec<?>>();
+
+	static {
+		registerCodec(1, Boolean.class, new MapValueCodec<Boolean>() {
+			@Override
+			public void write(DataOutputStream out, Boolean value) throws IOException {
+				out.writeBoolean(value);
+			}
+
+			@Override
+			public Boolean read(DataInputStream in) throws IOException {
+				return in.readBoolean();
+			}
+		});
+		registerCodec(2, Byte.class, new MapValueCodec<Byte>() {
+			@Override
+			public void write(DataOutputStream out, Byte value) throws IOException {
+				out.writeByte(value);
+			}
+
+			@Override
+			public Byte read(DataInputStream in) throws IOException {
+				return in.readByte();
+			}
+		});
+		registerCodec(3, Short.class, new MapValueCodec<Short>() {
+			@Override
+			public void write(DataOutputStream out, Short value) throws IOException {
+				out.writeShort(value);
+			}
+
+			@Override
+			public Short read(DataInputStream in) throws IOException {
+				return in.readShort();
+			}
+		});
+		registerCodec(4, Integer.class, new MapValueCodec<Integer>() {
+			@Override
+			public void write(DataOutputStream out, Integer value) throws IOException {
+				out.writeInt(value);
+			}
+
+			@Override
+			public Integer read(DataInputStream in) throws IOException {
+				return in.readInt();
+			}
+		});
+		registerCodec(5, Long.class, new MapValueCodec<Long>() {
+			@Override
+			public void write(DataOutputStream out, Long value) throws IOException {
+				out.writeLong(value);
+			}
+
+			@Override
+			public Long read(DataInputStream in) throws IOException {
+				return in.readLong();
+			}
+		});
+		registerCodec(6, Float.class, new MapValueCodec<Float>() {
+			@Override
+			public void write(DataOutputStream out, Float value) throws IOException {
+				out.writeFloat(value);
+			}
+
+			@Override
+			public Float read(DataInputStream in) throws IOException {
+				return in.readFloat();
+			}
+		});
+		registerCodec(7, Double.class, new MapValueCodec<Double>() {
+			@Override
+			public void write(DataOutputStream out, Double value) throws IOException {
+				out.writeDouble(value);
+			}
+
+			@Override
+			public Double read(DataInputStream in) throws IOException {
+				return in.readDouble();
+			}
+		});
+		registerCodec(8, Character.class, new MapValueCodec<Character>() {
+			@Override
+			public void write(DataOutputStream out, Character value) throws IOException {
+				out.writeChar(value);
+			}
+
+			@Override
+			public Character read(DataInputStream in) throws IOException {
+				return in.readChar();
+			}
+		});
+		registerCodec(9, String.class, new MapValueCodec<String>() {
+			@Override
+			public void write(DataOutputStream out, String value) throws IOException {
+				writeString(out, value);
+			}
+
+			@Override
+			public String read(DataInputStream in) throws IOException {
+				return readString(in);
+			}
+		});
+		registerCodec(10, UUID.class, new MapValueCodec<UUID>() {
+			@Override
+			public void write(DataOutputStream out, UUID value) throws IOException {
+				out.writeLong(value.getMostSignificantBits());
+				out.writeLong(value.getLeastSignificantBits());
+			}
+
+			@Override
+			public UUID read(DataInputStream in) throws IOException {
+				return new UUID(in.readLong(), in.readLong());
+			}
+		});
+		registerCodec(11, Vector3.class, new MapValueCodec<Vector3>() {
+			@Override
+			public void write(DataOutputStream out, Vector3 value) throws IOException {
+				out.writeFloat(value.getX());
+				out.writeFloat(value.getY());
+				out.writeFloat(value.getZ());
+			}
+
+			@Override
+			public Vector3 read(DataInputStream in) throws IOException {
+				return new Vector3(in.readFloat(), in.readFloat(), in.readFloat());
+			}
+		});
+		registerCodec(12, byte[].class, new MapValueCodec<byte[]>() {
+			@Override
+			public void write(DataOutputStream out, byte[] value) throws IOException {
+				writeLength(out, value.length);
+				out.write(value);
+			}
+
+			@Override
+			public byte[] read(DataInputStream in) throws IOException {
+				byte[] value = new byte[readLength(in)];
+				in.readFully(value);
+				return value;
+			}
+		});
+		registerCodec(13, int[].class, new MapValueCodec<int[]>() {
+			@Override
+			public void write(DataOutputStream out, int[] value) throws IOException {
+				writeLength(out, value.length);
+				for (int i = 0; i < value.length; i++) {
+					out.writeInt(value[i]);
+				}
+			}
+
+			@Override
+			public int[] read(DataInputStream in) throws IOException {
+				int length = readLength(in);
+				if (length > in.available() >> 2) {
+					throw new IOException("Invalid length " + length);
+				}
+				int[] value = new int[length];
+				for (int i = 0; i < length; i++) {
+					value[i] = in.readInt();
+				}
+				return value;
+			}
+		});
+		registerCodec(14, SerializableHashMap.class, new MapValueCodec<SerializableHashMap>() {
+			@Override
+			public void write(DataOutputStream out, SerializableHashMap value) throws IOException {
+				writeEntries(out, value);
+			}
+
+			@Override
+			public SerializableHashMap read(DataInputStream in) throws IOException {
+				SerializableHashMap value = new SerializableHashMap();
+				value.putAll(readEntries(in));
+				return value;
+			}
+		});
+		registerCodec(15, DeltaMap.class, new MapValueCodec<DeltaMap>() {
+			@Override
+			public void write(DataOutputStream out, DeltaMap value) throws IOException {
+				out.writeByte(value.getType().ordinal());
+				writeEntries(out, value);
+			}
+
+			@Override
+			public DeltaMap read(DataInputStream in) throws IOException {
+				int type = in.readUnsignedByte();
+				if (type >= DeltaMap.DeltaType.values().length) {
+					throw new IOException("Unknown delta type " + type);
+				}
+				DeltaMap value = new DeltaMap(DeltaMap.DeltaType.values()[type]);
+				value.putAll(readEntries(in));
+				return value;
+			}
+		});
+	}
+
+	private MapSerializer() {
+	}
+
+	/**
+	 * Registers a codec for a value class.  The codec is only used for values of exactly that class.<br>
+	 * <br>
+	 * The id is written to the serialized data, so it must not change between runs.
+	 *
+	 * @param id the id of the codec, from {@link #FIRST_CUSTOM_ID} to 255
+	 * @param clazz the value class
+	 * @param codec the codec
+	 */
+	public static <T extends Serializable> void register(int id, Class<T> clazz, MapValueCodec<T> codec) {
+		if (id < FIRST_CUSTOM_ID || id > MAX_ID) {
+			throw new IllegalArgumentException("Codec ids must be between " + FIRST_CUSTOM_ID + " and " + MAX_ID);
+		}
+		registerCodec(id, clazz, codec);
+	}
+
+	private static synchronized <T> void registerCodec(int id, Class<T> clazz, MapValueCodec<T> codec) {
+		if (codecs.containsKey(id)) {
+			throw new IllegalStateException("A codec is already registered with id " + id);
+		} else if (ids.containsKey(clazz)) {
+			throw new IllegalStateException("A codec is already registered for " + clazz.getName());
+		}
+		codecs.put(id, codec);
+		ids.put(clazz, id);
+	}
+
+	/**
+	 * Serializes the entries of a map
+	 *
+	 * @param map the map
+	 * @return the serialized data
+	 */
+	public static byte[] serialize(Map<String, ? extends Serializable> map) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeShort(MAGIC);
+			out.writeByte(VERSION);
+			writeEntries(out, map);
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to serialize map", e);
+		}
+	}
+
+	/**
+	 * Deserializes the entries of a map, written either by {@link #serialize(Map)} or by Java serialization of the map
+	 *
+	 * @param data the serialized data
+	 * @return the entries, in the order they were written
+	 * @throws IOException if the data could not be read
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Serializable> deserialize(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int magic = in.readUnsignedShort();
+		if (magic == JAVA_MAGIC) {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+			try {
+				return (Map<String, Serializable>) ois.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unable to deserialize map: " + e.getMessage(), e);
+			} catch (ClassCastException e) {
+				throw new IOException("Serialized data is not a map", e);
+			}
+		} else if (magic != MAGIC) {
+			throw new IOException("Unknown map format " + Integer.toHexString(magic));
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unknown map format version " + version);
+		}
+		return readEntries(in);
+	}
+
+	private static void writeEntries(DataOutputStream out, Map<String, ? extends Serializable> map) throws IOException {
+		// The size of a concurrent map may change while it is written, so the entries are terminated instead of counted
+		for (Map.Entry<String, ? extends Serializable> e : map.entrySet()) {
+			out.writeBoolean(true);
+			writeString(out, e.getKey());
+			writeValue(out, e.getValue());
+		}
+		out.writeBoolean(false);
+	}
+
+	private static Map<String, Serializable> readEntries(DataInputStream in) throws IOException {
+		Map<String, Serializable> map = new LinkedHashMap<String, Serializable>();
+		while (in.readBoolean()) {
+			String key = readString(in);
+			map.put(key, readValue(in));
+		}
+		return map;
+	}
+
+	/**
+	 * Writes a single tagged value
+	 *
+	 * @param out the stream to write to
+	 * @param value the value, which may not be null
+	 * @throws IOException if the value could not be written
+	 */
+	@SuppressWarnings("unchecked")
+	public static void writeValue(DataOutputStream out, Serializable value) throws IOException {
+		Integer id = ids.get(value.getClass());
+		if (id == null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(value);
+			oos.flush();
+			out.writeByte(JAVA_ID);
+			writeLength(out, bytes.size());
+			bytes.writeTo(out);
+		} else {
+			out.writeByte(id);
+			((MapValueCodec<Object>) codecs.get(id)).write(out, value);
+		}
+	}
+
+	/**
+	 * Reads a single value written by {@link #writeValue(DataOutputStream, Serializable)}
+	 *
+	 * @param in the stream to read from
+	 * @return the value
+	 * @throws IOException if the value could not be read
+	 */
+	public static Serializable readValue(DataInputStream in) throws IOException {
+		int id = in.readUnsignedByte();
+		if (id == JAVA_ID) {
+			byte[] bytes = new byte[readLength(in)];
+			in.readFully(bytes);
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return (Serializable) ois.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException("Unable to deserialize value: " + e.getMessage(), e);
+			}
+		}
+		MapValueCodec<?> codec = codecs.get(id);
+		if (codec == null) {
+			throw new IOException("No codec registered with id " + id);
+		}
+		return (Serializable) codec.read(in);
+	}
+
+	/**
+	 * Writes a length as groups of 7 bits, lowest first, with the top bit of each byte set if another byte follows
+	 */
+	private static void writeLength(DataOutputStream out, int length) throws IOException {
+		while ((length & ~0x7F) != 0) {
+			out.writeByte((length & 0x7F) | 0x80);
+			length >>>= 7;
+		}
+		out.writeByte(length);
+	}
+
+	private static int readLength(DataInputStream in) throws IOException {
+		int length = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (length < 0 || length > in.available()) {
+					throw new IOException("Invalid length " + length);
+				}
+				return length;
+			}
+		}
+		throw new IOException("Invalid length");
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		writeLength(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readLength(in)];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
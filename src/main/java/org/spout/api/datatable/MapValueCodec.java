@@ -0,0 +1,57 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes and reads values of one type for the binary format of {@link MapSerializer}
+ *
+ * @param <T> the value type
+ */
+public interface MapValueCodec<T> {
+
+	/**
+	 * Writes a value
+	 *
+	 * @param out the stream to write to
+	 * @param value the value
+	 * @throws IOException if the value could not be written
+	 */
+	public void write(DataOutputStream out, T value) throws IOException;
+
+	/**
+	 * Reads a value written by {@link #write(DataOutputStream, Object)}
+	 *
+	 * @param in the stream to read from
+	 * @return the value
+	 * @throws IOException if the value could not be read
+	 */
+	public T read(DataInputStream in) throws IOException;
+}
@@ -26,12 +26,7 @@
  */
 package org.spout.api.datatable;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.util.AbstractCollection;
@@ -452,42 +447,31 @@ public class SerializableHashMap implements SerializableMap {
 	/**
 	 * This serializes only the data, as opposed to the whole object.
 	 * 
+	 * @see MapSerializer
 	 */
 	@Override
 	public byte[] serialize() {
-		try {
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			ObjectOutputStream oos = new ObjectOutputStream(out);
-			oos.writeObject(map);
-			return out.toByteArray();
-		} catch (IOException ex) {
-			throw new IllegalStateException("Unable to compress SerializableMap");
-		}
+		return MapSerializer.serialize(map);
 	}
 
 	/**
 	 * This deserializes only the data, as opposed to the whole object.
 	 *
+	 * Data written by Java serialization, before {@link MapSerializer} was used, can still be read.
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void deserialize(byte[] serializedData, boolean wipe) throws IOException{
 		if (wipe) {
 			map.clear();
 		}
-		InputStream in = new ByteArrayInputStream(serializedData);
-		ObjectInputStream ois = new ObjectInputStream(in);
-		try {
-			// Because it may be a map of maps, we want to UPDATE inner maps, not overwrite
-			for (Map.Entry<? extends String, ? extends Serializable> e : ((Map<? extends String, ? extends Serializable>) ois.readObject()).entrySet()) {
-				if (e.getValue() instanceof Map && map.get(e.getKey()) instanceof Map) {
-					((Map) map.get(e.getKey())).putAll((Map) e.getValue());
-				} else {
-					put(e.getKey(), e.getValue());
-				}
+		// Because it may be a map of maps, we want to UPDATE inner maps, not overwrite
+		for (Map.Entry<String, Serializable> e : MapSerializer.deserialize(serializedData).entrySet()) {
+			if (e.getValue() instanceof Map && map.get(e.getKey()) instanceof Map) {
+				((Map) map.get(e.getKey())).putAll((Map) e.getValue());
+			} else {
+				put(e.getKey(), e.getValue());
 			}
-		} catch (ClassNotFoundException ex) {
-			throw new IllegalStateException("Unable to decompress SerializableHashMap: " + ex.getMessage());
 		}
 	}
 
@@ -50,7 +50,8 @@ import org.spout.api.map.DefaultedKey;
 public class DeltaMap extends SerializableHashMap {
 	private static final long serialVersionUID = 1L;
 	private transient WeakReference<DeltaMap> reference = new WeakReference<DeltaMap>(this);
-	private DeltaType type;
+	private volatile DeltaType type;
+	private transient int replaces = 0;
 	private final String key;
 
 	// If we have a parent, we aren't going to serialize it
@@ -88,10 +89,44 @@ public class DeltaMap extends SerializableHashMap {
 		return type;
 	}
 
-	public void setType(DeltaType type) {
+	public synchronized void setType(DeltaType type) {
+		if (type == DeltaType.REPLACE) {
+			replaces++;
+		}
 		this.type = type;
 	}
 
+	/**
+	 * Marks the current replacement of the map, so it can be reset once sent without losing a later one
+	 *
+	 * @return the mark, or -1 if the delta does not replace the map
+	 */
+	public synchronized int getReplaceMark() {
+		return type == DeltaType.REPLACE ? replaces : -1;
+	}
+
+	/**
+	 * Changes the type back to {@link DeltaType#SET}, unless the map was replaced again after the mark was taken
+	 *
+	 * @param mark from {@link #getReplaceMark()}
+	 */
+	public synchronized void resetReplace(int mark) {
+		if (type == DeltaType.REPLACE && replaces == mark) {
+			type = DeltaType.SET;
+		}
+	}
+
+	/**
+	 * Removes an entry once its value has been sent, unless it has changed since
+	 *
+	 * @param key of the entry
+	 * @param value which was sent
+	 * @return true if the entry was removed
+	 */
+	public boolean removeSent(String key, Serializable value) {
+		return map.remove(key, value);
+	}
+
 	// SerializableHashMap does not permit null values; however, we need a niltype to show a deletion
 	// Therefore, we need to override functionality:
 	// - We never allow single reads: DeltaMap is used for whole-map updates
@@ -140,7 +175,7 @@ public class DeltaMap extends SerializableHashMap {
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		updateParent();
 		setType(DeltaMap.DeltaType.REPLACE);
 		map.clear();
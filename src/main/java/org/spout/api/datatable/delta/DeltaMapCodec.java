@@ -0,0 +1,230 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable.delta;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+
+import org.spout.api.datatable.ManagedMap;
+import org.spout.api.datatable.MapSerializer;
+import org.spout.api.datatable.SerializableHashMap;
+import org.spout.api.datatable.SerializableMap;
+import org.spout.api.util.VarInt;
+
+/**
+ * Encodes {@link DeltaMap}s for network synchronization.<br>
+ * <br>
+ * A delta is written as a list of operations, so an update costs about as much as the entries which changed:
+ * <ul>
+ * <li>SET key value - the value is written in the tagged format of {@link MapSerializer}</li>
+ * <li>REMOVE key</li>
+ * <li>CLEAR - written first when the delta replaces the whole map</li>
+ * <li>ENTER key ... END - the operations in between apply to the sub-map with the given key</li>
+ * </ul>
+ * A delta map holds the latest value for each changed key, so all changes made during a tick are coalesced when the delta is written
+ * once per tick by {@link #writeAndReset(ChannelBuffer, ManagedMap)}. Only the values which were written are then removed from the
+ * delta, so changes made while it is written are kept for the next one.
+ */
+public final class DeltaMapCodec {
+	private static final int END = 0;
+	private static final int SET = 1;
+	private static final int REMOVE = 2;
+	private static final int CLEAR = 3;
+	private static final int ENTER = 4;
+
+	private DeltaMapCodec() {
+	}
+
+	/**
+	 * Writes the delta of a managed map to a buffer and removes the written changes from the delta.  If the map has not changed,
+	 * nothing is written.
+	 *
+	 * @param buffer the buffer
+	 * @param map the map
+	 * @return true if a delta was written
+	 */
+	public static boolean writeAndReset(ChannelBuffer buffer, ManagedMap map) {
+		DeltaMap delta = map.getDeltaMap();
+		if (!hasChanges(delta)) {
+			return false;
+		}
+		List<SentChange> sent = new ArrayList<SentChange>();
+		write(buffer, delta, sent);
+		for (SentChange change : sent) {
+			if (change.key == null) {
+				change.delta.resetReplace(change.replaceMark);
+			} else {
+				change.delta.removeSent(change.key, change.value);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets if a delta map holds any changes
+	 *
+	 * @param delta the delta map
+	 * @return true if the delta is not empty or replaces the map
+	 */
+	public static boolean hasChanges(DeltaMap delta) {
+		if (delta.getType() == DeltaMap.DeltaType.REPLACE) {
+			return true;
+		}
+		for (Map.Entry<String, Serializable> e : delta.entrySet()) {
+			Serializable value = e.getValue();
+			if (!(value instanceof DeltaMap) || hasChanges((DeltaMap) value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes a delta map to a buffer
+	 *
+	 * @param buffer the buffer
+	 * @param delta the delta map
+	 */
+	public static void write(ChannelBuffer buffer, DeltaMap delta) {
+		write(buffer, delta, null);
+	}
+
+	private static void write(ChannelBuffer buffer, DeltaMap delta, List<SentChange> sent) {
+		try {
+			DataOutputStream out = new DataOutputStream(new ChannelBufferOutputStream(buffer));
+			writeOperations(out, delta, sent);
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write delta map", e);
+		}
+	}
+
+	private static void writeOperations(DataOutputStream out, DeltaMap delta, List<SentChange> sent) throws IOException {
+		int replaceMark = delta.getReplaceMark();
+		if (replaceMark >= 0) {
+			out.writeByte(CLEAR);
+			if (sent != null) {
+				sent.add(new SentChange(delta, null, null, replaceMark));
+			}
+		}
+		for (Map.Entry<String, Serializable> e : delta.entrySet()) {
+			Serializable value = e.getValue();
+			if (value instanceof DeltaMap) {
+				DeltaMap subDelta = (DeltaMap) value;
+				if (!hasChanges(subDelta)) {
+					continue;
+				}
+				out.writeByte(ENTER);
+				VarInt.writeString(out, e.getKey());
+				writeOperations(out, subDelta, sent);
+				continue;
+			}
+			if (SerializableHashMap.NILTYPE.equals(value)) {
+				out.writeByte(REMOVE);
+				VarInt.writeString(out, e.getKey());
+			} else {
+				out.writeByte(SET);
+				VarInt.writeString(out, e.getKey());
+				MapSerializer.writeValue(out, value);
+			}
+			if (sent != null) {
+				sent.add(new SentChange(delta, e.getKey(), value, -1));
+			}
+		}
+		out.writeByte(END);
+	}
+
+	/**
+	 * Reads a delta from a buffer and applies it to a map.  Sub-maps which do not exist in the target are created as
+	 * {@link SerializableHashMap}s.
+	 *
+	 * @param buffer the buffer
+	 * @param target the map to update
+	 * @throws IOException if the delta could not be read
+	 */
+	public static void apply(ChannelBuffer buffer, SerializableMap target) throws IOException {
+		applyOperations(new DataInputStream(new ChannelBufferInputStream(buffer)), target);
+	}
+
+	private static void applyOperations(DataInputStream in, SerializableMap target) throws IOException {
+		int operation;
+		while ((operation = in.readUnsignedByte()) != END) {
+			switch (operation) {
+				case SET:
+					String key = VarInt.readString(in);
+					target.put(key, MapSerializer.readValue(in));
+					break;
+				case REMOVE:
+					target.remove(VarInt.readString(in));
+					break;
+				case CLEAR:
+					target.clear();
+					break;
+				case ENTER:
+					String mapKey = VarInt.readString(in);
+					Serializable current = target.get(mapKey);
+					SerializableMap subMap;
+					if (current instanceof SerializableMap) {
+						subMap = (SerializableMap) current;
+					} else {
+						subMap = new SerializableHashMap();
+						target.put(mapKey, subMap);
+					}
+					applyOperations(in, subMap);
+					break;
+				default:
+					throw new IOException("Unknown delta operation " + operation);
+			}
+		}
+	}
+
+	/**
+	 * A change which was written, to be removed from its delta afterwards.  A null key marks the replacement of the map.
+	 */
+	private static final class SentChange {
+		private final DeltaMap delta;
+		private final String key;
+		private final Serializable value;
+		private final int replaceMark;
+
+		private SentChange(DeltaMap delta, String key, Serializable value, int replaceMark) {
+			this.delta = delta;
+			this.key = key;
+			this.value = value;
+			this.replaceMark = replaceMark;
+		}
+	}
+}
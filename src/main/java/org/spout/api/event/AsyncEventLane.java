@@ -0,0 +1,290 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches events to asynchronous listeners on a pool of worker threads.<br>
+ * <br>
+ * The lane is split into stripes, each with its own bounded queue and worker thread.  Events are assigned to a stripe using their
+ * {@link OrderedEvent ordering key}, or their class if they have no key, so events from the same source are always handled in the
+ * order they were submitted.<br>
+ * <br>
+ * If a queue is full, the event is either dropped or the submitting thread waits for space, depending on how the lane was created.
+ * The number of queued, rejected and completed events can be read for monitoring.
+ */
+public class AsyncEventLane {
+	private static final Logger LOGGER = Logger.getLogger(AsyncEventLane.class.getCanonicalName());
+	private static final AtomicInteger laneCounter = new AtomicInteger();
+
+	private final Stripe[] stripes;
+	private final int capacity;
+	private final boolean blockWhenFull;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger maxQueued = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a lane with one stripe per available processor, which drops events when a queue is full
+	 */
+	public AsyncEventLane() {
+		this(Runtime.getRuntime().availableProcessors(), 1024, false);
+	}
+
+	/**
+	 * Creates a lane
+	 *
+	 * @param threads the number of stripes, each with a worker thread
+	 * @param capacity the maximum number of events queued per stripe
+	 * @param blockWhenFull true if submitting threads should wait for space, false to drop events when a queue is full
+	 */
+	public AsyncEventLane(int threads, int capacity, boolean blockWhenFull) {
+		if (threads < 1 || capacity < 1) {
+			throw new IllegalArgumentException("Thread count and capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.blockWhenFull = blockWhenFull;
+		this.stripes = new Stripe[threads];
+		int laneId = laneCounter.incrementAndGet();
+		for (int i = 0; i < threads; i++) {
+			stripes[i] = new Stripe("Async Event Lane " + laneId + " - " + i, capacity);
+			stripes[i].start();
+		}
+	}
+
+	/**
+	 * Submits an event to the lane.<br>
+	 * <br>
+	 * Only registrations which are {@link ListenerRegistration#isAsync() async} are called, unless allListeners is true.
+	 *
+	 * @param event the event
+	 * @param listeners the listeners for the event
+	 * @param allListeners true to call all the listeners, rather than only the async listeners
+	 * @return true if the event was queued
+	 */
+	public boolean submit(Event event, ListenerRegistration[] listeners, boolean allListeners) {
+		if (!running) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		Stripe stripe = stripes[getStripe(event)];
+		Task task = new Task(event, listeners, allListeners);
+		// Counted before it is queued, so the worker can't decrement the count first
+		int depth = queued.incrementAndGet();
+		boolean success;
+		if (blockWhenFull) {
+			try {
+				// Waits in steps, so a submitter isn't left waiting on a lane which has been shut down
+				do {
+					success = stripe.queue.offer(task, 50, TimeUnit.MILLISECONDS);
+				} while (!success && running);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				success = false;
+			}
+		} else {
+			success = stripe.queue.offer(task);
+		}
+		// If the lane was shut down while the task was queued, the worker may have already exited
+		if (success && !running && stripe.queue.remove(task)) {
+			success = false;
+		}
+		if (!success) {
+			queued.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		int max;
+		while ((max = maxQueued.get()) < depth) {
+			if (maxQueued.compareAndSet(max, depth)) {
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of events which are waiting to be dispatched
+	 *
+	 * @return the number of queued events
+	 */
+	public int getQueuedEvents() {
+		return queued.get();
+	}
+
+	/**
+	 * Gets the largest number of events that have been waiting at once, since the lane was created or the metrics were reset
+	 *
+	 * @return the maximum number of queued events
+	 */
+	public int getMaxQueuedEvents() {
+		return maxQueued.get();
+	}
+
+	/**
+	 * Gets the number of events which were dropped because a queue was full, or the lane was shut down
+	 *
+	 * @return the number of rejected events
+	 */
+	public long getRejectedEvents() {
+		return rejected.get();
+	}
+
+	/**
+	 * Gets the number of events which have been dispatched to all their listeners
+	 *
+	 * @return the number of completed events
+	 */
+	public long getCompletedEvents() {
+		return completed.get();
+	}
+
+	/**
+	 * Gets the total number of events which can be queued
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity * stripes.length;
+	}
+
+	/**
+	 * Resets the maximum queue depth and the rejected and completed counters
+	 */
+	public void resetMetrics() {
+		maxQueued.set(queued.get());
+		rejected.set(0);
+		completed.set(0);
+	}
+
+	/**
+	 * Stops accepting events.  Events which are already queued are still dispatched, and events submitted while the lane is
+	 * shutting down are either dispatched or rejected.
+	 *
+	 * @param timeout the maximum time to wait for the queued events, in ms
+	 * @return true if all queued events were dispatched
+	 */
+	public boolean shutdown(long timeout) throws InterruptedException {
+		running = false;
+		long end = System.currentTimeMillis() + timeout;
+		for (Stripe stripe : stripes) {
+			stripe.interrupt();
+		}
+		for (Stripe stripe : stripes) {
+			long remaining = end - System.currentTimeMillis();
+			if (remaining > 0) {
+				stripe.join(remaining);
+			}
+		}
+		return queued.get() == 0;
+	}
+
+	private int getStripe(Event event) {
+		Object key = null;
+		if (event instanceof OrderedEvent) {
+			key = ((OrderedEvent) event).getOrderingKey();
+		}
+		if (key == null) {
+			key = event.getClass();
+		}
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return (hash & 0x7FFFFFFF) % stripes.length;
+	}
+
+	private void dispatch(Task task) {
+		Event event = task.event;
+		try {
+			for (ListenerRegistration listener : task.listeners) {
+				if (!task.allListeners && !listener.isAsync()) {
+					continue;
+				}
+				try {
+					if (!event.isCancelled() || listener.getOrder().ignoresCancelled()) {
+						listener.getExecutor().execute(event);
+					}
+				} catch (Throwable ex) {
+					LOGGER.log(Level.SEVERE, "Could not pass async event " + event.getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
+				}
+			}
+			if (task.allListeners) {
+				event.setHasBeenCalled(true);
+			}
+		} finally {
+			queued.decrementAndGet();
+			completed.incrementAndGet();
+		}
+	}
+
+	private static class Task {
+		private final Event event;
+		private final ListenerRegistration[] listeners;
+		private final boolean allListeners;
+
+		public Task(Event event, ListenerRegistration[] listeners, boolean allListeners) {
+			this.event = event;
+			this.listeners = listeners;
+			this.allListeners = allListeners;
+		}
+	}
+
+	private class Stripe extends Thread {
+		private final BlockingQueue<Task> queue;
+
+		public Stripe(String name, int capacity) {
+			super(name);
+			setDaemon(true);
+			queue = new ArrayBlockingQueue<Task>(capacity);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Task task;
+				try {
+					task = running ? queue.take() : queue.poll();
+				} catch (InterruptedException e) {
+					continue;
+				}
+				if (task == null) {
+					return;
+				}
+				dispatch(task);
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.util.List;
+
+import org.spout.api.exception.EventException;
+
+/**
+ * An {@link EventExecutor} which can handle a batch of events in a single call.<br>
+ * <br>
+ * When events are fired using {@link EventManager#callEvents(java.util.Collection)}, batch executors are passed all of the events
+ * which they should receive at once, rather than being called once per event.
+ */
+public interface BatchEventExecutor extends EventExecutor {
+	/**
+	 * Executes the handler for a batch of events.  Cancelled events are not included, unless the handler ignores cancellation.
+	 *
+	 * @param events the events, the list is read only
+	 * @throws EventException
+	 */
+	public void execute(List<? extends Event> events) throws EventException;
+}
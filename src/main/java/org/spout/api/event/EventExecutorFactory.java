@@ -0,0 +1,245 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.spout.api.exception.EventException;
+
+/**
+ * Creates the {@link EventExecutor}s for {@link EventHandler} methods.<br>
+ * <br>
+ * If the listener method and the classes it uses are public, a class which calls the method directly is generated when the listener
+ * is registered.  Otherwise, the method is called using reflection.<br>
+ * <br>
+ * Each generated class is defined by its own class loader, so it can be unloaded once the listener is unregistered.
+ */
+public class EventExecutorFactory {
+	private static final Logger LOGGER = Logger.getLogger(EventExecutorFactory.class.getCanonicalName());
+	private static final String GENERATED_PACKAGE = "org.spout.api.event.generated.";
+	private static final AtomicInteger classCounter = new AtomicInteger();
+	private static volatile boolean generationEnabled = true;
+
+	private EventExecutorFactory() {
+	}
+
+	/**
+	 * Creates an executor which calls a listener method
+	 *
+	 * @param listener the listener, or null if the method is static
+	 * @param method the method, which must have a single parameter which is a subclass of {@link Event}
+	 * @return the executor
+	 */
+	public static EventExecutor create(Object listener, Method method) {
+		if (generationEnabled && canGenerate(method)) {
+			try {
+				return createGenerated(listener, method);
+			} catch (Throwable t) {
+				LOGGER.log(Level.FINE, "Unable to generate executor for " + method + ", using reflection", t);
+			}
+		}
+		return createReflective(listener, method);
+	}
+
+	/**
+	 * Creates an executor which calls a listener method using reflection
+	 *
+	 * @param listener the listener, or null if the method is static
+	 * @param method the method, which must have a single parameter which is a subclass of {@link Event}
+	 * @return the executor
+	 */
+	public static EventExecutor createReflective(final Object listener, final Method method) {
+		final Class<?> checkClass = method.getParameterTypes()[0];
+		method.setAccessible(true);
+		return new EventExecutor() {
+			@Override
+			public void execute(Event event) throws EventException {
+				try {
+					if (!checkClass.isAssignableFrom(event.getClass())) {
+						throw new EventException("Wrong event type passed to registered method");
+					}
+					method.invoke(listener, event);
+				} catch (InvocationTargetException e) {
+					if (e.getCause() instanceof EventException) {
+						throw (EventException) e.getCause();
+					}
+
+					throw new EventException(e.getCause());
+				} catch (EventException e) {
+					throw e;
+				} catch (Throwable t) {
+					throw new EventException(t);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return describe(method);
+			}
+		};
+	}
+
+	/**
+	 * Creates an executor which passes batches of events to a listener method.<br>
+	 * <br>
+	 * The method must have a single parameter of type List.  Events called individually are passed as a list of length one.
+	 *
+	 * @param listener the listener, or null if the method is static
+	 * @param method the method
+	 * @param eventClass the class of the events in the list
+	 * @return the executor
+	 */
+	public static BatchEventExecutor createBatch(final Object listener, final Method method, final Class<?> eventClass) {
+		if (method.getParameterTypes().length != 1 || method.getParameterTypes()[0] != List.class) {
+			throw new IllegalArgumentException("Batch handler method " + method + " must have a single List parameter");
+		}
+		method.setAccessible(true);
+		return new BatchEventExecutor() {
+			@Override
+			public void execute(Event event) throws EventException {
+				execute(Collections.singletonList(event));
+			}
+
+			@Override
+			public void execute(List<? extends Event> events) throws EventException {
+				for (int i = 0; i < events.size(); i++) {
+					if (!eventClass.isInstance(events.get(i))) {
+						throw new EventException("Wrong event type passed to registered method");
+					}
+				}
+				try {
+					method.invoke(listener, events);
+				} catch (InvocationTargetException e) {
+					if (e.getCause() instanceof EventException) {
+						throw (EventException) e.getCause();
+					}
+
+					throw new EventException(e.getCause());
+				} catch (Throwable t) {
+					throw new EventException(t);
+				}
+			}
+
+			@Override
+			public String toString() {
+				return describe(method);
+			}
+		};
+	}
+
+	/**
+	 * Creates an executor which calls a listener method directly.  The method, the class which declares it and the event class
+	 * must be public.
+	 *
+	 * @param listener the listener, or null if the method is static
+	 * @param method the method, which must have a single parameter which is a subclass of {@link Event}
+	 * @return the executor
+	 * @throws Exception if the class could not be generated
+	 */
+	public static EventExecutor createGenerated(Object listener, Method method) throws Exception {
+		if (!canGenerate(method)) {
+			throw new IllegalArgumentException("Method " + method + " is not accessible to generated executors");
+		}
+		String className = GENERATED_PACKAGE + method.getDeclaringClass().getSimpleName() + "$" + method.getName() + "$" + classCounter.incrementAndGet();
+		byte[] classFile = ExecutorClassWriter.write(className, method);
+		Class<?> executorClass = new ExecutorClassLoader(method.getDeclaringClass().getClassLoader()).define(className, classFile);
+		Constructor<?> constructor = executorClass.getConstructor(Object.class, Class.class);
+		GeneratedEventExecutor executor = (GeneratedEventExecutor) constructor.newInstance(listener, method.getParameterTypes()[0]);
+		executor.setDescription(describe(method));
+		return executor;
+	}
+
+	/**
+	 * Sets if executors should be generated.  If disabled, all executors created by the factory use reflection.
+	 *
+	 * @param enabled true to generate executors
+	 */
+	public static void setGenerationEnabled(boolean enabled) {
+		generationEnabled = enabled;
+	}
+
+	/**
+	 * Gets if a method can be called by a generated executor.  Generated executors are defined in a different runtime package to
+	 * the listener, so they can only call public methods of public classes.  Static interface methods are not supported by the
+	 * class file version of generated executors.
+	 *
+	 * @param method the method
+	 * @return true if an executor can be generated
+	 */
+	public static boolean canGenerate(Method method) {
+		Class<?>[] params = method.getParameterTypes();
+		if (params.length != 1 || !Event.class.isAssignableFrom(params[0])) {
+			return false;
+		}
+		if (method.getDeclaringClass().isInterface() && Modifier.isStatic(method.getModifiers())) {
+			return false;
+		}
+		return Modifier.isPublic(method.getModifiers()) && isPublic(method.getDeclaringClass()) && isPublic(params[0]);
+	}
+
+	private static String describe(Method method) {
+		return method.getDeclaringClass().getName() + "." + method.getName();
+	}
+
+	private static boolean isPublic(Class<?> clazz) {
+		while (clazz != null) {
+			if (!Modifier.isPublic(clazz.getModifiers())) {
+				return false;
+			}
+			clazz = clazz.getEnclosingClass();
+		}
+		return true;
+	}
+
+	private static class ExecutorClassLoader extends ClassLoader {
+		public ExecutorClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.equals(GeneratedEventExecutor.class.getName())) {
+				return GeneratedEventExecutor.class;
+			} else if (name.equals(Event.class.getName())) {
+				return Event.class;
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		public Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
@@ -38,4 +38,10 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface EventHandler {
 	Order order() default Order.DEFAULT;
+
+	/**
+	 * Async handlers are called on the event manager's async event lane, after all the synchronous handlers have been called.
+	 * They should not modify the event.
+	 */
+	boolean async() default false;
 }
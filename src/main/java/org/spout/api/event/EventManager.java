@@ -26,6 +26,8 @@
  */
 package org.spout.api.event;
 
+import java.util.Collection;
+
 /**
  * Manages event registration through {@link Listener}s and {@link EventExecutor}s,  It also handles calling of events, and delayed events.
  */
@@ -37,6 +39,41 @@ public interface EventManager {
 	 */
 	public <T extends Event> T callEvent(T event);
 
+	/**
+	 * Calls a batch of events of the same type.<br>
+	 * <br>
+	 * Each listener is called for all of the events before the next listener is called.  Listeners which registered a
+	 * {@link BatchEventExecutor} receive all the events in a single call.<br>
+	 * <br>
+	 * Events may use different handler lists.  Each run of consecutive events which use the same handler list is called as a
+	 * batch, and the runs are called in the order of the collection.
+	 * @param events the events
+	 * @return the called events
+	 */
+	public <T extends Event, C extends Collection<T>> C callEvents(C events);
+
+	/**
+	 * Calls a batch of events of the same type.
+	 * @param events the events
+	 * @return the called events
+	 * @see #callEvents(Collection)
+	 */
+	public <T extends Event> T[] callEvents(T[] events);
+
+	/**
+	 * Calls an event on the async event lane.  All listeners are called on a worker thread, after any events with the same
+	 * {@link OrderedEvent ordering key} which were called earlier.
+	 * @param event Event details
+	 */
+	public <T extends Event> void callAsyncEvent(T event);
+
+	/**
+	 * Gets the profiler which records the time taken by each listener.  The profiler is disabled until
+	 * {@link EventProfiler#setEnabled(boolean)} is called.
+	 * @return the event profiler
+	 */
+	public EventProfiler getProfiler();
+
 	/**
 	 * Calls an event with the given details, on the next tick
 	 * @param event Event details
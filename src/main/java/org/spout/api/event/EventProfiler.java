@@ -0,0 +1,291 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.cache.CacheBuilder;
+
+import org.spout.api.plugin.Plugin;
+
+/**
+ * Records the time spent in each event listener.<br>
+ * <br>
+ * The profiler is disabled by default.  While disabled, the event manager only checks a single volatile flag per event and
+ * does not read the clock.  Once enabled, the invocation count, total and maximum time, and the number of cancelled events are
+ * recorded for each {@link ListenerRegistration}, and for each event type.  The statistics for each owner are the totals of its
+ * listeners.<br>
+ * <br>
+ * Listeners are only weakly referenced, so that the profiler does not keep plugins loaded after they are disabled.  The
+ * statistics for a listener which has been unregistered are kept until the listener is garbage collected, or the profiler is
+ * {@link #reset() reset}.
+ */
+public class EventProfiler {
+	private static final Logger LOGGER = Logger.getLogger(EventProfiler.class.getCanonicalName());
+	private static final Comparator<ListenerStatistics> TOTAL_TIME_ORDER = new Comparator<ListenerStatistics>() {
+		@Override
+		public int compare(ListenerStatistics a, ListenerStatistics b) {
+			long ta = a.getTotalNanos();
+			long tb = b.getTotalNanos();
+			return ta < tb ? 1 : (ta == tb ? 0 : -1);
+		}
+	};
+
+	private final ConcurrentMap<ListenerRegistration, ListenerStatistics> listeners = CacheBuilder.newBuilder().weakKeys().<ListenerRegistration, ListenerStatistics>build().asMap();
+	private final ConcurrentMap<HandlerList, ListenerStatistics> events = new ConcurrentHashMap<HandlerList, ListenerStatistics>();
+	private volatile boolean enabled = false;
+	private ScheduledExecutorService dumpService;
+	private ScheduledFuture<?> dumpTask;
+
+	/**
+	 * Gets if the profiler is recording
+	 *
+	 * @return true if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts or stops recording.  Statistics which have already been recorded are kept.
+	 *
+	 * @param enabled true to record listener calls
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Records a call to a listener
+	 *
+	 * @param listener the listener
+	 * @param events the number of events passed to the listener
+	 * @param nanos the time taken by the call
+	 * @param cancelled the number of events which were cancelled by the listener
+	 */
+	public void recordListener(ListenerRegistration listener, int events, long nanos, int cancelled) {
+		ListenerStatistics stats = listeners.get(listener);
+		if (stats == null) {
+			stats = new ListenerStatistics(listener.toString(), listener.getOwner());
+			ListenerStatistics old = listeners.putIfAbsent(listener, stats);
+			if (old != null) {
+				stats = old;
+			}
+		}
+		stats.record(events, nanos, cancelled);
+	}
+
+	/**
+	 * Records the dispatch of events to all the listeners in a handler list
+	 *
+	 * @param handlers the handler list
+	 * @param event the first event dispatched, used to name the statistics
+	 * @param events the number of events dispatched
+	 * @param nanos the time taken to call all the listeners
+	 * @param cancelled the number of events which were cancelled
+	 */
+	public void recordEvent(HandlerList handlers, Event event, int events, long nanos, int cancelled) {
+		ListenerStatistics stats = this.events.get(handlers);
+		if (stats == null) {
+			stats = new ListenerStatistics(event.getEventName(), null);
+			ListenerStatistics old = this.events.putIfAbsent(handlers, stats);
+			if (old != null) {
+				stats = old;
+			}
+		}
+		stats.record(events, nanos, cancelled);
+	}
+
+	/**
+	 * Gets the statistics for a listener
+	 *
+	 * @param listener the listener
+	 * @return the statistics, or null if no calls to the listener have been recorded
+	 */
+	public ListenerStatistics getStatistics(ListenerRegistration listener) {
+		return listeners.get(listener);
+	}
+
+	/**
+	 * Gets the statistics for all the listeners which have been called, ordered by total time, longest first
+	 *
+	 * @return the listener statistics
+	 */
+	public List<ListenerStatistics> getListenerStatistics() {
+		List<ListenerStatistics> stats = new ArrayList<ListenerStatistics>(listeners.values());
+		Collections.sort(stats, TOTAL_TIME_ORDER);
+		return stats;
+	}
+
+	/**
+	 * Gets the combined statistics of the listeners registered by an owner
+	 *
+	 * @param owner the owner, may be null
+	 * @return the statistics, or null if no calls to the owner's listeners have been recorded
+	 */
+	public ListenerStatistics getOwnerStatistics(Object owner) {
+		ListenerStatistics total = null;
+		for (ListenerStatistics stats : listeners.values()) {
+			if (owner == null ? stats.getOwner() == null : owner.equals(stats.getOwner())) {
+				if (total == null) {
+					total = new ListenerStatistics(getOwnerName(owner), owner);
+				}
+				total.add(stats);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the combined statistics of the listeners for each owner, ordered by total time, longest first
+	 *
+	 * @return the owner statistics
+	 */
+	public List<ListenerStatistics> getOwnerStatistics() {
+		Map<Object, ListenerStatistics> owners = new HashMap<Object, ListenerStatistics>();
+		for (ListenerStatistics stats : listeners.values()) {
+			Object owner = stats.getOwner();
+			ListenerStatistics total = owners.get(owner);
+			if (total == null) {
+				total = new ListenerStatistics(getOwnerName(owner), owner);
+				owners.put(owner, total);
+			}
+			total.add(stats);
+		}
+		List<ListenerStatistics> result = new ArrayList<ListenerStatistics>(owners.values());
+		Collections.sort(result, TOTAL_TIME_ORDER);
+		return result;
+	}
+
+	/**
+	 * Gets the statistics for each event type, ordered by total time, longest first.  The time for an event includes all of its
+	 * listeners.
+	 *
+	 * @return the event statistics
+	 */
+	public List<ListenerStatistics> getEventStatistics() {
+		List<ListenerStatistics> stats = new ArrayList<ListenerStatistics>(events.values());
+		Collections.sort(stats, TOTAL_TIME_ORDER);
+		return stats;
+	}
+
+	/**
+	 * Clears all the recorded statistics
+	 */
+	public void reset() {
+		listeners.clear();
+		events.clear();
+	}
+
+	/**
+	 * Writes the most expensive owners, listeners and events to a logger
+	 *
+	 * @param logger the logger
+	 * @param count the maximum number of entries to write in each section
+	 */
+	public void dump(Logger logger, int count) {
+		StringBuilder builder = new StringBuilder("Event profiler snapshot");
+		appendSection(builder, "Owners", getOwnerStatistics(), count);
+		appendSection(builder, "Listeners", getListenerStatistics(), count);
+		appendSection(builder, "Events", getEventStatistics(), count);
+		logger.info(builder.toString());
+	}
+
+	/**
+	 * Starts writing a snapshot to a logger at a fixed rate, replacing any previous periodic dump.  The snapshots are written by a
+	 * daemon thread.
+	 *
+	 * @param logger the logger
+	 * @param count the maximum number of entries to write in each section
+	 * @param period the time between snapshots
+	 * @param unit the unit of the period
+	 */
+	public synchronized void startPeriodicDump(final Logger logger, final int count, long period, TimeUnit unit) {
+		stopPeriodicDump();
+		if (dumpService == null) {
+			dumpService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Event Profiler Dump");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		dumpTask = dumpService.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					dump(logger, count);
+				} catch (Throwable t) {
+					LOGGER.log(Level.SEVERE, "Unable to write event profiler snapshot", t);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops the periodic dump, if it is running
+	 */
+	public synchronized void stopPeriodicDump() {
+		if (dumpTask != null) {
+			dumpTask.cancel(false);
+			dumpTask = null;
+		}
+	}
+
+	private static void appendSection(StringBuilder builder, String title, List<ListenerStatistics> stats, int count) {
+		builder.append('\n').append(title).append(':');
+		for (int i = 0; i < stats.size() && i < count; i++) {
+			builder.append("\n  ").append(stats.get(i));
+		}
+	}
+
+	private static String getOwnerName(Object owner) {
+		if (owner == null) {
+			return "null";
+		}
+		if (owner instanceof Plugin) {
+			return ((Plugin) owner).getName();
+		}
+		return owner.getClass().getName();
+	}
+}
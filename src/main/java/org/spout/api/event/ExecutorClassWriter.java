@@ -0,0 +1,269 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class files for the executors generated by {@link EventExecutorFactory}.<br>
+ * <br>
+ * Each class extends {@link GeneratedEventExecutor} and implements dispatch with a cast of the listener and event, followed by a
+ * direct call to the listener method.  Methods declared by an interface are called with invokeinterface.  The generated code has no branches, so no stack map frames are required.
+ */
+final class ExecutorClassWriter {
+	private static final int CLASS_VERSION = 50;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PROTECTED = 0x0004;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int TAG_UTF8 = 1;
+	private static final int TAG_CLASS = 7;
+	private static final int TAG_METHODREF = 10;
+	private static final int TAG_INTERFACE_METHODREF = 11;
+	private static final int TAG_NAME_AND_TYPE = 12;
+
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int POP = 0x57;
+	private static final int POP2 = 0x58;
+	private static final int RETURN = 0xb1;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int CHECKCAST = 0xc0;
+
+	private static final String SUPER_NAME = internalName(GeneratedEventExecutor.class);
+	private static final String CONSTRUCTOR_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Class;)V";
+	private static final String DISPATCH_DESCRIPTOR = "(Ljava/lang/Object;" + descriptor(Event.class) + ")V";
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+	private int poolCount = 1;
+
+	private ExecutorClassWriter() {
+	}
+
+	/**
+	 * Writes the class file for an executor which calls the given method
+	 *
+	 * @param className the binary name of the class
+	 * @param method the listener method, which must take a single parameter
+	 * @return the class file
+	 */
+	public static byte[] write(String className, Method method) {
+		try {
+			return new ExecutorClassWriter().writeClass(className.replace('.', '/'), method);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write executor class", e);
+		}
+	}
+
+	private byte[] writeClass(String className, Method method) throws IOException {
+		int thisClass = classConstant(className);
+		int superClass = classConstant(SUPER_NAME);
+		int superConstructor = methodConstant(SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR, false);
+		int eventClass = classConstant(internalName(method.getParameterTypes()[0]));
+		String ownerName = internalName(method.getDeclaringClass());
+		int ownerClass = classConstant(ownerName);
+		boolean isInterface = method.getDeclaringClass().isInterface();
+		int target = methodConstant(ownerName, method.getName(), descriptor(method), isInterface);
+		int constructorName = utf8Constant("<init>");
+		int constructorDescriptor = utf8Constant(CONSTRUCTOR_DESCRIPTOR);
+		int dispatchName = utf8Constant("dispatch");
+		int dispatchDescriptor = utf8Constant(DISPATCH_DESCRIPTOR);
+		int code = utf8Constant("Code");
+
+		ByteArrayOutputStream constructorCode = new ByteArrayOutputStream();
+		constructorCode.write(ALOAD_0);
+		constructorCode.write(ALOAD_1);
+		constructorCode.write(ALOAD_2);
+		writeInstruction(constructorCode, INVOKESPECIAL, superConstructor);
+		constructorCode.write(RETURN);
+
+		ByteArrayOutputStream dispatchCode = new ByteArrayOutputStream();
+		boolean isStatic = Modifier.isStatic(method.getModifiers());
+		if (!isStatic) {
+			dispatchCode.write(ALOAD_1);
+			writeInstruction(dispatchCode, CHECKCAST, ownerClass);
+		}
+		dispatchCode.write(ALOAD_2);
+		writeInstruction(dispatchCode, CHECKCAST, eventClass);
+		if (isStatic) {
+			writeInstruction(dispatchCode, INVOKESTATIC, target);
+		} else if (isInterface) {
+			writeInstruction(dispatchCode, INVOKEINTERFACE, target);
+			dispatchCode.write(2); // argument slots, including the listener
+			dispatchCode.write(0);
+		} else {
+			writeInstruction(dispatchCode, INVOKEVIRTUAL, target);
+		}
+		Class<?> returnType = method.getReturnType();
+		if (returnType == long.class || returnType == double.class) {
+			dispatchCode.write(POP2);
+		} else if (returnType != void.class) {
+			dispatchCode.write(POP);
+		}
+		dispatchCode.write(RETURN);
+
+		ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(CLASS_VERSION);
+		out.writeShort(poolCount);
+		pool.flush();
+		poolBytes.writeTo(out);
+		out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(2); // methods
+		writeMethod(out, ACC_PUBLIC, constructorName, constructorDescriptor, code, 3, 3, constructorCode);
+		writeMethod(out, ACC_PROTECTED, dispatchName, dispatchDescriptor, code, 2, 3, dispatchCode);
+		out.writeShort(0); // attributes
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName, int maxStack, int maxLocals, ByteArrayOutputStream code) throws IOException {
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1); // attributes
+		out.writeShort(codeName);
+		out.writeInt(12 + code.size());
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.size());
+		code.writeTo(out);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // code attributes
+	}
+
+	private static void writeInstruction(ByteArrayOutputStream code, int opcode, int index) {
+		code.write(opcode);
+		code.write(index >> 8);
+		code.write(index);
+	}
+
+	private int utf8Constant(String value) throws IOException {
+		String key = "U" + value;
+		Integer index = poolIndexes.get(key);
+		if (index == null) {
+			pool.writeByte(TAG_UTF8);
+			pool.writeUTF(value);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int classConstant(String internalName) throws IOException {
+		String key = "C" + internalName;
+		Integer index = poolIndexes.get(key);
+		if (index == null) {
+			int name = utf8Constant(internalName);
+			pool.writeByte(TAG_CLASS);
+			pool.writeShort(name);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int methodConstant(String owner, String name, String descriptor, boolean isInterface) throws IOException {
+		String key = (isInterface ? "I" : "M") + owner + "." + name + descriptor;
+		Integer index = poolIndexes.get(key);
+		if (index == null) {
+			int ownerClass = classConstant(owner);
+			int nameIndex = utf8Constant(name);
+			int descriptorIndex = utf8Constant(descriptor);
+			pool.writeByte(TAG_NAME_AND_TYPE);
+			pool.writeShort(nameIndex);
+			pool.writeShort(descriptorIndex);
+			int nameAndType = addConstant("N" + name + descriptor);
+			pool.writeByte(isInterface ? TAG_INTERFACE_METHODREF : TAG_METHODREF);
+			pool.writeShort(ownerClass);
+			pool.writeShort(nameAndType);
+			index = addConstant(key);
+		}
+		return index;
+	}
+
+	private int addConstant(String key) {
+		int index = poolCount++;
+		poolIndexes.put(key, index);
+		return index;
+	}
+
+	private static String internalName(Class<?> clazz) {
+		return clazz.getName().replace('.', '/');
+	}
+
+	private static String descriptor(Method method) {
+		StringBuilder sb = new StringBuilder("(");
+		for (Class<?> param : method.getParameterTypes()) {
+			sb.append(descriptor(param));
+		}
+		return sb.append(')').append(descriptor(method.getReturnType())).toString();
+	}
+
+	private static String descriptor(Class<?> clazz) {
+		if (clazz.isArray()) {
+			return internalName(clazz);
+		} else if (clazz == void.class) {
+			return "V";
+		} else if (clazz == boolean.class) {
+			return "Z";
+		} else if (clazz == byte.class) {
+			return "B";
+		} else if (clazz == char.class) {
+			return "C";
+		} else if (clazz == short.class) {
+			return "S";
+		} else if (clazz == int.class) {
+			return "I";
+		} else if (clazz == long.class) {
+			return "J";
+		} else if (clazz == float.class) {
+			return "F";
+		} else if (clazz == double.class) {
+			return "D";
+		}
+		return "L" + internalName(clazz) + ";";
+	}
+}
@@ -33,6 +33,7 @@ public class ListenerRegistration {
 	private final EventExecutor executor;
 	private final Order orderSlot;
 	private final Object owner;
+	private final boolean async;
 
 	/**
 	 * @param executor Listener this registration represents
@@ -40,9 +41,20 @@ public class ListenerRegistration {
 	 * @param owner object that created this registration
 	 */
 	public ListenerRegistration(final EventExecutor executor, final Order orderSlot, final Object owner) {
+		this(executor, orderSlot, owner, false);
+	}
+
+	/**
+	 * @param executor Listener this registration represents
+	 * @param orderSlot Order position this registration is in
+	 * @param owner object that created this registration
+	 * @param async true if the listener should be called on the async event lane
+	 */
+	public ListenerRegistration(final EventExecutor executor, final Order orderSlot, final Object owner, final boolean async) {
 		this.executor = executor;
 		this.orderSlot = orderSlot;
 		this.owner = owner;
+		this.async = async;
 	}
 
 	/**
@@ -68,4 +80,17 @@ public class ListenerRegistration {
 	public Order getOrder() {
 		return orderSlot;
 	}
+
+	/**
+	 * Gets if the listener is called on the async event lane
+	 * @return true if async
+	 */
+	public boolean isAsync() {
+		return async;
+	}
+
+	@Override
+	public String toString() {
+		return executor + " (" + orderSlot + (async ? ", async" : "") + ")";
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics recorded by an {@link EventProfiler} for a listener or an owner.
+ */
+public class ListenerStatistics {
+	private final String name;
+	private final Object owner;
+	private final AtomicLong invocations = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final AtomicLong cancellations = new AtomicLong();
+
+	public ListenerStatistics(String name, Object owner) {
+		this.name = name;
+		this.owner = owner;
+	}
+
+	/**
+	 * Records the invocation of the listener
+	 *
+	 * @param events the number of events passed to the listener
+	 * @param nanos the time taken
+	 * @param cancelled the number of events which were cancelled by the listener
+	 */
+	public void record(int events, long nanos, int cancelled) {
+		invocations.addAndGet(events);
+		totalNanos.addAndGet(nanos);
+		long max;
+		while ((max = maxNanos.get()) < nanos) {
+			if (maxNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+		if (cancelled != 0) {
+			cancellations.addAndGet(cancelled);
+		}
+	}
+
+	/**
+	 * Adds the statistics from another listener to these statistics
+	 *
+	 * @param other the other statistics
+	 */
+	public void add(ListenerStatistics other) {
+		invocations.addAndGet(other.getInvocations());
+		totalNanos.addAndGet(other.getTotalNanos());
+		long otherMax = other.getMaxNanos();
+		long max;
+		while ((max = maxNanos.get()) < otherMax) {
+			if (maxNanos.compareAndSet(max, otherMax)) {
+				break;
+			}
+		}
+		cancellations.addAndGet(other.getCancellations());
+	}
+
+	/**
+	 * Gets the name of the listener or owner
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the owner of the listener
+	 *
+	 * @return the owner
+	 */
+	public Object getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Gets the number of events passed to the listener
+	 *
+	 * @return the number of events
+	 */
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	/**
+	 * Gets the total time spent in the listener
+	 *
+	 * @return the time, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * Gets the longest time taken by a single call to the listener
+	 *
+	 * @return the time, in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Gets the number of events which were cancelled by the listener
+	 *
+	 * @return the number of cancellations
+	 */
+	public long getCancellations() {
+		return cancellations.get();
+	}
+
+	/**
+	 * Gets the fraction of events which were cancelled by the listener
+	 *
+	 * @return the cancellation rate, from 0 to 1
+	 */
+	public double getCancellationRate() {
+		long calls = invocations.get();
+		return calls == 0 ? 0 : ((double) cancellations.get()) / calls;
+	}
+
+	@Override
+	public String toString() {
+		long calls = invocations.get();
+		long total = totalNanos.get();
+		return String.format("%s: %d calls, %.3f ms total, %.1f us avg, %.1f us max, %.1f%% cancelled", name, calls, total / 1000000D, calls == 0 ? 0 : total / 1000D / calls, maxNanos.get() / 1000D, getCancellationRate() * 100);
+	}
+}
@@ -26,20 +26,25 @@
  */
 package org.spout.api.event;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.spout.api.Spout;
-import org.spout.api.exception.EventException;
 import org.spout.api.exception.IllegalPluginAccessException;
 
 /**
@@ -47,6 +52,22 @@ import org.spout.api.exception.IllegalPluginAccessException;
  */
 public class SimpleEventManager implements EventManager {
 	private static final Logger LOGGER = Logger.getLogger(SimpleEventManager.class.getCanonicalName());
+	private final ConcurrentMap<Class<? extends Event>, HandlerList> handlerLists = new ConcurrentHashMap<Class<? extends Event>, HandlerList>();
+	private final EventProfiler profiler = new EventProfiler();
+	private volatile AsyncEventLane asyncLane;
+
+	public SimpleEventManager() {
+		this(null);
+	}
+
+	/**
+	 * Creates an event manager which uses the given lane for async events
+	 * @param asyncLane the lane, or null to create a lane when the first async event is called
+	 */
+	public SimpleEventManager(AsyncEventLane asyncLane) {
+		this.asyncLane = asyncLane;
+	}
+
 	@Override
 	public <T extends Event> void callDelayedEvent(final T event) {
 		Spout.getEngine().getScheduler().scheduleSyncDelayedTask(null, new Runnable() {
@@ -63,18 +84,211 @@ public class SimpleEventManager implements EventManager {
 		ListenerRegistration[] listeners = handlers.getRegisteredListeners();
 
 		if (listeners != null) {
+			boolean hasAsync;
+			if (profiler.isEnabled()) {
+				hasAsync = callListenersProfiled(event, handlers, listeners);
+			} else {
+				hasAsync = callListeners(event, listeners);
+			}
+			event.setHasBeenCalled(true);
+			if (hasAsync) {
+				getAsyncLane().submit(event, listeners, false);
+			}
+		}
+		return event;
+	}
+
+	/**
+	 * Calls the synchronous listeners for an event
+	 * @return true if any of the listeners are async
+	 */
+	private boolean callListeners(Event event, ListenerRegistration[] listeners) {
+		boolean hasAsync = false;
+		for (ListenerRegistration listener : listeners) {
+			if (listener.isAsync()) {
+				hasAsync = true;
+				continue;
+			}
+			try {
+				if (!event.isCancelled() || listener.getOrder().ignoresCancelled()) {
+					listener.getExecutor().execute(event);
+				}
+			} catch (Throwable ex) {
+				LOGGER.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
+			}
+		}
+		return hasAsync;
+	}
+
+	/**
+	 * Calls the synchronous listeners for an event, recording the time taken by each listener
+	 * @return true if any of the listeners are async
+	 */
+	private boolean callListenersProfiled(Event event, HandlerList handlers, ListenerRegistration[] listeners) {
+		boolean hasAsync = false;
+		boolean initiallyCancelled = event.isCancelled();
+		long eventStart = System.nanoTime();
+		for (ListenerRegistration listener : listeners) {
+			if (listener.isAsync()) {
+				hasAsync = true;
+				continue;
+			}
+			boolean cancelled = event.isCancelled();
+			if (cancelled && !listener.getOrder().ignoresCancelled()) {
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				listener.getExecutor().execute(event);
+			} catch (Throwable ex) {
+				LOGGER.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
+			}
+			profiler.recordListener(listener, 1, System.nanoTime() - start, !cancelled && event.isCancelled() ? 1 : 0);
+		}
+		profiler.recordEvent(handlers, event, 1, System.nanoTime() - eventStart, !initiallyCancelled && event.isCancelled() ? 1 : 0);
+		return hasAsync;
+	}
+
+	@Override
+	public <T extends Event> void callAsyncEvent(T event) {
+		ListenerRegistration[] listeners = event.getHandlers().getRegisteredListeners();
+		if (listeners != null) {
+			getAsyncLane().submit(event, listeners, true);
+		}
+	}
+
+	/**
+	 * Gets the lane used to dispatch async events, creating it if required
+	 * @return the async event lane
+	 */
+	public AsyncEventLane getAsyncLane() {
+		AsyncEventLane lane = asyncLane;
+		if (lane == null) {
+			synchronized (this) {
+				lane = asyncLane;
+				if (lane == null) {
+					asyncLane = lane = new AsyncEventLane();
+				}
+			}
+		}
+		return lane;
+	}
+
+	@Override
+	public EventProfiler getProfiler() {
+		return profiler;
+	}
+
+	@Override
+	public <T extends Event> T[] callEvents(T[] events) {
+		callEvents(Arrays.asList(events));
+		return events;
+	}
+
+	@Override
+	public <T extends Event, C extends Collection<T>> C callEvents(C events) {
+		if (events.isEmpty()) {
+			return events;
+		}
+		// Consecutive events with the same handler list are called as one batch, so the events are called in order
+		HandlerList handlers = null;
+		List<T> batch = new ArrayList<T>(events.size());
+		for (T event : events) {
+			HandlerList eventHandlers = event.getHandlers();
+			if (eventHandlers != handlers && !batch.isEmpty()) {
+				callBatch(handlers, batch);
+				batch = new ArrayList<T>();
+			}
+			handlers = eventHandlers;
+			batch.add(event);
+		}
+		callBatch(handlers, batch);
+		return events;
+	}
+
+	private <T extends Event> void callBatch(HandlerList handlers, List<T> batch) {
+		ListenerRegistration[] listeners = handlers.getRegisteredListeners();
+
+		if (listeners != null) {
+			List<T> uncancelled = new ArrayList<T>(batch.size());
+			List<T> readOnlyBatch = Collections.unmodifiableList(batch);
+			List<T> readOnlyUncancelled = Collections.unmodifiableList(uncancelled);
+			boolean hasAsync = false;
+			boolean profile = profiler.isEnabled();
+			int initiallyCancelled = profile ? countCancelled(batch) : 0;
+			long eventStart = profile ? System.nanoTime() : 0;
 			for (ListenerRegistration listener : listeners) {
-				try {
-					if (!event.isCancelled() || listener.getOrder().ignoresCancelled()) {
-						listener.getExecutor().execute(event);
+				if (listener.isAsync()) {
+					hasAsync = true;
+					continue;
+				}
+				EventExecutor executor = listener.getExecutor();
+				boolean ignoresCancelled = listener.getOrder().ignoresCancelled();
+				if (executor instanceof BatchEventExecutor) {
+					List<T> toCall = readOnlyBatch;
+					if (!ignoresCancelled) {
+						uncancelled.clear();
+						for (T event : batch) {
+							if (!event.isCancelled()) {
+								uncancelled.add(event);
+							}
+						}
+						toCall = readOnlyUncancelled;
+					}
+					if (toCall.isEmpty()) {
+						continue;
+					}
+					int cancelled = profile ? countCancelled(toCall) : 0;
+					long start = profile ? System.nanoTime() : 0;
+					try {
+						((BatchEventExecutor) executor).execute(toCall);
+					} catch (Throwable ex) {
+						LOGGER.log(Level.SEVERE, "Could not pass batch of " + toCall.size() + " events " + toCall.get(0).getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
+					}
+					if (profile) {
+						profiler.recordListener(listener, toCall.size(), System.nanoTime() - start, countCancelled(toCall) - cancelled);
+					}
+				} else {
+					for (T event : batch) {
+						boolean cancelled = event.isCancelled();
+						if (cancelled && !ignoresCancelled) {
+							continue;
+						}
+						long start = profile ? System.nanoTime() : 0;
+						try {
+							executor.execute(event);
+						} catch (Throwable ex) {
+							LOGGER.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
+						}
+						if (profile) {
+							profiler.recordListener(listener, 1, System.nanoTime() - start, !cancelled && event.isCancelled() ? 1 : 0);
+						}
 					}
-				} catch (Throwable ex) {
-					LOGGER.log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + listener.getOwner().getClass().getName(), ex);
 				}
 			}
-			event.setHasBeenCalled(true);
+			if (profile) {
+				profiler.recordEvent(handlers, batch.get(0), batch.size(), System.nanoTime() - eventStart, countCancelled(batch) - initiallyCancelled);
+			}
+			for (T event : batch) {
+				event.setHasBeenCalled(true);
+			}
+			if (hasAsync) {
+				AsyncEventLane lane = getAsyncLane();
+				for (T event : batch) {
+					lane.submit(event, listeners, false);
+				}
+			}
 		}
-		return event;
+	}
+
+	private static int countCancelled(List<? extends Event> events) {
+		int cancelled = 0;
+		for (int i = 0; i < events.size(); i++) {
+			if (events.get(i).isCancelled()) {
+				cancelled++;
+			}
+		}
+		return cancelled;
 	}
 
 	@Override
@@ -100,13 +314,19 @@ public class SimpleEventManager implements EventManager {
 	 * @return HandlerList The list of registered handlers for the event.
 	 */
 	private HandlerList getEventListeners(Class<? extends Event> type) {
+		HandlerList handlers = handlerLists.get(type);
+		if (handlers != null) {
+			return handlers;
+		}
 		try {
 			Method method = getRegistrationClass(type).getDeclaredMethod("getHandlerList");
 			method.setAccessible(true);
-			return (HandlerList) method.invoke(null);
+			handlers = (HandlerList) method.invoke(null);
 		} catch (Exception e) {
 			throw new IllegalPluginAccessException(e.toString());
 		}
+		handlerLists.putIfAbsent(type, handlers);
+		return handlers;
 	}
 
 	private Class<? extends Event> getRegistrationClass(Class<? extends Event> clazz) {
@@ -122,6 +342,33 @@ public class SimpleEventManager implements EventManager {
 		}
 	}
 
+	/**
+	 * Gets the event class handled by a batch handler method.  Batch handler methods have a single parameter of type List, with an
+	 * event class as the type argument.
+	 *
+	 * @param method the method
+	 * @return the event class, or null if the method is not a batch handler
+	 */
+	private static Class<?> getBatchEventClass(Method method) {
+		Type[] params = method.getGenericParameterTypes();
+		if (params.length != 1 || !(params[0] instanceof ParameterizedType)) {
+			return null;
+		}
+		ParameterizedType type = (ParameterizedType) params[0];
+		if (type.getRawType() != List.class) {
+			return null;
+		}
+		Type element = type.getActualTypeArguments()[0];
+		if (element instanceof WildcardType) {
+			Type[] upper = ((WildcardType) element).getUpperBounds();
+			element = upper.length == 1 ? upper[0] : null;
+		}
+		if (!(element instanceof Class) || !Event.class.isAssignableFrom((Class<?>) element)) {
+			return null;
+		}
+		return (Class<?>) element;
+	}
+
 	public Map<Class<? extends Event>, Set<ListenerRegistration>> createRegisteredListeners(final Listener listener, Object plugin) {
 		Map<Class<? extends Event>, Set<ListenerRegistration>> ret = new HashMap<Class<? extends Event>, Set<ListenerRegistration>>();
 		List<Method> methods = new ArrayList<Method>();
@@ -145,40 +392,30 @@ public class SimpleEventManager implements EventManager {
 				LOGGER.severe("No method arguments used for event type registered");
 				continue;
 			}
-			final Class<?> checkClass = method.getParameterTypes()[0];
+			Class<?> checkClass = method.getParameterTypes()[0];
 			Class<? extends Event> eventClass;
-			if (!Event.class.isAssignableFrom(checkClass) || method.getParameterTypes().length != 1) {
+			Class<?> batchClass = getBatchEventClass(method);
+			if (batchClass != null) {
+				checkClass = batchClass;
+			} else if (!Event.class.isAssignableFrom(checkClass) || method.getParameterTypes().length != 1) {
 				LOGGER.severe("Wrong method arguments used for event type registered");
 				continue;
 			}
 
 			eventClass = checkClass.asSubclass(Event.class);
 
-			method.setAccessible(true);
 			Set<ListenerRegistration> eventSet = ret.get(eventClass);
 			if (eventSet == null) {
 				eventSet = new HashSet<ListenerRegistration>();
 				ret.put(eventClass, eventSet);
 			}
-			eventSet.add(new ListenerRegistration(new EventExecutor() {
-				@Override
-				public void execute(Event event) throws EventException {
-					try {
-						if (!checkClass.isAssignableFrom(event.getClass())) {
-							throw new EventException("Wrong event type passed to registered method");
-						}
-						method.invoke(listener, event);
-					} catch (InvocationTargetException e) {
-						if (e.getCause() instanceof EventException) {
-							throw (EventException) e.getCause();
-						}
-
-						throw new EventException(e.getCause());
-					} catch (Throwable t) {
-						throw new EventException(t);
-					}
-				}
-			}, eh.order(), plugin));
+			EventExecutor executor;
+			if (batchClass != null) {
+				executor = EventExecutorFactory.createBatch(listener, method, eventClass);
+			} else {
+				executor = EventExecutorFactory.create(listener, method);
+			}
+			eventSet.add(new ListenerRegistration(executor, eh.order(), plugin, eh.async()));
 		}
 		return ret;
 	}
@@ -30,6 +30,7 @@ import org.spout.api.event.Cancellable;
 import org.spout.api.event.Cause;
 import org.spout.api.event.Event;
 import org.spout.api.event.HandlerList;
+import org.spout.api.geo.World;
 import org.spout.api.util.cuboid.CuboidBuffer;
 
 /**
@@ -39,10 +40,16 @@ import org.spout.api.util.cuboid.CuboidBuffer;
 public class CuboidChangeEvent extends Event implements Cancellable {
 	private static HandlerList handlers = new HandlerList();
 	private final CuboidBuffer buffer;
+	private final World world;
 	private final Cause<?> cause;
 
 	public CuboidChangeEvent(CuboidBuffer buffer, Cause<?> cause) {
+		this(buffer, null, cause);
+	}
+
+	public CuboidChangeEvent(CuboidBuffer buffer, World world, Cause<?> cause) {
 		this.buffer = buffer;
+		this.world = world;
 		this.cause = cause;
 	}
 
@@ -55,6 +62,14 @@ public class CuboidChangeEvent extends Event implements Cancellable {
 		return buffer;
 	}
 
+	/**
+	 * Gets the world the cuboid area is changed in.
+	 * @return world, or null if it was not given
+	 */
+	public World getWorld() {
+		return world;
+	}
+
 	/**
 	 * The plugin that is setting the cuboid area.
 	 * @return plugin
@@ -28,11 +28,12 @@ package org.spout.api.event.entity;
 
 import org.spout.api.entity.Entity;
 import org.spout.api.event.Event;
+import org.spout.api.event.OrderedEvent;
 
 /**
  * Represents an {@link Entity} related event.
  */
-public abstract class EntityEvent extends Event {
+public abstract class EntityEvent extends Event implements OrderedEvent {
 	private final Entity entity;
 
 	public EntityEvent(Entity e) {
@@ -46,4 +47,9 @@ public abstract class EntityEvent extends Event {
 	public Entity getEntity() {
 		return entity;
 	}
+
+	@Override
+	public Object getOrderingKey() {
+		return entity;
+	}
 }
@@ -28,11 +28,12 @@ package org.spout.api.event.player;
 
 import org.spout.api.entity.Player;
 import org.spout.api.event.Event;
+import org.spout.api.event.OrderedEvent;
 
 /**
  * Represents a player-related event.
  */
-public abstract class PlayerEvent extends Event {
+public abstract class PlayerEvent extends Event implements OrderedEvent {
 	private final Player player;
 
 	public PlayerEvent(Player p) {
@@ -42,4 +43,9 @@ public abstract class PlayerEvent extends Event {
 	public Player getPlayer() {
 		return player;
 	}
+
+	@Override
+	public Object getOrderingKey() {
+		return player;
+	}
 }
@@ -363,4 +363,184 @@ public class WorldGeneratorUtils {
 		}
 		return noiseArray;
 	}
+
+	/**
+	 * Generates a 1D noise map using reduced sampling and linear
+	 * interpolation, writing it into the given buffer.
+	 *
+	 * The buffer can be reused between calls, so that no arrays are allocated
+	 * while generating chunks.
+	 *
+	 * @param noiseGenerator The noise generator module
+	 * @param xSize The size of the 1D map
+	 * @param samplingRate The sampling rate to use. xSize % samplingRate must
+	 * return 0.
+	 * @param x The x coord
+	 * @param y The y coord
+	 * @param z The z coord
+	 * @param noise The buffer to write to, or null to allocate one. The buffer
+	 * is replaced if it holds fewer than xSize + 1 elements.
+	 * @throws IllegalArgumentException if the noise generator is null, the
+	 * sampling rate is not positive, or xSize % samplingRate doesn't return 0
+	 * @return The noise map, indexed by x
+	 */
+	public static double[] fastNoise(Module noiseGenerator, int xSize, int samplingRate, int x, int y, int z, double[] noise) {
+		checkNoiseArguments(noiseGenerator, samplingRate, xSize, 0, 0);
+		final int length = xSize + 1;
+		if (noise == null || noise.length < length) {
+			noise = new double[length];
+		}
+		for (int xx = 0; xx <= xSize; xx += samplingRate) {
+			noise[xx] = noiseGenerator.GetValue(xx + x, y, z);
+		}
+		interpolateRow(noise, 0, xSize, samplingRate);
+		return noise;
+	}
+
+	/**
+	 * Generates a 2D noise map using reduced sampling and bilinear
+	 * interpolation, writing it into the given buffer.
+	 *
+	 * The value for (xx, zz) is at index xx * (zSize + 1) + zz. The buffer can
+	 * be reused between calls, so that no arrays are allocated while
+	 * generating chunks. Interpolation is done a row at a time, first along the
+	 * sampled rows and then between whole rows.
+	 *
+	 * @param noiseGenerator The noise generator module
+	 * @param xSize The x size of the 2D map
+	 * @param zSize The z size of the 2D map
+	 * @param samplingRate The sampling rate to use. xSize % samplingRate and
+	 * zSize % samplingRate must return 0.
+	 * @param x The x coord
+	 * @param y The y coord
+	 * @param z The z coord
+	 * @param noise The buffer to write to, or null to allocate one. The buffer
+	 * is replaced if it holds fewer than (xSize + 1) * (zSize + 1) elements.
+	 * @throws IllegalArgumentException if the noise generator is null, the
+	 * sampling rate is not positive, or xSize % samplingRate or
+	 * zSize % samplingRate doesn't return 0
+	 * @return The noise map
+	 */
+	public static double[] fastNoise(Module noiseGenerator, int xSize, int zSize, int samplingRate, int x, int y, int z, double[] noise) {
+		checkNoiseArguments(noiseGenerator, samplingRate, xSize, 0, zSize);
+		final int rowLength = zSize + 1;
+		final int length = (xSize + 1) * rowLength;
+		if (noise == null || noise.length < length) {
+			noise = new double[length];
+		}
+		for (int xx = 0; xx <= xSize; xx += samplingRate) {
+			final int row = xx * rowLength;
+			for (int zz = 0; zz <= zSize; zz += samplingRate) {
+				noise[row + zz] = noiseGenerator.GetValue(xx + x, y, z + zz);
+			}
+			interpolateRow(noise, row, zSize, samplingRate);
+		}
+		interpolateBlocks(noise, 0, xSize, rowLength, samplingRate);
+		return noise;
+	}
+
+	/**
+	 * Generates a 3D noise map using reduced sampling and trilinear
+	 * interpolation, writing it into the given buffer.
+	 *
+	 * The value for (xx, yy, zz) is at index
+	 * (xx * (ySize + 1) + yy) * (zSize + 1) + zz. The buffer can be reused
+	 * between calls, so that no arrays are allocated while generating chunks.
+	 * Interpolation is done a row at a time, first along the sampled rows, then
+	 * between whole rows and finally between whole planes.
+	 *
+	 * @param noiseGenerator The noise generator module
+	 * @param xSize The x size of the 3D map
+	 * @param ySize The y size of the 3D map
+	 * @param zSize The z size of the 3D map
+	 * @param samplingRate The sampling rate to use. xSize % samplingRate, ySize
+	 * % samplingRate and zSize % samplingRate must return 0.
+	 * @param x The x coord
+	 * @param y The y coord
+	 * @param z The z coord
+	 * @param noise The buffer to write to, or null to allocate one. The buffer
+	 * is replaced if it holds fewer than
+	 * (xSize + 1) * (ySize + 1) * (zSize + 1) elements.
+	 * @throws IllegalArgumentException if the noise generator is null, the
+	 * sampling rate is not positive, or xSize % samplingRate, ySize %
+	 * samplingRate or zSize % samplingRate doesn't return 0
+	 * @return The noise map
+	 */
+	public static double[] fastNoise(Module noiseGenerator, int xSize, int ySize, int zSize,
+			int samplingRate, int x, int y, int z, double[] noise) {
+		checkNoiseArguments(noiseGenerator, samplingRate, xSize, ySize, zSize);
+		final int rowLength = zSize + 1;
+		final int planeLength = (ySize + 1) * rowLength;
+		final int length = (xSize + 1) * planeLength;
+		if (noise == null || noise.length < length) {
+			noise = new double[length];
+		}
+		for (int xx = 0; xx <= xSize; xx += samplingRate) {
+			final int plane = xx * planeLength;
+			for (int yy = 0; yy <= ySize; yy += samplingRate) {
+				final int row = plane + yy * rowLength;
+				for (int zz = 0; zz <= zSize; zz += samplingRate) {
+					noise[row + zz] = noiseGenerator.GetValue(xx + x, y + yy, z + zz);
+				}
+				interpolateRow(noise, row, zSize, samplingRate);
+			}
+			interpolateBlocks(noise, plane, ySize, rowLength, samplingRate);
+		}
+		interpolateBlocks(noise, 0, xSize, planeLength, samplingRate);
+		return noise;
+	}
+
+	private static void checkNoiseArguments(Module noiseGenerator, int samplingRate, int xSize, int ySize, int zSize) {
+		if (noiseGenerator == null) {
+			throw new IllegalArgumentException("noiseGenerator cannot be null");
+		}
+		if (samplingRate <= 0) {
+			throw new IllegalArgumentException("samplingRate must be positive");
+		}
+		if (xSize % samplingRate != 0) {
+			throw new IllegalArgumentException("xSize % samplingRate must return 0");
+		}
+		if (ySize % samplingRate != 0) {
+			throw new IllegalArgumentException("ySize % samplingRate must return 0");
+		}
+		if (zSize % samplingRate != 0) {
+			throw new IllegalArgumentException("zSize % samplingRate must return 0");
+		}
+	}
+
+	/**
+	 * Fills in a row between its sampled values, stepping the value along
+	 * each gap.
+	 */
+	private static void interpolateRow(double[] noise, int start, int size, int samplingRate) {
+		final double scale = 1D / samplingRate;
+		for (int i = start, end = start + size; i < end; i += samplingRate) {
+			double value = noise[i];
+			final double step = (noise[i + samplingRate] - value) * scale;
+			for (int j = i + 1, gapEnd = i + samplingRate; j < gapEnd; j++) {
+				value += step;
+				noise[j] = value;
+			}
+		}
+	}
+
+	/**
+	 * Fills in the blocks of the given length between the sampled blocks, for
+	 * blocks which are rows of a plane, or planes of a volume.
+	 */
+	private static void interpolateBlocks(double[] noise, int start, int size, int blockLength, int samplingRate) {
+		final int sampleStride = samplingRate * blockLength;
+		for (int n = 0; n < size; n += samplingRate) {
+			final int low = start + n * blockLength;
+			final int high = low + sampleStride;
+			for (int k = 1; k < samplingRate; k++) {
+				final double t = (double) k / samplingRate;
+				final int block = low + k * blockLength;
+				for (int i = 0; i < blockLength; i++) {
+					final double a = noise[low + i];
+					noise[block + i] = a + (noise[high + i] - a) * t;
+				}
+			}
+		}
+	}
 }
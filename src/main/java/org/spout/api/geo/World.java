@@ -45,6 +45,7 @@ import org.spout.api.generator.WorldGenerator;
 import org.spout.api.generator.biome.BiomeManager;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.geo.discrete.Transform;
+import org.spout.api.geo.spatial.EntitySpatialIndex;
 import org.spout.api.lighting.LightingManager;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.scheduler.TaskManager;
@@ -289,6 +290,14 @@ public interface World extends AreaRegionAccess, AreaPhysicsAccess, Named, Compo
 	 */
 	public abstract TaskManager getTaskManager();
 
+	/**
+	 * Gets the spatial index of the entities in this world.<br/>
+	 * Its queries write into collections supplied by the caller, and should be preferred over the list
+	 * returning lookups below when they are run often.
+	 * @return the entity spatial index
+	 */
+	public EntitySpatialIndex getSpatialIndex();
+
 	/**
 	 * Gets a list of nearby entities of the point, inside of the range
 	 * @param position of the center
@@ -36,7 +36,10 @@ import org.spout.api.generator.biome.BiomeManager;
 import org.spout.api.geo.AreaBlockSource;
 import org.spout.api.geo.World;
 import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.block.BlockFullState;
 import org.spout.api.util.cuboid.CuboidLightBuffer;
+import org.spout.api.util.map.concurrent.palette.AtomicShortIntArray;
+import org.spout.api.util.map.concurrent.palette.PaletteSnapshot;
 import org.spout.api.util.thread.annotation.SnapshotRead;
 
 public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
@@ -73,6 +76,27 @@ public abstract class ChunkSnapshot extends Cube implements AreaBlockSource {
 	 */
 	public abstract short[] getBlockData();
 
+	/**
+	 * Gets a copy of the blocks in the chunk in palette form.  This is the compact form used by the block store, so it can be 
+	 * serialized using only a few bytes for uniform chunks.<br>
+	 * <br>
+	 * The default implementation builds the palette from the block ids and data.  Snapshots which are backed by an AtomicBlockStore 
+	 * should override this method to copy the palette from the store directly.
+	 * 
+	 * @return the palette snapshot
+	 */
+	public PaletteSnapshot getPaletteSnapshot() {
+		short[] blockIds = getBlockIds();
+		short[] blockData = getBlockData();
+		int[] fullData = new int[blockIds.length];
+		for (int i = 0; i < fullData.length; i++) {
+			fullData[i] = BlockFullState.getPacked(blockIds[i], blockData[i]);
+		}
+		AtomicShortIntArray array = new AtomicShortIntArray(fullData.length);
+		array.set(fullData);
+		return array.getSnapshot(null);
+	}
+
 	/**
 	 * Gets an array containing a copy of the light data arrays
 	 * 
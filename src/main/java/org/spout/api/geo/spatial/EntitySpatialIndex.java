@@ -0,0 +1,159 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.spatial;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.Preconditions;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+
+/**
+ * The {@link SpatialIndex} of the entities in a world.
+ * <p>
+ * The index is updated incrementally in two steps. During the finalize stage of a tick, the engine
+ * calls {@link #update(Entity)} for each entity, which marks the entity if its position is dirty, it is
+ * not indexed yet, or it was removed. Once the snapshot has been copied, {@link #commit()} moves the marked
+ * entities to their new positions. Queries therefore see the snapshot positions of the entities.
+ * <p>
+ * Entities which were removed, or which have moved to another world, are removed from the index on commit.
+ */
+public class EntitySpatialIndex extends SpatialIndex<Entity> {
+	private final World world;
+	private final Set<Entity> pending = Collections.newSetFromMap(new ConcurrentHashMap<Entity, Boolean>());
+
+	public EntitySpatialIndex(World world) {
+		Preconditions.checkNotNull(world);
+		this.world = world;
+	}
+
+	/**
+	 * Gets the world whose entities are indexed
+	 * @return the world
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Marks the entity to be moved in the index on the next commit, if its position has changed
+	 * @param entity to update
+	 */
+	public void update(Entity entity) {
+		if (entity.isRemoved() || entity.getPhysics().isPositionDirty() || !contains(entity) || !isInWorld(entity)) {
+			pending.add(entity);
+		}
+	}
+
+	/**
+	 * Moves every marked entity to its snapshot position, and removes the marked entities which were removed or left the world
+	 */
+	public void commit() {
+		Iterator<Entity> i = pending.iterator();
+		while (i.hasNext()) {
+			Entity entity = i.next();
+			i.remove();
+			if (entity.isRemoved() || !isInWorld(entity)) {
+				remove(entity);
+			} else {
+				Point position = entity.getPhysics().getPosition();
+				update(entity, position.getX(), position.getY(), position.getZ());
+			}
+		}
+	}
+
+	private boolean isInWorld(Entity entity) {
+		return world.equals(entity.getPhysics().getPosition().getWorld());
+	}
+
+	/**
+	 * Adds the entities inside the range of the point to the collection
+	 * @param position of the center
+	 * @param ignore entity to leave out, or null
+	 * @param range to look in
+	 * @param out to add the entities to
+	 * @return the number of entities added
+	 */
+	public int getNearbyEntities(Point position, Entity ignore, float range, Collection<? super Entity> out) {
+		return querySphere(position.getX(), position.getY(), position.getZ(), range, Entity.class, ignore, out);
+	}
+
+	/**
+	 * Adds the players inside the range of the point to the collection
+	 * @param position of the center
+	 * @param ignore player to leave out, or null
+	 * @param range to look in
+	 * @param out to add the players to
+	 * @return the number of players added
+	 */
+	public int getNearbyPlayers(Point position, Player ignore, float range, Collection<? super Player> out) {
+		return querySphere(position.getX(), position.getY(), position.getZ(), range, Player.class, ignore, out);
+	}
+
+	/**
+	 * Adds the nearest entities within the range of the point to the list, nearest first
+	 * @param position to search from
+	 * @param ignore entity to leave out, or null
+	 * @param range to look in
+	 * @param count the maximum number of entities to add
+	 * @param out to add the entities to
+	 * @return the number of entities added
+	 */
+	public int getNearestEntities(Point position, Entity ignore, float range, int count, List<? super Entity> out) {
+		return queryNearest(position.getX(), position.getY(), position.getZ(), range, count, Entity.class, ignore, out);
+	}
+
+	/**
+	 * Gets the nearest entity within the range of the point
+	 * @param position to search from
+	 * @param ignore entity to leave out, or null
+	 * @param range to look in
+	 * @return the nearest entity, or null if there is none in range
+	 */
+	public Entity getNearestEntity(Point position, Entity ignore, float range) {
+		return getNearest(position.getX(), position.getY(), position.getZ(), range, Entity.class, ignore);
+	}
+
+	/**
+	 * Gets the nearest player within the range of the point
+	 * @param position to search from
+	 * @param ignore player to leave out, or null
+	 * @param range to look in
+	 * @return the nearest player, or null if there is none in range
+	 */
+	public Player getNearestPlayer(Point position, Player ignore, float range) {
+		return getNearest(position.getX(), position.getY(), position.getZ(), range, Player.class, ignore);
+	}
+}
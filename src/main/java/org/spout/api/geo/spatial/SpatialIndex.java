@@ -0,0 +1,497 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.spatial;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.math.GenericMath;
+import org.spout.api.util.map.TInt21TripleObjectHashMap;
+
+/**
+ * A uniform grid of chunk sized cells, indexing objects by position.<br/>
+ * Each cell keeps the positions of its objects in parallel float arrays, so range queries only
+ * touch the cells they overlap and scan those arrays linearly.
+ * <p>
+ * Queries write their results into a collection supplied by the caller and may run concurrently
+ * with each other. Updates are exclusive.
+ * @param <T> the type of object indexed
+ */
+public class SpatialIndex<T> {
+	private static final int CELL_BITS = Chunk.BLOCKS.BITS;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TInt21TripleObjectHashMap<Cell> cells = new TInt21TripleObjectHashMap<Cell>();
+	private final Map<T, Entry> entries = new IdentityHashMap<T, Entry>();
+
+	/**
+	 * Adds the object to the index, or moves it if it is already indexed
+	 * @param object to index
+	 * @param x coordinate of the object
+	 * @param y coordinate of the object
+	 * @param z coordinate of the object
+	 */
+	public void update(T object, float x, float y, float z) {
+		int cx = GenericMath.floor(x) >> CELL_BITS;
+		int cy = GenericMath.floor(y) >> CELL_BITS;
+		int cz = GenericMath.floor(z) >> CELL_BITS;
+		lock.writeLock().lock();
+		try {
+			Entry entry = entries.get(object);
+			if (entry == null) {
+				entry = new Entry(object);
+				entries.put(object, entry);
+			} else if (entry.cell.x == cx && entry.cell.y == cy && entry.cell.z == cz) {
+				entry.cell.set(entry.index, x, y, z);
+				return;
+			} else {
+				removeFromCell(entry);
+			}
+			Cell cell = cells.get(cx, cy, cz);
+			if (cell == null) {
+				cell = new Cell(cx, cy, cz);
+				cells.put(cx, cy, cz, cell);
+			}
+			cell.add(entry, x, y, z);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the object from the index
+	 * @param object to remove
+	 * @return true if the object was indexed
+	 */
+	public boolean remove(T object) {
+		lock.writeLock().lock();
+		try {
+			Entry entry = entries.remove(object);
+			if (entry == null) {
+				return false;
+			}
+			removeFromCell(entry);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes every object from the index
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			entries.clear();
+			cells.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets if the object is indexed
+	 * @param object to check
+	 * @return true if indexed
+	 */
+	public boolean contains(T object) {
+		lock.readLock().lock();
+		try {
+			return entries.containsKey(object);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of objects indexed
+	 * @return the size
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds every object inside the box to the collection
+	 * @param minX lower x bound, inclusive
+	 * @param minY lower y bound, inclusive
+	 * @param minZ lower z bound, inclusive
+	 * @param maxX upper x bound, inclusive
+	 * @param maxY upper y bound, inclusive
+	 * @param maxZ upper z bound, inclusive
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	public int queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Collection<? super T> out) {
+		return query(minX, minY, minZ, maxX, maxY, maxZ, 0f, 0f, 0f, -1f, null, null, out);
+	}
+
+	/**
+	 * Adds every object of the given type inside the box to the collection
+	 * @param minX lower x bound, inclusive
+	 * @param minY lower y bound, inclusive
+	 * @param minZ lower z bound, inclusive
+	 * @param maxX upper x bound, inclusive
+	 * @param maxY upper y bound, inclusive
+	 * @param maxZ upper z bound, inclusive
+	 * @param type of object to add, or null for all
+	 * @param ignore object to leave out, or null
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	public <U extends T> int queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Class<U> type, T ignore, Collection<? super U> out) {
+		return query(minX, minY, minZ, maxX, maxY, maxZ, 0f, 0f, 0f, -1f, type, ignore, out);
+	}
+
+	/**
+	 * Adds every object inside the sphere to the collection
+	 * @param x coordinate of the center
+	 * @param y coordinate of the center
+	 * @param z coordinate of the center
+	 * @param radius of the sphere
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	public int querySphere(float x, float y, float z, float radius, Collection<? super T> out) {
+		return querySphere(x, y, z, radius, null, null, out);
+	}
+
+	/**
+	 * Adds every object of the given type inside the sphere to the collection
+	 * @param x coordinate of the center
+	 * @param y coordinate of the center
+	 * @param z coordinate of the center
+	 * @param radius of the sphere
+	 * @param type of object to add, or null for all
+	 * @param ignore object to leave out, or null
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	public <U extends T> int querySphere(float x, float y, float z, float radius, Class<U> type, T ignore, Collection<? super U> out) {
+		return query(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius, x, y, z, radius * radius, type, ignore, out);
+	}
+
+	/**
+	 * Adds the nearest objects within range to the list, nearest first
+	 * @param x coordinate to search from
+	 * @param y coordinate to search from
+	 * @param z coordinate to search from
+	 * @param range the maximum distance of an object
+	 * @param count the maximum number of objects to add
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	public int queryNearest(float x, float y, float z, float range, int count, List<? super T> out) {
+		return queryNearest(x, y, z, range, count, null, null, out);
+	}
+
+	/**
+	 * Adds the nearest objects of the given type within range to the list, nearest first
+	 * @param x coordinate to search from
+	 * @param y coordinate to search from
+	 * @param z coordinate to search from
+	 * @param range the maximum distance of an object
+	 * @param count the maximum number of objects to add
+	 * @param type of object to add, or null for all
+	 * @param ignore object to leave out, or null
+	 * @param out to add the objects to
+	 * @return the number of objects added
+	 */
+	@SuppressWarnings("unchecked")
+	public <U extends T> int queryNearest(float x, float y, float z, float range, int count, Class<U> type, T ignore, List<? super U> out) {
+		if (count <= 0) {
+			return 0;
+		}
+		Nearest nearest = new Nearest(count);
+		findNearest(x, y, z, range, type, ignore, nearest);
+		for (int i = 0; i < nearest.size; i++) {
+			out.add((U) nearest.objects[i]);
+		}
+		return nearest.size;
+	}
+
+	/**
+	 * Gets the nearest object within range
+	 * @param x coordinate to search from
+	 * @param y coordinate to search from
+	 * @param z coordinate to search from
+	 * @param range the maximum distance of the object
+	 * @return the nearest object, or null if there is none in range
+	 */
+	public T getNearest(float x, float y, float z, float range) {
+		return getNearest(x, y, z, range, null, null);
+	}
+
+	/**
+	 * Gets the nearest object of the given type within range
+	 * @param x coordinate to search from
+	 * @param y coordinate to search from
+	 * @param z coordinate to search from
+	 * @param range the maximum distance of the object
+	 * @param type of object to find, or null for all
+	 * @param ignore object to leave out, or null
+	 * @return the nearest object, or null if there is none in range
+	 */
+	@SuppressWarnings("unchecked")
+	public <U extends T> U getNearest(float x, float y, float z, float range, Class<U> type, T ignore) {
+		Nearest nearest = new Nearest(1);
+		findNearest(x, y, z, range, type, ignore, nearest);
+		return nearest.size == 0 ? null : (U) nearest.objects[0];
+	}
+
+	/**
+	 * Collects the objects inside the box, and inside the sphere if radiusSq is not negative
+	 */
+	@SuppressWarnings("unchecked")
+	private <U> int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float x, float y, float z, float radiusSq, Class<U> type, Object ignore, Collection<? super U> out) {
+		int minCX = GenericMath.floor(minX) >> CELL_BITS;
+		int minCY = GenericMath.floor(minY) >> CELL_BITS;
+		int minCZ = GenericMath.floor(minZ) >> CELL_BITS;
+		int maxCX = GenericMath.floor(maxX) >> CELL_BITS;
+		int maxCY = GenericMath.floor(maxY) >> CELL_BITS;
+		int maxCZ = GenericMath.floor(maxZ) >> CELL_BITS;
+		long volume = (long) (maxCX - minCX + 1) * (maxCY - minCY + 1) * (maxCZ - minCZ + 1);
+		int added = 0;
+		lock.readLock().lock();
+		try {
+			if (volume > cells.size()) {
+				// Cheaper to check every occupied cell than to look up every cell in the range
+				for (Cell cell : cells.valueCollection()) {
+					if (cell.x >= minCX && cell.x <= maxCX && cell.y >= minCY && cell.y <= maxCY && cell.z >= minCZ && cell.z <= maxCZ) {
+						added += cell.collect(minX, minY, minZ, maxX, maxY, maxZ, x, y, z, radiusSq, type, ignore, (Collection<Object>) out);
+					}
+				}
+			} else {
+				for (int cx = minCX; cx <= maxCX; cx++) {
+					for (int cy = minCY; cy <= maxCY; cy++) {
+						for (int cz = minCZ; cz <= maxCZ; cz++) {
+							Cell cell = cells.get(cx, cy, cz);
+							if (cell != null) {
+								added += cell.collect(minX, minY, minZ, maxX, maxY, maxZ, x, y, z, radiusSq, type, ignore, (Collection<Object>) out);
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return added;
+	}
+
+	/**
+	 * Searches cells in growing cubic shells around the point until no unvisited cell can hold a nearer object
+	 */
+	private void findNearest(float x, float y, float z, float range, Class<?> type, Object ignore, Nearest nearest) {
+		int ox = GenericMath.floor(x) >> CELL_BITS;
+		int oy = GenericMath.floor(y) >> CELL_BITS;
+		int oz = GenericMath.floor(z) >> CELL_BITS;
+		float rangeSq = range * range;
+		lock.readLock().lock();
+		try {
+			int remaining = entries.size();
+			for (int r = 0; remaining > 0; r++) {
+				long shellCells = r == 0 ? 1 : (long) (2 * r + 1) * (2 * r + 1) * (2 * r + 1) - (long) (2 * r - 1) * (2 * r - 1) * (2 * r - 1);
+				if (shellCells > cells.size()) {
+					// The shells are now larger than the index, finish with the occupied cells not yet visited
+					for (Cell cell : cells.valueCollection()) {
+						if (Math.max(Math.abs(cell.x - ox), Math.max(Math.abs(cell.y - oy), Math.abs(cell.z - oz))) >= r) {
+							cell.nearest(x, y, z, rangeSq, type, ignore, nearest);
+						}
+					}
+					return;
+				}
+				for (int dx = -r; dx <= r; dx++) {
+					for (int dy = -r; dy <= r; dy++) {
+						boolean face = dx == -r || dx == r || dy == -r || dy == r;
+						int step = face ? 1 : Math.max(1, 2 * r);
+						for (int dz = -r; dz <= r; dz += step) {
+							Cell cell = cells.get(ox + dx, oy + dy, oz + dz);
+							if (cell != null) {
+								cell.nearest(x, y, z, rangeSq, type, ignore, nearest);
+								remaining -= cell.size;
+							}
+						}
+					}
+				}
+				// Distance from the point to the closest face of the visited cube
+				float reach = Math.min(Math.min(x - ((ox - r) << CELL_BITS), ((ox + r + 1) << CELL_BITS) - x),
+						Math.min(Math.min(y - ((oy - r) << CELL_BITS), ((oy + r + 1) << CELL_BITS) - y),
+						Math.min(z - ((oz - r) << CELL_BITS), ((oz + r + 1) << CELL_BITS) - z)));
+				if (reach >= range || (nearest.isFull() && nearest.worstDistanceSq() <= reach * reach)) {
+					return;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void removeFromCell(Entry entry) {
+		Cell cell = entry.cell;
+		cell.remove(entry.index);
+		if (cell.size == 0) {
+			cells.remove(cell.x, cell.y, cell.z);
+		}
+	}
+
+	private static final class Entry {
+		private final Object object;
+		private Cell cell;
+		private int index;
+
+		private Entry(Object object) {
+			this.object = object;
+		}
+	}
+
+	private static final class Cell {
+		private static final int INITIAL_CAPACITY = 8;
+		private final int x, y, z;
+		private Entry[] entries = new Entry[INITIAL_CAPACITY];
+		private float[] xs = new float[INITIAL_CAPACITY];
+		private float[] ys = new float[INITIAL_CAPACITY];
+		private float[] zs = new float[INITIAL_CAPACITY];
+		private int size = 0;
+
+		private Cell(int x, int y, int z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		private void add(Entry entry, float px, float py, float pz) {
+			if (size == entries.length) {
+				int capacity = size << 1;
+				entries = Arrays.copyOf(entries, capacity);
+				xs = Arrays.copyOf(xs, capacity);
+				ys = Arrays.copyOf(ys, capacity);
+				zs = Arrays.copyOf(zs, capacity);
+			}
+			entry.cell = this;
+			entry.index = size;
+			entries[size] = entry;
+			set(size++, px, py, pz);
+		}
+
+		private void set(int index, float px, float py, float pz) {
+			xs[index] = px;
+			ys[index] = py;
+			zs[index] = pz;
+		}
+
+		private void remove(int index) {
+			int last = --size;
+			if (index != last) {
+				Entry moved = entries[last];
+				entries[index] = moved;
+				moved.index = index;
+				set(index, xs[last], ys[last], zs[last]);
+			}
+			entries[last] = null;
+		}
+
+		private int collect(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float cx, float cy, float cz, float radiusSq, Class<?> type, Object ignore, Collection<Object> out) {
+			int added = 0;
+			for (int i = 0; i < size; i++) {
+				float px = xs[i], py = ys[i], pz = zs[i];
+				if (px < minX || px > maxX || py < minY || py > maxY || pz < minZ || pz > maxZ) {
+					continue;
+				}
+				if (radiusSq >= 0f) {
+					float dx = px - cx, dy = py - cy, dz = pz - cz;
+					if (dx * dx + dy * dy + dz * dz > radiusSq) {
+						continue;
+					}
+				}
+				Object object = entries[i].object;
+				if (object != ignore && (type == null || type.isInstance(object))) {
+					out.add(object);
+					added++;
+				}
+			}
+			return added;
+		}
+
+		private void nearest(float cx, float cy, float cz, float rangeSq, Class<?> type, Object ignore, Nearest nearest) {
+			for (int i = 0; i < size; i++) {
+				float dx = xs[i] - cx, dy = ys[i] - cy, dz = zs[i] - cz;
+				float distanceSq = dx * dx + dy * dy + dz * dz;
+				if (distanceSq > rangeSq || (nearest.isFull() && distanceSq >= nearest.worstDistanceSq())) {
+					continue;
+				}
+				Object object = entries[i].object;
+				if (object != ignore && (type == null || type.isInstance(object))) {
+					nearest.offer(object, distanceSq);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The closest objects found so far, sorted by distance
+	 */
+	private static final class Nearest {
+		private final Object[] objects;
+		private final float[] distancesSq;
+		private int size = 0;
+
+		private Nearest(int count) {
+			objects = new Object[count];
+			distancesSq = new float[count];
+		}
+
+		private boolean isFull() {
+			return size == objects.length;
+		}
+
+		private float worstDistanceSq() {
+			return distancesSq[size - 1];
+		}
+
+		private void offer(Object object, float distanceSq) {
+			int i = isFull() ? size - 1 : size++;
+			while (i > 0 && distancesSq[i - 1] > distanceSq) {
+				objects[i] = objects[i - 1];
+				distancesSq[i] = distancesSq[i - 1];
+				i--;
+			}
+			objects[i] = object;
+			distancesSq[i] = distanceSq;
+		}
+	}
+}
@@ -29,6 +29,10 @@ package org.spout.api.io.bytearrayarray;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 public final class BAAOpenInProgress implements ByteArrayArray {
 	
@@ -51,6 +55,16 @@ public final class BAAOpenInProgress implements ByteArrayArray {
 		return null;
 	}
 
+	@Override
+	public List<Future<InputStream>> getInputStreams(int[] i, Executor executor) throws IOException {
+		return null;
+	}
+
+	@Override
+	public List<Future<Void>> write(int[] i, byte[][] data, Executor executor) throws IOException {
+		return null;
+	}
+
 	@Override
 	public boolean attemptClose() throws IOException {
 		return false;
@@ -79,4 +93,12 @@ public final class BAAOpenInProgress implements ByteArrayArray {
 	public void delete(int i) throws IOException {
 	}
 
+	@Override
+	public void startBatch() {
+	}
+
+	@Override
+	public void endBatch() throws IOException {
+	}
+
 }
@@ -30,8 +30,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.spout.api.io.regionfile.SRFCodec;
 import org.spout.api.io.regionfile.SimpleRegionFile;
 
 public class BAAWrapper {
@@ -44,12 +48,27 @@ public class BAAWrapper {
 	private final int segmentSize;
 	private final int entries;
 	private final int timeout;
+	private final SRFCodec codec;
 	
 	public BAAWrapper(File file, int segmentSize, int entries, int timeout) {
+		this(file, segmentSize, entries, timeout, SRFCodec.DEFLATE);
+	}
+	
+	/**
+	 * Creates a wrapper for a region file
+	 * 
+	 * @param file the file
+	 * @param segmentSize log2(the segment size)
+	 * @param entries the number of blocks in the file
+	 * @param timeout the time in ms until the file times out for auto-closing
+	 * @param codec the codec to use if the file is created
+	 */
+	public BAAWrapper(File file, int segmentSize, int entries, int timeout, SRFCodec codec) {
 		this.file = file;
 		this.segmentSize = segmentSize;
 		this.entries = entries;
 		this.timeout = timeout;
+		this.codec = codec;
 	}
 	
 
@@ -145,6 +164,46 @@ public class BAAWrapper {
 	}
 
 
+	/**
+	 * Starts a batch of writes.  Block index updates are held until the matching call to {@link #endBatch()}, which must be made by the 
+	 * same thread.<br>
+	 * <br>
+	 * If the file is closed during the batch, the held updates are written when it closes.
+	 */
+	public void startBatch() {
+		while (true) {
+			ByteArrayArray baa = getByteArrayArray();
+			if (baa == null) {
+				return;
+			}
+			if (baa == openInProgress) {
+				continue;
+			}
+			baa.startBatch();
+			return;
+		}
+	}
+	
+	/**
+	 * Ends a batch of writes, writing the held block index updates.
+	 * 
+	 * @return true on success
+	 */
+	public boolean endBatch() {
+		ByteArrayArray baa = baaRef.get();
+		if (baa == null || baa == openInProgress) {
+			return true;
+		}
+		try {
+			baa.endBatch();
+			return true;
+		} catch (BAAClosedException e) {
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Gets the DataOutputStream corresponding to a given block.<br>
 	 * <br>
@@ -197,6 +256,55 @@ public class BAAWrapper {
 		}
 	}
 	
+	/**
+	 * Reads a group of blocks.  The blocks are read, in file order, by a single task on the executor.<br>
+	 * <br>
+	 * If the file is closed while the blocks are being read, the remaining futures fail with a {@link BAAClosedException}.
+	 * 
+	 * @param i the block indexes
+	 * @param executor the executor to read the blocks with
+	 * @return the futures for the InputStreams, in the same order as the indexes
+	 */
+	public List<Future<InputStream>> getBlockInputStreams(int[] i, Executor executor) {
+		while (true) {
+			ByteArrayArray baa = getByteArrayArray();
+			if (baa == null) {
+				return null;
+			}
+			try {
+				return baa.getInputStreams(i, executor);
+			} catch (BAAClosedException e) {
+				continue;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Writes a group of blocks as a single batch.  The blocks are written, in file order, by a single task on the executor.
+	 * 
+	 * @param i the block indexes
+	 * @param data the data for each block
+	 * @param executor the executor to write the blocks with
+	 * @return the futures for the writes, in the same order as the indexes
+	 */
+	public List<Future<Void>> writeBlocks(int[] i, byte[][] data, Executor executor) {
+		while (true) {
+			ByteArrayArray baa = getByteArrayArray();
+			if (baa == null) {
+				return null;
+			}
+			try {
+				return baa.write(i, data, executor);
+			} catch (BAAClosedException e) {
+				continue;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+	}
+	
 	/**
 	 * Gets the filename of the file handled by this wrapper
 	 * 
@@ -226,7 +334,7 @@ public class BAAWrapper {
 				baa = null; // not needed - already null
 				try {
 					try {
-						baa = new SimpleRegionFile(file, segmentSize, entries, timeout);
+						baa = new SimpleRegionFile(file, segmentSize, entries, timeout, codec);
 					} catch (IOException e) {
 						e.printStackTrace();
 						baa = null; // not needed - already null. The assignment above comes after the potential IOException. 
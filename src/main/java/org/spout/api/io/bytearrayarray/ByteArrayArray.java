@@ -29,6 +29,9 @@ package org.spout.api.io.bytearrayarray;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * Classes which implement this interface provide thread safe persistent storage for an array of byte arrays.<br>
@@ -61,6 +64,35 @@ public interface ByteArrayArray {
 	 */
 	public OutputStream getOutputStream(int i) throws IOException;
 	
+	/**
+	 * Reads a group of blocks.<br>
+	 * <br>
+	 * The blocks are read by a single task on the executor, in the order that they are stored, rather than the order given.  The future 
+	 * for each block completes as soon as that block has been read.<br>
+	 * <br>
+	 * The result of a future is null if the block contains no data.
+	 * 
+	 * @param i the block indexes
+	 * @param executor the executor to read the blocks with
+	 * @return the futures for the blocks, in the same order as the indexes
+	 * @throws IOException
+	 */
+	public List<Future<InputStream>> getInputStreams(int[] i, Executor executor) throws IOException;
+	
+	/**
+	 * Writes a group of blocks as a single batch.<br>
+	 * <br>
+	 * The blocks are written by a single task on the executor, in the order that they are stored, rather than the order given.  The 
+	 * futures complete once all the blocks have been written.
+	 * 
+	 * @param i the block indexes
+	 * @param data the data for each block
+	 * @param executor the executor to write the blocks with
+	 * @return the futures for the blocks, in the same order as the indexes
+	 * @throws IOException
+	 */
+	public List<Future<Void>> write(int[] i, byte[][] data, Executor executor) throws IOException;
+	
 	/**
 	 * Attempts to close the map.  This method will only succeed if no block DataOutputStreams are active.
 	 * 
@@ -106,5 +138,21 @@ public interface ByteArrayArray {
 	 * @throws IOException
 	 */
 	void delete(int i) throws IOException;
+	
+	/**
+	 * Starts a batch of writes.<br>
+	 * <br>
+	 * Updates to the block index are held until the matching call to endBatch, so that they are written together.  Batches may be nested.<br>
+	 * <br>
+	 * A batch belongs to the thread which started it, and must be ended by the same thread.
+	 */
+	void startBatch();
+	
+	/**
+	 * Ends a batch of writes started by the calling thread.  When the outermost batch ends, all held block index updates are written.
+	 * 
+	 * @throws IOException
+	 */
+	void endBatch() throws IOException;
 
 }
@@ -30,22 +30,24 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class MappedRandomAccessFile {
 
 	private final File filePath;
 	private final String permissions;
 	private long pos = 0;
-	private final ArrayList<MappedByteBuffer> pages = new ArrayList<MappedByteBuffer>();
+	private final AtomicReference<AtomicReferenceArray<MappedByteBuffer>> pages = new AtomicReference<AtomicReferenceArray<MappedByteBuffer>>(new AtomicReferenceArray<MappedByteBuffer>(0));
 	private final int PAGE_SHIFT;
 	private final int PAGE_SIZE;
 	private final long PAGE_MASK;
 	
-	private RandomAccessFile file;
+	private volatile RandomAccessFile file;
 
 	public MappedRandomAccessFile(File filePath, String permissions) throws FileNotFoundException {
 		this(filePath, permissions, 17);
@@ -64,8 +66,10 @@ public class MappedRandomAccessFile {
 		return file.length();
 	}
 
-	public void close() throws IOException {
-		for (MappedByteBuffer m : pages) {
+	public synchronized void close() throws IOException {
+		AtomicReferenceArray<MappedByteBuffer> localPages = pages.get();
+		for (int i = 0; i < localPages.length(); i++) {
+			MappedByteBuffer m = localPages.get(i);
 			if (m != null) {
 				m.force();
 			}
@@ -93,36 +97,87 @@ public class MappedRandomAccessFile {
 		return i;
 	}
 
+	/**
+	 * Gets a mapped page of the file, mapping it if required.  The page array is grown and filled using compare and set, so threads
+	 * only block when the file has to be reopened after an interrupt.  If two threads map the same page, the first mapping is kept.
+	 * 
+	 * @param pageIndex the page index
+	 * @return the page
+	 * @throws IOException
+	 */
 	private MappedByteBuffer getPage(int pageIndex) throws IOException {
-		while (pageIndex >= pages.size()) {
-			pages.add(null);
+		AtomicReferenceArray<MappedByteBuffer> localPages = getPageArray(pageIndex);
+		MappedByteBuffer page = localPages.get(pageIndex);
+		if (page != null) {
+			return page;
 		}
-		MappedByteBuffer page = pages.get(pageIndex);
-		if (page == null) {
-			long pagePosition = pageIndex << PAGE_SHIFT;
-			boolean interrupted = false;
-			boolean success = false;
-			try {
-				while (!success) {
-					try {
-						interrupted |= Thread.interrupted();
-						page = file.getChannel().map(FileChannel.MapMode.READ_WRITE, pagePosition, PAGE_SIZE);
-						success = true;
-					} catch (ClosedByInterruptException e) {
-						file = new RandomAccessFile(filePath, permissions);
-					} catch (IOException e) {
-						throw new IOException("Unable to refresh RandomAccessFile after interrupt, " + filePath, e);
-					}
+		long pagePosition = ((long) pageIndex) << PAGE_SHIFT;
+		boolean interrupted = false;
+		try {
+			while (page == null) {
+				RandomAccessFile localFile = file;
+				try {
+					interrupted |= Thread.interrupted();
+					page = localFile.getChannel().map(FileChannel.MapMode.READ_WRITE, pagePosition, PAGE_SIZE);
+				} catch (ClosedByInterruptException e) {
+					reopen(localFile);
+				} catch (IOException e) {
+					throw new IOException("Unable to refresh RandomAccessFile after interrupt, " + filePath, e);
 				}
-			} finally {
-				if (interrupted) {
-					Thread.currentThread().interrupt();
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		while (true) {
+			if (localPages.compareAndSet(pageIndex, null, page)) {
+				if (pages.get() == localPages) {
+					return page;
+				}
+			} else {
+				MappedByteBuffer current = localPages.get(pageIndex);
+				if (current != null) {
+					return current;
 				}
 			}
-			pages.set(pageIndex, page);
+			// The array was replaced by a larger copy, which may not contain the page
+			localPages = getPageArray(pageIndex);
 		}
-		return page;
+	}
 
+	/**
+	 * Gets the page array, growing it so that it contains the given index.  Pages which are already mapped are copied into the new
+	 * array before it is published.
+	 * 
+	 * @param pageIndex the page index
+	 * @return the page array
+	 */
+	private AtomicReferenceArray<MappedByteBuffer> getPageArray(int pageIndex) {
+		while (true) {
+			AtomicReferenceArray<MappedByteBuffer> oldPages = pages.get();
+			if (pageIndex < oldPages.length()) {
+				return oldPages;
+			}
+			int newLength = Math.max(pageIndex + 1, oldPages.length() * 3 / 2);
+			AtomicReferenceArray<MappedByteBuffer> newPages = new AtomicReferenceArray<MappedByteBuffer>(newLength);
+			for (int i = 0; i < oldPages.length(); i++) {
+				newPages.set(i, oldPages.get(i));
+			}
+			pages.compareAndSet(oldPages, newPages);
+		}
+	}
+
+	/**
+	 * Reopens the file after its channel was closed by an interrupt, unless another thread has already reopened it
+	 * 
+	 * @param closed the file which was closed
+	 * @throws IOException
+	 */
+	private synchronized void reopen(RandomAccessFile closed) throws IOException {
+		if (file == closed) {
+			file = new RandomAccessFile(filePath, permissions);
+		}
 	}
 
 	public void seek(long pos) throws IOException {
@@ -193,4 +248,56 @@ public class MappedRandomAccessFile {
 
 		pos += len;
 	}
+
+	/**
+	 * Reads bytes starting at the given position.  This method does not use or change the file pointer.<br>
+	 * <br>
+	 * This method is thread safe, and may be called concurrently with other positional reads and writes.
+	 *
+	 * @param pos the position to read from
+	 * @param b the buffer to read into
+	 * @param off the offset into the buffer
+	 * @param len the number of bytes to read
+	 * @throws IOException
+	 */
+	public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+		int pageIndex = (int)(pos >> PAGE_SHIFT);
+		int offset = (int)(pos & PAGE_MASK);
+		int j = 0;
+		while (j < len) {
+			ByteBuffer page = getPage(pageIndex).duplicate();
+			int length = Math.min(len - j, PAGE_SIZE - offset);
+			page.position(offset);
+			page.get(b, off + j, length);
+			j += length;
+			pageIndex++;
+			offset = 0;
+		}
+	}
+
+	/**
+	 * Writes bytes starting at the given position.  This method does not use or change the file pointer.<br>
+	 * <br>
+	 * This method is thread safe, and may be called concurrently with other positional reads and writes.
+	 *
+	 * @param pos the position to write to
+	 * @param b the buffer to write from
+	 * @param off the offset into the buffer
+	 * @param len the number of bytes to write
+	 * @throws IOException
+	 */
+	public void write(long pos, byte[] b, int off, int len) throws IOException {
+		int pageIndex = (int)(pos >> PAGE_SHIFT);
+		int offset = (int)(pos & PAGE_MASK);
+		int j = 0;
+		while (j < len) {
+			ByteBuffer page = getPage(pageIndex).duplicate();
+			int length = Math.min(len - j, PAGE_SIZE - offset);
+			page.position(offset);
+			page.put(b, off + j, length);
+			j += length;
+			pageIndex++;
+			offset = 0;
+		}
+	}
 }
@@ -0,0 +1,118 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Represents the compression used for the blocks of a SimpleRegionFile.<br>
+ * <br>
+ * The id of the codec is stored in the header of the region file, so a codec must be registered before a file which uses it is opened.
+ */
+public abstract class SRFCodec {
+
+	private static final ConcurrentHashMap<Integer, SRFCodec> codecs = new ConcurrentHashMap<Integer, SRFCodec>();
+
+	/**
+	 * Deflate at the default compression level.  This is the codec used by files created before codecs were stored in the header.
+	 */
+	public static final SRFCodec DEFLATE = register(new SRFDeflateCodec(0, Deflater.DEFAULT_COMPRESSION));
+	/**
+	 * Deflate at the fastest compression level
+	 */
+	public static final SRFCodec DEFLATE_FAST = register(new SRFDeflateCodec(1, Deflater.BEST_SPEED));
+	/**
+	 * Deflate at the best compression level
+	 */
+	public static final SRFCodec DEFLATE_BEST = register(new SRFDeflateCodec(2, Deflater.BEST_COMPRESSION));
+	/**
+	 * A fast LZ4 style codec
+	 */
+	public static final SRFCodec LZ4 = register(new SRFLZ4Codec(3));
+
+	private final int id;
+
+	protected SRFCodec(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Gets the id of this codec, as stored in the region file header
+	 *
+	 * @return the id
+	 */
+	public final int getId() {
+		return id;
+	}
+
+	/**
+	 * Wraps a stream, so that data read from the returned stream is decompressed
+	 *
+	 * @param in the compressed stream
+	 * @return the decompressed stream
+	 * @throws IOException
+	 */
+	public abstract InputStream getInputStream(InputStream in) throws IOException;
+
+	/**
+	 * Wraps a stream, so that data written to the returned stream is compressed.  Closing the returned stream closes the wrapped stream.
+	 *
+	 * @param out the stream to write compressed data to
+	 * @return the stream to write uncompressed data to
+	 * @throws IOException
+	 */
+	public abstract OutputStream getOutputStream(OutputStream out) throws IOException;
+
+	/**
+	 * Registers a codec
+	 *
+	 * @param codec the codec
+	 * @return the codec
+	 * @throws IllegalStateException if a different codec is already registered with the same id
+	 */
+	public static <T extends SRFCodec> T register(T codec) {
+		SRFCodec old = codecs.putIfAbsent(codec.getId(), codec);
+		if (old != null && old != codec) {
+			throw new IllegalStateException("Codec id " + codec.getId() + " is already registered to " + old.getClass().getName());
+		}
+		return codec;
+	}
+
+	/**
+	 * Gets the codec with the given id
+	 *
+	 * @param id the id
+	 * @return the codec, or null if no codec is registered with the id
+	 */
+	public static SRFCodec getCodec(int id) {
+		return codecs.get(id);
+	}
+}
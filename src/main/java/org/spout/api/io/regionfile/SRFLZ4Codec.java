@@ -0,0 +1,382 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A codec which compresses blocks using the LZ4 block format.<br>
+ * <br>
+ * The data is split into frames of up to 64kB.  Each frame is stored as the uncompressed length, the compressed length and then the 
+ * compressed data.  Frames which do not compress are stored with a compressed length of 0, followed by the uncompressed data.
+ */
+public class SRFLZ4Codec extends SRFCodec {
+
+	private static final int FRAME_SIZE = 1 << 16;
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_FIND_LIMIT = 12;
+	private static final int MAX_DISTANCE = (1 << 16) - 1;
+	private static final int HASH_LOG = 12;
+
+	public SRFLZ4Codec(int id) {
+		super(id);
+	}
+
+	@Override
+	public InputStream getInputStream(InputStream in) throws IOException {
+		return new LZ4InputStream(in);
+	}
+
+	@Override
+	public OutputStream getOutputStream(OutputStream out) throws IOException {
+		return new LZ4OutputStream(out);
+	}
+
+	/**
+	 * Gets the maximum size of the compressed form of data of a given length
+	 * 
+	 * @param length the uncompressed length
+	 * @return the maximum compressed length
+	 */
+	static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Compresses data into the LZ4 block format
+	 * 
+	 * @param src the source array
+	 * @param srcLength the number of bytes to compress
+	 * @param dst the destination array, which must be at least maxCompressedLength(srcLength) long
+	 * @param table the hash table, which must be 2^HASH_LOG long
+	 * @return the compressed length
+	 */
+	static int compress(byte[] src, int srcLength, byte[] dst, int[] table) {
+		Arrays.fill(table, -1);
+		int s = 0;
+		int d = 0;
+		int anchor = 0;
+		int limit = srcLength - MATCH_FIND_LIMIT;
+		while (s < limit) {
+			int sequence = readInt(src, s);
+			int hash = hash(sequence);
+			int ref = table[hash];
+			table[hash] = s;
+			if (ref < 0 || s - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+				s++;
+				continue;
+			}
+
+			while (s > anchor && ref > 0 && src[s - 1] == src[ref - 1]) {
+				s--;
+				ref--;
+			}
+
+			int matchLength = MIN_MATCH;
+			int maxMatch = srcLength - LAST_LITERALS - s;
+			while (matchLength < maxMatch && src[s + matchLength] == src[ref + matchLength]) {
+				matchLength++;
+			}
+
+			int literalLength = s - anchor;
+			int tokenPosition = d++;
+			d = writeLength(dst, d, literalLength);
+			System.arraycopy(src, anchor, dst, d, literalLength);
+			d += literalLength;
+
+			int offset = s - ref;
+			dst[d++] = (byte) offset;
+			dst[d++] = (byte) (offset >> 8);
+			d = writeLength(dst, d, matchLength - MIN_MATCH);
+
+			dst[tokenPosition] = (byte) ((Math.min(literalLength, 15) << 4) | Math.min(matchLength - MIN_MATCH, 15));
+
+			s += matchLength;
+			anchor = s;
+		}
+
+		int literalLength = srcLength - anchor;
+		dst[d++] = (byte) (Math.min(literalLength, 15) << 4);
+		d = writeLength(dst, d, literalLength);
+		System.arraycopy(src, anchor, dst, d, literalLength);
+		d += literalLength;
+		return d;
+	}
+
+	/**
+	 * Decompresses data stored in the LZ4 block format
+	 * 
+	 * @param src the source array
+	 * @param srcLength the number of compressed bytes
+	 * @param dst the destination array
+	 * @param dstLength the expected uncompressed length
+	 * @throws IOException if the data is corrupt
+	 */
+	static void decompress(byte[] src, int srcLength, byte[] dst, int dstLength) throws IOException {
+		int s = 0;
+		int d = 0;
+		try {
+			while (true) {
+				int token = src[s++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if (literalLength == 15) {
+					int b;
+					do {
+						b = src[s++] & 0xFF;
+						literalLength += b;
+					} while (b == 255);
+				}
+				System.arraycopy(src, s, dst, d, literalLength);
+				s += literalLength;
+				d += literalLength;
+
+				if (s >= srcLength) {
+					break;
+				}
+
+				int offset = (src[s++] & 0xFF) | ((src[s++] & 0xFF) << 8);
+				int matchLength = token & 0xF;
+				if (matchLength == 15) {
+					int b;
+					do {
+						b = src[s++] & 0xFF;
+						matchLength += b;
+					} while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = d - offset;
+				if (offset == 0 || ref < 0 || d + matchLength > dstLength) {
+					throw new IOException("Corrupt LZ4 frame, invalid match");
+				}
+				// Matches may overlap the data being written, so they are copied a byte at a time
+				for (int i = 0; i < matchLength; i++) {
+					dst[d++] = dst[ref++];
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ4 frame, data out of bounds", e);
+		}
+		if (s != srcLength || d != dstLength) {
+			throw new IOException("Corrupt LZ4 frame, length mismatch");
+		}
+	}
+
+	private static int writeLength(byte[] dst, int d, int length) {
+		if (length >= 15) {
+			length -= 15;
+			while (length >= 255) {
+				dst[d++] = (byte) 255;
+				length -= 255;
+			}
+			dst[d++] = (byte) length;
+		}
+		return d;
+	}
+
+	private static int readInt(byte[] buf, int i) {
+		return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | (buf[i + 3] << 24);
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	private static void writeInt(OutputStream out, int i) throws IOException {
+		out.write(i >> 24);
+		out.write(i >> 16);
+		out.write(i >> 8);
+		out.write(i);
+	}
+
+	private static class LZ4OutputStream extends OutputStream {
+		private final OutputStream out;
+		private final byte[] frame = new byte[FRAME_SIZE];
+		private final byte[] compressed = new byte[maxCompressedLength(FRAME_SIZE)];
+		private final int[] table = new int[1 << HASH_LOG];
+		private int count = 0;
+		private boolean closed = false;
+
+		public LZ4OutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == FRAME_SIZE) {
+				writeFrame();
+			}
+			frame[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == FRAME_SIZE) {
+					writeFrame();
+				}
+				int length = Math.min(len, FRAME_SIZE - count);
+				System.arraycopy(b, off, frame, count, length);
+				count += length;
+				off += length;
+				len -= length;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				writeFrame();
+			} finally {
+				out.close();
+			}
+		}
+
+		private void writeFrame() throws IOException {
+			if (count == 0) {
+				return;
+			}
+			int compressedLength = compress(frame, count, compressed, table);
+			writeInt(out, count);
+			if (compressedLength < count) {
+				writeInt(out, compressedLength);
+				out.write(compressed, 0, compressedLength);
+			} else {
+				writeInt(out, 0);
+				out.write(frame, 0, count);
+			}
+			count = 0;
+		}
+	}
+
+	private static class LZ4InputStream extends InputStream {
+		private final InputStream in;
+		private final byte[] frame = new byte[FRAME_SIZE];
+		private byte[] compressed = new byte[0];
+		private int position = 0;
+		private int count = 0;
+
+		public LZ4InputStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position == count && !readFrame()) {
+				return -1;
+			}
+			return frame[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position == count && !readFrame()) {
+				return -1;
+			}
+			int length = Math.min(len, count - position);
+			System.arraycopy(frame, position, b, off, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return count - position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		/**
+		 * Reads and decompresses the next frame
+		 * 
+		 * @return false if the end of the stream was reached
+		 * @throws IOException
+		 */
+		private boolean readFrame() throws IOException {
+			int first = in.read();
+			if (first == -1) {
+				return false;
+			}
+			int length = (first << 24) | readInt(3);
+			int compressedLength = readInt(4);
+			if (length <= 0 || length > FRAME_SIZE || compressedLength < 0 || compressedLength > maxCompressedLength(FRAME_SIZE)) {
+				throw new IOException("Corrupt LZ4 frame header");
+			}
+			if (compressedLength == 0) {
+				readFully(frame, length);
+			} else {
+				if (compressed.length < compressedLength) {
+					compressed = new byte[maxCompressedLength(FRAME_SIZE)];
+				}
+				readFully(compressed, compressedLength);
+				decompress(compressed, compressedLength, frame, length);
+			}
+			position = 0;
+			count = length;
+			return true;
+		}
+
+		private int readInt(int bytes) throws IOException {
+			int value = 0;
+			for (int i = 0; i < bytes; i++) {
+				int b = in.read();
+				if (b == -1) {
+					throw new EOFException("Unexpected end of LZ4 frame header");
+				}
+				value = (value << 8) | b;
+			}
+			return value;
+		}
+
+		private void readFully(byte[] buf, int length) throws IOException {
+			int read = 0;
+			while (read < length) {
+				int r = in.read(buf, read, length - read);
+				if (r == -1) {
+					throw new EOFException("Unexpected end of LZ4 frame");
+				}
+				read += r;
+			}
+		}
+	}
+}
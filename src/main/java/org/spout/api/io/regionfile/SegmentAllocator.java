@@ -0,0 +1,255 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock free allocator for the segments of a region file.<br>
+ * <br>
+ * The in use state of the segments is stored as a bitmap, with 64 segments per word.  The bitmap is split into pages which are
+ * never copied, so the bitmap can be expanded without losing updates made by other threads.<br>
+ * <br>
+ * The allocator keeps a hint for the lowest segment that may be free, so allocations do not need to scan the used segments at the
+ * start of the file.
+ */
+public class SegmentAllocator {
+
+	private static final int WORD_SHIFT = 6;
+	private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+	private static final int PAGE_SHIFT = 6;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	private final AtomicReference<AtomicLongArray[]> pages = new AtomicReference<AtomicLongArray[]>(new AtomicLongArray[0]);
+	private final AtomicInteger firstFree = new AtomicInteger(0);
+
+	/**
+	 * Reserves a group of segments.  If all segments can't be reserved, any reserved segments are immediately released.
+	 *
+	 * @param start the index of the first segment
+	 * @param length the number of segments to reserve
+	 * @return true if all the segments were reserved
+	 */
+	public boolean reserve(int start, int length) {
+		int end = start + length;
+		int i = start;
+		while (i < end) {
+			int word = i >> WORD_SHIFT;
+			int wordEnd = Math.min(end, (word + 1) << WORD_SHIFT);
+			if (!setBits(word, mask(i, wordEnd))) {
+				release(start, i - start);
+				return false;
+			}
+			i = wordEnd;
+		}
+		return true;
+	}
+
+	/**
+	 * Releases a group of segments.
+	 *
+	 * @param start the index of the first segment
+	 * @param length the number of segments to release
+	 * @return true if all the segments were previously reserved
+	 */
+	public boolean release(int start, int length) {
+		if (length <= 0) {
+			return true;
+		}
+		boolean success = true;
+		int end = start + length;
+		int i = start;
+		while (i < end) {
+			int word = i >> WORD_SHIFT;
+			int wordEnd = Math.min(end, (word + 1) << WORD_SHIFT);
+			success &= clearBits(word, mask(i, wordEnd));
+			i = wordEnd;
+		}
+		lowerFirstFree(start);
+		return success;
+	}
+
+	/**
+	 * Finds and reserves a contiguous group of free segments.<br>
+	 * <br>
+	 * The search starts at the lowest segment that may be free, so the group returned may extend past the current end of the file.
+	 *
+	 * @param length the number of segments to reserve
+	 * @return the index of the first segment reserved
+	 */
+	public int allocate(int length) {
+		int hint = firstFree.get();
+		int firstClear = nextClear(hint);
+		int start = firstClear;
+		while (true) {
+			start = nextClear(start);
+			int end = nextSet(start, start + length);
+			if (end - start == length) {
+				if (reserve(start, length)) {
+					firstFree.compareAndSet(hint, start == firstClear ? start + length : firstClear);
+					return start;
+				}
+				// Another thread reserved part of the run, so the run is rescanned
+			} else {
+				start = end;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a segment is reserved
+	 *
+	 * @param i the segment index
+	 * @return true if the segment is reserved
+	 */
+	public boolean isReserved(int i) {
+		return (getWord(i >> WORD_SHIFT) & (1L << (i & WORD_MASK))) != 0;
+	}
+
+	/**
+	 * Gets the index of the first free segment at or after a given segment
+	 *
+	 * @param from the segment index to start from
+	 * @return the first free segment index
+	 */
+	private int nextClear(int from) {
+		int word = from >> WORD_SHIFT;
+		long bits = ~getWord(word) & (-1L << (from & WORD_MASK));
+		while (bits == 0) {
+			word++;
+			bits = ~getWord(word);
+		}
+		return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Gets the index of the first reserved segment at or after a given segment
+	 *
+	 * @param from the segment index to start from
+	 * @param limit the value to return if no reserved segment is found before this index
+	 * @return the first reserved segment index, or limit
+	 */
+	private int nextSet(int from, int limit) {
+		int word = from >> WORD_SHIFT;
+		long bits = getWord(word) & (-1L << (from & WORD_MASK));
+		while (bits == 0) {
+			word++;
+			if ((word << WORD_SHIFT) >= limit) {
+				return limit;
+			}
+			bits = getWord(word);
+		}
+		return Math.min(limit, (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits));
+	}
+
+	private boolean setBits(int word, long mask) {
+		AtomicLongArray page = getPage(word);
+		int index = word & PAGE_MASK;
+		while (true) {
+			long oldValue = page.get(index);
+			if ((oldValue & mask) != 0) {
+				return false;
+			}
+			if (page.compareAndSet(index, oldValue, oldValue | mask)) {
+				return true;
+			}
+		}
+	}
+
+	private boolean clearBits(int word, long mask) {
+		AtomicLongArray page = getPage(word);
+		int index = word & PAGE_MASK;
+		while (true) {
+			long oldValue = page.get(index);
+			if (page.compareAndSet(index, oldValue, oldValue & ~mask)) {
+				return (oldValue & mask) == mask;
+			}
+		}
+	}
+
+	private void lowerFirstFree(int i) {
+		while (true) {
+			int oldValue = firstFree.get();
+			if (oldValue <= i || firstFree.compareAndSet(oldValue, i)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets a word of the bitmap.  Words which are beyond the end of the bitmap are free.
+	 *
+	 * @param word the word index
+	 * @return the word
+	 */
+	private long getWord(int word) {
+		AtomicLongArray[] localPages = pages.get();
+		int pageIndex = word >> PAGE_SHIFT;
+		if (pageIndex >= localPages.length) {
+			return 0;
+		}
+		return localPages[pageIndex].get(word & PAGE_MASK);
+	}
+
+	/**
+	 * Gets the page containing a word of the bitmap, expanding the bitmap if required.
+	 *
+	 * @param word the word index
+	 * @return the page
+	 */
+	private AtomicLongArray getPage(int word) {
+		int pageIndex = word >> PAGE_SHIFT;
+		while (true) {
+			AtomicLongArray[] oldPages = pages.get();
+			if (pageIndex < oldPages.length) {
+				return oldPages[pageIndex];
+			}
+			int newLength = Math.max(pageIndex + 1, oldPages.length * 3 / 2);
+			AtomicLongArray[] newPages = new AtomicLongArray[newLength];
+			System.arraycopy(oldPages, 0, newPages, 0, oldPages.length);
+			for (int i = oldPages.length; i < newLength; i++) {
+				newPages[i] = new AtomicLongArray(1 << PAGE_SHIFT);
+			}
+			pages.compareAndSet(oldPages, newPages);
+		}
+	}
+
+	/**
+	 * Gets the mask for a range of segments that are in the same word
+	 *
+	 * @param from the first segment
+	 * @param to the segment after the last segment
+	 * @return the mask
+	 */
+	private static long mask(int from, int to) {
+		int bits = to - from;
+		long mask = bits == 64 ? -1L : ((1L << bits) - 1);
+		return mask << (from & WORD_MASK);
+	}
+}
@@ -34,30 +34,36 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
 
 import org.spout.api.io.bytearrayarray.ByteArrayArray;
+import org.spout.api.util.future.SimpleFuture;
 
 public class SimpleRegionFile implements ByteArrayArray {
 	
 	private static ConcurrentHashMap<String, Boolean> openMap = new ConcurrentHashMap<String, Boolean>();
 	
-	private static final int VERSION = 1;
+	private static final int VERSION = 2;
+	private static final int VERSION_NO_CODEC = 1;
 	private static final int DEFAULT_TIMEOUT = 120000; // timeout delay
 	public static final int FILE_CLOSED = -1;
 
 	private final File filePath;
 	private final Object fileSyncObject = new Object();
-	private MappedRandomAccessFile file;
-	@SuppressWarnings("unused")
+	private volatile MappedRandomAccessFile file;
 	private final int version;
+	private final SRFCodec codec;
 	private final int timeout;
 	
 	private final AtomicInteger[] blockSegmentStart;
@@ -65,10 +71,19 @@ public class SimpleRegionFile implements ByteArrayArray {
 	private final AtomicInteger[] blockActualLength;
 	private final SRFReentrantReadWriteLock[] blockLock;
 	private final AtomicInteger numberBlocksLocked;
+	private final AtomicBoolean[] fatDirty;
+	private final AtomicInteger batchDepth;
+	private final ThreadLocal<int[]> threadBatchDepth = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+	private final ConcurrentLinkedQueue<SegmentRange>[] pendingRelease;
 	
 	private final AtomicLong lastAccess;
 	
-	private final AtomicReference<AtomicBoolean[]> inuse;
+	private final SegmentAllocator segments;
 	private final int segmentSize;
 	private final int segmentMask;
 	private final int entries;
@@ -95,6 +110,22 @@ public class SimpleRegionFile implements ByteArrayArray {
 	 * @throws IOException on error
 	 */
 	public SimpleRegionFile(File filePath, int desiredSegmentSize, int entries, int timeout) throws IOException {
+		this(filePath, desiredSegmentSize, entries, timeout, SRFCodec.DEFLATE);
+	}
+	
+	/**
+	 * Creates a SimpleRegionFile<br>
+	 * <br>
+	 * The codec is only used if the file is created.  Existing files use the codec recorded in their header.
+	 * 
+	 * @param filePath the path to the file
+	 * @param desiredSegmentSize log2(the desired segment size) 
+	 * @param entries the number of blocks (sub-files) in the RegionFile
+	 * @param timeout the time in ms until the file times out for auto-closing
+	 * @param desiredCodec the codec to compress blocks with
+	 * @throws IOException on error
+	 */
+	public SimpleRegionFile(File filePath, int desiredSegmentSize, int entries, int timeout, SRFCodec desiredCodec) throws IOException {
 		
 		this.filePath = filePath;
 		
@@ -108,13 +139,12 @@ public class SimpleRegionFile implements ByteArrayArray {
 			throw new SRFException("Unable to open region file " + this.filePath, e);
 		}
 		
-		int headerSize = getHeaderSize(entries);
-		
-		if (file.length() <= headerSize) {
+		if (file.length() <= getHeaderSize(VERSION, entries)) {
 			file.seek(0);
 			file.writeInt(VERSION);
 			file.writeInt(desiredSegmentSize);
 			file.writeInt(entries);
+			file.writeInt(desiredCodec.getId());
 			for (int i = 0; i < entries << 1; i++) {
 				file.writeInt(0);
 			}
@@ -131,12 +161,27 @@ public class SimpleRegionFile implements ByteArrayArray {
 			throw new SRFException("Number of entries mismatch for file " + this.filePath + ", expected " + entries + " got " + this.entries);
 		}
 		
-		inuse = new AtomicReference<AtomicBoolean[]>(new AtomicBoolean[0]);
+		if (this.version == VERSION_NO_CODEC) {
+			this.codec = SRFCodec.DEFLATE;
+		} else if (this.version == VERSION) {
+			int codecId = file.readInt();
+			this.codec = SRFCodec.getCodec(codecId);
+			if (this.codec == null) {
+				file.close();
+				throw new SRFException("Unknown codec id " + codecId + " for file " + this.filePath);
+			}
+		} else {
+			file.close();
+			throw new SRFException("Unknown version " + this.version + " for file " + this.filePath);
+		}
+		
+		int headerSize = getHeaderSize(this.version, entries);
+		
+		segments = new SegmentAllocator();
 		
 		int headerSegments = sizeToSegments(headerSize);
 		
-		int segmentsLocked = reserveSegments(0, headerSegments);
-		if (segmentsLocked != headerSegments) {
+		if (!segments.reserve(0, headerSegments)) {
 			throw new SRFException("Unabled to lock header segments");
 		}
 		
@@ -145,14 +190,18 @@ public class SimpleRegionFile implements ByteArrayArray {
 		blockActualLength = new AtomicInteger[entries];
 		blockLock = new SRFReentrantReadWriteLock[entries];
 		numberBlocksLocked = new AtomicInteger(0);
+		fatDirty = new AtomicBoolean[entries];
+		batchDepth = new AtomicInteger(0);
+		pendingRelease = newPendingReleaseArray(entries);
 		
 		for (int i = 0; i < entries; i++) {
 			blockSegmentStart[i] = new AtomicInteger(file.readInt());
 			blockActualLength[i] = new AtomicInteger(file.readInt());
 			blockSegmentLength[i] = new AtomicInteger(sizeToSegments(blockActualLength[i].get()));
 			blockLock[i] = new SRFReentrantReadWriteLock(numberBlocksLocked);
-			int length = reserveSegments(blockSegmentStart[i].get(), blockSegmentLength[i].get());
-			if (length != blockSegmentLength[i].get()) {
+			fatDirty[i] = new AtomicBoolean(false);
+			pendingRelease[i] = new ConcurrentLinkedQueue<SegmentRange>();
+			if (!segments.reserve(blockSegmentStart[i].get(), blockSegmentLength[i].get())) {
 				throw new SRFException("Reserved segments for Block " + i + " overlap with another block");
 			}
 		}
@@ -200,17 +249,11 @@ public class SimpleRegionFile implements ByteArrayArray {
 				//This block is of 0 length, and will cause EOF errors if you attempt to make a stream with it.
 				return null;
 			}
-			int start = blockSegmentStart[i].get() << segmentSize;
+			long start = ((long) blockSegmentStart[i].get()) << segmentSize;
 			int actualLength = blockActualLength[i].get();
 			byte[] result = new byte[actualLength];
-			synchronized (fileSyncObject) {
-				if (file == null) {
-					this.file = new MappedRandomAccessFile(this.filePath, "rw");
-				}
-				file.seek(start);
-				file.readFully(result);
-			}
-			return new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(result)));
+			getFile().readFully(start, result, 0, actualLength);
+			return new BufferedInputStream(codec.getInputStream(new ByteArrayInputStream(result)));
 		} finally {
 			lock.unlock();
 		}
@@ -227,7 +270,85 @@ public class SimpleRegionFile implements ByteArrayArray {
 		if (this.isClosed()) {
 			throw new SRFClosedException("File closed");
 		}
-		return new BufferedOutputStream(new DeflaterOutputStream(new SRFOutputStream(this, i, this.segmentMask + 1, lock)));
+		return new BufferedOutputStream(codec.getOutputStream(new SRFOutputStream(this, i, this.segmentMask + 1, lock)));
+	}
+	
+	@Override
+	public List<Future<InputStream>> getInputStreams(final int[] i, Executor executor) throws IOException {
+		if (this.isClosed()) {
+			throw new SRFClosedException("File closed");
+		}
+		final int[] order = getFileOrder(i);
+		final List<SimpleFuture<InputStream>> futures = new ArrayList<SimpleFuture<InputStream>>(i.length);
+		for (int k = 0; k < i.length; k++) {
+			futures.add(new SimpleFuture<InputStream>());
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (int k : order) {
+					try {
+						futures.get(k).setResult(getInputStream(i[k]));
+					} catch (Throwable t) {
+						futures.get(k).setThrowable(t);
+					}
+				}
+			}
+		});
+		return Collections.<Future<InputStream>>unmodifiableList(futures);
+	}
+
+	@Override
+	public List<Future<Void>> write(final int[] i, final byte[][] data, Executor executor) throws IOException {
+		if (i.length != data.length) {
+			throw new IllegalArgumentException("Number of blocks does not match the number of data arrays");
+		}
+		if (this.isClosed()) {
+			throw new SRFClosedException("File closed");
+		}
+		final int[] order = getFileOrder(i);
+		final List<SimpleFuture<Void>> futures = new ArrayList<SimpleFuture<Void>>(i.length);
+		for (int k = 0; k < i.length; k++) {
+			futures.add(new SimpleFuture<Void>());
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Throwable[] errors = new Throwable[i.length];
+				Throwable batchError = null;
+				startBatch();
+				try {
+					for (int k : order) {
+						try {
+							OutputStream out = getOutputStream(i[k]);
+							try {
+								out.write(data[k]);
+							} finally {
+								out.close();
+							}
+						} catch (Throwable t) {
+							errors[k] = t;
+						}
+					}
+				} finally {
+					try {
+						endBatch();
+					} catch (Throwable t) {
+						batchError = t;
+					}
+				}
+				for (int k = 0; k < i.length; k++) {
+					if (errors[k] != null) {
+						futures.get(k).setThrowable(errors[k]);
+					} else if (batchError != null) {
+						futures.get(k).setThrowable(batchError);
+					} else {
+						futures.get(k).setResult(null);
+					}
+				}
+			}
+		});
+		return Collections.<Future<Void>>unmodifiableList(futures);
 	}
 	
 	/**
@@ -243,14 +364,8 @@ public class SimpleRegionFile implements ByteArrayArray {
 	void write(int i, byte[] buf, int length) throws IOException {
 		refreshAccess();
 		int start = reserveBlockSegments(i, length);
-		synchronized(fileSyncObject) {
-			if (file == null) {
-				this.file = new MappedRandomAccessFile(this.filePath, "rw");
-			}
-			this.writeFAT(i, start, length);
-			file.seek(start << segmentSize);
-			file.write(buf, 0, length);
-		}
+		getFile().write(((long) start) << segmentSize, buf, 0, length);
+		this.updateFAT(i, start, length);
 	}
 
 	/**
@@ -270,17 +385,77 @@ public class SimpleRegionFile implements ByteArrayArray {
 				throw new SRFClosedException("File closed");
 			}
 			int start = reserveBlockSegments(i, 0);
-			synchronized(fileSyncObject) {
-				if (file == null) {
-					this.file = new MappedRandomAccessFile(this.filePath, "rw");
-				}
-				this.writeFAT(i, start, 0);
-			}
+			this.updateFAT(i, start, 0);
 		} finally {
 			lock.unlock();
 		}
 	}
 	
+	/**
+	 * Gets the codec used to compress the blocks in this file
+	 * 
+	 * @return the codec
+	 */
+	public SRFCodec getCodec() {
+		return codec;
+	}
+	
+	/**
+	 * Starts a batch of writes for the calling thread.  The file counts the threads with a batch in progress, and the held FAT updates 
+	 * are written when the last of those batches ends.
+	 */
+	@Override
+	public void startBatch() {
+		int[] depth = threadBatchDepth.get();
+		if (depth[0]++ == 0) {
+			batchDepth.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Ends a batch of writes for the calling thread.  This has no effect if the thread has not started a batch, so a thread can not end 
+	 * a batch which another thread is still writing.
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	public void endBatch() throws IOException {
+		int[] depth = threadBatchDepth.get();
+		if (depth[0] == 0) {
+			return;
+		}
+		if (--depth[0] == 0 && batchDepth.decrementAndGet() == 0) {
+			flushFAT();
+		}
+	}
+	
+	/**
+	 * Writes all FAT entries which were updated during a batch to the file.
+	 * 
+	 * @throws IOException
+	 */
+	public void flushFAT() throws IOException {
+		for (int i = 0; i < entries; i++) {
+			if (!fatDirty[i].get()) {
+				continue;
+			}
+			Lock lock = blockLock[i].readLock();
+			lock.lock();
+			try {
+				if (this.isClosed()) {
+					// The FAT is flushed when the file is closed
+					return;
+				}
+				if (fatDirty[i].compareAndSet(true, false)) {
+					this.writeFAT(i, blockSegmentStart[i].get(), blockActualLength[i].get());
+					releasePending(i);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
 	@Override
 	public boolean isTimedOut() {
 		return this.lastAccess.get() + this.timeout < System.currentTimeMillis();
@@ -312,7 +487,18 @@ public class SimpleRegionFile implements ByteArrayArray {
 				// Cannot close: either the file is already closed or there are still blocks locked.
 				return false;
 			}
-			return closeFileRaw();
+			// No blocks can be locked, so dirty FAT entries can be written without locking
+			try {
+				for (int i = 0; i < entries; i++) {
+					if (fatDirty[i].compareAndSet(true, false)) {
+						this.writeFAT(i, blockSegmentStart[i].get(), blockActualLength[i].get());
+						releasePending(i);
+					}
+				}
+			} finally {
+				closeFileRaw();
+			}
+			return true;
 		}
 	}
 	
@@ -333,14 +519,38 @@ public class SimpleRegionFile implements ByteArrayArray {
 		return true;
 	}
 	
+	/**
+	 * Gets the order in which a group of blocks should be accessed, so that the file is accessed sequentially.
+	 * 
+	 * @param i the block indexes
+	 * @return the positions in the index array, sorted by the start segment of the corresponding block
+	 * @throws SRFException if a block index is out of range
+	 */
+	private int[] getFileOrder(int[] i) throws SRFException {
+		long[] keys = new long[i.length];
+		for (int k = 0; k < i.length; k++) {
+			if (i[k] < 0 || i[k] >= entries) {
+				throw new SRFException("Block index out of range");
+			}
+			keys[k] = (((long) blockSegmentStart[i[k]].get()) << 32) | k;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[i.length];
+		for (int k = 0; k < i.length; k++) {
+			order[k] = (int) keys[k];
+		}
+		return order;
+	}
+	
 	/**
 	 * Gets the size of the header in bytes
 	 * 
+	 * @param version the file version
 	 * @param entries the number of entries
 	 * @return the header size
 	 */
-	private static int getHeaderSize(int entries) {
-		int headerSize = getFATOffset();
+	private static int getHeaderSize(int version, int entries) {
+		int headerSize = getFATOffset(version);
 		headerSize += 4 * entries;  // start array (int[entries])
 		headerSize += 4 * entries;  // size array (int[entries])
 		return headerSize;
@@ -349,13 +559,17 @@ public class SimpleRegionFile implements ByteArrayArray {
 	/**
 	 * Gets the FAT base position
 	 * 
+	 * @param version the file version
 	 * @return the base position
 	 */
-	private static int getFATOffset() {
+	private static int getFATOffset(int version) {
 		int headerSize = 0;
 		headerSize += 4;            // Version (int)
 		headerSize += 4;            // Segment size (int)
 		headerSize += 4;            // entries (int)
+		if (version != VERSION_NO_CODEC) {
+			headerSize += 4;        // codec id (int)
+		}
 		return headerSize;
 	}
 	
@@ -380,51 +594,6 @@ public class SimpleRegionFile implements ByteArrayArray {
 		return ((size - 1) >> segmentSize) + 1;
 	}
 	
-	/**
-	 * Releases a segment.
-	 * 
-	 * @param i the segment index
-	 * @return true on success
-	 */
-	private boolean releaseSegment(int i) {
-		boolean oldUsed = setInUse(i, false);
-		return oldUsed;
-	}
-	
-	/**
-	 * Reserves a segment.
-	 * 
-	 * @param i the segment index
-	 * @return true on success
-	 */
-	private boolean reserveSegment(int i) {
-		boolean oldUsed = setInUse(i, true);
-		return !oldUsed;
-	}
-	
-	/**
-	 * Reserves a group of segments.  If all segments can't be locked, any locked segments are immediately released.
-	 * 
-	 * @param start the index of the first segment
-	 * @param length the number of segments to lock
-	 * @return the number of segments locked (this is equal to length on success)
-	 * @throws IOException
-	 */
-	private int reserveSegments(int start, int length) throws IOException {
-		int end = start + length;
-		for (int i = start; i < end; i++) {
-			if (!reserveSegment(i)) {
-				for (int j = i - 1; j >= start; j--) {
-					if (!releaseSegment(j)) {
-						throw new SRFException("Release error when releasing a group of segments that had just been locked");
-					}
-				}
-				return i - start;
-			}
-		}
-		return length;
-	}
-	
 	/**
 	 * Reserves a contiguous group of segments for a block.<br>
 	 * <br>
@@ -432,9 +601,13 @@ public class SimpleRegionFile implements ByteArrayArray {
 	 * <br>
 	 * If there is space after the current allocation so that it can be expanded to the new size, then it is expanded.<br>
 	 * <br>
-	 * Otherwise, it scans from the start until it finds a large enough group of segments.<br>
+	 * Otherwise, the segment allocator is used to find a large enough group of segments.<br>
+	 * <br>
+	 * This may result in the file length needing to be increased.<br>
 	 * <br>
-	 * This may result in the file length needing to be increased.
+	 * During a batch, the FAT in the file still refers to the old segments until the batch ends, so a block which has data is always 
+	 * written to newly allocated segments.  Segments which are no longer used by the block are not released until the new FAT entry 
+	 * has been written.
 	 * 
 	 * @param i the block index
 	 * @param length the actual length of the new block
@@ -453,39 +626,26 @@ public class SimpleRegionFile implements ByteArrayArray {
 		int newLength = sizeToSegments(length);
 		int newEnd = oldStart + newLength;
 		
-		if (newLength <= oldLength) { // file has shrunk
-			for (int j = newEnd; j < oldEnd; j++) {
-				if (!this.releaseSegment(j)) {
-					throw new SRFException("Unable to unlock blocks due to file shrinking");
-				}
-			}
+		boolean inBatch = batchDepth.get() > 0;
+		
+		if (newLength <= oldLength && (newLength == 0 || !inBatch)) { // file has shrunk
+			releaseAfterFAT(i, newEnd, oldEnd - newEnd);
 			blockLength.set(newLength);
 			blockBytes.set(length);
 			return oldStart;
 		}
 		
 		int extraLength = newLength - oldLength;
-		int lockedSegments = this.reserveSegments(oldEnd, extraLength);
 		
-		if (lockedSegments == extraLength) {
+		if (!inBatch && segments.reserve(oldEnd, extraLength)) {
 			blockLength.set(newLength);
 			blockBytes.set(length);
 			return oldStart;
 		}
 		
-		int newStart = 0;
-		lockedSegments = 0;
+		int newStart = segments.allocate(newLength);
 		
-		while (lockedSegments != newLength) {
-			lockedSegments = this.reserveSegments(newStart, newLength);
-			if (lockedSegments != newLength) {
-				newStart = newStart + lockedSegments + 1;
-			}
-		}
-		
-		for (int j = oldStart; j < oldEnd; j++) {
-			releaseSegment(j);
-		}
+		releaseAfterFAT(i, oldStart, oldLength);
 		
 		blockStart.set(newStart);
 		blockLength.set(newLength);
@@ -493,65 +653,104 @@ public class SimpleRegionFile implements ByteArrayArray {
 		return newStart;
 	}
 
-	private void writeFAT(int i, int start, int actualLength) throws IOException {
-		int FATEntryPosition = getFATOffset() + (i << 3);
-		synchronized(fileSyncObject) {
-			if (file == null) {
-				this.file = new MappedRandomAccessFile(this.filePath, "rw");
-			}
-			file.seek(FATEntryPosition);
-			file.writeInt(start);
-			file.writeInt(actualLength);
+	/**
+	 * Records the new location of a block in the FAT.  If a batch is in progress, the FAT entry is written when the batch ends.<br>
+	 * <br>
+	 * Note: It is assumed that the block is locked when making these changes<br>
+	 * 
+	 * @param i the block index
+	 * @param start the start segment of the block
+	 * @param actualLength the actual block length
+	 * @throws IOException
+	 */
+	private void updateFAT(int i, int start, int actualLength) throws IOException {
+		fatDirty[i].set(true);
+		if (batchDepth.get() == 0 && fatDirty[i].compareAndSet(true, false)) {
+			this.writeFAT(i, start, actualLength);
+			releasePending(i);
 		}
 	}
 	
 	/**
-	 * Sets an element in the in use array and returns the old value.
+	 * Queues segments which are no longer used by a block, to be released once the block's FAT entry has been written.<br>
+	 * <br>
+	 * Note: It is assumed that the block is locked when making these changes<br>
 	 * 
-	 * @param i the segment index
-	 * @param used true if the segment should be in use
-	 * @return the old value
+	 * @param i the block index
+	 * @param start the first segment
+	 * @param length the number of segments
 	 */
-	private boolean setInUse(int i, boolean used) {
-		AtomicBoolean[] localArray = inuse.get();
-		
-		if (localArray.length <= i) {
-			expandInUseArray(Math.max(i+1, localArray.length * 3 / 2));
+	private void releaseAfterFAT(int i, int start, int length) {
+		if (length > 0) {
+			pendingRelease[i].add(new SegmentRange(start, length));
 		}
-		
-		localArray = inuse.get();
-		
-		return localArray[i].getAndSet(used);
 	}
 	
 	/**
-	 * Expands the in use array.  When this method returns, the in use array will be at least newSize elements long
+	 * Releases the segments queued for a block, after its FAT entry has been written
 	 * 
-	 * @param newSize the desired new size
+	 * @param i the block index
+	 * @throws SRFException if the segments were not reserved
 	 */
-	private void expandInUseArray(int newSize) {
-		
-		boolean success = false;
-		
-		while (!success) {
-			AtomicBoolean[] oldArray = inuse.get();
-
-			if (newSize <= oldArray.length) {
-				return;
-			}
-			
-			AtomicBoolean[] newArray = new AtomicBoolean[newSize];
-			
-			for (int i = 0; i < oldArray.length; i++) {
-				newArray[i] = oldArray[i];
+	private void releasePending(int i) throws SRFException {
+		SegmentRange range;
+		while ((range = pendingRelease[i].poll()) != null) {
+			if (!segments.release(range.start, range.length)) {
+				throw new SRFException("Unable to release segments " + range.start + " to " + (range.start + range.length) + " for block " + i);
 			}
-			
-			for (int i = oldArray.length; i < newSize; i++) {
-				newArray[i] = new AtomicBoolean(false);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static ConcurrentLinkedQueue<SegmentRange>[] newPendingReleaseArray(int entries) {
+		return new ConcurrentLinkedQueue[entries];
+	}
+
+	private void writeFAT(int i, int start, int actualLength) throws IOException {
+		long FATEntryPosition = getFATOffset(version) + (i << 3);
+		byte[] entry = new byte[8];
+		writeInt(entry, 0, start);
+		writeInt(entry, 4, actualLength);
+		getFile().write(FATEntryPosition, entry, 0, entry.length);
+	}
+	
+	private static void writeInt(byte[] buf, int off, int i) {
+		buf[off + 0] = (byte) (i >> 24);
+		buf[off + 1] = (byte) (i >> 16);
+		buf[off + 2] = (byte) (i >> 8);
+		buf[off + 3] = (byte) (i >> 0);
+	}
+	
+	/**
+	 * Gets the underlying file, opening it if required.
+	 * 
+	 * @return the file
+	 * @throws IOException
+	 */
+	private MappedRandomAccessFile getFile() throws IOException {
+		MappedRandomAccessFile localFile = file;
+		if (localFile == null) {
+			synchronized(fileSyncObject) {
+				localFile = file;
+				if (localFile == null) {
+					localFile = new MappedRandomAccessFile(this.filePath, "rw");
+					file = localFile;
+				}
 			}
-			
-			success = inuse.compareAndSet(oldArray, newArray);
 		}
+		return localFile;
+	}
+
+	/**
+	 * A range of segments waiting to be released
+	 */
+	private static class SegmentRange {
+		private final int start;
+		private final int length;
 		
+		public SegmentRange(int start, int length) {
+			this.start = start;
+			this.length = length;
+		}
 	}
 }
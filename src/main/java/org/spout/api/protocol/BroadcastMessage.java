@@ -0,0 +1,163 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A message which is sent to many sessions, and only encoded once for each {@link Protocol}.<br>
+ * <br>
+ * The first encoder to receive the message encodes it.  The other sessions using the same protocol are given a duplicate of the
+ * encoded buffer, which shares its contents, so sending a message to N sessions costs one encode and N writes.
+ */
+public final class BroadcastMessage implements Message {
+	private final Message message;
+	private Protocol firstProtocol;
+	private ChannelBuffer firstBuffer;
+	private Map<Protocol, ChannelBuffer> otherBuffers;
+
+	/**
+	 * Creates a broadcast message.  The message should not be changed after it has been sent.
+	 *
+	 * @param message the message to send
+	 */
+	public BroadcastMessage(Message message) {
+		if (message instanceof BroadcastMessage) {
+			throw new IllegalArgumentException("Broadcast messages may not be nested");
+		}
+		this.message = message;
+	}
+
+	/**
+	 * Sends a message to many sessions, encoding it once for each protocol
+	 *
+	 * @param sessions the sessions
+	 * @param message the message
+	 * @return the broadcast message which was sent
+	 */
+	public static BroadcastMessage send(Iterable<? extends Session> sessions, Message message) {
+		BroadcastMessage broadcast = new BroadcastMessage(message);
+		for (Session session : sessions) {
+			session.send(broadcast);
+		}
+		return broadcast;
+	}
+
+	/**
+	 * Sends messages to many sessions, encoding each message once for each protocol
+	 *
+	 * @param sessions the sessions
+	 * @param messages the messages
+	 */
+	public static void sendAll(Iterable<? extends Session> sessions, Message... messages) {
+		BroadcastMessage[] broadcasts = new BroadcastMessage[messages.length];
+		for (int i = 0; i < messages.length; i++) {
+			broadcasts[i] = new BroadcastMessage(messages[i]);
+		}
+		for (Session session : sessions) {
+			session.sendAll(broadcasts);
+		}
+	}
+
+	/**
+	 * Gets the message which is broadcast
+	 *
+	 * @return the message
+	 */
+	public Message getMessage() {
+		return message;
+	}
+
+	/**
+	 * Gets the encoded message for a protocol, encoding it if this is the first request for the protocol.
+	 *
+	 * @param protocol the protocol
+	 * @param onClient true if the message is being sent by the client
+	 * @return a buffer containing the encoded message, with independent indexes
+	 * @throws IOException if the message could not be encoded
+	 */
+	public ChannelBuffer getEncoded(Protocol protocol, boolean onClient) throws IOException {
+		ChannelBuffer buffer;
+		synchronized (this) {
+			if (firstProtocol == protocol) {
+				buffer = firstBuffer;
+			} else if (otherBuffers != null && otherBuffers.containsKey(protocol)) {
+				buffer = otherBuffers.get(protocol);
+			} else {
+				buffer = encode(protocol, onClient);
+				if (firstProtocol == null) {
+					firstProtocol = protocol;
+					firstBuffer = buffer;
+				} else {
+					if (otherBuffers == null) {
+						otherBuffers = new HashMap<Protocol, ChannelBuffer>();
+					}
+					otherBuffers.put(protocol, buffer);
+				}
+			}
+		}
+		return buffer.duplicate();
+	}
+
+	private ChannelBuffer encode(Protocol protocol, boolean onClient) throws IOException {
+		Message toEncode = message;
+		MessageCodec<?> codec = protocol.getCodecLookupService().find(message.getClass());
+		if (codec != null && codec.isDynamic()) {
+			toEncode = protocol.getWrappedMessage(false, message);
+		}
+		return CommonEncoder.encode(protocol, onClient, toEncode);
+	}
+
+	@Override
+	public boolean isAsync() {
+		return message.isAsync();
+	}
+
+	@Override
+	public int getChannelId() {
+		return message.getChannelId();
+	}
+
+	@Override
+	public String toString() {
+		return "BroadcastMessage{" + message + "}";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof BroadcastMessage && message.equals(((BroadcastMessage) other).message);
+	}
+
+	@Override
+	public int hashCode() {
+		return message.hashCode();
+	}
+}
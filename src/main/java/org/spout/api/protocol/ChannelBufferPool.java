@@ -0,0 +1,119 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+
+/**
+ * A pool of reusable, dynamically sized buffers for encoding messages.<br>
+ * <br>
+ * Buffers are taken from the pool by the encoder and returned once the write they were passed to has completed.  The pool holds a
+ * limited number of buffers, and buffers which have grown beyond the maximum pooled capacity are discarded rather than returned.
+ * The pool does not allocate when buffers are taken or returned, so encoding does not create garbage once the pool is warm.
+ */
+public class ChannelBufferPool {
+	private static final ChannelBufferPool DEFAULT = new ChannelBufferPool(512, 16384, 512, true);
+
+	private final BlockingQueue<PooledChannelBuffer> buffers;
+	private final ChannelBufferFactory factory;
+	private final int initialCapacity;
+	private final int maxPooledCapacity;
+
+	/**
+	 * Creates a buffer pool
+	 *
+	 * @param initialCapacity the initial capacity of new buffers
+	 * @param maxPooledCapacity the largest capacity of buffers which are returned to the pool
+	 * @param maxBuffers the maximum number of buffers held by the pool
+	 * @param direct true to use direct buffers, which can be written to a socket without being copied
+	 */
+	public ChannelBufferPool(int initialCapacity, int maxPooledCapacity, int maxBuffers, boolean direct) {
+		if (initialCapacity < 1 || maxPooledCapacity < initialCapacity || maxBuffers < 1) {
+			throw new IllegalArgumentException("Invalid pool size");
+		}
+		this.initialCapacity = initialCapacity;
+		this.maxPooledCapacity = maxPooledCapacity;
+		this.buffers = new ArrayBlockingQueue<PooledChannelBuffer>(maxBuffers);
+		this.factory = direct ? DirectChannelBufferFactory.getInstance(ByteOrder.BIG_ENDIAN) : HeapChannelBufferFactory.getInstance(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Gets the pool shared by encoders which are not given a pool
+	 *
+	 * @return the default pool
+	 */
+	public static ChannelBufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Takes an empty buffer from the pool, or creates a new buffer if the pool is empty
+	 *
+	 * @return the buffer
+	 */
+	public PooledChannelBuffer acquire() {
+		PooledChannelBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			buffer = new PooledChannelBuffer(this, initialCapacity, factory);
+		}
+		buffer.setPooled(false);
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.  The buffer must not be used after it has been released.
+	 *
+	 * @param buffer the buffer
+	 */
+	public void release(PooledChannelBuffer buffer) {
+		if (buffer.getPool() != this) {
+			throw new IllegalArgumentException("Buffer was not taken from this pool");
+		}
+		if (!buffer.setPooled(true)) {
+			throw new IllegalStateException("Buffer was released twice");
+		}
+		if (buffer.capacity() <= maxPooledCapacity) {
+			buffer.clear();
+			buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * Gets the number of buffers waiting in the pool
+	 *
+	 * @return the number of buffers
+	 */
+	public int getPooledBuffers() {
+		return buffers.size();
+	}
+}
@@ -44,9 +44,21 @@ public class CommonEncoder extends PostprocessEncoder {
 	private volatile Protocol protocol = null;
 
 	private final boolean onClient;
+	private final ChannelBufferPool bufferPool;
 
 	public CommonEncoder(boolean onClient) {
+		this(onClient, ChannelBufferPool.getDefault());
+	}
+
+	/**
+	 * Creates an encoder
+	 *
+	 * @param onClient true if the encoder is used by the client
+	 * @param bufferPool the pool of buffers for codecs which can encode into a provided buffer
+	 */
+	public CommonEncoder(boolean onClient, ChannelBufferPool bufferPool) {
 		this.onClient = onClient;
+		this.bufferPool = bufferPool;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -60,23 +72,66 @@ public class CommonEncoder extends PostprocessEncoder {
 					protocol = Spout.getEngine().getProtocol(c.getLocalAddress());
 				}
 			}
+			if (msg instanceof BroadcastMessage) {
+				return ((BroadcastMessage) msg).getEncoded(protocol, onClient);
+			}
 			Message message = (Message) msg;
 
-			Class<? extends Message> clazz = message.getClass();
-			MessageCodec<Message> codec;
+			MessageCodec<Message> codec = (MessageCodec<Message>) getCodec(protocol, message);
 
-			codec = (MessageCodec<Message>) protocol.getCodecLookupService().find(clazz);
-			if (codec == null) {
-				throw new IOException("Unknown message type: " + clazz + ".");
+			int headerLength = protocol.getHeaderLength(codec);
+			if (headerLength >= 0) {
+				PooledChannelBuffer buffer = bufferPool.acquire();
+				boolean success = false;
+				try {
+					buffer.ensureWritableBytes(headerLength);
+					buffer.writerIndex(headerLength);
+					if (codec.encode(onClient, message, buffer)) {
+						protocol.writeHeader(codec, buffer, 0, buffer.writerIndex() - headerLength);
+						success = true;
+						return buffer;
+					}
+				} finally {
+					if (!success) {
+						buffer.release();
+					}
+				}
 			}
 
-			ChannelBuffer messageBuf = codec.encode(onClient, message);
-			ChannelBuffer headerBuf = protocol.writeHeader(codec, messageBuf);
-			return ChannelBuffers.wrappedBuffer(headerBuf, messageBuf);
+			return encode(protocol, codec, onClient, message);
 		}
 		return msg;
 	}
 
+	/**
+	 * Encodes a message into a new buffer, including the header
+	 *
+	 * @param protocol the protocol
+	 * @param onClient true if the message is being sent by the client
+	 * @param message the message
+	 * @return the buffer
+	 * @throws IOException if the message could not be encoded
+	 */
+	@SuppressWarnings("unchecked")
+	static ChannelBuffer encode(Protocol protocol, boolean onClient, Message message) throws IOException {
+		return encode(protocol, (MessageCodec<Message>) getCodec(protocol, message), onClient, message);
+	}
+
+	private static ChannelBuffer encode(Protocol protocol, MessageCodec<Message> codec, boolean onClient, Message message) throws IOException {
+		ChannelBuffer messageBuf = codec.encode(onClient, message);
+		ChannelBuffer headerBuf = protocol.writeHeader(codec, messageBuf);
+		return ChannelBuffers.wrappedBuffer(headerBuf, messageBuf);
+	}
+
+	private static MessageCodec<?> getCodec(Protocol protocol, Message message) throws IOException {
+		Class<? extends Message> clazz = message.getClass();
+		MessageCodec<?> codec = protocol.getCodecLookupService().find(clazz);
+		if (codec == null) {
+			throw new IOException("Unknown message type: " + clazz + ".");
+		}
+		return codec;
+	}
+
 	void setProtocol(Protocol protocol) {
 		this.protocol = protocol;
 	}
@@ -62,6 +62,7 @@ public class CommonHandler extends SimpleChannelUpstreamHandler {
 
 	private final CommonDecoder decoder;
 	private final CommonEncoder encoder;
+	private final MessageBatcher batcher;
 
 	/**
 	 * Creates a new network event handler.
@@ -70,6 +71,16 @@ public class CommonHandler extends SimpleChannelUpstreamHandler {
 	 * @param upstream If the connections are going to the server
 	 */
 	public CommonHandler(Engine engine, CommonEncoder encoder, CommonDecoder decoder) {
+		this(engine, encoder, decoder, null);
+	}
+
+	/**
+	 * Creates a new network event handler.
+	 *
+	 * @param engine The engine.
+	 * @param batcher The channel's message batcher, which is enabled if the session's protocol batches messages, or null
+	 */
+	public CommonHandler(Engine engine, CommonEncoder encoder, CommonDecoder decoder, MessageBatcher batcher) {
 		this.engine = engine;
 		if (Spout.getPlatform() == Platform.CLIENT) {
 			this.onClient = true;
@@ -78,6 +89,7 @@ public class CommonHandler extends SimpleChannelUpstreamHandler {
 		}
 		this.encoder = encoder;
 		this.decoder = decoder;
+		this.batcher = batcher;
 	}
 
 	@Override
@@ -166,5 +178,8 @@ public class CommonHandler extends SimpleChannelUpstreamHandler {
 		}
 		decoder.setProtocol(session.getProtocol());
 		encoder.setProtocol(session.getProtocol());
+		if (batcher != null) {
+			batcher.setEnabled(session.getProtocol().isBatchingMessages());
+		}
 	}
 }
@@ -71,9 +71,14 @@ public final class CommonPipelineFactory implements ChannelPipelineFactory {
 	public ChannelPipeline getPipeline() throws Exception {
 		CommonEncoder encoder = new CommonEncoder(onClient);
 		CommonDecoder decoder = new CommonDecoder(onClient);
-		CommonHandler handler = new CommonHandler(engine, encoder, decoder);
+		// The batcher is enabled when the session's protocol is known, if the protocol batches messages
+		MessageBatcher batcher = new MessageBatcher();
+		batcher.setEnabled(false);
+		CommonHandler handler = new CommonHandler(engine, encoder, decoder, batcher);
 		DynamicMessageDecoder dynamicDecoder = new DynamicMessageDecoder();
 		DynamicMessageEncoder dynamicEncoder = new DynamicMessageEncoder();
-		return Channels.pipeline(decoder, encoder, dynamicDecoder, dynamicEncoder, handler);
+		ChannelPipeline pipeline = Channels.pipeline(decoder, encoder, dynamicDecoder, dynamicEncoder, handler);
+		pipeline.addFirst(MessageBatcher.NAME, batcher);
+		return pipeline;
 	}
 }
@@ -0,0 +1,289 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.geo.discrete.Transform;
+import org.spout.api.math.Quaternion;
+
+/**
+ * Tracks the entity transforms that have been sent to a single observer and produces quantized updates for them.<br>
+ * <br>
+ * Positions are quantized to a fixed number of steps per block and sent as deltas from the last position sent to the observer.
+ * Since the deltas are taken between quantized positions, rounding errors do not build up on the observer.  An absolute update is
+ * sent when an entity is spawned, changes world, moves too far for a delta, or every {@link #getKeyframeInterval()} updates.<br>
+ * <br>
+ * Updates which move the entity less than the position threshold and rotate it less than the rotation threshold are skipped.
+ */
+public class EntityTransformTracker {
+	/**
+	 * The default number of position steps per block
+	 */
+	public static final int DEFAULT_POSITION_SCALE = 32;
+	/**
+	 * The default number of updates between absolute updates
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 400;
+	private static final float ANGLE_SCALE = 256F / 360F;
+
+	private final TIntObjectHashMap<SentTransform> sent = new TIntObjectHashMap<SentTransform>();
+	private final int positionScale;
+	private int positionThreshold = 1;
+	private int rotationThreshold = 1;
+	private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+	private long absoluteUpdates;
+	private long deltaUpdates;
+	private long skippedUpdates;
+
+	public EntityTransformTracker() {
+		this(DEFAULT_POSITION_SCALE);
+	}
+
+	/**
+	 * Creates a tracker
+	 *
+	 * @param positionScale the number of position steps per block
+	 */
+	public EntityTransformTracker(int positionScale) {
+		if (positionScale <= 0) {
+			throw new IllegalArgumentException("The position scale must be positive");
+		}
+		this.positionScale = positionScale;
+	}
+
+	/**
+	 * Gets the number of position steps per block
+	 *
+	 * @return the position scale
+	 */
+	public int getPositionScale() {
+		return positionScale;
+	}
+
+	/**
+	 * Sets the smallest change in position, in blocks, which is sent to the observer.  The threshold is rounded up to a whole
+	 * number of position steps.
+	 *
+	 * @param threshold the position threshold
+	 */
+	public synchronized void setPositionThreshold(float threshold) {
+		positionThreshold = Math.max(1, (int) Math.ceil(threshold * positionScale));
+	}
+
+	public synchronized float getPositionThreshold() {
+		return positionThreshold / (float) positionScale;
+	}
+
+	/**
+	 * Sets the smallest change in rotation, in degrees, which is sent to the observer.  The threshold is rounded up to a whole
+	 * number of angle steps, of which there are 256 per revolution.
+	 *
+	 * @param threshold the rotation threshold
+	 */
+	public synchronized void setRotationThreshold(float threshold) {
+		rotationThreshold = Math.max(1, (int) Math.ceil(threshold * ANGLE_SCALE));
+	}
+
+	public synchronized float getRotationThreshold() {
+		return rotationThreshold / ANGLE_SCALE;
+	}
+
+	/**
+	 * Sets the number of updates for an entity after which an absolute update is sent, even if a delta would do
+	 *
+	 * @param interval the keyframe interval
+	 */
+	public synchronized void setKeyframeInterval(int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("The keyframe interval must be positive");
+		}
+		keyframeInterval = interval;
+	}
+
+	public synchronized int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Gets an absolute update for an entity which has just been spawned for the observer
+	 *
+	 * @param entityId the id of the entity
+	 * @param transform the transform of the entity
+	 * @return the update
+	 */
+	public synchronized TransformUpdate spawn(int entityId, Transform transform) {
+		SentTransform state = sent.get(entityId);
+		if (state == null) {
+			state = new SentTransform();
+			sent.put(entityId, state);
+		}
+		return absolute(entityId, state, transform.getPosition(), transform.getRotation());
+	}
+
+	/**
+	 * Gets the update to send for an entity, or null if the change since the last update sent is below the thresholds.<br>
+	 * <br>
+	 * Entities which have not been spawned for the observer get an absolute update.
+	 *
+	 * @param entityId the id of the entity
+	 * @param transform the transform of the entity
+	 * @return the update, or null if none is needed
+	 */
+	public synchronized TransformUpdate update(int entityId, Transform transform) {
+		SentTransform state = sent.get(entityId);
+		if (state == null) {
+			return spawn(entityId, transform);
+		}
+		Point position = transform.getPosition();
+		Quaternion rotation = transform.getRotation();
+		state.updates++;
+		if (position.getWorld() != state.world || state.updates >= keyframeInterval) {
+			return absolute(entityId, state, position, rotation);
+		}
+
+		int dx = quantizePosition(position.getX()) - state.x;
+		int dy = quantizePosition(position.getY()) - state.y;
+		int dz = quantizePosition(position.getZ()) - state.z;
+		if (dx != (byte) dx || dy != (byte) dy || dz != (byte) dz) {
+			return absolute(entityId, state, position, rotation);
+		}
+		boolean positionChanged = Math.abs(dx) >= positionThreshold || Math.abs(dy) >= positionThreshold || Math.abs(dz) >= positionThreshold;
+
+		byte pitch = quantizeAngle(rotation.getPitch());
+		byte yaw = quantizeAngle(rotation.getYaw());
+		byte roll = quantizeAngle(rotation.getRoll());
+		boolean rotationChanged = angleDifference(pitch, state.pitch) >= rotationThreshold || angleDifference(yaw, state.yaw) >= rotationThreshold || angleDifference(roll, state.roll) >= rotationThreshold;
+
+		if (!positionChanged && !rotationChanged) {
+			skippedUpdates++;
+			return null;
+		}
+		if (positionChanged) {
+			state.x += dx;
+			state.y += dy;
+			state.z += dz;
+		} else {
+			dx = dy = dz = 0;
+		}
+		if (rotationChanged) {
+			state.pitch = pitch;
+			state.yaw = yaw;
+			state.roll = roll;
+		}
+		deltaUpdates++;
+		return new TransformUpdate(entityId, false, positionChanged, rotationChanged, dx, dy, dz, state.pitch, state.yaw, state.roll);
+	}
+
+	private TransformUpdate absolute(int entityId, SentTransform state, Point position, Quaternion rotation) {
+		state.world = position.getWorld();
+		state.x = quantizePosition(position.getX());
+		state.y = quantizePosition(position.getY());
+		state.z = quantizePosition(position.getZ());
+		state.pitch = quantizeAngle(rotation.getPitch());
+		state.yaw = quantizeAngle(rotation.getYaw());
+		state.roll = quantizeAngle(rotation.getRoll());
+		state.updates = 0;
+		absoluteUpdates++;
+		return new TransformUpdate(entityId, true, true, true, state.x, state.y, state.z, state.pitch, state.yaw, state.roll);
+	}
+
+	/**
+	 * Stops tracking an entity, which should be done when it is destroyed for the observer
+	 *
+	 * @param entityId the id of the entity
+	 */
+	public synchronized void remove(int entityId) {
+		sent.remove(entityId);
+	}
+
+	/**
+	 * Stops tracking all entities
+	 */
+	public synchronized void clear() {
+		sent.clear();
+	}
+
+	/**
+	 * Gets if an entity is tracked
+	 *
+	 * @param entityId the id of the entity
+	 * @return true if the entity has been sent to the observer
+	 */
+	public synchronized boolean isTracked(int entityId) {
+		return sent.containsKey(entityId);
+	}
+
+	public synchronized long getAbsoluteUpdates() {
+		return absoluteUpdates;
+	}
+
+	public synchronized long getDeltaUpdates() {
+		return deltaUpdates;
+	}
+
+	public synchronized long getSkippedUpdates() {
+		return skippedUpdates;
+	}
+
+	private int quantizePosition(float value) {
+		return Math.round(value * positionScale);
+	}
+
+	/**
+	 * Quantizes an angle to one of 256 steps per revolution
+	 *
+	 * @param degrees the angle in degrees
+	 * @return the quantized angle
+	 */
+	public static byte quantizeAngle(float degrees) {
+		return (byte) Math.round(degrees * ANGLE_SCALE);
+	}
+
+	/**
+	 * Gets the angle in degrees for a quantized angle
+	 *
+	 * @param angle the quantized angle
+	 * @return the angle in degrees, between -180 and 180
+	 */
+	public static float dequantizeAngle(byte angle) {
+		return angle / ANGLE_SCALE;
+	}
+
+	private static int angleDifference(byte a, byte b) {
+		return Math.abs((byte) (a - b));
+	}
+
+	private static class SentTransform {
+		private World world;
+		private int x, y, z;
+		private byte pitch, yaw, roll;
+		private int updates;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.spout.api.math.IntVector3;
+
+/**
+ * The chunks which entered and left an observer's view when it moved, as reported by an {@link InterestManager}
+ */
+public final class InterestChange {
+	private static final InterestChange EMPTY = new InterestChange(Collections.<IntVector3>emptyList(), Collections.<IntVector3>emptyList());
+
+	private final List<IntVector3> added;
+	private final List<IntVector3> removed;
+
+	public InterestChange(List<IntVector3> added, List<IntVector3> removed) {
+		this.added = Collections.unmodifiableList(added);
+		this.removed = Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Gets a change with no added or removed chunks
+	 *
+	 * @return the empty change
+	 */
+	public static InterestChange empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Gets the coordinates of the chunks which entered the view, nearest to the observer first
+	 *
+	 * @return the added chunks
+	 */
+	public List<IntVector3> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Gets the coordinates of the chunks which left the view
+	 *
+	 * @return the removed chunks
+	 */
+	public List<IntVector3> getRemoved() {
+		return removed;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "InterestChange{added=" + added.size() + ", removed=" + removed.size() + "}";
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spout.api.math.IntVector3;
+import org.spout.api.util.map.concurrent.TSyncInt21TripleObjectHashMap;
+
+/**
+ * Tracks which observers can see which chunks of a world, using a hash map keyed by chunk coordinates.<br>
+ * <br>
+ * The view of an observer holds the chunks within its view distance of the chunk it is in, measured as a Manhattan distance, which is
+ * the volume used by {@link NetworkSynchronizer#getViewableVolume(int, int, int, int)}.  When an observer moves to another chunk,
+ * only the chunks which entered and left its view are visited and reported, so the cost depends on the size of the change rather than
+ * the size of the view.<br>
+ * <br>
+ * Updates are serialized.  Lookups of the observers of a chunk can be made from any thread at any time.
+ *
+ * @param <T> the observer type
+ */
+public class InterestManager<T> {
+	private final TSyncInt21TripleObjectHashMap<Set<T>> observers = new TSyncInt21TripleObjectHashMap<Set<T>>();
+	private final Map<T, View> views = new HashMap<T, View>();
+
+	/**
+	 * Moves the view of an observer, adding it if it was not already tracked
+	 *
+	 * @param observer the observer
+	 * @param cx the chunk x coordinate of the observer
+	 * @param cy the chunk y coordinate of the observer
+	 * @param cz the chunk z coordinate of the observer
+	 * @param viewDistance the view distance, in chunks
+	 * @return the chunks which entered and left the view
+	 */
+	public synchronized InterestChange update(T observer, int cx, int cy, int cz, int viewDistance) {
+		if (viewDistance < 0) {
+			throw new IllegalArgumentException("The view distance may not be negative");
+		}
+		View old = views.get(observer);
+		if (old != null && old.x == cx && old.y == cy && old.z == cz && old.distance == viewDistance) {
+			return InterestChange.empty();
+		}
+		View view = new View(cx, cy, cz, viewDistance);
+		views.put(observer, view);
+		return change(observer, old, view);
+	}
+
+	/**
+	 * Removes an observer
+	 *
+	 * @param observer the observer
+	 * @return the chunks which left the view
+	 */
+	public synchronized InterestChange remove(T observer) {
+		View old = views.remove(observer);
+		if (old == null) {
+			return InterestChange.empty();
+		}
+		return change(observer, old, null);
+	}
+
+	/**
+	 * Gets the observers which can see a chunk
+	 *
+	 * @param cx the chunk x coordinate
+	 * @param cy the chunk y coordinate
+	 * @param cz the chunk z coordinate
+	 * @return an unmodifiable view of the observers
+	 */
+	public Set<T> getObservers(int cx, int cy, int cz) {
+		Set<T> set = observers.get(cx, cy, cz);
+		if (set == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * Gets if an observer can see a chunk
+	 *
+	 * @param observer the observer
+	 * @param cx the chunk x coordinate
+	 * @param cy the chunk y coordinate
+	 * @param cz the chunk z coordinate
+	 * @return true if the chunk is in the view of the observer
+	 */
+	public synchronized boolean isObserving(T observer, int cx, int cy, int cz) {
+		View view = views.get(observer);
+		return view != null && view.contains(cx, cy, cz);
+	}
+
+	/**
+	 * Gets the number of tracked observers
+	 *
+	 * @return the number of observers
+	 */
+	public synchronized int getObserverCount() {
+		return views.size();
+	}
+
+	private InterestChange change(T observer, View old, View view) {
+		List<IntVector3> added = new ArrayList<IntVector3>();
+		List<IntVector3> removed = new ArrayList<IntVector3>();
+		View bounds = old == null ? view : old;
+		int minX = bounds.x - bounds.distance;
+		int maxX = bounds.x + bounds.distance;
+		int minY = bounds.y - bounds.distance;
+		int maxY = bounds.y + bounds.distance;
+		if (old != null && view != null) {
+			minX = Math.min(minX, view.x - view.distance);
+			maxX = Math.max(maxX, view.x + view.distance);
+			minY = Math.min(minY, view.y - view.distance);
+			maxY = Math.max(maxY, view.y + view.distance);
+		}
+		// Each (x, y) column of a view is a single run of z coordinates, so only the ends of the runs need comparing
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				int oldRadius = old == null ? -1 : old.getColumnRadius(x, y);
+				int newRadius = view == null ? -1 : view.getColumnRadius(x, y);
+				if (oldRadius < 0 && newRadius < 0) {
+					continue;
+				}
+				if (newRadius >= 0) {
+					int start = view.z - newRadius;
+					int end = view.z + newRadius;
+					for (int z = start; z <= end; z++) {
+						if (oldRadius < 0 || Math.abs(z - old.z) > oldRadius) {
+							added.add(new IntVector3(x, y, z));
+							addObserver(observer, x, y, z);
+						} else if (z < old.z + oldRadius) {
+							// Skip the part of the run which was already in view
+							z = Math.min(end, old.z + oldRadius);
+						}
+					}
+				}
+				if (oldRadius >= 0) {
+					int start = old.z - oldRadius;
+					int end = old.z + oldRadius;
+					for (int z = start; z <= end; z++) {
+						if (newRadius < 0 || Math.abs(z - view.z) > newRadius) {
+							removed.add(new IntVector3(x, y, z));
+							removeObserver(observer, x, y, z);
+						} else if (z < view.z + newRadius) {
+							z = Math.min(end, view.z + newRadius);
+						}
+					}
+				}
+			}
+		}
+		if (view != null) {
+			Collections.sort(added, new DistanceComparator(view));
+		}
+		return new InterestChange(added, removed);
+	}
+
+	private void addObserver(T observer, int x, int y, int z) {
+		Set<T> set = observers.get(x, y, z);
+		if (set == null) {
+			set = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+			observers.put(x, y, z, set);
+		}
+		set.add(observer);
+	}
+
+	private void removeObserver(T observer, int x, int y, int z) {
+		Set<T> set = observers.get(x, y, z);
+		if (set != null) {
+			set.remove(observer);
+			if (set.isEmpty()) {
+				observers.remove(x, y, z);
+			}
+		}
+	}
+
+	private static class View {
+		private final int x, y, z;
+		private final int distance;
+
+		public View(int x, int y, int z, int distance) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.distance = distance;
+		}
+
+		/**
+		 * Gets the distance the view extends along the z axis in the given column, which is negative if the column is outside the view
+		 */
+		public int getColumnRadius(int cx, int cy) {
+			return distance - Math.abs(cx - x) - Math.abs(cy - y);
+		}
+
+		public boolean contains(int cx, int cy, int cz) {
+			return Math.abs(cx - x) + Math.abs(cy - y) + Math.abs(cz - z) <= distance;
+		}
+
+		public int getDistance(IntVector3 v) {
+			return Math.abs(v.getX() - x) + Math.abs(v.getY() - y) + Math.abs(v.getZ() - z);
+		}
+	}
+
+	private static class DistanceComparator implements Comparator<IntVector3> {
+		private final View view;
+
+		public DistanceComparator(View view) {
+			this.view = view;
+		}
+
+		@Override
+		public int compare(IntVector3 a, IntVector3 b) {
+			int da = view.getDistance(a);
+			int db = view.getDistance(b);
+			return da < db ? -1 : (da == db ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * A downstream handler which gathers encoded messages and writes them to the channel as a single composite buffer.<br>
+ * <br>
+ * Messages are held until {@link #flush()} is called, which the network synchronizer does once it has sent a tick's updates.  Messages are
+ * never held for longer than the batch window, or once the batch exceeds the maximum size.  Urgent messages can be sent with
+ * {@link #writeUrgent(Channel, Object)}, which writes them, and any messages waiting before them, immediately.<br>
+ * <br>
+ * The handler should be the first handler in the pipeline, so that it receives the encoded and processed buffers.  The
+ * {@link CommonPipelineFactory} adds a disabled batcher to each pipeline, which is enabled if the session's protocol
+ * {@link Protocol#isBatchingMessages() batches messages}.
+ */
+public class MessageBatcher extends SimpleChannelDownstreamHandler {
+	/**
+	 * The name of the handler in the pipeline
+	 */
+	public static final String NAME = "batcher";
+	private static final Timer TIMER = new HashedWheelTimer(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Message Batcher Timer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	}, 10, TimeUnit.MILLISECONDS);
+
+	private final long window;
+	private final int maxBatchBytes;
+	private final List<ChannelBuffer> pendingBuffers = new ArrayList<ChannelBuffer>();
+	private final List<ChannelFuture> pendingFutures = new ArrayList<ChannelFuture>();
+	private final TimerTask flushTask = new TimerTask() {
+		@Override
+		public void run(Timeout timeout) {
+			flush();
+		}
+	};
+	private int pendingBytes = 0;
+	private Timeout pendingTimeout = null;
+	private ChannelHandlerContext ctx = null;
+	private volatile boolean enabled = true;
+
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong flushedMessages = new AtomicLong();
+	private final AtomicLong flushedBytes = new AtomicLong();
+
+	/**
+	 * Creates a batcher which holds messages for at most one tick, and flushes batches larger than 32kB
+	 */
+	public MessageBatcher() {
+		this(50, 32768);
+	}
+
+	/**
+	 * Creates a batcher
+	 *
+	 * @param window the maximum time a message is held, in ms
+	 * @param maxBatchBytes the size at which a batch is written, even if it has not been flushed
+	 */
+	public MessageBatcher(long window, int maxBatchBytes) {
+		this.window = window;
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * Gets the batcher in a channel's pipeline
+	 *
+	 * @param channel the channel
+	 * @return the batcher, or null if the pipeline doesn't have a batcher
+	 */
+	public static MessageBatcher get(Channel channel) {
+		return (MessageBatcher) channel.getPipeline().get(NAME);
+	}
+
+	/**
+	 * Writes a message and flushes the channel's batch, so that the message is sent immediately, after any messages which are
+	 * already waiting.
+	 *
+	 * @param channel the channel
+	 * @param message the message
+	 * @return the future for the write
+	 */
+	public static ChannelFuture writeUrgent(Channel channel, Object message) {
+		ChannelFuture future = channel.write(message);
+		flush(channel);
+		return future;
+	}
+
+	/**
+	 * Flushes a channel's batch, if the channel has a batcher
+	 *
+	 * @param channel the channel
+	 */
+	public static void flush(Channel channel) {
+		MessageBatcher batcher = get(channel);
+		if (batcher != null) {
+			batcher.flush();
+		}
+	}
+
+	@Override
+	public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+		if (e instanceof MessageEvent) {
+			writeRequested(ctx, (MessageEvent) e);
+		} else {
+			if (e instanceof ChannelStateEvent) {
+				// Write any waiting messages before the channel is closed or disconnected
+				flush();
+			}
+			ctx.sendDownstream(e);
+		}
+	}
+
+	@Override
+	public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) {
+		Object message = e.getMessage();
+		synchronized (this) {
+			this.ctx = ctx;
+			if (!enabled || !(message instanceof ChannelBuffer)) {
+				flush();
+				ctx.sendDownstream(e);
+				return;
+			}
+			ChannelBuffer buffer = (ChannelBuffer) message;
+			pendingBuffers.add(buffer);
+			pendingFutures.add(e.getFuture());
+			pendingBytes += buffer.readableBytes();
+			if (pendingBytes >= maxBatchBytes) {
+				flush();
+			} else if (pendingTimeout == null) {
+				pendingTimeout = TIMER.newTimeout(flushTask, window, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Writes all the waiting messages as a single buffer
+	 */
+	public synchronized void flush() {
+		if (pendingTimeout != null) {
+			pendingTimeout.cancel();
+			pendingTimeout = null;
+		}
+		int messages = pendingBuffers.size();
+		if (messages == 0) {
+			return;
+		}
+		ChannelBuffer batch;
+		final ChannelFuture[] futures;
+		ChannelFuture future;
+		if (messages == 1) {
+			batch = pendingBuffers.get(0);
+			futures = null;
+			future = pendingFutures.get(0);
+		} else {
+			batch = ChannelBuffers.wrappedBuffer(pendingBuffers.toArray(new ChannelBuffer[messages]));
+			futures = pendingFutures.toArray(new ChannelFuture[messages]);
+			future = Channels.future(ctx.getChannel());
+			future.addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future) {
+					for (ChannelFuture f : futures) {
+						if (future.isSuccess()) {
+							f.setSuccess();
+						} else if (future.isCancelled()) {
+							f.cancel();
+						} else {
+							f.setFailure(future.getCause());
+						}
+					}
+				}
+			});
+		}
+		flushes.incrementAndGet();
+		flushedMessages.addAndGet(messages);
+		flushedBytes.addAndGet(pendingBytes);
+		pendingBuffers.clear();
+		pendingFutures.clear();
+		pendingBytes = 0;
+		Channels.write(ctx, future, batch);
+	}
+
+	/**
+	 * Gets if messages are batched.  If disabled, each message is written as soon as it is sent.
+	 *
+	 * @return true if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets if messages are batched.  Disabling batching flushes any waiting messages.
+	 *
+	 * @param enabled true to batch messages
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			flush();
+		}
+	}
+
+	/**
+	 * Gets the number of batches which have been written
+	 *
+	 * @return the number of flushes
+	 */
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	/**
+	 * Gets the total number of messages which have been written in batches
+	 *
+	 * @return the number of messages
+	 */
+	public long getFlushedMessages() {
+		return flushedMessages.get();
+	}
+
+	/**
+	 * Gets the total number of bytes which have been written in batches
+	 *
+	 * @return the number of bytes
+	 */
+	public long getFlushedBytes() {
+		return flushedBytes.get();
+	}
+
+	/**
+	 * Gets the average number of messages written by each flush
+	 *
+	 * @return the messages per flush
+	 */
+	public double getMessagesPerFlush() {
+		long count = flushes.get();
+		return count == 0 ? 0 : ((double) flushedMessages.get()) / count;
+	}
+
+	/**
+	 * Gets the average number of bytes written by each flush
+	 *
+	 * @return the bytes per flush
+	 */
+	public double getBytesPerFlush() {
+		long count = flushes.get();
+		return count == 0 ? 0 : ((double) flushedBytes.get()) / count;
+	}
+}
@@ -76,6 +76,42 @@ public abstract class MessageCodec<T extends Message> {
 		return encode(message);
 	}
 
+	/**
+	 * Writes a message into a buffer provided by the encoder, after any data already in the buffer.
+	 *
+	 * @param onClient true if the message is being sent by the client
+	 * @param message the message
+	 * @param buffer the buffer to write to
+	 * @return false if the codec does not support writing into a provided buffer, and nothing was written
+	 * @throws IOException
+	 */
+	public final boolean encode(boolean onClient, T message, ChannelBuffer buffer) throws IOException {
+		return onClient ? encodeToServer(message, buffer) : encodeToClient(message, buffer);
+	}
+
+	/**
+	 * Writes a message into a buffer provided by the encoder.<br>
+	 * <br>
+	 * Codecs which override this method avoid allocating a buffer for each message.  The default implementation writes nothing and
+	 * returns false, in which case {@link #encode(Message)} is used instead.
+	 *
+	 * @param message the message
+	 * @param buffer the buffer to write to
+	 * @return false if the codec does not support writing into a provided buffer, and nothing was written
+	 * @throws IOException
+	 */
+	public boolean encode(T message, ChannelBuffer buffer) throws IOException {
+		return false;
+	}
+
+	public boolean encodeToClient(T message, ChannelBuffer buffer) throws IOException {
+		return encode(message, buffer);
+	}
+
+	public boolean encodeToServer(T message, ChannelBuffer buffer) throws IOException {
+		return encode(message, buffer);
+	}
+
 	public final T decode(boolean onClient, ChannelBuffer buffer) throws IOException {
 		return onClient ? decodeFromServer(buffer) : decodeFromClient(buffer);
 	}
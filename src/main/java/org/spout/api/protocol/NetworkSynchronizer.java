@@ -141,6 +141,18 @@ public abstract class NetworkSynchronizer {
 	 */
 	public void finalizeTick() {
 	}
+
+	/**
+	 * Called by the engine at the end of the start-snapshot stage, once the chunk and entity updates for the tick have been sent.<br>
+	 * <br>
+	 * The messages sent during the tick are flushed to the network.  This only has an effect if the session's protocol
+	 * {@link Protocol#isBatchingMessages() batches messages}.  Until it is called, batched messages are held for at most the batch
+	 * window of the channel's {@link MessageBatcher}.
+	 */
+	public final void flush() {
+		session.flush();
+	}
+
 	public void preSnapshot() {
 	}
 
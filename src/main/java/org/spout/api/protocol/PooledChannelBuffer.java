@@ -0,0 +1,82 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DynamicChannelBuffer;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+/**
+ * A dynamic buffer which belongs to a {@link ChannelBufferPool}.<br>
+ * <br>
+ * The buffer can be added as a listener to the future of the write it was passed to, so that it is returned to its pool once the
+ * write has completed.
+ */
+public class PooledChannelBuffer extends DynamicChannelBuffer implements ChannelFutureListener {
+	private final ChannelBufferPool pool;
+	private final AtomicBoolean pooled = new AtomicBoolean(false);
+
+	PooledChannelBuffer(ChannelBufferPool pool, int initialCapacity, ChannelBufferFactory factory) {
+		super(ByteOrder.BIG_ENDIAN, initialCapacity, factory);
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the pool which owns this buffer
+	 *
+	 * @return the pool
+	 */
+	public ChannelBufferPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Returns this buffer to its pool
+	 */
+	public void release() {
+		pool.release(this);
+	}
+
+	/**
+	 * Sets if the buffer is in the pool
+	 *
+	 * @param pooled true if the buffer is being returned to the pool
+	 * @return true if the state changed
+	 */
+	boolean setPooled(boolean pooled) {
+		return this.pooled.compareAndSet(!pooled, pooled);
+	}
+
+	@Override
+	public void operationComplete(ChannelFuture future) {
+		release();
+	}
+}
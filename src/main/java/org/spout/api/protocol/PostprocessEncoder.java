@@ -50,13 +50,22 @@ public abstract class PostprocessEncoder extends OneToOneEncoder implements Proc
 		}
 		
 		ChannelProcessor processor = this.processor.get();
-		if (processor == null) {
+		if (!(evt instanceof MessageEvent)) {
 			super.handleDownstream(ctx, evt);
-			if (evt instanceof MessageEvent) {
-				checkForSetupMessage(((MessageEvent)evt).getMessage());
+		} else if (processor == null) {
+			MessageEvent e = (MessageEvent) evt;
+			Object originalMessage = e.getMessage();
+			Object encodedMessage = encode(ctx, e.getChannel(), originalMessage);
+			if (originalMessage == encodedMessage) {
+				ctx.sendDownstream(evt);
+			} else if (encodedMessage != null) {
+				write(ctx, e.getFuture(), encodedMessage, e.getRemoteAddress());
+				if (encodedMessage instanceof PooledChannelBuffer) {
+					// Return the buffer to the pool once it has been written to the socket
+					e.getFuture().addListener((PooledChannelBuffer) encodedMessage);
+				}
 			}
-		} else if (!(evt instanceof MessageEvent)) {
-			super.handleDownstream(ctx, evt);
+			checkForSetupMessage(originalMessage);
 		} else {
 			MessageEvent e = (MessageEvent) evt;
 			Object originalMessage = e.getMessage();
@@ -66,8 +75,12 @@ public abstract class PostprocessEncoder extends OneToOneEncoder implements Proc
 			} else if (encodedMessage != null) {
 				if (encodedMessage instanceof ChannelBuffer) {
 					synchronized (this) {
-						encodedMessage = processor.write(ctx, (ChannelBuffer)encodedMessage);
-						write(ctx, e.getFuture(), encodedMessage, e.getRemoteAddress());
+						ChannelBuffer processedMessage = processor.write(ctx, (ChannelBuffer)encodedMessage);
+						if (encodedMessage instanceof PooledChannelBuffer) {
+							// The processor has consumed the buffer
+							((PooledChannelBuffer) encodedMessage).release();
+						}
+						write(ctx, e.getFuture(), processedMessage, e.getRemoteAddress());
 					}
 				} else {
 					write(ctx, e.getFuture(), encodedMessage, e.getRemoteAddress());
@@ -26,6 +26,7 @@
  */
 package org.spout.api.protocol;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -40,8 +41,13 @@ import org.spout.api.protocol.replayable.ReplayableChannelBuffer;
 import org.spout.api.protocol.replayable.ReplayableError;
 
 public abstract class PreprocessReplayingDecoder extends FrameDecoder implements ProcessorHandler {
+	/**
+	 * The default maximum length of a frame, including its header
+	 */
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 1 << 21;
 
 	private final int capacity;
+	private volatile int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
 	private final AtomicReference<ChannelProcessor> processor = new AtomicReference<ChannelProcessor>();
 	private final AtomicBoolean locked = new AtomicBoolean(false);
 
@@ -95,13 +101,28 @@ public abstract class PreprocessReplayingDecoder extends FrameDecoder implements
 				liveBuffer = processedBuffer;
 			}
 			int readPointer = liveBuffer.readerIndex();
-			try {
-				newFrame = decodeProcessed(ctx, c, replayableBuffer.setBuffer(liveBuffer));
-			} catch (ReplayableError e) {
-				// roll back liveBuffer read to state prior to calling decodeProcessed
-				liveBuffer.readerIndex(readPointer);
-				// No frame returned
+			int frameLength = getFrameLength(ctx, c, liveBuffer);
+			if (frameLength == Protocol.FRAME_LENGTH_UNKNOWN) {
+				try {
+					newFrame = decodeProcessed(ctx, c, replayableBuffer.setBuffer(liveBuffer));
+				} catch (ReplayableError e) {
+					// roll back liveBuffer read to state prior to calling decodeProcessed
+					liveBuffer.readerIndex(readPointer);
+					// No frame returned
+					newFrame = null;
+				}
+			} else if (frameLength < 0) {
+				throw new IOException("Invalid frame length " + frameLength);
+			} else if (frameLength > maxFrameLength) {
+				// Rejected before the frame is buffered, so a peer can't make the decoder allocate more than the maximum
+				throw new IOException("Frame length " + frameLength + " exceeds the maximum of " + maxFrameLength);
+			} else if (frameLength == Protocol.FRAME_INCOMPLETE || liveBuffer.readableBytes() < frameLength) {
+				// Wait until the whole frame has arrived
 				newFrame = null;
+			} else {
+				// The whole frame is available, so it is decoded exactly once
+				newFrame = decodeProcessed(ctx, c, liveBuffer.slice(readPointer, frameLength));
+				liveBuffer.readerIndex(readPointer + frameLength);
 			}
 			
 			if (newFrame != null) {
@@ -149,6 +170,30 @@ public abstract class PreprocessReplayingDecoder extends FrameDecoder implements
 		}
 	}
 
+	/**
+	 * Gets the maximum length of a frame, including its header
+	 *
+	 * @return the maximum frame length
+	 */
+	public int getMaxFrameLength() {
+		return maxFrameLength;
+	}
+
+	/**
+	 * Sets the maximum length of a frame, including its header.<br>
+	 * <br>
+	 * Frames with a known length greater than the maximum are rejected with an {@link IOException}.  This has no effect when
+	 * the frame length is {@link Protocol#FRAME_LENGTH_UNKNOWN unknown}.
+	 *
+	 * @param maxFrameLength the maximum frame length
+	 */
+	public void setMaxFrameLength(int maxFrameLength) {
+		if (maxFrameLength <= 0) {
+			throw new IllegalArgumentException("Maximum frame length must be positive");
+		}
+		this.maxFrameLength = maxFrameLength;
+	}
+
 	@Override
 	public void setProcessor(ChannelProcessor processor) {
 		if (processor == null) {
@@ -159,6 +204,24 @@ public abstract class PreprocessReplayingDecoder extends FrameDecoder implements
 		locked.set(false);
 	}
 
+	/**
+	 * Gets the length of the next frame in the buffer, without changing the reader index.<br>
+	 * <br>
+	 * If the length is known, decoding is deferred until the whole frame has arrived, and {@link #decodeProcessed} is called once
+	 * per frame, with a buffer that only contains the frame.  Otherwise, decoding is attempted on each packet and repeated if the
+	 * buffer runs out of bytes.
+	 * 
+	 * @param ctx the channel handler context
+	 * @param channel the channel
+	 * @param buffer the processed buffer, which may be empty
+	 * @return the length of the frame, including any header, {@link Protocol#FRAME_INCOMPLETE} if more bytes are needed to
+	 *         determine the length, {@link Protocol#FRAME_LENGTH_UNKNOWN} if the frame length can't be determined in advance or
+	 *         {@link Protocol#FRAME_INVALID} if the length in the buffer is invalid
+	 */
+	protected int getFrameLength(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) {
+		return Protocol.FRAME_LENGTH_UNKNOWN;
+	}
+
 	/**
 	 * This method is the equivalent of the decode method for the standard ReplayingDecoder<br>
 	 * The method call is repeated if decoding causes the ChannelBuffer to run out of bytes<br>
@@ -44,8 +44,21 @@ import org.spout.api.exception.UnknownPacketException;
 import org.spout.api.io.store.simple.MemoryStore;
 import org.spout.api.util.StringToUniqueIntegerMap;
 import org.spout.api.util.SyncedStringMap;
+import org.spout.api.util.VarInt;
 
 public abstract class Protocol {
+	/**
+	 * Returned by {@link #getFrameLength(ChannelBuffer)} if the protocol does not declare frame lengths
+	 */
+	public static final int FRAME_LENGTH_UNKNOWN = -1;
+	/**
+	 * Returned by {@link #getFrameLength(ChannelBuffer)} if more bytes are needed to read the frame length
+	 */
+	public static final int FRAME_INCOMPLETE = 0;
+	/**
+	 * Returned by {@link #getFrameLength(ChannelBuffer)} if the frame length in the buffer is invalid
+	 */
+	public static final int FRAME_INVALID = -2;
 	private static final ConcurrentHashMap<String, Protocol> map = new ConcurrentHashMap<String, Protocol>();
 
 	private final SyncedStringMap dynamicPacketLookup;
@@ -150,6 +163,106 @@ public abstract class Protocol {
 	 */
 	public abstract MessageCodec<?> readHeader(ChannelBuffer buf) throws UnknownPacketException;
 
+	/**
+	 * Gets the length of the packet starting at the buffer's reader index, without changing the reader index.<br>
+	 * <br>
+	 * Protocols which prefix packets with their length should override this method, so that the decoder waits for the whole
+	 * packet before calling {@link #readHeader(ChannelBuffer)}.  Otherwise, decoding is restarted each time more data arrives,
+	 * which is slow for large packets that are split across many network reads.
+	 *
+	 * @param buf The buffer to read from
+	 * @return the length of the packet, including the header, {@link #FRAME_INCOMPLETE} if the buffer doesn't contain enough
+	 *         bytes to determine the length, {@link #FRAME_LENGTH_UNKNOWN} if the length is not known until the packet is decoded,
+	 *         or {@link #FRAME_INVALID} if the length is invalid
+	 * @see #getIntFrameLength(ChannelBuffer, int, int)
+	 * @see #getVarIntFrameLength(ChannelBuffer, int)
+	 */
+	public int getFrameLength(ChannelBuffer buf) {
+		return FRAME_LENGTH_UNKNOWN;
+	}
+
+	/**
+	 * Gets if the messages sent to sessions using this protocol are batched.<br>
+	 * <br>
+	 * If true, the encoded messages are held by the channel's {@link MessageBatcher} and written together when the session is
+	 * flushed by {@link NetworkSynchronizer#flush()}, or when the batch window expires.  Protocols which send latency sensitive
+	 * messages, which aren't sent as urgent, should leave batching disabled.
+	 *
+	 * @return true to batch messages, false by default
+	 */
+	public boolean isBatchingMessages() {
+		return false;
+	}
+
+	/**
+	 * Gets the length of a packet which has a fixed size header containing the length of the packet data as an int.
+	 *
+	 * @param buf The buffer to read from
+	 * @param lengthOffset The position of the length in the header
+	 * @param headerLength The length of the header
+	 * @return the length of the packet, including the header, {@link #FRAME_INCOMPLETE} or {@link #FRAME_INVALID}
+	 */
+	protected static int getIntFrameLength(ChannelBuffer buf, int lengthOffset, int headerLength) {
+		return getIntFrameLength(buf, lengthOffset, headerLength, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the length of a packet which has a fixed size header containing the length of the packet data as an int.
+	 *
+	 * @param buf The buffer to read from
+	 * @param lengthOffset The position of the length in the header
+	 * @param headerLength The length of the header
+	 * @param maxLength The maximum length of the packet, including the header
+	 * @return the length of the packet, including the header, {@link #FRAME_INCOMPLETE} or {@link #FRAME_INVALID} if the length
+	 *         is negative or greater than the maximum
+	 */
+	protected static int getIntFrameLength(ChannelBuffer buf, int lengthOffset, int headerLength, int maxLength) {
+		if (buf.readableBytes() < headerLength) {
+			return FRAME_INCOMPLETE;
+		}
+		int length = buf.getInt(buf.readerIndex() + lengthOffset);
+		if (length < 0 || length > maxLength - headerLength) {
+			return FRAME_INVALID;
+		}
+		return headerLength + length;
+	}
+
+	/**
+	 * Gets the length of a packet where the length of the packet data is stored as a {@link VarInt}, which follows a fixed size
+	 * header.
+	 *
+	 * @param buf The buffer to read from
+	 * @param lengthOffset The length of the header before the length
+	 * @return the length of the packet, including the header and length, {@link #FRAME_INCOMPLETE} or {@link #FRAME_INVALID}
+	 */
+	protected static int getVarIntFrameLength(ChannelBuffer buf, int lengthOffset) {
+		return getVarIntFrameLength(buf, lengthOffset, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the length of a packet where the length of the packet data is stored as a {@link VarInt}, which follows a fixed size
+	 * header.
+	 *
+	 * @param buf The buffer to read from
+	 * @param lengthOffset The length of the header before the length
+	 * @param maxLength The maximum length of the packet, including the header and length
+	 * @return the length of the packet, including the header and length, {@link #FRAME_INCOMPLETE} or {@link #FRAME_INVALID} if
+	 *         the length is negative or greater than the maximum
+	 */
+	protected static int getVarIntFrameLength(ChannelBuffer buf, int lengthOffset, int maxLength) {
+		int index = buf.readerIndex() + lengthOffset;
+		int lengthSize = VarInt.getEncodedLength(buf, index);
+		if (lengthSize == 0) {
+			return FRAME_INCOMPLETE;
+		}
+		int length = VarInt.getInt(buf, index);
+		int headerLength = lengthOffset + lengthSize;
+		if (length < 0 || length > maxLength - headerLength) {
+			return FRAME_INVALID;
+		}
+		return headerLength + length;
+	}
+
 	/**
 	 * Writes a packet header to a new buffer.
 	 *
@@ -159,6 +272,40 @@ public abstract class Protocol {
 	 */
 	public abstract ChannelBuffer writeHeader(MessageCodec<?> codec, ChannelBuffer data);
 
+	/**
+	 * Gets the length of the header written for a codec, if it is known before the message is encoded.<br>
+	 * <br>
+	 * If the length is known, the encoder reserves space for the header in a pooled buffer, encodes the message after it and then
+	 * calls {@link #writeHeader(MessageCodec, ChannelBuffer, int, int)} to fill in the header.
+	 *
+	 * @param codec The codec the message will be written with
+	 * @return the length of the header, or -1 if the length varies with the message data
+	 */
+	public int getHeaderLength(MessageCodec<?> codec) {
+		return -1;
+	}
+
+	/**
+	 * Writes a packet header into the space reserved before the message data.  The length of the header must be the length
+	 * returned by {@link #getHeaderLength(MessageCodec)}.<br>
+	 * <br>
+	 * The default implementation copies the header created by {@link #writeHeader(MessageCodec, ChannelBuffer)}.  Protocols should
+	 * override this method to write the header directly.
+	 *
+	 * @param codec The codec the message was written with
+	 * @param buffer The buffer containing the reserved space and the message data
+	 * @param headerIndex The index of the reserved space
+	 * @param dataLength The length of the message data, which follows the header
+	 */
+	public void writeHeader(MessageCodec<?> codec, ChannelBuffer buffer, int headerIndex, int dataLength) {
+		int headerLength = getHeaderLength(codec);
+		ChannelBuffer header = writeHeader(codec, buffer.slice(headerIndex + headerLength, dataLength));
+		if (header.readableBytes() != headerLength) {
+			throw new IllegalStateException("Header for " + codec.getType() + " is " + header.readableBytes() + " bytes, " + headerLength + " bytes were reserved");
+		}
+		buffer.setBytes(headerIndex, header, header.readerIndex(), headerLength);
+	}
+
 	/**
 	 * Gets a packet for kicking a player
 	 *
@@ -51,6 +51,12 @@ public abstract class ServerNetworkSynchronizer extends NetworkSynchronizer {
 	//Holds all entities that have ever been sync'd to this Synchronizer
 	protected final TSyncIntHashSet synchronizedEntities = new TSyncIntHashSet();
 
+	//Holds the last transform sent to the client for each synchronized entity
+	protected final EntityTransformTracker transformTracker = new EntityTransformTracker();
+
+	//The interest manager for the world the player is in
+	private InterestManager<ServerNetworkSynchronizer> interestManager;
+
 	public ServerNetworkSynchronizer(Session session, int minViewDistance) {
 		super(session);
 		if (player != null) {
@@ -72,6 +78,11 @@ public abstract class ServerNetworkSynchronizer extends NetworkSynchronizer {
 	public final void onRemoved() {
 		TickStage.checkStage(TickStage.FINALIZE);
 		removed = true;
+		transformTracker.clear();
+		if (interestManager != null) {
+			interestManager.remove(this);
+			interestManager = null;
+		}
 		clearObservers();
 	}
 	
@@ -106,6 +117,30 @@ public abstract class ServerNetworkSynchronizer extends NetworkSynchronizer {
 
 	}
 
+	/**
+	 * Moves the view of this synchronizer in an interest manager to the given chunk, and returns the chunks which entered and left the
+	 * view.  Only the chunks on the edges of the view are visited, so this avoids rescanning the whole view volume when the player
+	 * crosses a chunk boundary.<br>
+	 * <br>
+	 * Each world should have its own interest manager.  If the manager differs from the one passed last time, the synchronizer is
+	 * removed from the old manager and all chunks in the view are reported as added.
+	 *
+	 * @param manager the interest manager for the player's world
+	 * @param cx the chunk x coordinate of the player
+	 * @param cy the chunk y coordinate of the player
+	 * @param cz the chunk z coordinate of the player
+	 * @return the chunks which entered and left the view
+	 */
+	protected InterestChange updateInterest(InterestManager<ServerNetworkSynchronizer> manager, int cx, int cy, int cz) {
+		if (interestManager != manager) {
+			if (interestManager != null) {
+				interestManager.remove(this);
+			}
+			interestManager = manager;
+		}
+		return manager.update(this, cx, cy, cz, viewDistance);
+	}
+
 	protected boolean canSendChunk(Chunk c) {
 		return true;
 	}
@@ -260,7 +295,36 @@ public abstract class ServerNetworkSynchronizer extends NetworkSynchronizer {
 			synchronizedEntities.add(e.getId());
 		} else if (destroy) {
 			synchronizedEntities.remove(e.getId());
+			transformTracker.remove(e.getId());
+		}
+	}
+
+	/**
+	 * Gets the quantized transform update to send for an entity.  Spawned entities get an absolute update, other entities get a delta
+	 * from the last update sent, or null if the entity has not moved far enough to send an update.<br>
+	 * <br>
+	 * Implementations can call this from {@link #syncEntity(Entity, Transform, boolean, boolean, boolean)} instead of sending the
+	 * full live transform.
+	 *
+	 * @param e the entity
+	 * @param liveTransform the live transform (latest) for the entity
+	 * @param spawn is True when the entity just spawned
+	 * @return the update, or null if no update is needed
+	 */
+	protected TransformUpdate getTransformUpdate(Entity e, Transform liveTransform, boolean spawn) {
+		if (spawn) {
+			return transformTracker.spawn(e.getId(), liveTransform);
 		}
+		return transformTracker.update(e.getId(), liveTransform);
+	}
+
+	/**
+	 * Gets the tracker for the transforms sent to this client
+	 *
+	 * @return the transform tracker
+	 */
+	public EntityTransformTracker getTransformTracker() {
+		return transformTracker;
 	}
 
 	public boolean hasSpawned(Entity e) {
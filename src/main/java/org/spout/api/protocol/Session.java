@@ -90,10 +90,13 @@ public interface Session {
 	public void send(Message message);
 
 	/**
-	 * Sends a message to the client.
+	 * Sends a message to the client.<br>
+	 * <br>
+	 * Forced messages are not held in the outbound batch.  They are written immediately, after any messages which are waiting.
 	 *
 	 * @param force if this message is used in the identification stages of communication
 	 * @param message The message.
+	 * @see MessageBatcher#writeUrgent(Channel, Object)
 	 */
 	public void send(boolean force, Message message);
 
@@ -109,6 +112,14 @@ public interface Session {
 	 * @param messages the messages to send to the client
 	 */
 	public void sendAll(boolean force, Message... messages);
+	/**
+	 * Writes any messages which are waiting in the outbound batch.  This is called by the network synchronizer at the end of
+	 * the start-snapshot stage, once the tick's updates have been sent.
+	 *
+	 * @see MessageBatcher#flush(Channel)
+	 */
+	public void flush();
+
 	/**
 	 * Disconnects the player as a kick. This is equivalent to calling disconnect(reason, true)
 	 * @param reason The reason for disconnection
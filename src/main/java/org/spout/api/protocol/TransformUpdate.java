@@ -0,0 +1,258 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.math.Quaternion;
+import org.spout.api.math.QuaternionMath;
+
+/**
+ * A quantized entity transform update produced by an {@link EntityTransformTracker}.<br>
+ * <br>
+ * Absolute updates hold the quantized position of the entity.  Delta updates hold the change in the quantized position since the
+ * last update sent to the observer, which always fits in a byte per axis.  Rotations are always absolute, as a byte per angle.
+ */
+public final class TransformUpdate {
+	private static final int FLAG_ABSOLUTE = 0x01;
+	private static final int FLAG_POSITION = 0x02;
+	private static final int FLAG_ROTATION = 0x04;
+
+	private final int entityId;
+	private final boolean absolute;
+	private final boolean positionChanged;
+	private final boolean rotationChanged;
+	private final int x, y, z;
+	private final byte pitch, yaw, roll;
+
+	public TransformUpdate(int entityId, boolean absolute, boolean positionChanged, boolean rotationChanged, int x, int y, int z, byte pitch, byte yaw, byte roll) {
+		if (!absolute && positionChanged && (x != (byte) x || y != (byte) y || z != (byte) z)) {
+			throw new IllegalArgumentException("Position deltas must fit in a byte");
+		}
+		this.entityId = entityId;
+		this.absolute = absolute;
+		this.positionChanged = positionChanged;
+		this.rotationChanged = rotationChanged;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.pitch = pitch;
+		this.yaw = yaw;
+		this.roll = roll;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	/**
+	 * Gets if this update replaces the transform held by the observer, rather than changing it
+	 *
+	 * @return true for absolute updates
+	 */
+	public boolean isAbsolute() {
+		return absolute;
+	}
+
+	public boolean isPositionChanged() {
+		return positionChanged;
+	}
+
+	public boolean isRotationChanged() {
+		return rotationChanged;
+	}
+
+	/**
+	 * Gets the quantized x coordinate for absolute updates, or the change in the quantized x coordinate for delta updates
+	 *
+	 * @return the x value
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the quantized y coordinate for absolute updates, or the change in the quantized y coordinate for delta updates
+	 *
+	 * @return the y value
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the quantized z coordinate for absolute updates, or the change in the quantized z coordinate for delta updates
+	 *
+	 * @return the z value
+	 */
+	public int getZ() {
+		return z;
+	}
+
+	public byte getPitch() {
+		return pitch;
+	}
+
+	public byte getYaw() {
+		return yaw;
+	}
+
+	public byte getRoll() {
+		return roll;
+	}
+
+	/**
+	 * Gets the rotation from the quantized angles
+	 *
+	 * @return the rotation
+	 */
+	public Quaternion getRotation() {
+		return QuaternionMath.rotation(EntityTransformTracker.dequantizeAngle(pitch), EntityTransformTracker.dequantizeAngle(yaw), EntityTransformTracker.dequantizeAngle(roll));
+	}
+
+	/**
+	 * Applies this update to the quantized position held by an observer
+	 *
+	 * @param position the quantized x, y and z coordinates, which are updated
+	 */
+	public void applyPosition(int[] position) {
+		if (absolute) {
+			position[0] = x;
+			position[1] = y;
+			position[2] = z;
+		} else if (positionChanged) {
+			position[0] += x;
+			position[1] += y;
+			position[2] += z;
+		}
+	}
+
+	/**
+	 * Gets the position for a quantized position
+	 *
+	 * @param world the world
+	 * @param position the quantized x, y and z coordinates
+	 * @param scale the number of quantization steps per block
+	 * @return the position
+	 */
+	public static Point getPosition(World world, int[] position, int scale) {
+		return new Point(world, position[0] / (float) scale, position[1] / (float) scale, position[2] / (float) scale);
+	}
+
+	/**
+	 * Gets the number of bytes used by {@link #write(ChannelBuffer)}
+	 *
+	 * @return the encoded length
+	 */
+	public int getEncodedLength() {
+		int length = 1;
+		if (absolute) {
+			length += 15;
+		} else {
+			if (positionChanged) {
+				length += 3;
+			}
+			if (rotationChanged) {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the update to a buffer.  The entity id is not written.<br>
+	 * <br>
+	 * Protocols are free to use their own encoding; this is a compact default.
+	 *
+	 * @param buffer the buffer
+	 */
+	public void write(ChannelBuffer buffer) {
+		int flags = 0;
+		if (absolute) {
+			flags |= FLAG_ABSOLUTE;
+		}
+		if (positionChanged) {
+			flags |= FLAG_POSITION;
+		}
+		if (rotationChanged) {
+			flags |= FLAG_ROTATION;
+		}
+		buffer.writeByte(flags);
+		if (absolute) {
+			buffer.writeInt(x);
+			buffer.writeInt(y);
+			buffer.writeInt(z);
+		} else if (positionChanged) {
+			buffer.writeByte(x);
+			buffer.writeByte(y);
+			buffer.writeByte(z);
+		}
+		if (absolute || rotationChanged) {
+			buffer.writeByte(pitch);
+			buffer.writeByte(yaw);
+			buffer.writeByte(roll);
+		}
+	}
+
+	/**
+	 * Reads an update written by {@link #write(ChannelBuffer)}
+	 *
+	 * @param entityId the id of the entity
+	 * @param buffer the buffer
+	 * @return the update
+	 */
+	public static TransformUpdate read(int entityId, ChannelBuffer buffer) {
+		int flags = buffer.readUnsignedByte();
+		boolean absolute = (flags & FLAG_ABSOLUTE) != 0;
+		boolean positionChanged = (flags & FLAG_POSITION) != 0;
+		boolean rotationChanged = (flags & FLAG_ROTATION) != 0;
+		int x = 0, y = 0, z = 0;
+		if (absolute) {
+			x = buffer.readInt();
+			y = buffer.readInt();
+			z = buffer.readInt();
+		} else if (positionChanged) {
+			x = buffer.readByte();
+			y = buffer.readByte();
+			z = buffer.readByte();
+		}
+		byte pitch = 0, yaw = 0, roll = 0;
+		if (absolute || rotationChanged) {
+			pitch = buffer.readByte();
+			yaw = buffer.readByte();
+			roll = buffer.readByte();
+		}
+		return new TransformUpdate(entityId, absolute, positionChanged, rotationChanged, x, y, z, pitch, yaw, roll);
+	}
+
+	@Override
+	public String toString() {
+		return "TransformUpdate{id=" + entityId + ", absolute=" + absolute + ", position=" + (positionChanged ? x + "," + y + "," + z : "-") + ", rotation=" + (rotationChanged ? pitch + "," + yaw + "," + roll : "-") + "}";
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol.builder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A {@link CompoundMessageField} layout compiled into offset tables.<br>
+ * <br>
+ * Runs of fixed length fields are merged, so skipping over them is a single constant time step and only the variable length
+ * fields are asked for their length.  The offset of every field which is not preceded by a variable length field is a constant.<br>
+ * <br>
+ * Fields of the primitive field classes are read and written directly from the buffer, without boxing.  Other fields are read
+ * and written through their {@link MessageField} methods.
+ */
+public final class CompiledMessageLayout {
+	private static final byte OTHER = 0;
+	private static final byte BYTE = 1;
+	private static final byte SHORT = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+
+	private final MessageField[] fields;
+	private final byte[] types;
+	/**
+	 * The index of the variable length field which each field follows, or -1 if there is none
+	 */
+	private final int[] anchors;
+	/**
+	 * The offset of each field from the end of its anchor, or from the start of the message
+	 */
+	private final int[] offsets;
+	private final boolean[] variable;
+	private final MessageField[] variableFields;
+	private final int[] gaps;
+	private final int fixedLength;
+
+	private CompiledMessageLayout(MessageField[] fields) {
+		int count = fields.length;
+		this.fields = fields.clone();
+		this.types = new byte[count];
+		this.anchors = new int[count];
+		this.offsets = new int[count];
+		this.variable = new boolean[count];
+
+		int variableCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (fields[i].getFixedLength() < 0) {
+				variableCount++;
+			}
+		}
+		this.variableFields = new MessageField[variableCount];
+		this.gaps = new int[variableCount + 1];
+
+		int anchor = -1;
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			MessageField field = fields[i];
+			types[i] = getType(field);
+			anchors[i] = anchor;
+			offsets[i] = offset;
+			int length = field.getFixedLength();
+			if (length < 0) {
+				gaps[anchor + 1] = offset;
+				anchor++;
+				variable[i] = true;
+				variableFields[anchor] = field;
+				offset = 0;
+			} else {
+				offset += length;
+			}
+		}
+		gaps[variableCount] = offset;
+		this.fixedLength = variableCount == 0 ? offset : -1;
+	}
+
+	/**
+	 * Compiles the layout of a compound field
+	 *
+	 * @param root the compound field
+	 * @return the compiled layout
+	 */
+	public static CompiledMessageLayout compile(CompoundMessageField root) {
+		MessageField[] fields = new MessageField[root.getSubFieldCount()];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = root.getSubField(i);
+		}
+		return new CompiledMessageLayout(fields);
+	}
+
+	private static byte getType(MessageField field) {
+		Class<?> clazz = field.getClass();
+		if (clazz == ByteMessageField.class) {
+			return BYTE;
+		} else if (clazz == ShortMessageField.class) {
+			return SHORT;
+		} else if (clazz == IntMessageField.class) {
+			return INT;
+		} else if (clazz == LongMessageField.class) {
+			return LONG;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * Gets the number of fields in the layout
+	 *
+	 * @return the number of fields
+	 */
+	public int getFieldCount() {
+		return fields.length;
+	}
+
+	/**
+	 * Gets the total length of the fields, or -1 if any of the fields have a variable length
+	 *
+	 * @return the fixed length
+	 */
+	public int getFixedLength() {
+		return fixedLength;
+	}
+
+	/**
+	 * Gets the offset of a field from the start of the message, or -1 if it follows a variable length field
+	 *
+	 * @param field the field index
+	 * @return the fixed offset
+	 */
+	public int getFixedOffset(int field) {
+		return anchors[field] < 0 ? offsets[field] : -1;
+	}
+
+	/**
+	 * Gets the length of the fields and moves the read pointer to the end of the last field.
+	 * This method will throw an out of bounds exception if all of the fields are not present
+	 *
+	 * @param buffer the buffer
+	 * @return the length
+	 */
+	public int skip(ChannelBuffer buffer) {
+		if (fixedLength >= 0) {
+			buffer.skipBytes(fixedLength);
+			return fixedLength;
+		}
+		int start = buffer.readerIndex();
+		for (int i = 0; i < variableFields.length; i++) {
+			buffer.skipBytes(gaps[i]);
+			variableFields[i].skip(buffer);
+		}
+		buffer.skipBytes(gaps[variableFields.length]);
+		return buffer.readerIndex() - start;
+	}
+
+	/**
+	 * Gets the length of the fields and moves the read pointer to the end of the last field.  The offset of each field from the
+	 * start of the message is stored in the index array.
+	 *
+	 * @param buffer the buffer
+	 * @param indexArray the array for the field offsets, which must have at least one element per field
+	 * @return the length
+	 */
+	public int skip(ChannelBuffer buffer, int[] indexArray) {
+		int start = buffer.readerIndex();
+		int base = 0;
+		for (int i = 0; i < fields.length; i++) {
+			int index = base + offsets[i];
+			indexArray[i] = index;
+			if (variable[i]) {
+				buffer.readerIndex(start + index);
+				base = index + fields[i].skip(buffer);
+			}
+		}
+		int length = base + gaps[variableFields.length];
+		buffer.readerIndex(start);
+		buffer.skipBytes(length);
+		return length;
+	}
+
+	/**
+	 * Gets the length of the fields without moving the read pointer
+	 *
+	 * @param buffer the buffer
+	 * @return the length
+	 */
+	public int getLength(ChannelBuffer buffer) {
+		if (fixedLength >= 0) {
+			return fixedLength;
+		}
+		int start = buffer.readerIndex();
+		int length = skip(buffer);
+		buffer.readerIndex(start);
+		return length;
+	}
+
+	/**
+	 * Copies the fields from the source buffer to the target buffer without decoding them
+	 *
+	 * @param sourceBuffer the source buffer
+	 * @param targetBuffer the target buffer
+	 */
+	public void transfer(ChannelBuffer sourceBuffer, ChannelBuffer targetBuffer) {
+		sourceBuffer.readBytes(targetBuffer, getLength(sourceBuffer));
+	}
+
+	/**
+	 * Reads a field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public Object read(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(getIndex(start, indexes, field));
+		try {
+			return fields[field].read(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	/**
+	 * Reads a long field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public long getLong(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int index = getIndex(start, indexes, field);
+		if (types[field] == LONG) {
+			return buffer.getLong(index);
+		}
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(index);
+		try {
+			return fields[field].readLong(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	/**
+	 * Reads an int field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public int getInt(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int index = getIndex(start, indexes, field);
+		if (types[field] == INT) {
+			return buffer.getInt(index);
+		}
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(index);
+		try {
+			return fields[field].readInt(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	/**
+	 * Reads a short field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public short getShort(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int index = getIndex(start, indexes, field);
+		if (types[field] == SHORT) {
+			return buffer.getShort(index);
+		}
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(index);
+		try {
+			return fields[field].readShort(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	/**
+	 * Reads a byte field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public byte getByte(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int index = getIndex(start, indexes, field);
+		if (types[field] == BYTE) {
+			return buffer.getByte(index);
+		}
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(index);
+		try {
+			return fields[field].readByte(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	/**
+	 * Reads an unsigned byte field.  The read pointer of the buffer is not moved.
+	 *
+	 * @param buffer the buffer
+	 * @param start the index of the start of the message
+	 * @param indexes the field offsets found by {@link #skip(ChannelBuffer, int[])}, or null if the field has a fixed offset
+	 * @param field the field index
+	 * @return the value
+	 */
+	public short getUnsignedByte(ChannelBuffer buffer, int start, int[] indexes, int field) {
+		int index = getIndex(start, indexes, field);
+		if (types[field] == BYTE) {
+			return buffer.getUnsignedByte(index);
+		}
+		int readerIndex = buffer.readerIndex();
+		buffer.readerIndex(index);
+		try {
+			return fields[field].readUnsignedByte(buffer);
+		} finally {
+			buffer.readerIndex(readerIndex);
+		}
+	}
+
+	private int getIndex(int start, int[] indexes, int field) {
+		if (anchors[field] < 0) {
+			return start + offsets[field];
+		} else if (indexes == null) {
+			throw new IllegalArgumentException("Field " + field + " follows a variable length field, so the field offsets are required");
+		}
+		return start + indexes[field];
+	}
+
+	/**
+	 * Writes all of the fields to the buffer
+	 *
+	 * @param buffer the buffer
+	 * @param values the values, one per field
+	 */
+	public void write(ChannelBuffer buffer, Object[] values) {
+		if (values.length != fields.length) {
+			throw new IllegalArgumentException("Number of elements in the value array does not match the number of fields");
+		}
+		for (int i = 0; i < fields.length; i++) {
+			fields[i].write(buffer, values[i]);
+		}
+	}
+
+	/**
+	 * Writes a long field to the buffer.  Fields must be written in order.
+	 *
+	 * @param buffer the buffer
+	 * @param field the field index
+	 * @param value the value
+	 */
+	public void writeLong(ChannelBuffer buffer, int field, long value) {
+		if (types[field] == LONG) {
+			buffer.writeLong(value);
+		} else {
+			fields[field].writeLong(buffer, value);
+		}
+	}
+
+	/**
+	 * Writes an int field to the buffer.  Fields must be written in order.
+	 *
+	 * @param buffer the buffer
+	 * @param field the field index
+	 * @param value the value
+	 */
+	public void writeInt(ChannelBuffer buffer, int field, int value) {
+		if (types[field] == INT) {
+			buffer.writeInt(value);
+		} else {
+			fields[field].writeInt(buffer, value);
+		}
+	}
+
+	/**
+	 * Writes a short field to the buffer.  Fields must be written in order.
+	 *
+	 * @param buffer the buffer
+	 * @param field the field index
+	 * @param value the value
+	 */
+	public void writeShort(ChannelBuffer buffer, int field, short value) {
+		if (types[field] == SHORT) {
+			buffer.writeShort(value);
+		} else {
+			fields[field].writeShort(buffer, value);
+		}
+	}
+
+	/**
+	 * Writes a byte field to the buffer.  Fields must be written in order.
+	 *
+	 * @param buffer the buffer
+	 * @param field the field index
+	 * @param value the value
+	 */
+	public void writeByte(ChannelBuffer buffer, int field, byte value) {
+		if (types[field] == BYTE) {
+			buffer.writeByte(value);
+		} else {
+			fields[field].writeByte(buffer, value);
+		}
+	}
+
+	/**
+	 * Writes an unsigned byte field to the buffer.  Fields must be written in order.
+	 *
+	 * @param buffer the buffer
+	 * @param field the field index
+	 * @param value the value
+	 */
+	public void writeUnsignedByte(ChannelBuffer buffer, int field, short value) {
+		if (types[field] == BYTE) {
+			buffer.writeByte(value);
+		} else {
+			fields[field].writeUnsignedByte(buffer, value);
+		}
+	}
+}
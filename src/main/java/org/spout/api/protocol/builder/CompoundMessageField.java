@@ -36,6 +36,7 @@ public class CompoundMessageField extends MessageFieldImpl {
 	private final MessageField[] fields;
 	private final MessageField[] fieldsCompressed;
 	private final int fixedLength;
+	private volatile CompiledMessageLayout layout;
 	
 	public CompoundMessageField(MessageField[] fields) {
 		this.fields = fields;
@@ -127,6 +128,24 @@ public class CompoundMessageField extends MessageFieldImpl {
 		return fields.length;
 	}
 	
+	public MessageField getSubField(int index) {
+		return fields[index];
+	}
+	
+	/**
+	 * Gets the compiled layout of the sub-fields.  The layout is compiled the first time this method is called.
+	 * 
+	 * @return the compiled layout
+	 */
+	public CompiledMessageLayout compile() {
+		CompiledMessageLayout layout = this.layout;
+		if (layout == null) {
+			layout = CompiledMessageLayout.compile(this);
+			this.layout = layout;
+		}
+		return layout;
+	}
+	
 	public static MessageField[] compressFields(MessageField[] fields) {
 		List<MessageField> compressedArray = new ArrayList<MessageField>();
 		int i = 0;
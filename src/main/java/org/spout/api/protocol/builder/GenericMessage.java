@@ -38,6 +38,10 @@ import org.spout.api.protocol.MessageCodec;
 public abstract class GenericMessage<T extends Message> extends MessageCodec<T> implements Message {
 	
 	protected ChannelBuffer buffer;
+	private CompiledMessageLayout layout;
+	private CompiledMessageLayout toClientLayout;
+	private CompiledMessageLayout toServerLayout;
+	private int[] fieldIndexes;
 
 	public GenericMessage(Class<T> clazz, int opcode) {
 		super(clazz, opcode);
@@ -67,56 +71,58 @@ public abstract class GenericMessage<T extends Message> extends MessageCodec<T>
 	
 	@SuppressWarnings({ "unchecked", "hiding" })
 	public <T> T get(FieldRef<T> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return (T) f.read(this.buffer);	
+		return (T) getLayout().read(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
 	public long getLong(FieldRef<Long> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return f.readLong(this.buffer);
+		return getLayout().getLong(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
 	public int getInt(FieldRef<Integer> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return f.readInt(this.buffer);
+		return getLayout().getInt(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
 	public short getShort(FieldRef<Integer> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return f.readShort(this.buffer);
+		return getLayout().getShort(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
 	public byte getByte(FieldRef<Byte> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return f.readByte(this.buffer);
+		return getLayout().getByte(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
 	public short getUnsignedByte(FieldRef<Short> ref) {
-		setupBuffer(ref);
-		
-		CompoundMessageField f = getFieldRoot();
-		
-		return f.readUnsignedByte(this.buffer);
+		return getLayout().getUnsignedByte(this.buffer, 0, getFieldIndexes(), ref.getIndex());
 	}
 	
-	private void setupBuffer(FieldRef<?> ref) {
-		int index = ref.getIndex();
-		this.buffer.readerIndex(getFieldLoopup()[index]);
+	private CompiledMessageLayout getLayout() {
+		if (layout != null) {
+			return layout;
+		}
+		// Not decoded, so this message was built locally to be sent the other way
+		return getLayout(Spout.getPlatform() != Platform.CLIENT);
+	}
+
+	/**
+	 * Gets the compiled layout for one direction, compiling the direction's field root on first use
+	 *
+	 * @param toClient true for messages sent to the client
+	 * @return the compiled layout
+	 */
+	private CompiledMessageLayout getLayout(boolean toClient) {
+		if (toClient) {
+			if (toClientLayout == null) {
+				toClientLayout = getToClientFieldRoot().compile();
+			}
+			return toClientLayout;
+		}
+		if (toServerLayout == null) {
+			toServerLayout = getToServerFieldRoot().compile();
+		}
+		return toServerLayout;
+	}
+	
+	private int[] getFieldIndexes() {
+		return fieldIndexes != null ? fieldIndexes : getFieldLoopup();
 	}
 	
 	@Override
@@ -127,13 +133,14 @@ public abstract class GenericMessage<T extends Message> extends MessageCodec<T>
 	@Override
 	@SuppressWarnings("unchecked")
 	public T decode(ChannelBuffer b) throws IOException {
-		CompoundMessageField root = Spout.getPlatform() == Platform.CLIENT ? getToClientFieldRoot() : getToServerFieldRoot();
+		CompiledMessageLayout layout = getLayout(Spout.getPlatform() == Platform.CLIENT);
 		int start = b.readerIndex();
-		int fieldCount = root.getSubFieldCount();
-		int[] indexArray = new int[fieldCount];
-		int length = root.skip(b, indexArray);
+		int[] indexArray = new int[layout.getFieldCount()];
+		int length = layout.skip(b, indexArray);
 		this.buffer = ChannelBuffers.buffer(length);
 		b.getBytes(start, this.buffer, 0, length);
+		this.layout = layout;
+		this.fieldIndexes = indexArray;
 		return (T) this;
 	}
 
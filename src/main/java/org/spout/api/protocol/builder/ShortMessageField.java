@@ -0,0 +1,57 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol.builder;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+public class ShortMessageField extends FixedMessageField {
+
+	public ShortMessageField() {
+		super(2);
+	}
+
+	@Override
+	public Object read(ChannelBuffer buffer) {
+		return buffer.readShort();
+	}
+
+	@Override
+	public short readShort(ChannelBuffer buffer) {
+		return buffer.readShort();
+	}
+
+	@Override
+	public void write(ChannelBuffer buffer, Object value) {
+		buffer.writeShort((Short) value);
+	}
+
+	@Override
+	public void writeShort(ChannelBuffer buffer, short value) {
+		buffer.writeShort(value);
+	}
+
+}
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.spout.api.util.list.ByteCircularBufferFIFO;
 
 /**
@@ -149,4 +150,45 @@ public class VarInt {
 		return data;
 	}
 
+	/**
+	 * Gets the number of bytes used to encode the integer at the given index, without changing the buffer's indexes
+	 * 
+	 * @param buf the buffer
+	 * @param index the index of the first byte of the integer
+	 * @return the number of bytes, or 0 if the buffer doesn't contain the whole integer
+	 */
+	public static int getEncodedLength(ChannelBuffer buf, int index) {
+		if (index >= buf.writerIndex()) {
+			return 0;
+		}
+		int b1 = buf.getUnsignedByte(index);
+		int length;
+		if (b1 == 255) {
+			length = 5;
+		} else if ((b1 & 0x80) == 0x80) {
+			length = 2;
+		} else {
+			length = 1;
+		}
+		return index + length <= buf.writerIndex() ? length : 0;
+	}
+
+	/**
+	 * Reads the integer at the given index, without changing the buffer's indexes.  The whole integer must be in the buffer.
+	 * 
+	 * @param buf the buffer
+	 * @param index the index of the first byte of the integer
+	 * @return the integer
+	 */
+	public static int getInt(ChannelBuffer buf, int index) {
+		int b1 = buf.getUnsignedByte(index);
+		if (b1 == 255) {
+			return buf.getInt(index + 1);
+		} else if ((b1 & 0x80) == 0x80) {
+			return ((b1 << 8) | buf.getUnsignedByte(index + 1)) & 0x7FFF;
+		} else {
+			return b1;
+		}
+	}
+
 }
@@ -31,6 +31,8 @@ import gnu.trove.set.hash.TIntHashSet;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.IntVector3;
 import org.spout.api.math.Vector3;
+import org.spout.api.util.IntVector3CuboidArray;
+import org.spout.api.util.map.concurrent.palette.PaletteSnapshot;
 
 /**
  * This store stores block data for each chunk. Each block can either store a
@@ -283,6 +285,41 @@ public interface AtomicBlockStore {
 	 */
 	public IntVector3 getMaxDirty();
 
+	/**
+	 * Gets if any block in the 4x4x4 sub-block containing the given block has been modified since the last reset.<br>
+	 * <br>
+	 * Unlike the dirty block arrays, the sub-block tracking does not overflow.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return true if the sub-block is dirty
+	 */
+	public boolean isSubBlockDirty(int x, int y, int z);
+	
+	/**
+	 * Copies the dirty sub-blocks, coalesced into cuboids, into the given arrays.<br>
+	 * <br>
+	 * Runs of dirty sub-blocks along the x axis are merged into a single cuboid, and cuboids with the same x range in adjacent 
+	 * rows are merged along the z axis.  The bottom corner of each cuboid is inclusive and the top corner is exclusive.
+	 * 
+	 * @param bx the array for the bottom x coordinates
+	 * @param by the array for the bottom y coordinates
+	 * @param bz the array for the bottom z coordinates
+	 * @param tx the array for the top x coordinates
+	 * @param ty the array for the top y coordinates
+	 * @param tz the array for the top z coordinates
+	 * @return the number of cuboids, or -1 if the arrays are too short
+	 */
+	public int getDirtyRanges(int[] bx, int[] by, int[] bz, int[] tx, int[] ty, int[] tz);
+	
+	/**
+	 * Gets the dirty sub-blocks, coalesced into cuboids, as an iterable over the blocks they contain.
+	 * 
+	 * @return the dirty regions
+	 */
+	public IntVector3CuboidArray getDirtyRegions();
+
 	/**
 	 * Gets the position of the dirty block at a given index.<br>
 	 * <br>
@@ -338,6 +375,29 @@ public interface AtomicBlockStore {
 	 */
 	public int[] getPalette();
 	
+	/**
+	 * Copies the full state of each block in the store into an array.<br>
+	 * <br>
+	 * If the store is updated while this snapshot is being taken, data tearing
+	 * could occur.<br>
+	 * <br>
+	 * If the array is the wrong length or null, a new array is created.
+	 *
+	 * @param array the array to place the data
+	 * @return the array
+	 */
+	public int[] getFullDataArray(int[] array);
+	
+	/**
+	 * Copies the palette, packed width and packed array into a snapshot, without unpacking each block.<br>
+	 * <br>
+	 * The palette and packed array are always taken from the same internal store.
+	 * 
+	 * @param snapshot the snapshot to copy into, a new snapshot is created if null
+	 * @return the snapshot
+	 */
+	public PaletteSnapshot getPaletteSnapshot(PaletteSnapshot snapshot);
+	
 
 	/**
 	 * Write locks the store
@@ -300,6 +300,29 @@ public class AtomicVariableWidthArray implements Serializable {
 		return packed;
 	}
 	
+	/**
+	 * Copies the packed version of this array into the given array.  Tearing may occur if the array is updated during this method call.
+	 * 
+	 * @param packed the array to copy into, which must be at least getPackedLength() long
+	 * @return the number of ints copied
+	 */
+	public int getPacked(int[] packed) {
+		int length = this.array.length();
+		for (int i = 0; i < length; i++) {
+			packed[i] = this.array.get(i);
+		}
+		return length;
+	}
+	
+	/**
+	 * Gets the length of the packed version of this array
+	 * 
+	 * @return the packed length
+	 */
+	public int getPackedLength() {
+		return this.array.length();
+	}
+	
 	/*
 	 * Remaining methods use the above methods
 	 */
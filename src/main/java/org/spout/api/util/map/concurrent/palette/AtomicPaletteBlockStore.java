@@ -29,15 +29,23 @@ package org.spout.api.util.map.concurrent.palette;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.block.BlockFullState;
 import org.spout.api.math.IntVector3;
 import org.spout.api.math.Vector3;
+import org.spout.api.util.IntVector3CuboidArray;
 import org.spout.api.util.map.concurrent.AtomicBlockStore;
 
 public class AtomicPaletteBlockStore implements AtomicBlockStore {
 	
+	/**
+	 * The log2 of the side length of the sub-blocks used for dirty tracking
+	 */
+	private static final int SUB_BLOCK_SHIFT = 2;
+	private static final ThreadLocal<int[]> FULL_DATA_BUFFER = new ThreadLocal<int[]>();
+	
 	private final int side;
 	private final int shift;
 	private final int doubleShift;
@@ -58,6 +66,12 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 	
 	private final AtomicInteger dirtyBlocks = new AtomicInteger(0);
 	
+	private final int subShift;
+	private final int subDoubleShift;
+	private final int subSide;
+	private final int cellShift;
+	private final AtomicLongArray dirtySubBlocks;
+	
 	public AtomicPaletteBlockStore(int shift, boolean storeState, boolean compress) {
 		this(shift, storeState, compress, 10);
 	}
@@ -76,6 +90,11 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		dirtyX = new byte[dirtySize];
 		dirtyY = new byte[dirtySize];
 		dirtyZ = new byte[dirtySize];
+		this.cellShift = Math.min(shift, SUB_BLOCK_SHIFT);
+		this.subShift = shift - cellShift;
+		this.subDoubleShift = subShift << 1;
+		this.subSide = 1 << subShift;
+		dirtySubBlocks = new AtomicLongArray(((1 << (subShift * 3)) + 63) >> 6);
 		if (storeState) {
 			oldState = new int[dirtySize];
 			newState = new int[dirtySize];
@@ -113,6 +132,11 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		store.set(palette, blockArrayWidth, variableWidthBlockArray);
 	}
 	
+	public AtomicPaletteBlockStore(int shift, boolean storeState, int dirtySize, PaletteSnapshot snapshot) {
+		this(shift, storeState, true, dirtySize);
+		store.set(snapshot);
+	}
+	
 	@Override
 	public int getFullData(int x, int y, int z) {
 		return getFullData(getIndex(x, y, z));
@@ -193,8 +217,9 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		if (array.length != length) {
 			array = new short[length];
 		}
+		int[] fullData = getFullDataBuffer();
 		for (int i = 0; i < length; i++) {
-			array[i] = BlockFullState.getId(store.get(i));
+			array[i] = BlockFullState.getId(fullData[i]);
 		}
 		return array;
 	}
@@ -209,8 +234,9 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		if (array.length != length) {
 			array = new short[length];
 		}
+		int[] fullData = getFullDataBuffer();
 		for (int i = 0; i < length; i++) {
-			array[i] = BlockFullState.getData(store.get(i));
+			array[i] = BlockFullState.getData(fullData[i]);
 		}
 		return array;
 	}
@@ -243,6 +269,9 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		maxX.set(Integer.MIN_VALUE);
 		maxY.set(Integer.MIN_VALUE);
 		maxZ.set(Integer.MIN_VALUE);
+		for (int i = 0; i < dirtySubBlocks.length(); i++) {
+			dirtySubBlocks.set(i, 0);
+		}
 		return dirtyBlocks.getAndSet(0) > 0;
 	}
 	
@@ -288,7 +317,97 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		return newState[i];
 	}
 
+	@Override
+	public boolean isSubBlockDirty(int x, int y, int z) {
+		int index = getSubBlockIndex(x >> cellShift, y >> cellShift, z >> cellShift);
+		return (dirtySubBlocks.get(index >> 6) & (1L << index)) != 0;
+	}
+	
+	@Override
+	public int getDirtyRanges(int[] bx, int[] by, int[] bz, int[] tx, int[] ty, int[] tz) {
+		int count = 0;
+		for (int sy = 0; sy < subSide; sy++) {
+			int layerStart = count;
+			for (int sz = 0; sz < subSide; sz++) {
+				int sx = 0;
+				while (sx < subSide) {
+					if (!isSubBlockDirtyRaw(sx, sy, sz)) {
+						sx++;
+						continue;
+					}
+					int start = sx;
+					while (sx < subSide && isSubBlockDirtyRaw(sx, sy, sz)) {
+						sx++;
+					}
+					int minX = start << cellShift;
+					int maxX = sx << cellShift;
+					int minZ = sz << cellShift;
+					int i;
+					// Runs which match a run in the previous row of the layer extend that range
+					for (i = layerStart; i < count; i++) {
+						if (bx[i] == minX && tx[i] == maxX && tz[i] == minZ) {
+							tz[i] = minZ + (1 << cellShift);
+							break;
+						}
+					}
+					if (i == count) {
+						if (count >= bx.length) {
+							return -1;
+						}
+						bx[count] = minX;
+						by[count] = sy << cellShift;
+						bz[count] = minZ;
+						tx[count] = maxX;
+						ty[count] = (sy + 1) << cellShift;
+						tz[count] = minZ + (1 << cellShift);
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+	
+	@Override
+	public IntVector3CuboidArray getDirtyRegions() {
+		int maxRanges = (1 << (subShift * 3)) >> 1;
+		if (maxRanges == 0) {
+			maxRanges = 1;
+		}
+		int[] bx = new int[maxRanges];
+		int[] by = new int[maxRanges];
+		int[] bz = new int[maxRanges];
+		int[] tx = new int[maxRanges];
+		int[] ty = new int[maxRanges];
+		int[] tz = new int[maxRanges];
+		int count = getDirtyRanges(bx, by, bz, tx, ty, tz);
+		return new IntVector3CuboidArray(bx, by, bz, tx, ty, tz, count);
+	}
+	
+	private boolean isSubBlockDirtyRaw(int sx, int sy, int sz) {
+		int index = getSubBlockIndex(sx, sy, sz);
+		return (dirtySubBlocks.get(index >> 6) & (1L << index)) != 0;
+	}
+	
+	private void markSubBlockDirty(int x, int y, int z) {
+		int index = getSubBlockIndex(x >> cellShift, y >> cellShift, z >> cellShift);
+		int word = index >> 6;
+		long bit = 1L << index;
+		long old;
+		while (((old = dirtySubBlocks.get(word)) & bit) == 0) {
+			if (dirtySubBlocks.compareAndSet(word, old, old | bit)) {
+				return;
+			}
+		}
+	}
+	
+	private final int getSubBlockIndex(int sx, int sy, int sz) {
+		return (sy << subDoubleShift) + (sz << subShift) + sx;
+	}
+
 	public void markDirty(int x, int y, int z, int oldState, int newState) {
+		markSubBlockDirty(x, y, z);
+		
 		setAsMax(maxX, x);
 		setAsMin(minX, x);
 		
@@ -343,6 +462,27 @@ public class AtomicPaletteBlockStore implements AtomicBlockStore {
 		return store.getPalette();
 	}
 
+	@Override
+	public int[] getFullDataArray(int[] array) {
+		return store.getArray(array);
+	}
+	
+	@Override
+	public PaletteSnapshot getPaletteSnapshot(PaletteSnapshot snapshot) {
+		return store.getSnapshot(snapshot);
+	}
+	
+	/**
+	 * Copies the full state of each block into a buffer which is reused by the calling thread
+	 * 
+	 * @return the buffer
+	 */
+	private int[] getFullDataBuffer() {
+		int[] buffer = store.getArray(FULL_DATA_BUFFER.get());
+		FULL_DATA_BUFFER.set(buffer);
+		return buffer;
+	}
+
 	@Override
 	public void writeLock() {
 		store.lock();
@@ -28,6 +28,7 @@ package org.spout.api.util.map.concurrent.palette;
 
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -210,6 +211,34 @@ public class AtomicShortIntArray {
 		}
 	}
 
+	/**
+	 * Sets the array equal to the contents of a snapshot.  The snapshot must be of an array of the same length as this array
+	 * 
+	 * @param snapshot the snapshot
+	 * @throws IllegalArgumentException if the snapshot is not of an array of this length, or has entries outside its palette
+	 */
+	public void set(PaletteSnapshot snapshot) {
+		snapshot.checkValid(length);
+		int paletteLength = snapshot.getPaletteLength();
+		int packedLength = snapshot.getPackedLength();
+		int[] packed = snapshot.getPacked();
+		if (packed.length != packedLength) {
+			packed = Arrays.copyOf(packed, packedLength);
+		}
+		resizeLock.lock();
+		try {
+			if (paletteLength == 0) {
+				store.set(new AtomicShortIntDirectBackingArray(length, packed));
+			} else if (paletteLength == 1) {
+				store.set(new AtomicShortIntUniformBackingArray(length, snapshot.getPalette()[0]));
+			} else {
+				store.set(new AtomicShortIntPaletteBackingArray(length, snapshot.getPalette(), paletteLength, snapshot.getWidth(), packed));
+			}
+		} finally {
+			resizeLock.unlock();
+		}
+	}
+
 	/**
 	 * Sets the element at the given index, but only if the previous value was the expected value.
 	 *
@@ -317,6 +346,39 @@ public class AtomicShortIntArray {
 		return store.get().getBackingArray();
 	}
 	
+	/**
+	 * Copies the values in the array into the given array, without looking up each entry individually.<br>
+	 * <br>
+	 * Data tearing may occur if the store is updated during this method call.
+	 * 
+	 * @param array the array to copy into, a new array is created if the array is null or the wrong length
+	 * @return the array
+	 */
+	public int[] getArray(int[] array) {
+		if (array == null || array.length != length) {
+			array = new int[length];
+		}
+		store.get().getArray(array);
+		return array;
+	}
+	
+	/**
+	 * Copies the palette, width and packed array used by the backing store into a snapshot.<br>
+	 * <br>
+	 * All values are copied from the same backing store, so the palette always matches the packed array.  Data tearing may occur 
+	 * if the store is updated during this method call.
+	 * 
+	 * @param snapshot the snapshot to copy into, a new snapshot is created if null
+	 * @return the snapshot
+	 */
+	public PaletteSnapshot getSnapshot(PaletteSnapshot snapshot) {
+		if (snapshot == null) {
+			snapshot = new PaletteSnapshot(length);
+		}
+		store.get().getSnapshot(snapshot);
+		return snapshot;
+	}
+	
 	private static int getUnique(int[] initial) {
 		TIntHashSet inUse = new TIntHashSet();
 		int unique = 0;
@@ -147,6 +147,20 @@ public abstract class AtomicShortIntBackingArray {
 	 */
 	public abstract int[] getBackingArray();
 	
+	/**
+	 * Copies the values in the array into the given array.  The given array must be at least length() long.
+	 * 
+	 * @param array the array to copy into
+	 */
+	public abstract void getArray(int[] array);
+	
+	/**
+	 * Copies the palette, width and packed array into the given snapshot.
+	 * 
+	 * @param snapshot the snapshot
+	 */
+	public abstract void getSnapshot(PaletteSnapshot snapshot);
+	
 	/**
 	 * 
 	 * @param previous
@@ -163,6 +177,13 @@ public abstract class AtomicShortIntBackingArray {
 		}
 	}
 	
+	protected static int toIntArray(AtomicIntegerArray array, int length, int[] packed) {
+		for (int i = 0; i < length; i++) {
+			packed[i] = array.get(i);
+		}
+		return length;
+	}
+	
 	protected static int[] toIntArray(AtomicIntegerArray array, int length) {
 		int[] packed = new int[length];
 		for (int i = 0; i < length; i++) {
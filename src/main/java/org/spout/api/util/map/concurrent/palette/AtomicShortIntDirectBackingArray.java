@@ -104,5 +104,17 @@ public class AtomicShortIntDirectBackingArray extends AtomicShortIntBackingArray
 	public int[] getBackingArray() {
 		return toIntArray(store);
 	}
+	
+	@Override
+	public void getArray(int[] array) {
+		toIntArray(store, length(), array);
+	}
+	
+	@Override
+	public void getSnapshot(PaletteSnapshot snapshot) {
+		int length = length();
+		toIntArray(store, length, snapshot.getPackedArray(length));
+		snapshot.setLengths(width, 0, length);
+	}
 
 }
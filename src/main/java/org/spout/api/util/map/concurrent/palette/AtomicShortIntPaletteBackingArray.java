@@ -121,6 +121,32 @@ public class AtomicShortIntPaletteBackingArray extends AtomicShortIntBackingArra
 			idLookup.putIfAbsent(palette[i], (short) i);
 		}
 	}
+	
+	/**
+	 * Creates a backing array from a palette and packed array.  Unlike the constructor which takes the palette only, the palette 
+	 * is sized to match the width, so entries can be added without resizing the store.
+	 * 
+	 * @param length the length of the array
+	 * @param palette the palette, only the first paletteLength entries are used
+	 * @param paletteLength the number of entries in the palette
+	 * @param width the width of each entry in the packed array
+	 * @param variableWidthBlockArray the packed array, which must be exactly the required length
+	 */
+	public AtomicShortIntPaletteBackingArray(int length, int[] palette, int paletteLength, int width, int[] variableWidthBlockArray) {
+		super(length);
+		this.width = width;
+		int allowedPalette = AtomicShortIntPaletteBackingArray.getAllowedPalette(length);
+		this.paletteSize = Math.max(paletteLength, Math.min(widthToPaletteSize(width), allowedPalette));
+		this.paletteCounter = new AtomicInteger(paletteLength);
+		this.maxPaletteSize = paletteSize >= allowedPalette;
+		this.palette = new AtomicIntegerArray(paletteSize);
+		store = new AtomicVariableWidthArray(length, width, variableWidthBlockArray);
+		idLookup = new AtomicIntShortSingleUseHashMap(paletteSize + (paletteSize >> 2));
+		for (int i = 0; i < paletteLength; i++) {
+			this.palette.set(i, palette[i]);
+			idLookup.putIfAbsent(palette[i], (short) i);
+		}
+	}
 
 	@Override
 	public int width() {
@@ -225,7 +251,33 @@ public class AtomicShortIntPaletteBackingArray extends AtomicShortIntBackingArra
 
 	@Override
 	public int[] getPalette() {
-		return toIntArray(palette, paletteCounter.get());
+		return toIntArray(palette, getPaletteLength());
+	}
+	
+	/**
+	 * Gets the number of valid palette entries.  The counter can exceed the palette size, if an attempt was made to add an entry to a full palette.
+	 * 
+	 * @return the number of entries
+	 */
+	private int getPaletteLength() {
+		return Math.min(paletteCounter.get(), paletteSize);
+	}
+	
+	@Override
+	public void getArray(int[] array) {
+		store.getArray(array);
+		int length = length();
+		for (int i = 0; i < length; i++) {
+			array[i] = palette.get(array[i]);
+		}
+	}
+	
+	@Override
+	public void getSnapshot(PaletteSnapshot snapshot) {
+		int paletteLength = getPaletteLength();
+		toIntArray(palette, paletteLength, snapshot.getPaletteArray(paletteLength));
+		int packedLength = store.getPacked(snapshot.getPackedArray(store.getPackedLength()));
+		snapshot.setLengths(width, paletteLength, packedLength);
 	}
 
 	@Override
@@ -26,6 +26,7 @@
  */
 package org.spout.api.util.map.concurrent.palette;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class AtomicShortIntUniformBackingArray extends AtomicShortIntBackingArray {
@@ -110,5 +111,16 @@ public class AtomicShortIntUniformBackingArray extends AtomicShortIntBackingArra
 	public int[] getBackingArray() {
 		return new int[] {};
 	}
+	
+	@Override
+	public void getArray(int[] array) {
+		Arrays.fill(array, 0, length(), store.get());
+	}
+	
+	@Override
+	public void getSnapshot(PaletteSnapshot snapshot) {
+		snapshot.getPaletteArray(1)[0] = store.get();
+		snapshot.setLengths(0, 1, 0);
+	}
 
 }
@@ -0,0 +1,314 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.map.concurrent.palette;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A reusable buffer which holds the compact form of an AtomicShortIntArray.<br>
+ * <br>
+ * The compact form is the palette, the width of each entry in the packed array and the packed array itself.  If the palette has a 
+ * length of zero, the packed array contains the values in flat format.  If the palette has a length of one, the array is uniform and 
+ * the packed array has a length of zero.<br>
+ * <br>
+ * The internal arrays are only reallocated if they are too small, so a snapshot can be reused for many arrays of the same length.<br>
+ * <br>
+ * The serialized form is the width as a byte, the palette length and packed length as ints, followed by the palette and the packed 
+ * array.  A uniform array is serialized as 13 bytes.  When reading, the lengths are limited by the length of the array the snapshot 
+ * was created for, or by the length of a chunk's block arrays if it was created empty.
+ */
+public class PaletteSnapshot {
+	/**
+	 * The maximum array length accepted when reading into an empty snapshot, the number of blocks in a chunk
+	 */
+	public static final int MAX_LENGTH = 4096;
+	private static final int MAX_WIDTH = 32;
+	private static final int[] EMPTY = new int[0];
+
+	private final int maxLength;
+	private int width;
+	private int[] palette;
+	private int paletteLength;
+	private int[] packed;
+	private int packedLength;
+
+	/**
+	 * Creates an empty snapshot
+	 */
+	public PaletteSnapshot() {
+		this.maxLength = MAX_LENGTH;
+		this.palette = EMPTY;
+		this.packed = EMPTY;
+	}
+
+	/**
+	 * Creates a snapshot with arrays which are large enough to hold any array of the given length without reallocation
+	 * 
+	 * @param length the length of the array which will be copied
+	 */
+	public PaletteSnapshot(int length) {
+		this.maxLength = length;
+		this.palette = new int[AtomicShortIntPaletteBackingArray.getAllowedPalette(length)];
+		this.packed = new int[length];
+	}
+
+	/**
+	 * Gets the width of each entry in the packed array, in bits
+	 * 
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the palette array.  Only the first getPaletteLength() entries are valid.
+	 * 
+	 * @return the palette
+	 */
+	public int[] getPalette() {
+		return palette;
+	}
+
+	/**
+	 * Gets the number of entries in the palette
+	 * 
+	 * @return the palette length
+	 */
+	public int getPaletteLength() {
+		return paletteLength;
+	}
+
+	/**
+	 * Gets the packed array.  Only the first getPackedLength() entries are valid.
+	 * 
+	 * @return the packed array
+	 */
+	public int[] getPacked() {
+		return packed;
+	}
+
+	/**
+	 * Gets the number of ints in the packed array
+	 * 
+	 * @return the packed length
+	 */
+	public int getPackedLength() {
+		return packedLength;
+	}
+
+	/**
+	 * Gets if the snapshot is of a uniform array
+	 * 
+	 * @return true if uniform
+	 */
+	public boolean isUniform() {
+		return paletteLength == 1;
+	}
+
+	/**
+	 * Writes the snapshot to a buffer.  The width and lengths are written first, followed by the palette and the packed array.
+	 * 
+	 * @param buffer the buffer
+	 */
+	public void writeTo(ChannelBuffer buffer) {
+		buffer.writeByte(width);
+		buffer.writeInt(paletteLength);
+		buffer.writeInt(packedLength);
+		for (int i = 0; i < paletteLength; i++) {
+			buffer.writeInt(palette[i]);
+		}
+		for (int i = 0; i < packedLength; i++) {
+			buffer.writeInt(packed[i]);
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a stream, using the same format as writeTo(ChannelBuffer)
+	 * 
+	 * @param out the stream
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeByte(width);
+		out.writeInt(paletteLength);
+		out.writeInt(packedLength);
+		for (int i = 0; i < paletteLength; i++) {
+			out.writeInt(palette[i]);
+		}
+		for (int i = 0; i < packedLength; i++) {
+			out.writeInt(packed[i]);
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a buffer, replacing the contents of this snapshot
+	 * 
+	 * @param buffer the buffer
+	 * @throws IllegalArgumentException if the lengths are invalid
+	 */
+	public void readFrom(ChannelBuffer buffer) {
+		int width = buffer.readUnsignedByte();
+		int paletteLength = buffer.readInt();
+		int packedLength = buffer.readInt();
+		checkLengths(width, paletteLength, packedLength, buffer.readableBytes());
+		int[] palette = getPaletteArray(paletteLength);
+		for (int i = 0; i < paletteLength; i++) {
+			palette[i] = buffer.readInt();
+		}
+		int[] packed = getPackedArray(packedLength);
+		for (int i = 0; i < packedLength; i++) {
+			packed[i] = buffer.readInt();
+		}
+		setLengths(width, paletteLength, packedLength);
+	}
+
+	/**
+	 * Reads a snapshot from a stream, replacing the contents of this snapshot
+	 * 
+	 * @param in the stream
+	 * @throws IOException if the stream could not be read or the lengths are invalid
+	 */
+	public void readFrom(DataInput in) throws IOException {
+		int width = in.readUnsignedByte();
+		int paletteLength = in.readInt();
+		int packedLength = in.readInt();
+		try {
+			checkLengths(width, paletteLength, packedLength, Integer.MAX_VALUE);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+		int[] palette = getPaletteArray(paletteLength);
+		for (int i = 0; i < paletteLength; i++) {
+			palette[i] = in.readInt();
+		}
+		int[] packed = getPackedArray(packedLength);
+		for (int i = 0; i < packedLength; i++) {
+			packed[i] = in.readInt();
+		}
+		setLengths(width, paletteLength, packedLength);
+	}
+
+	/**
+	 * Gets the number of bytes required to write the snapshot to a buffer
+	 * 
+	 * @return the number of bytes
+	 */
+	public int getSerializedSize() {
+		return 9 + ((paletteLength + packedLength) << 2);
+	}
+
+	/**
+	 * Gets the palette array, reallocating it if it is smaller than the given length
+	 * 
+	 * @param length the required length
+	 * @return the palette array
+	 */
+	int[] getPaletteArray(int length) {
+		if (palette.length < length) {
+			palette = new int[length];
+		}
+		return palette;
+	}
+
+	/**
+	 * Gets the packed array, reallocating it if it is smaller than the given length
+	 * 
+	 * @param length the required length
+	 * @return the packed array
+	 */
+	int[] getPackedArray(int length) {
+		if (packed.length < length) {
+			packed = new int[length];
+		}
+		return packed;
+	}
+
+	/**
+	 * Checks that the snapshot can be loaded into an array of the given length.  The packed length must match the length, the palette 
+	 * must fit in the width of the packed entries and every packed entry must be an index into the palette.
+	 * 
+	 * @param length the length of the array
+	 * @throws IllegalArgumentException if the snapshot does not describe an array of the given length
+	 */
+	public void checkValid(int length) {
+		if (paletteLength == 0) {
+			if (packedLength != length) {
+				throw new IllegalArgumentException("Flat snapshot has " + packedLength + " entries, expected " + length);
+			}
+			return;
+		} else if (paletteLength == 1) {
+			if (packedLength != 0) {
+				throw new IllegalArgumentException("Uniform snapshot has a packed length of " + packedLength);
+			}
+			return;
+		}
+		if (paletteLength > AtomicShortIntPaletteBackingArray.getAllowedPalette(length)) {
+			throw new IllegalArgumentException("Palette length " + paletteLength + " exceeds the maximum for an array of length " + length);
+		}
+		if (width < 1 || width >= MAX_WIDTH || Integer.bitCount(width) != 1 || AtomicShortIntPaletteBackingArray.widthToPaletteSize(width) < paletteLength) {
+			throw new IllegalArgumentException("Width " + width + " can not index a palette of length " + paletteLength);
+		}
+		if (((long) packedLength) * MAX_WIDTH != ((long) length) * width) {
+			throw new IllegalArgumentException("Packed length " + packedLength + " does not match an array of length " + length + " and width " + width);
+		}
+		int mask = (1 << width) - 1;
+		for (int i = 0; i < packedLength; i++) {
+			int entries = packed[i];
+			for (int shift = 0; shift < MAX_WIDTH; shift += width) {
+				if (((entries >>> shift) & mask) >= paletteLength) {
+					throw new IllegalArgumentException("Packed entry " + ((entries >>> shift) & mask) + " is outside the palette of length " + paletteLength);
+				}
+			}
+		}
+	}
+
+	private void checkLengths(int width, int paletteLength, int packedLength, int available) {
+		if (paletteLength < 0 || packedLength < 0) {
+			throw new IllegalArgumentException("Negative snapshot length, palette " + paletteLength + ", packed " + packedLength);
+		}
+		if (width > MAX_WIDTH) {
+			throw new IllegalArgumentException("Snapshot width " + width + " exceeds " + MAX_WIDTH);
+		}
+		if (packedLength > maxLength || paletteLength > Math.max(1, AtomicShortIntPaletteBackingArray.getAllowedPalette(maxLength))) {
+			throw new IllegalArgumentException("Snapshot length exceeds an array of length " + maxLength + ", palette " + paletteLength + ", packed " + packedLength);
+		}
+		if ((((long) paletteLength + packedLength) << 2) > available) {
+			throw new IllegalArgumentException("Snapshot length exceeds available data, palette " + paletteLength + ", packed " + packedLength);
+		}
+	}
+
+	void setLengths(int width, int paletteLength, int packedLength) {
+		this.width = width;
+		this.paletteLength = paletteLength;
+		this.packedLength = packedLength;
+	}
+}
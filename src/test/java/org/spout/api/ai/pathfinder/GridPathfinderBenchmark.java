@@ -0,0 +1,84 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import static org.junit.Assert.assertTrue;
+import static org.spout.api.ai.pathfinder.GridPathfinderTest.GOAL;
+import static org.spout.api.ai.pathfinder.GridPathfinderTest.HEIGHT;
+import static org.spout.api.ai.pathfinder.GridPathfinderTest.MAX_ITERATIONS;
+import static org.spout.api.ai.pathfinder.GridPathfinderTest.SIZE;
+import static org.spout.api.ai.pathfinder.GridPathfinderTest.START;
+
+import org.junit.Test;
+
+import org.spout.api.ai.AStarMachine;
+import org.spout.api.ai.GridAStarStorage;
+import org.spout.api.ai.pathfinder.GridPathfinderTest.GridBlockSource;
+
+/**
+ * Compares the A* machine with simple and grid storage against the primitive grid pathfinder.<br/>
+ * Only run by the benchmark profile.
+ */
+public class GridPathfinderBenchmark {
+	private static final int SEARCHES = 200;
+
+	@Test
+	public void benchmarkSearch() {
+		// Without dedupe, the simple storage can't get around walls in reasonable time
+		GridBlockSource source = new GridBlockSource(false);
+		GridPathfinder pathfinder = new GridPathfinder(source, source);
+		AStarMachine<VectorNode, Path> simple = AStarMachine.createWithDefaultStorage();
+		AStarMachine<VectorNode, Path> grid = AStarMachine.createWithStorage(GridAStarStorage.FACTORY);
+		VectorGoal goal = new VectorGoal(GOAL);
+
+		long simpleTime = 0, gridTime = 0, primitiveTime = 0;
+		int found = 0;
+		// The first pass warms up every path
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				found += simple.runFully(goal, new VectorNode(START, source, source), MAX_ITERATIONS) != null ? 1 : 0;
+			}
+			simpleTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				found += grid.runFully(goal, new VectorNode(START, source, source), MAX_ITERATIONS) != null ? 1 : 0;
+			}
+			gridTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				found += pathfinder.findPath(START, GOAL, MAX_ITERATIONS) != null ? 1 : 0;
+			}
+			primitiveTime = System.nanoTime() - start;
+		}
+		assertTrue(found > 0);
+
+		System.out.println("Path search on a " + SIZE + "x" + HEIGHT + "x" + SIZE + " grid: simple storage " + (simpleTime / SEARCHES / 1000) + "us, grid storage " + (gridTime / SEARCHES / 1000) + "us, primitive " + (primitiveTime / SEARCHES / 1000) + "us per search");
+	}
+}
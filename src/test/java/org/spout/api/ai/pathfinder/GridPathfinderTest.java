@@ -0,0 +1,228 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.spout.api.ai.AStarMachine;
+import org.spout.api.ai.GridAStarStorage;
+import org.spout.api.ai.pathfinder.PathPoint.PathCallback;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.material.Material;
+import org.spout.api.math.Vector3;
+
+public class GridPathfinderTest {
+	static final int SIZE = 48;
+	static final int HEIGHT = 4;
+	static final int MAX_ITERATIONS = 50000;
+	static final Vector3 START = new Vector3(2, 1, 2);
+	static final Vector3 GOAL = new Vector3(SIZE - 3, 1, SIZE - 3);
+
+	@Test
+	public void testFindsPathAroundWalls() {
+		GridBlockSource source = new GridBlockSource(true);
+		GridPathfinder pathfinder = new GridPathfinder(source, source);
+		List<Vector3> path = toList(pathfinder.findPath(START, GOAL, MAX_ITERATIONS));
+		checkPath(source, path);
+		// Reusing the thread's scratch state gives the same path
+		assertEquals(path, toList(pathfinder.findPath(START, GOAL, MAX_ITERATIONS)));
+	}
+
+	@Test
+	public void testMachineWithGridStorage() {
+		GridBlockSource source = new GridBlockSource(true);
+		AStarMachine<VectorNode, Path> machine = AStarMachine.createWithStorage(GridAStarStorage.FACTORY);
+		Path path = machine.runFully(new VectorGoal(GOAL), new VectorNode(START, source, source), MAX_ITERATIONS);
+		checkPath(source, toList(path));
+	}
+
+	@Test
+	public void testUnreachable() {
+		GridBlockSource source = new GridBlockSource(true);
+		// Close the gaps in the first wall
+		for (int z = 0; z < SIZE; z++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				source.solid[12][y][z] = true;
+			}
+		}
+		assertNull(new GridPathfinder(source, source).findPath(START, GOAL));
+	}
+
+	@Test
+	public void testCallbacks() {
+		GridBlockSource source = new GridBlockSource(false);
+		CallbackMarker marker = new CallbackMarker(10);
+		checkCallbacks(new GridPathfinder(source, source, marker).findPath(START, GOAL, MAX_ITERATIONS), marker);
+	}
+
+	@Test
+	public void testMachinePathCullsCallbacks() {
+		GridBlockSource source = new GridBlockSource(false);
+		List<VectorNode> nodes = new ArrayList<VectorNode>();
+		for (int x = 0; x < 3; x++) {
+			nodes.add(new VectorNode(new Vector3(x, 1, 0), source, source));
+		}
+		CallbackMarker marker = new CallbackMarker(1);
+		nodes.get(1).addCallback(marker);
+
+		// Paths built from A* machine nodes drop the nodes with callbacks, grid pathfinder paths keep them
+		assertEquals(2, toList(new Path(nodes)).size());
+		assertEquals(0, marker.runs);
+		checkCallbacks(new Path(nodes, true), marker);
+		assertEquals(1, marker.runs);
+	}
+
+	/**
+	 * Checks the callbacks of the marker run once for each node of the path on its plane
+	 */
+	static void checkCallbacks(Path path, CallbackMarker marker) {
+		assertNotNull(path);
+		Entity entity = mock(Entity.class);
+		when(entity.getWorld()).thenReturn(mock(World.class));
+		int expected = 0;
+		while (!path.isComplete()) {
+			if (path.getCurrentVector().getFloorX() == marker.x) {
+				expected++;
+			}
+			path.update(entity);
+		}
+		assertTrue(expected > 0);
+		assertEquals(expected, marker.runs);
+	}
+
+	private static void checkPath(GridBlockSource source, List<Vector3> path) {
+		assertTrue(path.size() > 1);
+		assertEquals(START, path.get(0));
+		assertTrue(path.get(path.size() - 1).distanceSquared(GOAL) <= 10);
+		Vector3 previous = null;
+		for (Vector3 point : path) {
+			assertTrue(source.isPassable(point.getFloorX(), point.getFloorY(), point.getFloorZ()));
+			if (previous != null) {
+				assertTrue(point.distanceSquared(previous) <= 3);
+			}
+			previous = point;
+		}
+	}
+
+	private static List<Vector3> toList(Path path) {
+		assertNotNull(path);
+		List<Vector3> points = new ArrayList<Vector3>();
+		while (!path.isComplete()) {
+			points.add(path.getCurrentVector());
+			path.update(null);
+		}
+		return points;
+	}
+
+	/**
+	 * A bounded grid, optionally with two walls which each have a gap at the opposite end
+	 */
+	/**
+	 * Adds itself as a callback to every block examined on the plane at x
+	 */
+	static class CallbackMarker implements BlockExaminer, PathCallback {
+		private final int x;
+		private int runs = 0;
+
+		CallbackMarker(int x) {
+			this.x = x;
+		}
+
+		@Override
+		public float getCost(BlockSource source, PathPoint point) {
+			return 0f;
+		}
+
+		@Override
+		public boolean isPassable(BlockSource source, PathPoint point) {
+			if (point.getVector().getFloorX() == x) {
+				point.addCallback(this);
+			}
+			return true;
+		}
+
+		@Override
+		public void run(Entity entity, Block block) {
+			runs++;
+		}
+	}
+
+	static class GridBlockSource extends AbstractBlockSource implements BlockExaminer {
+		private final boolean[][][] solid = new boolean[SIZE][HEIGHT][SIZE];
+
+		GridBlockSource(boolean walls) {
+			for (int i = 0; walls && i < SIZE - 6; i++) {
+				for (int y = 0; y < HEIGHT; y++) {
+					solid[12][y][i] = true;
+					solid[30][y][SIZE - 1 - i] = true;
+				}
+			}
+		}
+
+		private boolean isPassable(int x, int y, int z) {
+			return x >= 0 && x < SIZE && y >= 0 && y < HEIGHT && z >= 0 && z < SIZE && !solid[x][y][z];
+		}
+
+		@Override
+		public int getBlockTypeIdAt(int x, int y, int z) {
+			return isPassable(x, y, z) ? 0 : 1;
+		}
+
+		@Override
+		public int getBlockTypeIdAt(Vector3 pos) {
+			return getBlockTypeIdAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+		}
+
+		@Override
+		public Material getMaterialAt(Vector3 pos) {
+			return getMaterialAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+		}
+
+		@Override
+		public float getCost(BlockSource source, PathPoint point) {
+			return 0f;
+		}
+
+		@Override
+		public boolean isPassable(BlockSource source, PathPoint point) {
+			Vector3 vector = point.getVector();
+			return isPassable(vector.getFloorX(), vector.getFloorY(), vector.getFloorZ());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.spout.api.ai.pathfinder.HierarchicalPathfinderTest.GOAL;
+import static org.spout.api.ai.pathfinder.HierarchicalPathfinderTest.LENGTH;
+import static org.spout.api.ai.pathfinder.HierarchicalPathfinderTest.START;
+
+import org.junit.Test;
+
+import org.spout.api.ai.pathfinder.HierarchicalPathfinderTest.MazeBlockSource;
+
+/**
+ * Compares hierarchical searches, with and without cached graphs, against the block level grid search.<br/>
+ * Only run by the benchmark profile.
+ */
+public class HierarchicalPathfinderBenchmark {
+	private static final int SEARCHES = 50;
+
+	@Test
+	public void benchmarkSearch() {
+		MazeBlockSource source = new MazeBlockSource();
+		PortalGraphCache cache = new PortalGraphCache(source, source);
+		HierarchicalPathfinder hierarchical = new HierarchicalPathfinder(cache);
+		GridPathfinder flat = new GridPathfinder(source, source);
+
+		long cold = 0, warm = 0, grid = 0;
+		int found = 0;
+		// The first pass warms up every path
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				cache.clear();
+				found += hierarchical.findPath(START, GOAL) != null ? 1 : 0;
+			}
+			cold = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				found += hierarchical.findPath(START, GOAL) != null ? 1 : 0;
+			}
+			warm = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < SEARCHES; i++) {
+				found += flat.findPath(START, GOAL) != null ? 1 : 0;
+			}
+			grid = System.nanoTime() - start;
+		}
+		assertEquals(6 * SEARCHES, found);
+
+		System.out.println(LENGTH + " block maze: block level A* " + (grid / SEARCHES / 1000) + "us, hierarchical " + (cold / SEARCHES / 1000) + "us building graphs, " + (warm / SEARCHES / 1000) + "us with cached graphs per search");
+	}
+}
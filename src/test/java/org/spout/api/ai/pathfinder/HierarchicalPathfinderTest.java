@@ -0,0 +1,263 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.ai.pathfinder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.spout.api.ai.GridSearchState;
+import org.spout.api.ai.pathfinder.GridPathfinderTest.CallbackMarker;
+import org.spout.api.event.block.CuboidChangeEvent;
+import org.spout.api.event.chunk.ChunkUnloadEvent;
+import org.spout.api.event.chunk.ChunkUpdatedEvent;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.Material;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+
+public class HierarchicalPathfinderTest {
+	static final int LENGTH = 240;
+	static final int WIDTH = 48;
+	static final int WALL_SPACING = 40;
+	static final Vector3 START = new Vector3(2, 1, 2);
+	static final Vector3 GOAL = new Vector3(LENGTH - 10, 2, WIDTH - 3);
+
+	@Test
+	public void testFindsPathThroughMaze() {
+		MazeBlockSource source = new MazeBlockSource();
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(new PortalGraphCache(source, source));
+		List<Vector3> path = toList(pathfinder.findPath(START, GOAL));
+		checkPath(source, path);
+		// The path must wind through the gaps rather than run straight
+		assertTrue(path.size() > LENGTH);
+		assertTrue(pathfinder.getCache().size() > 0);
+		// Cached graphs give the same path
+		assertEquals(path, toList(pathfinder.findPath(START, GOAL)));
+	}
+
+	@Test
+	public void testShortPathInsideChunk() {
+		MazeBlockSource source = new MazeBlockSource();
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(new PortalGraphCache(source, source));
+		Vector3 goal = new Vector3(9, 2, 12);
+		List<Vector3> path = toList(pathfinder.findPath(START, goal));
+		assertEquals(goal, path.get(path.size() - 1));
+		// A straight diagonal line of 10 steps
+		assertEquals(11, path.size());
+		assertEquals(1, toList(pathfinder.findPath(START, START)).size());
+	}
+
+	@Test
+	public void testInvalidation() {
+		MazeBlockSource source = new MazeBlockSource();
+		PortalGraphCache cache = new PortalGraphCache(source, source);
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(cache);
+		assertNotNull(pathfinder.findPath(START, GOAL));
+
+		// Close the gap in the first wall
+		source.setGap(0, false);
+		cache.invalidate(WALL_SPACING, 0, 0, WALL_SPACING, 15, WIDTH - 1);
+		assertNull(pathfinder.findPath(START, GOAL));
+
+		source.setGap(0, true);
+		cache.invalidate(WALL_SPACING, 1, WIDTH - 1);
+		cache.invalidate(WALL_SPACING, 2, WIDTH - 1);
+		checkPath(source, toList(pathfinder.findPath(START, GOAL)));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCuboidChangeWorld() {
+		MazeBlockSource source = new MazeBlockSource();
+		World world = mock(World.class);
+		PortalGraphCache cache = new PortalGraphCache(world, source, source);
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(cache);
+		assertNotNull(pathfinder.findPath(START, GOAL));
+		int size = cache.size();
+
+		CuboidBlockMaterialBuffer buffer = new CuboidBlockMaterialBuffer(0, 0, 0, 4, 4, 4, new short[64], new short[64]);
+		cache.onCuboidChange(new CuboidChangeEvent(buffer, mock(World.class), null));
+		assertEquals(size, cache.size());
+		CuboidChangeEvent cancelled = new CuboidChangeEvent(buffer, world, null);
+		cancelled.setCancelled(true);
+		cache.onCuboidChange(cancelled);
+		assertEquals(size, cache.size());
+		cache.onCuboidChange(new CuboidChangeEvent(buffer, world, null));
+		assertTrue(cache.size() < size);
+	}
+
+	@Test
+	public void testInvalidatedAfterChange() {
+		MazeBlockSource source = new MazeBlockSource();
+		World world = mock(World.class);
+		PortalGraphCache cache = new PortalGraphCache(world, source, source);
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(cache);
+		assertNotNull(pathfinder.findPath(START, GOAL));
+
+		// A search between the change event and the change rebuilds the graphs from the old blocks
+		CuboidBlockMaterialBuffer wall = new CuboidBlockMaterialBuffer(WALL_SPACING, 0, 0, 1, 16, WIDTH, new short[16 * WIDTH], new short[16 * WIDTH]);
+		cache.onCuboidChange(new CuboidChangeEvent(wall, world, null));
+		assertNotNull(pathfinder.findPath(START, GOAL));
+		source.setGap(0, false);
+
+		// The gap is in chunk (2, 0, 2)
+		Chunk chunk = mock(Chunk.class);
+		when(chunk.getWorld()).thenReturn(world);
+		when(chunk.getBlockX()).thenReturn(32);
+		when(chunk.getBlockY()).thenReturn(0);
+		when(chunk.getBlockZ()).thenReturn(32);
+		cache.onChunkUpdated(new ChunkUpdatedEvent(chunk, Arrays.asList(new Vector3(WALL_SPACING - 32, 1, WIDTH - 33), new Vector3(WALL_SPACING - 32, 2, WIDTH - 33))));
+		assertNull(pathfinder.findPath(START, GOAL));
+
+		source.setGap(0, true);
+		cache.onChunkUpdated(new ChunkUpdatedEvent(chunk, null));
+		checkPath(source, toList(pathfinder.findPath(START, GOAL)));
+	}
+
+	@Test
+	public void testEviction() {
+		MazeBlockSource source = new MazeBlockSource();
+		PortalGraphCache cache = new PortalGraphCache(null, source, 4, source);
+		checkPath(source, toList(new HierarchicalPathfinder(cache).findPath(START, GOAL)));
+		assertTrue(cache.size() <= 4);
+
+		Chunk chunk = mock(Chunk.class);
+		when(chunk.getX()).thenReturn(0);
+		when(chunk.getY()).thenReturn(0);
+		when(chunk.getZ()).thenReturn(0);
+		cache.get(0, 0, 0, new ScratchPathPoint(), new GridSearchState());
+		int size = cache.size();
+		cache.onChunkUnload(new ChunkUnloadEvent(chunk));
+		assertEquals(size - 1, cache.size());
+	}
+
+	@Test
+	public void testBlockedGoal() {
+		MazeBlockSource source = new MazeBlockSource();
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(new PortalGraphCache(source, source));
+		assertNull(pathfinder.findPath(START, new Vector3(WALL_SPACING, 1, 0)));
+	}
+
+	@Test
+	public void testCallbacks() {
+		MazeBlockSource source = new MazeBlockSource();
+		CallbackMarker marker = new CallbackMarker(10);
+		HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(new PortalGraphCache(source, source, marker));
+		GridPathfinderTest.checkCallbacks(pathfinder.findPath(START, GOAL), marker);
+	}
+
+	private static void checkPath(MazeBlockSource source, List<Vector3> path) {
+		assertEquals(START, path.get(0));
+		assertEquals(GOAL, path.get(path.size() - 1));
+		Vector3 previous = null;
+		for (Vector3 point : path) {
+			assertTrue(source.isPassable(point.getFloorX(), point.getFloorY(), point.getFloorZ()));
+			if (previous != null) {
+				assertTrue(point.distanceSquared(previous) <= 3);
+			}
+			previous = point;
+		}
+	}
+
+	private static List<Vector3> toList(Path path) {
+		assertNotNull(path);
+		List<Vector3> points = new ArrayList<Vector3>();
+		while (!path.isComplete()) {
+			points.add(path.getCurrentVector());
+			path.update(null);
+		}
+		return points;
+	}
+
+	/**
+	 * A corridor two blocks high, crossed by walls which each have a gap at alternating sides
+	 */
+	static class MazeBlockSource extends AbstractBlockSource implements BlockExaminer {
+		private final boolean[] gaps = new boolean[LENGTH / WALL_SPACING];
+
+		MazeBlockSource() {
+			for (int i = 0; i < gaps.length; i++) {
+				gaps[i] = true;
+			}
+		}
+
+		private void setGap(int wall, boolean open) {
+			gaps[wall] = open;
+		}
+
+		private boolean isPassable(int x, int y, int z) {
+			if (x < 0 || x >= LENGTH || y < 1 || y > 2 || z < 0 || z >= WIDTH) {
+				return false;
+			}
+			if (x > 0 && x % WALL_SPACING == 0) {
+				int wall = x / WALL_SPACING - 1;
+				int gap = wall % 2 == 0 ? WIDTH - 1 : 0;
+				return gaps[wall] && z == gap;
+			}
+			return true;
+		}
+
+		@Override
+		public int getBlockTypeIdAt(int x, int y, int z) {
+			return isPassable(x, y, z) ? 0 : 1;
+		}
+
+		@Override
+		public int getBlockTypeIdAt(Vector3 pos) {
+			return getBlockTypeIdAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+		}
+
+		@Override
+		public Material getMaterialAt(Vector3 pos) {
+			return getMaterialAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+		}
+
+		@Override
+		public float getCost(BlockSource source, PathPoint point) {
+			return 0f;
+		}
+
+		@Override
+		public boolean isPassable(BlockSource source, PathPoint point) {
+			Vector3 vector = point.getVector();
+			return isPassable(vector.getFloorX(), vector.getFloorY(), vector.getFloorZ());
+		}
+	}
+}
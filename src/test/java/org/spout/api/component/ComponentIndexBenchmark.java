@@ -0,0 +1,125 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.spout.api.component.ComponentIndexTest.BaseComponent;
+import org.spout.api.component.ComponentIndexTest.ComponentA;
+import org.spout.api.component.ComponentIndexTest.ComponentB;
+import org.spout.api.component.ComponentIndexTest.ComponentC;
+import org.spout.api.component.ComponentIndexTest.ComponentD;
+import org.spout.api.component.ComponentIndexTest.ComponentE;
+import org.spout.api.component.ComponentIndexTest.ComponentF;
+import org.spout.api.component.ComponentIndexTest.ComponentG;
+import org.spout.api.component.ComponentIndexTest.ComponentH;
+import org.spout.api.component.ComponentIndexTest.Marker;
+
+/**
+ * Compares indexed component lookups with the locked scan they replaced.<br/>
+ * Only run by the benchmark profile.
+ */
+public class ComponentIndexBenchmark {
+	private static final int OWNER_COUNT = 10000;
+	private static final int PASSES = 20;
+
+	@Test
+	public void benchmarkLookups() {
+		List<BaseComponentOwner> owners = new ArrayList<BaseComponentOwner>(OWNER_COUNT);
+		for (int i = 0; i < OWNER_COUNT; i++) {
+			BaseComponentOwner owner = new BaseComponentOwner();
+			owner.add(ComponentA.class);
+			owner.add(ComponentB.class);
+			owner.add(ComponentC.class);
+			owner.add(ComponentD.class);
+			owner.add(ComponentE.class);
+			owner.add(ComponentF.class);
+			owner.add(ComponentG.class);
+			owner.add(ComponentH.class);
+			owners.add(owner);
+		}
+
+		long scan = 0, indexed = 0;
+		int found = 0;
+		// The first pass warms up both paths
+		for (int pass = 0; pass <= PASSES; pass++) {
+			long start = System.nanoTime();
+			for (BaseComponentOwner owner : owners) {
+				found += scanFirst(owner, Marker.class) != null ? 1 : 0;
+				found += scanAll(owner, BaseComponent.class).size();
+			}
+			if (pass > 0) {
+				scan += System.nanoTime() - start;
+			}
+
+			start = System.nanoTime();
+			for (BaseComponentOwner owner : owners) {
+				found -= owner.getType(Marker.class) != null ? 1 : 0;
+				found -= owner.getAll(BaseComponent.class).size();
+			}
+			if (pass > 0) {
+				indexed += System.nanoTime() - start;
+			}
+		}
+		assertEquals(0, found);
+
+		long lookups = (long) OWNER_COUNT * PASSES;
+		System.out.println("Locked scan: " + (scan / lookups) + "ns, indexed: " + (indexed / lookups) + "ns per owner (supertype + interface lookup)");
+	}
+
+	/**
+	 * The lookup as it was done before the index, a locked scan over the component map
+	 */
+	private static <T> T scanFirst(BaseComponentOwner owner, Class<T> type) {
+		synchronized (owner.components) {
+			for (Component component : new ArrayList<Component>(owner.components.values())) {
+				if (type.isAssignableFrom(component.getClass())) {
+					return type.cast(component);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static <T> Collection<T> scanAll(BaseComponentOwner owner, Class<T> type) {
+		synchronized (owner.components) {
+			ArrayList<T> matches = new ArrayList<T>();
+			for (Component component : owner.components.values()) {
+				if (type.isAssignableFrom(component.getClass())) {
+					matches.add(type.cast(component));
+				}
+			}
+			return matches;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+public class ComponentIndexTest {
+	@Test
+	public void testLookups() {
+		BaseComponentOwner owner = new BaseComponentOwner();
+		ComponentA a = owner.add(ComponentA.class);
+		ComponentB b = owner.add(ComponentB.class);
+		ComponentC c = owner.add(ComponentC.class);
+
+		assertSame(a, owner.getExact(ComponentA.class));
+		assertNull(owner.getExact(BaseComponent.class));
+		assertSame(c, owner.get(ComponentC.class));
+		assertSame(b, owner.getType(Marker.class));
+		assertEquals(3, owner.values().size());
+
+		Collection<BaseComponent> base = owner.getAll(BaseComponent.class);
+		assertEquals(2, base.size());
+		assertTrue(base.contains(a) && base.contains(b));
+		// Repeated lookups are served from the cached view
+		assertSame(base, owner.getAll(BaseComponent.class));
+		assertSame(base, owner.getAllOfType(BaseComponent.class));
+
+		// Snapshots taken before a change are unaffected by it
+		Collection<Component> before = owner.values();
+		owner.detach(ComponentB.class);
+		assertEquals(3, before.size());
+		assertEquals(2, owner.values().size());
+		assertNull(owner.getType(Marker.class));
+		assertEquals(1, owner.getAll(BaseComponent.class).size());
+
+		ComponentB b2 = owner.add(ComponentB.class);
+		assertSame(b2, owner.get(ComponentB.class));
+		assertSame(b2, owner.getType(Marker.class));
+		assertEquals(2, owner.getAll(BaseComponent.class).size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutableViews() {
+		BaseComponentOwner owner = new BaseComponentOwner();
+		owner.add(ComponentA.class);
+		owner.values().clear();
+	}
+
+	public static interface Marker {
+	}
+
+	public static abstract class BaseComponent extends Component {
+	}
+
+	public static class ComponentA extends BaseComponent {
+	}
+
+	public static class ComponentB extends BaseComponent implements Marker {
+	}
+
+	public static class ComponentC extends Component {
+	}
+
+	public static class ComponentD extends Component {
+	}
+
+	public static class ComponentE extends Component {
+	}
+
+	public static class ComponentF extends Component {
+	}
+
+	public static class ComponentG extends Component {
+	}
+
+	public static class ComponentH extends Component {
+	}
+}
@@ -66,6 +66,7 @@ import org.spout.api.geo.cuboid.Region;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.geo.discrete.Transform;
 import org.spout.api.geo.discrete.Transform2D;
+import org.spout.api.geo.spatial.EntitySpatialIndex;
 import org.spout.api.gui.FocusReason;
 import org.spout.api.gui.Screen;
 import org.spout.api.gui.Widget;
@@ -510,6 +511,11 @@ public final class ComponentTest {
 			return null;
 		}
 
+		@Override
+		public EntitySpatialIndex getSpatialIndex() {
+			return null;
+		}
+
 		@Override
 		public List<Entity> getNearbyEntities(Point position, Entity ignore, int range) {
 			return null;
@@ -0,0 +1,95 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.spout.api.component.store.ComponentStoreTest.DT;
+import static org.spout.api.component.store.ComponentStoreTest.EPSILON;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.spout.api.component.BaseComponentOwner;
+import org.spout.api.component.Component;
+import org.spout.api.component.store.ComponentStoreTest.MobStore;
+import org.spout.api.component.store.ComponentStoreTest.ObjectMob;
+import org.spout.api.component.store.ComponentStoreTest.StoredMob;
+
+/**
+ * Compares ticking mobs one component at a time with ticking their store in one batch.<br/>
+ * Only run by the benchmark profile.
+ */
+public class ComponentStoreBenchmark {
+	private static final int MOB_COUNT = 50000;
+	private static final int TICKS = 50;
+	private MobStore store;
+
+	@Before
+	public void registerStore() {
+		store = ComponentStoreRegistry.register(StoredMob.class, new MobStore(MOB_COUNT));
+	}
+
+	@After
+	public void unregisterStore() {
+		ComponentStoreRegistry.unregister(StoredMob.class);
+	}
+
+	@Test
+	public void benchmarkTick() {
+		List<Component> objects = new ArrayList<Component>(MOB_COUNT);
+		for (int i = 0; i < MOB_COUNT; i++) {
+			BaseComponentOwner owner = new BaseComponentOwner();
+			owner.add(StoredMob.class);
+			objects.add(owner.add(ObjectMob.class));
+		}
+
+		long perObject = 0, batched = 0;
+		// The first ticks warm up both paths
+		for (int tick = -TICKS; tick < TICKS; tick++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < MOB_COUNT; i++) {
+				objects.get(i).tick(DT);
+			}
+			if (tick >= 0) {
+				perObject += System.nanoTime() - start;
+			}
+
+			start = System.nanoTime();
+			store.tickAll(DT);
+			if (tick >= 0) {
+				batched += System.nanoTime() - start;
+			}
+		}
+		assertEquals(((ObjectMob) objects.get(0)).y, store.get(0).getY(), EPSILON);
+
+		System.out.println("Ticking " + MOB_COUNT + " mobs: per component " + (perObject / TICKS / 1000) + "us, batched " + (batched / TICKS / 1000) + "us per tick");
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.component.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.spout.api.component.BaseComponentOwner;
+import org.spout.api.component.Component;
+
+public class ComponentStoreTest {
+	static final float DT = 0.05f;
+	static final float GRAVITY = 9.81f;
+	static final float EPSILON = 0.0001f;
+	private MobStore store;
+
+	@Before
+	public void registerStore() {
+		store = ComponentStoreRegistry.register(StoredMob.class, new MobStore(2));
+	}
+
+	@After
+	public void unregisterStore() {
+		ComponentStoreRegistry.unregister(StoredMob.class);
+	}
+
+	@Test
+	public void testAllocateAndRelease() {
+		List<BaseComponentOwner> owners = new ArrayList<BaseComponentOwner>();
+		for (int i = 0; i < 5; i++) {
+			BaseComponentOwner owner = new BaseComponentOwner();
+			owner.add(StoredMob.class).setY(i);
+			owners.add(owner);
+		}
+		assertEquals(5, store.size());
+		assertTrue(store.getCapacity() >= 5);
+
+		// Releasing from the middle moves the last mob into the gap
+		StoredMob released = owners.get(1).get(StoredMob.class);
+		owners.get(1).detach(StoredMob.class);
+		assertEquals(-1, released.getStoreIndex());
+		assertEquals(4, store.size());
+		StoredMob last = owners.get(4).get(StoredMob.class);
+		assertEquals(1, last.getStoreIndex());
+		assertSame(last, store.get(1));
+		for (int i = 0; i < 5; i++) {
+			if (i != 1) {
+				assertEquals(i, owners.get(i).get(StoredMob.class).getY(), EPSILON);
+			}
+		}
+
+		owners.get(4).detach(StoredMob.class);
+		assertEquals(3, store.size());
+		assertEquals(3, owners.get(3).get(StoredMob.class).getY(), EPSILON);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleaseUnallocated() {
+		store.release(new StoredMob());
+	}
+
+	@Test
+	public void testTickMatchesComponentTick() {
+		BaseComponentOwner owner = new BaseComponentOwner();
+		StoredMob stored = owner.add(StoredMob.class);
+		ObjectMob object = owner.add(ObjectMob.class);
+		stored.setVelocityY(5f);
+		object.vy = 5f;
+		for (int i = 0; i < 20; i++) {
+			store.tickAll(DT);
+			object.tick(DT);
+			// Stored components are skipped by the per-owner tick
+			stored.tick(DT);
+		}
+		assertEquals(object.y, stored.getY(), EPSILON);
+		assertEquals(object.vy, stored.getVelocityY(), EPSILON);
+	}
+
+	@Test
+	public void testChangesDuringTickAreQueued() {
+		final List<BaseComponentOwner> owners = new ArrayList<BaseComponentOwner>();
+		final BaseComponentOwner added = new BaseComponentOwner();
+		ComponentStoreRegistry.unregister(StoredMob.class);
+		store = ComponentStoreRegistry.register(StoredMob.class, new MobStore(2) {
+			@Override
+			protected void tick(float dt, int start, int end) {
+				StoredMob first = get(0);
+				owners.get(0).detach(StoredMob.class);
+				added.add(StoredMob.class);
+				// Neither change is applied until the tick completes
+				assertEquals(3, size());
+				assertEquals(0, first.getStoreIndex());
+				assertEquals(-1, added.get(StoredMob.class).getStoreIndex());
+				super.tick(dt, start, end);
+			}
+		});
+		for (int i = 0; i < 3; i++) {
+			BaseComponentOwner owner = new BaseComponentOwner();
+			owner.add(StoredMob.class);
+			owners.add(owner);
+		}
+		StoredMob released = owners.get(0).get(StoredMob.class);
+
+		store.tickAll(DT);
+		assertEquals(3, store.size());
+		assertEquals(-1, released.getStoreIndex());
+		assertSame(added.get(StoredMob.class), store.get(2));
+	}
+
+	@Test
+	public void testRegistry() {
+		assertSame(store, ComponentStoreRegistry.register(StoredMob.class, new MobStore(4)));
+		assertSame(store, ComponentStoreRegistry.get(StoredMob.class));
+		assertTrue(ComponentStoreRegistry.getAll().contains(store));
+	}
+
+	static class MobStore extends ComponentStore<StoredMob> {
+		private float[] y;
+		private float[] vy;
+
+		public MobStore(int initialCapacity) {
+			super(initialCapacity);
+			y = new float[getCapacity()];
+			vy = new float[getCapacity()];
+		}
+
+		@Override
+		protected void tick(float dt, int start, int end) {
+			float[] y = this.y;
+			float[] vy = this.vy;
+			for (int i = start; i < end; i++) {
+				float v = vy[i] - GRAVITY * dt;
+				vy[i] = v;
+				y[i] += v * dt;
+			}
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			y = Arrays.copyOf(y, capacity);
+			vy = Arrays.copyOf(vy, capacity);
+		}
+
+		@Override
+		protected void move(int from, int to) {
+			y[to] = y[from];
+			vy[to] = vy[from];
+		}
+
+		@Override
+		protected void reset(int index) {
+			y[index] = 0f;
+			vy[index] = 0f;
+		}
+	}
+
+	public static class StoredMob extends Component implements StoredComponent {
+		private MobStore store;
+		private int index = -1;
+
+		@Override
+		public void onAttached() {
+			store = (MobStore) ComponentStoreRegistry.get(StoredMob.class);
+			store.allocate(this);
+		}
+
+		@Override
+		public void onDetached() {
+			store.release(this);
+		}
+
+		@Override
+		public boolean canTick() {
+			return false;
+		}
+
+		@Override
+		public int getStoreIndex() {
+			return index;
+		}
+
+		@Override
+		public void setStoreIndex(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void onTick(float dt) {
+			throw new IllegalStateException("Stored mobs are ticked by their store");
+		}
+
+		public float getY() {
+			return store.y[index];
+		}
+
+		public void setY(float y) {
+			store.y[index] = y;
+		}
+
+		public float getVelocityY() {
+			return store.vy[index];
+		}
+
+		public void setVelocityY(float vy) {
+			store.vy[index] = vy;
+		}
+	}
+
+	public static class ObjectMob extends Component {
+		float y;
+		float vy;
+
+		@Override
+		public void onTick(float dt) {
+			vy -= GRAVITY * dt;
+			y += vy * dt;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Compares the tagged binary map format with Java serialization.<br/>
+ * Only run by the benchmark profile.
+ */
+public class MapSerializerBenchmark {
+	private static final int COUNT = 20000;
+
+	@Test
+	public void benchmarkRoundTrip() throws IOException {
+		SerializableHashMap map = MapSerializerTest.createMap();
+		byte[] data = map.serialize();
+		byte[] legacy = MapSerializerTest.serializeLegacy(map);
+
+		long binaryTime = 0;
+		long legacyTime = 0;
+		// The first pass warms up both paths
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				new SerializableHashMap().deserialize(map.serialize());
+			}
+			binaryTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				new SerializableHashMap().deserialize(MapSerializerTest.serializeLegacy(map));
+			}
+			legacyTime = System.nanoTime() - start;
+		}
+
+		System.out.println("Binary: " + data.length + " bytes, " + (binaryTime / COUNT) + "ns per map");
+		System.out.println("Java serialization: " + legacy.length + " bytes, " + (legacyTime / COUNT) + "ns per map");
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import org.spout.api.datatable.delta.DeltaMap;
+import org.spout.api.math.Vector3;
+
+public class MapSerializerTest {
+	@Test
+	public void testRoundTrip() throws IOException {
+		SerializableHashMap map = createMap();
+		SerializableHashMap copy = new SerializableHashMap();
+		copy.deserialize(map.serialize());
+
+		assertEquals(map.size(), copy.size());
+		for (Map.Entry<String, Serializable> e : map.entrySet()) {
+			Serializable value = copy.get(e.getKey());
+			if (value instanceof int[]) {
+				assertArrayEquals((int[]) e.getValue(), (int[]) value);
+			} else if (value instanceof byte[]) {
+				assertArrayEquals((byte[]) e.getValue(), (byte[]) value);
+			} else {
+				assertEquals(e.getKey(), e.getValue(), value);
+			}
+		}
+		assertEquals(SerializableHashMap.class, copy.get("nested").getClass());
+	}
+
+	@Test
+	public void testDeltaMap() throws IOException {
+		DeltaMap delta = new DeltaMap(DeltaMap.DeltaType.SET);
+		delta.put("set", 5);
+		delta.put("removed", null);
+		DeltaMap inner = new DeltaMap(DeltaMap.DeltaType.REPLACE);
+		inner.put("x", "y");
+		delta.put("inner", inner);
+
+		Map<String, Serializable> read = MapSerializer.deserialize(delta.serialize());
+		assertEquals(5, read.get("set"));
+		assertEquals(SerializableHashMap.NILTYPE, read.get("removed"));
+		DeltaMap readInner = (DeltaMap) read.get("inner");
+		assertEquals(DeltaMap.DeltaType.REPLACE, readInner.getType());
+
+		SerializableHashMap target = new SerializableHashMap();
+		target.put("removed", "old");
+		target.deserialize(delta.serialize(), false);
+		assertFalse(target.containsKey("removed"));
+		assertEquals(5, target.get("set"));
+	}
+
+	@Test
+	public void testLegacyFormat() throws IOException {
+		SerializableHashMap map = createMap();
+		byte[] legacy = serializeLegacy(map);
+
+		SerializableHashMap copy = new SerializableHashMap();
+		copy.deserialize(legacy);
+		assertEquals(map.size(), copy.size());
+		assertEquals(map.get("uuid"), copy.get("uuid"));
+		assertEquals(map.get("nested"), copy.get("nested"));
+	}
+
+	@Test
+	public void testCustomCodec() throws IOException {
+		MapSerializer.register(200, Counter.class, new MapValueCodec<Counter>() {
+			@Override
+			public void write(DataOutputStream out, Counter value) throws IOException {
+				out.writeInt(value.count);
+			}
+
+			@Override
+			public Counter read(DataInputStream in) throws IOException {
+				return new Counter(in.readInt());
+			}
+		});
+		SerializableHashMap map = new SerializableHashMap();
+		map.put("counter", new Counter(17));
+		byte[] data = map.serialize();
+		// Magic, version, entry flag, key length, key, tag, count, end flag
+		assertEquals(2 + 1 + 1 + 1 + 7 + 1 + 4 + 1, data.length);
+
+		SerializableHashMap copy = new SerializableHashMap();
+		copy.deserialize(data);
+		assertEquals(17, ((Counter) copy.get("counter")).count);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReservedId() {
+		MapSerializer.register(10, Counter.class, null);
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownFormat() throws IOException {
+		new SerializableHashMap().deserialize(new byte[] {1, 2, 3});
+	}
+
+	@Test
+	public void testSmallerThanLegacy() throws IOException {
+		SerializableHashMap map = createMap();
+		assertTrue(map.serialize().length < serializeLegacy(map).length);
+	}
+
+	static SerializableHashMap createMap() {
+		SerializableHashMap map = new SerializableHashMap();
+		map.put("health", 20);
+		map.put("hunger", 17.5F);
+		map.put("experience", 123456789L);
+		map.put("sprinting", true);
+		map.put("level", (byte) 3);
+		map.put("armor", (short) 300);
+		map.put("speed", 0.25D);
+		map.put("letter", 'q');
+		map.put("name", "Spouty McSpoutface");
+		map.put("uuid", UUID.randomUUID());
+		map.put("spawn", new Vector3(12.5F, 64F, -300.25F));
+		map.put("inventory", new int[] {1, 2, 3, 4, 5});
+		map.put("raw", new byte[] {9, 8, 7});
+		map.put("friends", new ArrayList<String>(Arrays.asList("a", "b")));
+		SerializableHashMap nested = new SerializableHashMap();
+		nested.put("kills", 4);
+		nested.put("deaths", 2);
+		map.put("nested", nested);
+		return map;
+	}
+
+	static byte[] serializeLegacy(SerializableHashMap map) throws IOException {
+		ConcurrentHashMap<String, Serializable> legacyMap = new ConcurrentHashMap<String, Serializable>();
+		for (Map.Entry<String, Serializable> e : map.entrySet()) {
+			legacyMap.put(e.getKey(), e.getValue());
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(out);
+		oos.writeObject(legacyMap);
+		oos.flush();
+		return out.toByteArray();
+	}
+
+	private static class Counter implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int count;
+
+		public Counter(int count) {
+			this.count = count;
+		}
+	}
+}
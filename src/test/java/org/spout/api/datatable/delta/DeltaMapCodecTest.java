@@ -0,0 +1,167 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.datatable.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import org.spout.api.datatable.ManagedHashMap;
+import org.spout.api.datatable.MapSerializer;
+import org.spout.api.datatable.MapValueCodec;
+import org.spout.api.datatable.SerializableHashMap;
+
+public class DeltaMapCodecTest {
+
+	@Test
+	public void testSync() throws IOException {
+		ManagedHashMap server = new ManagedHashMap();
+		SerializableHashMap client = new SerializableHashMap();
+
+		server.put("health", 20);
+		server.put("name", "Spouty");
+		server.put("flying", false);
+		sync(server, client);
+		assertEquals(20, client.get("health"));
+		assertEquals("Spouty", client.get("name"));
+		assertEquals(false, client.get("flying"));
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		assertFalse(DeltaMapCodec.writeAndReset(buffer, server));
+		assertEquals(0, buffer.readableBytes());
+
+		for (int i = 0; i < 100; i++) {
+			server.put("health", i);
+		}
+		server.remove("name");
+		buffer = sync(server, client);
+		assertEquals(99, client.get("health"));
+		assertFalse(client.containsKey("name"));
+		assertEquals(3, client.size() + 1);
+
+		server.clear();
+		server.put("fresh", 1);
+		sync(server, client);
+		assertEquals(1, client.size());
+		assertEquals(1, client.get("fresh"));
+	}
+
+	@Test
+	public void testNested() throws IOException {
+		ManagedHashMap server = new ManagedHashMap();
+		ManagedHashMap stats = new ManagedHashMap(server, "stats");
+		SerializableHashMap client = new SerializableHashMap();
+
+		stats.put("kills", 3);
+		server.put("level", 2);
+		sync(server, client);
+		assertEquals(2, client.get("level"));
+		assertEquals(3, ((SerializableHashMap) client.get("stats")).get("kills"));
+
+		stats.put("deaths", 1);
+		sync(server, client);
+		SerializableHashMap clientStats = (SerializableHashMap) client.get("stats");
+		assertEquals(3, clientStats.get("kills"));
+		assertEquals(1, clientStats.get("deaths"));
+	}
+
+	@Test
+	public void testSingleChange() throws IOException {
+		ManagedHashMap server = new ManagedHashMap();
+		for (int i = 0; i < 50; i++) {
+			server.put("key" + i, i);
+		}
+		server.resetDelta();
+		server.put("key7", 700);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(server.getDeltaMap());
+		oos.flush();
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		DeltaMapCodec.write(buffer, server.getDeltaMap());
+		// Operation, key length, key, tag, value, end
+		assertEquals(1 + 1 + 4 + 1 + 4 + 1, buffer.readableBytes());
+		assertTrue(buffer.readableBytes() * 10 < bytes.size());
+	}
+
+	/**
+	 * Changes made to the map while its delta is written must be kept for the next delta
+	 */
+	@Test
+	public void testChangesDuringWrite() throws IOException {
+		final ManagedHashMap server = new ManagedHashMap();
+		SerializableHashMap client = new SerializableHashMap();
+		MapSerializer.register(201, Trigger.class, new MapValueCodec<Trigger>() {
+			@Override
+			public void write(DataOutputStream out, Trigger value) throws IOException {
+				// Runs in the middle of writing the delta
+				server.put("health", 21);
+				server.put("late", 5);
+			}
+
+			@Override
+			public Trigger read(DataInputStream in) throws IOException {
+				return new Trigger();
+			}
+		});
+
+		server.put("health", 20);
+		server.put("trigger", new Trigger());
+		sync(server, client);
+		assertTrue(client.containsKey("trigger"));
+
+		server.remove("trigger");
+		sync(server, client);
+		assertEquals(21, client.get("health"));
+		assertEquals(5, client.get("late"));
+	}
+
+	private static ChannelBuffer sync(ManagedHashMap server, SerializableHashMap client) throws IOException {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		assertTrue(DeltaMapCodec.writeAndReset(buffer, server));
+		DeltaMapCodec.apply(buffer, client);
+		assertEquals(0, buffer.readableBytes());
+		return buffer;
+	}
+
+	private static class Trigger implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+}
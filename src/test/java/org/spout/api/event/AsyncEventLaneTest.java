@@ -0,0 +1,198 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.spout.api.exception.EventException;
+
+public class AsyncEventLaneTest {
+
+	@Test
+	public void testOrdering() throws InterruptedException {
+		AsyncEventLane lane = new AsyncEventLane(4, 1024, true);
+		SimpleEventManager eventManager = new SimpleEventManager(lane);
+		AsyncListener listener = new AsyncListener();
+		eventManager.registerEvents(listener, this);
+
+		for (int i = 0; i < 100; i++) {
+			for (int key = 0; key < 8; key++) {
+				eventManager.callEvent(new KeyedEvent(key, i));
+			}
+		}
+
+		assertTrue("Async events were not completed", lane.shutdown(10000));
+		assertEquals(800, listener.syncCalls);
+		assertEquals(800, lane.getCompletedEvents());
+		assertEquals(0, lane.getRejectedEvents());
+		assertEquals(0, lane.getQueuedEvents());
+		assertFalse("Async listener was called on the calling thread", listener.calledOnCaller);
+		for (int key = 0; key < 8; key++) {
+			List<Integer> sequence = listener.sequences.get(key);
+			assertEquals(100, sequence.size());
+			for (int i = 0; i < 100; i++) {
+				assertEquals("Events for key " + key + " were reordered", i, sequence.get(i).intValue());
+			}
+		}
+
+		KeyedEvent.getHandlerList().unregister(this);
+	}
+
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		AsyncEventLane lane = new AsyncEventLane(1, 2, false);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ListenerRegistration[] listeners = new ListenerRegistration[] {new ListenerRegistration(new EventExecutor() {
+			@Override
+			public void execute(Event event) throws EventException {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new EventException(e);
+				}
+			}
+		}, Order.DEFAULT, this, true)};
+
+		assertTrue(lane.submit(new KeyedEvent(0, 0), listeners, false));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertTrue(lane.submit(new KeyedEvent(0, 1), listeners, false));
+		assertTrue(lane.submit(new KeyedEvent(0, 2), listeners, false));
+		assertFalse("Event was queued to a full lane", lane.submit(new KeyedEvent(0, 3), listeners, false));
+		assertEquals(1, lane.getRejectedEvents());
+		assertEquals(3, lane.getMaxQueuedEvents());
+
+		release.countDown();
+		assertTrue(lane.shutdown(10000));
+		assertEquals(3, lane.getCompletedEvents());
+		assertFalse("Event was queued after shutdown", lane.submit(new KeyedEvent(0, 4), listeners, false));
+	}
+
+	@Test
+	public void testShutdownWhileSubmitting() throws InterruptedException {
+		final ListenerRegistration[] listeners = new ListenerRegistration[] {new ListenerRegistration(new EventExecutor() {
+			@Override
+			public void execute(Event event) {
+			}
+		}, Order.DEFAULT, this, true)};
+
+		for (int trial = 0; trial < 20; trial++) {
+			final AsyncEventLane lane = new AsyncEventLane(2, 64, trial % 2 == 0);
+			final AtomicLong accepted = new AtomicLong();
+			final AtomicBoolean stopped = new AtomicBoolean();
+			Thread[] submitters = new Thread[4];
+			for (int i = 0; i < submitters.length; i++) {
+				final int key = i;
+				submitters[i] = new Thread() {
+					@Override
+					public void run() {
+						for (int sequence = 0; !stopped.get(); sequence++) {
+							if (lane.submit(new KeyedEvent(key, sequence), listeners, false)) {
+								accepted.incrementAndGet();
+							}
+						}
+					}
+				};
+				submitters[i].start();
+			}
+			Thread.sleep(5);
+			lane.shutdown(10000);
+			stopped.set(true);
+			for (Thread submitter : submitters) {
+				submitter.join();
+			}
+
+			// Every accepted event was dispatched, including those accepted while the lane was shutting down
+			assertEquals(0, lane.getQueuedEvents());
+			assertEquals(accepted.get(), lane.getCompletedEvents());
+		}
+	}
+
+	public static class AsyncListener implements Listener {
+		private final Thread caller = Thread.currentThread();
+		private final List<List<Integer>> sequences = new ArrayList<List<Integer>>();
+		private volatile boolean calledOnCaller = false;
+		private int syncCalls = 0;
+
+		public AsyncListener() {
+			for (int i = 0; i < 8; i++) {
+				sequences.add(Collections.synchronizedList(new ArrayList<Integer>()));
+			}
+		}
+
+		@EventHandler(async = true)
+		public void onAsyncEvent(KeyedEvent event) {
+			if (Thread.currentThread() == caller) {
+				calledOnCaller = true;
+			}
+			sequences.get(event.key).add(event.sequence);
+		}
+
+		@EventHandler
+		public void onEvent(KeyedEvent event) {
+			syncCalls++;
+		}
+	}
+
+	public static class KeyedEvent extends Event implements OrderedEvent {
+		private static final HandlerList HANDLERS = new HandlerList();
+		private final int key;
+		private final int sequence;
+
+		public KeyedEvent(int key, int sequence) {
+			this.key = key;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public Object getOrderingKey() {
+			return key;
+		}
+
+		@Override
+		public HandlerList getHandlers() {
+			return HANDLERS;
+		}
+
+		public static HandlerList getHandlerList() {
+			return HANDLERS;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import org.spout.api.event.SimpleEventManagerTest.PublicEvent;
+import org.spout.api.event.SimpleEventManagerTest.PublicListener;
+import org.spout.api.exception.EventException;
+
+/**
+ * Compares reflective executors with generated executors, for events with 1, 10 and 100 listeners.<br/>
+ * Only run by the benchmark profile.
+ */
+public class EventExecutorBenchmark {
+	private static final int[] LISTENER_COUNTS = {1, 10, 100};
+	private static final int DISPATCHES = 1000000;
+	private static final int PASSES = 10;
+
+	@Test
+	public void benchmarkDispatch() throws Exception {
+		Method method = PublicListener.class.getMethod("onEvent", PublicEvent.class);
+		for (int count : LISTENER_COUNTS) {
+			PublicListener[] listeners = new PublicListener[count];
+			EventExecutor[] reflective = new EventExecutor[count];
+			EventExecutor[] generated = new EventExecutor[count];
+			for (int i = 0; i < count; i++) {
+				listeners[i] = new PublicListener();
+				reflective[i] = EventExecutorFactory.createReflective(listeners[i], method);
+				generated[i] = EventExecutorFactory.createGenerated(listeners[i], method);
+			}
+
+			PublicEvent event = new PublicEvent();
+			int events = DISPATCHES / count;
+			long reflection = 0, direct = 0;
+			// The first pass warms up both paths
+			for (int pass = 0; pass <= PASSES; pass++) {
+				long start = System.nanoTime();
+				dispatch(reflective, event, events);
+				if (pass > 0) {
+					reflection += System.nanoTime() - start;
+				}
+
+				start = System.nanoTime();
+				dispatch(generated, event, events);
+				if (pass > 0) {
+					direct += System.nanoTime() - start;
+				}
+			}
+			for (PublicListener listener : listeners) {
+				assertEquals(2 * events * (PASSES + 1), listener.getCallCount());
+			}
+
+			long calls = (long) events * count * PASSES;
+			System.out.println(count + " listeners, reflective: " + (reflection / calls) + "ns, generated: " + (direct / calls) + "ns per listener call");
+		}
+	}
+
+	private static void dispatch(EventExecutor[] executors, Event event, int events) throws EventException {
+		for (int i = 0; i < events; i++) {
+			for (EventExecutor executor : executors) {
+				executor.execute(event);
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import org.spout.api.exception.EventException;
+
+/**
+ * Measures the cost of the event profiler, when disabled and when enabled, against the dispatch loop used before it was
+ * added.<br/>
+ * Only run by the benchmark profile.
+ */
+public class EventProfilerBenchmark {
+	private static final int LISTENERS = 10;
+	private static final int EVENTS = 200000;
+	private static final int PASSES = 20;
+
+	@Test
+	public void benchmarkDispatch() throws EventException {
+		SimpleEventManager eventManager = new SimpleEventManager();
+		EventProfiler profiler = eventManager.getProfiler();
+		CountingExecutor executor = new CountingExecutor();
+		for (int i = 0; i < LISTENERS; i++) {
+			eventManager.registerEvent(ProfiledEvent.class, Order.DEFAULT, executor, this);
+		}
+		ProfiledEvent event = new ProfiledEvent();
+
+		long unprofiled = 0, disabled = 0, enabled = 0;
+		// The first pass warms up all the paths
+		for (int pass = 0; pass <= PASSES; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < EVENTS; i++) {
+				callListeners(event, event.getHandlers().getRegisteredListeners());
+			}
+			if (pass > 0) {
+				unprofiled += System.nanoTime() - start;
+			}
+
+			profiler.setEnabled(false);
+			start = System.nanoTime();
+			for (int i = 0; i < EVENTS; i++) {
+				eventManager.callEvent(event);
+			}
+			if (pass > 0) {
+				disabled += System.nanoTime() - start;
+			}
+
+			profiler.setEnabled(true);
+			start = System.nanoTime();
+			for (int i = 0; i < EVENTS; i++) {
+				eventManager.callEvent(event);
+			}
+			if (pass > 0) {
+				enabled += System.nanoTime() - start;
+			}
+		}
+		assertEquals((long) EVENTS * (PASSES + 1) * 3 * LISTENERS, executor.calls);
+
+		ProfiledEvent.getHandlerList().unregister(this);
+
+		long events = (long) EVENTS * PASSES;
+		System.out.println("Event dispatch to " + LISTENERS + " listeners, unprofiled: " + (unprofiled / events) + "ns, profiler disabled: " + (disabled / events) + "ns, profiler enabled: " + (enabled / events) + "ns per event");
+	}
+
+	/**
+	 * The dispatch loop as it was before the profiler was added
+	 */
+	private static void callListeners(Event event, ListenerRegistration[] listeners) throws EventException {
+		for (ListenerRegistration listener : listeners) {
+			if (!event.isCancelled() || listener.getOrder().ignoresCancelled()) {
+				listener.getExecutor().execute(event);
+			}
+		}
+	}
+
+	private static class CountingExecutor implements EventExecutor {
+		private long calls;
+
+		@Override
+		public void execute(Event event) throws EventException {
+			calls++;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.spout.api.exception.EventException;
+
+public class EventProfilerTest {
+
+	@Test
+	public void testDisabled() {
+		SimpleEventManager eventManager = new SimpleEventManager();
+		eventManager.registerEvent(ProfiledEvent.class, Order.DEFAULT, new CountingExecutor(false), this);
+		eventManager.callEvent(new ProfiledEvent());
+
+		assertTrue(eventManager.getProfiler().getListenerStatistics().isEmpty());
+		assertTrue(eventManager.getProfiler().getEventStatistics().isEmpty());
+
+		ProfiledEvent.getHandlerList().unregister(this);
+	}
+
+	@Test
+	public void testListenerStatistics() {
+		SimpleEventManager eventManager = new SimpleEventManager();
+		EventProfiler profiler = eventManager.getProfiler();
+		profiler.setEnabled(true);
+
+		Object otherOwner = new Object();
+		eventManager.registerEvent(ProfiledEvent.class, Order.EARLY, new CountingExecutor(true), this);
+		eventManager.registerEvent(ProfiledEvent.class, Order.DEFAULT, new CountingExecutor(false), this);
+		eventManager.registerEvent(ProfiledEvent.class, Order.LATEST_IGNORE_CANCELLED, new CountingExecutor(false), otherOwner);
+		ListenerRegistration[] listeners = ProfiledEvent.getHandlerList().getRegisteredListeners();
+
+		for (int i = 0; i < 3; i++) {
+			eventManager.callEvent(new ProfiledEvent());
+		}
+		List<ProfiledEvent> batch = new ArrayList<ProfiledEvent>();
+		for (int i = 0; i < 4; i++) {
+			batch.add(new ProfiledEvent());
+		}
+		eventManager.callEvents(batch);
+
+		ListenerStatistics cancelling = profiler.getStatistics(listeners[0]);
+		assertEquals(7, cancelling.getInvocations());
+		assertEquals(7, cancelling.getCancellations());
+		assertEquals(1.0, cancelling.getCancellationRate(), 0.0001);
+		assertTrue(cancelling.getMaxNanos() <= cancelling.getTotalNanos());
+
+		// Skipped because the events were cancelled
+		assertNull(profiler.getStatistics(listeners[1]));
+
+		ListenerStatistics ignoresCancelled = profiler.getStatistics(listeners[2]);
+		assertEquals(7, ignoresCancelled.getInvocations());
+		assertEquals(0, ignoresCancelled.getCancellations());
+
+		ListenerStatistics owner = profiler.getOwnerStatistics(this);
+		assertNotNull(owner);
+		assertEquals(7, owner.getInvocations());
+		assertEquals(2, profiler.getOwnerStatistics().size());
+
+		List<ListenerStatistics> events = profiler.getEventStatistics();
+		assertEquals(1, events.size());
+		assertEquals(7, events.get(0).getInvocations());
+		assertEquals(7, events.get(0).getCancellations());
+
+		profiler.reset();
+		assertNull(profiler.getStatistics(listeners[0]));
+		assertNull(profiler.getOwnerStatistics(this));
+
+		ProfiledEvent.getHandlerList().unregister(this);
+		ProfiledEvent.getHandlerList().unregister(otherOwner);
+	}
+
+	@Test
+	public void testNullOwner() {
+		SimpleEventManager eventManager = new SimpleEventManager();
+		EventProfiler profiler = eventManager.getProfiler();
+		profiler.setEnabled(true);
+
+		eventManager.registerEvent(ProfiledEvent.class, Order.DEFAULT, new CountingExecutor(false), this);
+		eventManager.callEvent(new ProfiledEvent());
+
+		assertNull(profiler.getOwnerStatistics(null));
+		assertNotNull(profiler.getOwnerStatistics(this));
+
+		ProfiledEvent.getHandlerList().unregister(this);
+	}
+
+	@Test
+	public void testUnregisteredListenersAreReleased() throws InterruptedException {
+		SimpleEventManager eventManager = new SimpleEventManager();
+		EventProfiler profiler = eventManager.getProfiler();
+		profiler.setEnabled(true);
+
+		eventManager.registerEvent(ProfiledEvent.class, Order.DEFAULT, new CountingExecutor(false), this);
+		eventManager.callEvent(new ProfiledEvent());
+		ReferenceQueue<ListenerRegistration> queue = new ReferenceQueue<ListenerRegistration>();
+		WeakReference<ListenerRegistration> listener = new WeakReference<ListenerRegistration>(ProfiledEvent.getHandlerList().getRegisteredListeners()[0], queue);
+		assertNotNull(profiler.getStatistics(listener.get()));
+
+		ProfiledEvent.getHandlerList().unregister(this);
+		ProfiledEvent.getHandlerList().bake();
+		// Allocates until the listener is collected, rather than relying on a single collection being enough
+		long end = System.currentTimeMillis() + 10000;
+		List<byte[]> garbage = new ArrayList<byte[]>();
+		Reference<? extends ListenerRegistration> released = null;
+		while (released == null) {
+			assertTrue("Listener was not released", System.currentTimeMillis() < end);
+			garbage.add(new byte[1 << 16]);
+			if (garbage.size() >= 256) {
+				garbage.clear();
+				System.gc();
+				released = queue.remove(10);
+			} else {
+				released = queue.poll();
+			}
+		}
+		assertNull(listener.get());
+		assertTrue(profiler.getListenerStatistics().isEmpty());
+	}
+
+	private static class CountingExecutor implements EventExecutor {
+		private final boolean cancel;
+
+		public CountingExecutor(boolean cancel) {
+			this.cancel = cancel;
+		}
+
+		@Override
+		public void execute(Event event) throws EventException {
+			if (cancel) {
+				event.setCancelled(true);
+			}
+		}
+	}
+}
+
+class ProfiledEvent extends Event {
+	private static final HandlerList HANDLERS = new HandlerList();
+
+	@Override
+	public HandlerList getHandlers() {
+		return HANDLERS;
+	}
+
+	public static HandlerList getHandlerList() {
+		return HANDLERS;
+	}
+}
@@ -86,6 +86,169 @@ public class SimpleEventManagerTest {
 			assertEquals(calledOrders.get(order.getIndex()), order);
 		}
 	}
+
+	@Test
+	public void testGeneratedExecutor() throws Exception {
+		final PublicListener listener = new PublicListener();
+		EventExecutor executor = EventExecutorFactory.create(listener, PublicListener.class.getMethod("onEvent", PublicEvent.class));
+		assertTrue("Executor was not generated", executor instanceof GeneratedEventExecutor);
+
+		PublicEvent event = new PublicEvent();
+		executor.execute(event);
+		executor.execute(event);
+		assertEquals(2, listener.getCallCount());
+		assertSame(event, listener.getLastEvent());
+
+		try {
+			executor.execute(new TestEvent());
+			fail("Wrong event type was passed to listener");
+		} catch (EventException e) {
+		}
+
+		EventExecutor failing = EventExecutorFactory.create(listener, PublicListener.class.getMethod("onEventFail", PublicEvent.class));
+		assertTrue("Executor was not generated", failing instanceof GeneratedEventExecutor);
+		try {
+			failing.execute(event);
+			fail("Listener exception was not thrown");
+		} catch (EventException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		EventExecutor reflective = EventExecutorFactory.create(new TestListener(), TestListener.class.getMethod("onTestEvent", TestEvent.class));
+		assertFalse("Executor generated for package private listener", reflective instanceof GeneratedEventExecutor);
+	}
+
+	@Test
+	public void testGeneratedInterfaceExecutor() throws Exception {
+		final PublicListener listener = new PublicListener();
+		EventExecutor executor = EventExecutorFactory.create(listener, PublicEventHandler.class.getMethod("onEvent", PublicEvent.class));
+		assertTrue("Executor was not generated", executor instanceof GeneratedEventExecutor);
+
+		PublicEvent event = new PublicEvent();
+		executor.execute(event);
+		assertEquals(1, listener.getCallCount());
+		assertSame(event, listener.getLastEvent());
+	}
+
+	@Test
+	public void testGeneratedEventCalling() {
+		final PublicListener listener = new PublicListener();
+		eventManager.registerEvents(listener, this);
+		eventManager.callEvent(new PublicEvent());
+		assertEquals(1, listener.getCallCount());
+		assertEquals(1, listener.getValueCallCount());
+		PublicEvent.getHandlerList().unregister(this);
+	}
+
+	@Test
+	public void testBatchEventCalling() {
+		final BatchListener listener = new BatchListener();
+		eventManager.registerEvents(listener, this);
+
+		List<TestEvent> events = new ArrayList<TestEvent>();
+		for (int i = 0; i < 10; i++) {
+			events.add(new TestEvent());
+		}
+		events.get(3).setCancelled(true);
+		events.add(new TestSubEvent());
+
+		// The sub event uses a different handler list, so it is called separately
+		assertSame(events, eventManager.callEvents(events));
+		assertEquals(2, listener.getBatchCalls());
+		assertEquals(10, listener.getBatchEvents());
+		assertEquals(11, listener.getIgnoreCancelledEvents());
+		assertEquals(10, listener.getSingleEvents());
+		for (TestEvent event : events) {
+			assertTrue(event.hasBeenCalled());
+		}
+
+		TestEvent[] array = new TestEvent[] {new TestEvent(), new TestEvent()};
+		assertSame(array, eventManager.callEvents(array));
+		assertEquals(3, listener.getBatchCalls());
+		assertEquals(12, listener.getBatchEvents());
+
+		eventManager.callEvent(new TestEvent());
+		assertEquals(4, listener.getBatchCalls());
+		assertEquals(13, listener.getBatchEvents());
+		assertEquals(13, listener.getSingleEvents());
+
+		HandlerList.unregisterAll(this);
+	}
+
+	@Test
+	public void testMixedBatchOrder() {
+		final List<Event> called = new ArrayList<Event>();
+		eventManager.registerEvent(TestEvent.class, Order.DEFAULT, new EventExecutor() {
+			@Override
+			public void execute(Event event) {
+				called.add(event);
+			}
+		}, this);
+
+		// Runs of events with the same handler list are called in the order of the collection
+		List<TestEvent> events = new ArrayList<TestEvent>();
+		events.add(new TestEvent());
+		events.add(new TestSubEvent());
+		events.add(new TestSubEvent());
+		events.add(new TestEvent());
+		events.add(new TestEvent());
+		events.add(new TestSubEvent());
+		eventManager.callEvents(events);
+		assertEquals(events, called);
+
+		HandlerList.unregisterAll(this);
+	}
+
+	public static class PublicEvent extends Event {
+		private static final HandlerList HANDLERS = new HandlerList();
+
+		@Override
+		public HandlerList getHandlers() {
+			return HANDLERS;
+		}
+
+		public static HandlerList getHandlerList() {
+			return HANDLERS;
+		}
+	}
+
+	public interface PublicEventHandler {
+		public void onEvent(PublicEvent event);
+	}
+
+	public static class PublicListener implements Listener, PublicEventHandler {
+		private int callCount = 0;
+		private int valueCallCount = 0;
+		private PublicEvent lastEvent;
+
+		@Override
+		@EventHandler
+		public void onEvent(PublicEvent event) {
+			callCount++;
+			lastEvent = event;
+		}
+
+		@EventHandler(order = Order.LATEST)
+		public long onEventValue(PublicEvent event) {
+			return ++valueCallCount;
+		}
+
+		public void onEventFail(PublicEvent event) {
+			throw new IllegalStateException();
+		}
+
+		public int getCallCount() {
+			return callCount;
+		}
+
+		public int getValueCallCount() {
+			return valueCallCount;
+		}
+
+		public PublicEvent getLastEvent() {
+			return lastEvent;
+		}
+	}
 }
 
 class TestEvent extends Event {
@@ -150,3 +313,44 @@ class TestListener implements Listener {
 	}
 }
 
+class BatchListener implements Listener {
+	private int batchCalls = 0;
+	private int batchEvents = 0;
+	private int ignoreCancelledEvents = 0;
+	private int singleEvents = 0;
+
+	@EventHandler
+	public void onTestEvents(List<TestEvent> events) {
+		batchCalls++;
+		for (TestEvent event : events) {
+			assertFalse(event.isCancelled());
+			batchEvents++;
+		}
+	}
+
+	@EventHandler(order = Order.LATEST_IGNORE_CANCELLED)
+	public void onAllTestEvents(List<? extends TestEvent> events) {
+		ignoreCancelledEvents += events.size();
+	}
+
+	@EventHandler
+	public void onTestEvent(TestEvent event) {
+		singleEvents++;
+	}
+
+	public int getBatchCalls() {
+		return batchCalls;
+	}
+
+	public int getBatchEvents() {
+		return batchEvents;
+	}
+
+	public int getIgnoreCancelledEvents() {
+		return ignoreCancelledEvents;
+	}
+
+	public int getSingleEvents() {
+		return singleEvents;
+	}
+}
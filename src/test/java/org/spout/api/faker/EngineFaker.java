@@ -26,6 +26,7 @@
  */
 package org.spout.api.faker;
 
+import java.util.Collection;
 import java.util.UUID;
 import java.util.logging.Logger;
 
@@ -41,6 +42,7 @@ import org.spout.api.command.CommandManager;
 import org.spout.api.event.Event;
 import org.spout.api.event.EventExecutor;
 import org.spout.api.event.EventManager;
+import org.spout.api.event.EventProfiler;
 import org.spout.api.event.Listener;
 import org.spout.api.event.Order;
 import org.spout.api.geo.World;
@@ -82,11 +84,33 @@ public class EngineFaker {
 	}
 
 	private static class TestEventManager implements EventManager {
+		private final EventProfiler profiler = new EventProfiler();
+
 		@Override
 		public <T extends Event> T callEvent(T event) {
 			return event;
 		}
 
+		@Override
+		public <T extends Event, C extends Collection<T>> C callEvents(C events) {
+			return events;
+		}
+
+		@Override
+		public <T extends Event> T[] callEvents(T[] events) {
+			return events;
+		}
+
+		@Override
+		public <T extends Event> void callAsyncEvent(T event) {
+
+		}
+
+		@Override
+		public EventProfiler getProfiler() {
+			return profiler;
+		}
+
 		@Override
 		public <T extends Event> void callDelayedEvent(T event) {
 
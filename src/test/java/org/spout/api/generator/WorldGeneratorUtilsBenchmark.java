@@ -0,0 +1,64 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.generator;
+
+import org.junit.Test;
+
+import org.spout.api.generator.WorldGeneratorUtilsTest.TestModule;
+
+/**
+ * Compares the jagged and flat-buffer fastNoise variants on 16x128x16 maps.<br/>
+ * Only run by the benchmark profile.
+ */
+public class WorldGeneratorUtilsBenchmark {
+	private static final int COUNT = 2000;
+
+	@Test
+	public void benchmarkFastNoise() {
+		TestModule module = new TestModule();
+		for (int samplingRate : new int[] {4, 8}) {
+			long jagged = 0;
+			long flat = 0;
+			double[] noise = null;
+			// The first pass warms up both paths
+			for (int pass = 0; pass < 2; pass++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < COUNT; i++) {
+					WorldGeneratorUtils.fastNoise(module, 16, 128, 16, samplingRate, i << 4, 0, 0);
+				}
+				jagged = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < COUNT; i++) {
+					noise = WorldGeneratorUtils.fastNoise(module, 16, 128, 16, samplingRate, i << 4, 0, 0, noise);
+				}
+				flat = System.nanoTime() - start;
+			}
+			System.out.println("Sampling rate " + samplingRate + ": jagged " + (jagged / COUNT / 1000) + "us, flat " + (flat / COUNT / 1000) + "us per 16x128x16 map");
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.generator;
+
+import static org.junit.Assert.assertEquals;
+
+import net.royawesome.jlibnoise.module.Module;
+
+import org.junit.Test;
+
+public class WorldGeneratorUtilsTest {
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	public void testFlatNoise1D() {
+		TestModule module = new TestModule();
+		double[] expected = WorldGeneratorUtils.fastNoise(module, 16, 4, 3, 5, 7);
+		double[] noise = WorldGeneratorUtils.fastNoise(module, 16, 4, 3, 5, 7, null);
+		for (int xx = 0; xx < 16; xx++) {
+			assertEquals(expected[xx], noise[xx], EPSILON);
+		}
+		assertEquals(module.GetValue(19, 5, 7), noise[16], EPSILON);
+	}
+
+	@Test
+	public void testFlatNoise2D() {
+		TestModule module = new TestModule();
+		for (int samplingRate : new int[] {1, 4, 8}) {
+			double[][] expected = WorldGeneratorUtils.fastNoise(module, 16, 8, samplingRate, 3, 5, 7);
+			double[] noise = WorldGeneratorUtils.fastNoise(module, 16, 8, samplingRate, 3, 5, 7, new double[4]);
+			for (int xx = 0; xx < 16; xx++) {
+				for (int zz = 0; zz < 8; zz++) {
+					assertEquals(expected[xx][zz], noise[xx * 9 + zz], EPSILON);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFlatNoise3D() {
+		TestModule module = new TestModule();
+		double[] noise = null;
+		for (int samplingRate : new int[] {2, 4, 8}) {
+			double[][][] expected = WorldGeneratorUtils.fastNoise(module, 16, 32, 16, samplingRate, -16, 0, 48);
+			double[] reused = WorldGeneratorUtils.fastNoise(module, 16, 32, 16, samplingRate, -16, 0, 48, noise);
+			if (noise != null) {
+				assertEquals(noise, reused);
+			}
+			noise = reused;
+			for (int xx = 0; xx < 16; xx++) {
+				for (int yy = 0; yy < 32; yy++) {
+					for (int zz = 0; zz < 16; zz++) {
+						assertEquals(expected[xx][yy][zz], noise[(xx * 33 + yy) * 17 + zz], EPSILON);
+					}
+				}
+			}
+		}
+		// The far edges are interpolated as well
+		double corner = noise[(16 * 33 + 32) * 17 + 16];
+		double next = noise[(16 * 33 + 32) * 17 + 8];
+		assertEquals((corner + next) / 2, noise[(16 * 33 + 32) * 17 + 12], EPSILON);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadSamplingRate() {
+		WorldGeneratorUtils.fastNoise(new TestModule(), 16, 16, 16, 5, 0, 0, 0, null);
+	}
+
+	/**
+	 * A cheap, smooth noise module, so that the benchmark measures the interpolation
+	 */
+	static class TestModule extends Module {
+		public TestModule() {
+			super(0);
+		}
+
+		@Override
+		public int GetSourceModuleCount() {
+			return 0;
+		}
+
+		@Override
+		public double GetValue(double x, double y, double z) {
+			return Math.sin(x * 0.1) + Math.cos(y * 0.07) * Math.sin(z * 0.13);
+		}
+	}
+}
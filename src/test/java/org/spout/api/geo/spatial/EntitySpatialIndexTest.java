@@ -0,0 +1,66 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import org.spout.api.component.entity.PhysicsComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+
+public class EntitySpatialIndexTest {
+	@Test
+	public void testWorldChange() {
+		World world = mock(World.class);
+		World other = mock(World.class);
+		EntitySpatialIndex index = new EntitySpatialIndex(world);
+		PhysicsComponent physics = mock(PhysicsComponent.class);
+		Entity entity = mock(Entity.class);
+		when(entity.getPhysics()).thenReturn(physics);
+
+		when(physics.getPosition()).thenReturn(new Point(world, 10f, 64f, 10f));
+		index.update(entity);
+		index.commit();
+		assertTrue(index.contains(entity));
+		assertSame(entity, index.getNearestEntity(new Point(world, 0f, 64f, 0f), null, 32f));
+
+		// Moving to another world removes the entity, even without a dirty position
+		when(physics.getPosition()).thenReturn(new Point(other, 10f, 64f, 10f));
+		index.update(entity);
+		index.commit();
+		assertFalse(index.contains(entity));
+		assertEquals(0, index.size());
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.spout.api.geo.spatial.SpatialIndexTest.createItems;
+import static org.spout.api.geo.spatial.SpatialIndexTest.scanSphere;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.spout.api.geo.spatial.SpatialIndexTest.Item;
+
+/**
+ * Compares range and nearest queries on the spatial index with scans over every entity.<br/>
+ * Only run by the benchmark profile.
+ */
+public class SpatialIndexBenchmark {
+	private static final int QUERIES = 2000;
+	private static final float WORLD_SIZE = 1024f;
+	private static final float RANGE = 16f;
+
+	@Test
+	public void benchmarkQueries() {
+		benchmark(5000);
+		benchmark(50000);
+	}
+
+	private void benchmark(int count) {
+		Random random = new Random(count);
+		SpatialIndex<Item> index = new SpatialIndex<Item>();
+		List<Item> items = createItems(random, count, WORLD_SIZE, index);
+		float[] points = new float[QUERIES * 3];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = random.nextFloat() * WORLD_SIZE - WORLD_SIZE / 2;
+		}
+		List<Item> out = new ArrayList<Item>();
+
+		long scan = 0, indexed = 0, nearestScan = 0, nearestIndexed = 0;
+		int found = 0;
+		// The first pass warms up both paths
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 3) {
+				found += scanSphere(items, points[i], points[i + 1], points[i + 2], RANGE).size();
+			}
+			scan = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 3) {
+				out.clear();
+				found -= index.querySphere(points[i], points[i + 1], points[i + 2], RANGE, out);
+			}
+			indexed = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 3) {
+				found += scanNearestOne(items, points[i], points[i + 1], points[i + 2]) != null ? 1 : 0;
+			}
+			nearestScan = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < points.length; i += 3) {
+				found -= index.getNearest(points[i], points[i + 1], points[i + 2], WORLD_SIZE) != null ? 1 : 0;
+			}
+			nearestIndexed = System.nanoTime() - start;
+		}
+		assertEquals(0, found);
+
+		System.out.println(count + " entities: range " + RANGE + " scan " + (scan / QUERIES) + "ns, indexed " + (indexed / QUERIES) + "ns; nearest scan " + (nearestScan / QUERIES) + "ns, indexed " + (nearestIndexed / QUERIES) + "ns per query");
+	}
+
+	/**
+	 * The nearest lookup as done without an index, a scan over every entity
+	 */
+	private static Item scanNearestOne(List<Item> items, float x, float y, float z) {
+		Item nearest = null;
+		float best = Float.MAX_VALUE;
+		for (Item item : items) {
+			float distanceSq = item.distanceSq(x, y, z);
+			if (distanceSq < best) {
+				best = distanceSq;
+				nearest = item;
+			}
+		}
+		return nearest;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.geo.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SpatialIndexTest {
+	@Test
+	public void testMatchesScan() {
+		Random random = new Random(1);
+		SpatialIndex<Item> index = new SpatialIndex<Item>();
+		List<Item> items = createItems(random, 2000, 256f, index);
+
+		// Move some items and remove others so both paths are covered
+		for (int i = 0; i < 500; i++) {
+			Item item = items.get(random.nextInt(items.size()));
+			item.move(random, 256f);
+			index.update(item, item.x, item.y, item.z);
+		}
+		for (int i = 0; i < 200; i++) {
+			Item item = items.remove(random.nextInt(items.size()));
+			assertTrue(index.remove(item));
+			assertFalse(index.contains(item));
+		}
+		assertEquals(items.size(), index.size());
+
+		for (int q = 0; q < 200; q++) {
+			float x = random.nextFloat() * 256f - 128f, y = random.nextFloat() * 256f - 128f, z = random.nextFloat() * 256f - 128f;
+			float radius = random.nextFloat() * 64f;
+
+			Set<Item> sphere = new HashSet<Item>();
+			assertEquals(index.querySphere(x, y, z, radius, sphere), sphere.size());
+			assertEquals(scanSphere(items, x, y, z, radius), sphere);
+
+			Set<Item> box = new HashSet<Item>();
+			index.queryBox(x - radius, y, z - radius, x + radius, y + radius, z, box);
+			Set<Item> expected = new HashSet<Item>();
+			for (Item item : items) {
+				if (item.x >= x - radius && item.x <= x + radius && item.y >= y && item.y <= y + radius && item.z >= z - radius && item.z <= z) {
+					expected.add(item);
+				}
+			}
+			assertEquals(expected, box);
+
+			List<Item> nearest = new ArrayList<Item>();
+			index.queryNearest(x, y, z, radius * 2, 5, nearest);
+			List<Item> sorted = scanNearest(items, x, y, z, radius * 2);
+			assertEquals(sorted.subList(0, Math.min(5, sorted.size())), nearest);
+			assertSame(sorted.isEmpty() ? null : sorted.get(0), index.getNearest(x, y, z, radius * 2));
+		}
+	}
+
+	@Test
+	public void testFilters() {
+		SpatialIndex<Item> index = new SpatialIndex<Item>();
+		Item item = new Item(0f, 0f, 0f);
+		SpecialItem special = new SpecialItem(40f, 0f, 0f);
+		index.update(item, item.x, item.y, item.z);
+		index.update(special, 40f, 0f, 0f);
+
+		List<SpecialItem> found = new ArrayList<SpecialItem>();
+		assertEquals(1, index.querySphere(0f, 0f, 0f, 100f, SpecialItem.class, null, found));
+		assertSame(special, found.get(0));
+		assertSame(special, index.getNearest(0f, 0f, 0f, 100f, Item.class, item));
+		assertSame(special, index.getNearest(0f, 0f, 0f, 100f, SpecialItem.class, null));
+		assertNull(index.getNearest(0f, 0f, 0f, 39f, SpecialItem.class, null));
+		// Far from any cell, the search falls back to the occupied cells
+		assertSame(special, index.getNearest(100000f, 0f, 0f, Float.MAX_VALUE));
+	}
+
+	static List<Item> createItems(Random random, int count, float size, SpatialIndex<Item> index) {
+		List<Item> items = new ArrayList<Item>(count);
+		for (int i = 0; i < count; i++) {
+			Item item = new Item(0f, 0f, 0f);
+			item.move(random, size);
+			index.update(item, item.x, item.y, item.z);
+			items.add(item);
+		}
+		return items;
+	}
+
+	static Set<Item> scanSphere(List<Item> items, float x, float y, float z, float radius) {
+		Set<Item> found = new HashSet<Item>();
+		for (Item item : items) {
+			if (item.distanceSq(x, y, z) <= radius * radius) {
+				found.add(item);
+			}
+		}
+		return found;
+	}
+
+	private static List<Item> scanNearest(List<Item> items, final float x, final float y, final float z, float range) {
+		List<Item> found = new ArrayList<Item>();
+		for (Item item : items) {
+			if (item.distanceSq(x, y, z) <= range * range) {
+				found.add(item);
+			}
+		}
+		Collections.sort(found, new Comparator<Item>() {
+			@Override
+			public int compare(Item a, Item b) {
+				return Float.compare(a.distanceSq(x, y, z), b.distanceSq(x, y, z));
+			}
+		});
+		return found;
+	}
+
+	static class Item {
+		private float x, y, z;
+
+		private Item(float x, float y, float z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		private void move(Random random, float size) {
+			x = random.nextFloat() * size - size / 2;
+			y = random.nextFloat() * size - size / 2;
+			z = random.nextFloat() * size - size / 2;
+		}
+
+		float distanceSq(float px, float py, float pz) {
+			float dx = x - px, dy = y - py, dz = z - pz;
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+
+	private static class SpecialItem extends Item {
+		private SpecialItem(float x, float y, float z) {
+			super(x, y, z);
+		}
+	}
+}
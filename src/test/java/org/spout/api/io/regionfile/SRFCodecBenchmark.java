@@ -0,0 +1,137 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.spout.api.util.map.concurrent.palette.AtomicShortIntArray;
+
+/**
+ * Compares the region file codecs on palette serialized chunk block arrays.<br/>
+ * Only run by the benchmark profile.
+ */
+public class SRFCodecBenchmark {
+	private static final SRFCodec[] CODECS = {SRFCodec.DEFLATE, SRFCodec.DEFLATE_FAST, SRFCodec.DEFLATE_BEST, SRFCodec.LZ4};
+	private static final String[] NAMES = {"deflate", "deflate fast", "deflate best", "lz4"};
+	private static final int CHUNK_VOLUME = 4096;
+	private static final int COLUMNS = 64;
+	private static final int PASSES = 10;
+
+	@Test
+	public void benchmarkCodecs() throws IOException {
+		List<byte[]> chunks = createChunks(new Random(1));
+		long raw = 0;
+		for (byte[] chunk : chunks) {
+			raw += chunk.length;
+		}
+
+		byte[] buffer = new byte[CHUNK_VOLUME * 4];
+		for (int c = 0; c < CODECS.length; c++) {
+			SRFCodec codec = CODECS[c];
+			long compressTime = 0, decompressTime = 0, compressed = 0, read = 0;
+			// The first pass warms up the codec
+			for (int pass = 0; pass <= PASSES; pass++) {
+				List<byte[]> encoded = new ArrayList<byte[]>(chunks.size());
+				long start = System.nanoTime();
+				for (byte[] chunk : chunks) {
+					encoded.add(SRFCodecTest.compress(codec, chunk));
+				}
+				if (pass > 0) {
+					compressTime += System.nanoTime() - start;
+				}
+
+				start = System.nanoTime();
+				for (byte[] data : encoded) {
+					InputStream in = codec.getInputStream(new ByteArrayInputStream(data));
+					int count;
+					while ((count = in.read(buffer)) != -1) {
+						read += count;
+					}
+					in.close();
+				}
+				if (pass > 0) {
+					decompressTime += System.nanoTime() - start;
+					for (byte[] data : encoded) {
+						compressed += data.length;
+					}
+				}
+			}
+			assertEquals(raw * (PASSES + 1), read);
+
+			long count = (long) chunks.size() * PASSES;
+			System.out.println(NAMES[c] + ": " + (compressed * 100 / (raw * PASSES)) + "% of " + (raw / chunks.size()) + " bytes, compress " + (compressTime / count / 1000) + "us, decompress " + (decompressTime / count / 1000) + "us per chunk");
+		}
+	}
+
+	/**
+	 * Creates the serialized block arrays for columns of terrain, from bedrock to open sky
+	 */
+	private static List<byte[]> createChunks(Random r) throws IOException {
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		AtomicShortIntArray blocks = new AtomicShortIntArray(CHUNK_VOLUME);
+		for (int column = 0; column < COLUMNS; column++) {
+			int surface = 40 + r.nextInt(16);
+			for (int chunkY = 0; chunkY < 4; chunkY++) {
+				for (int i = 0; i < CHUNK_VOLUME; i++) {
+					int y = (chunkY << 4) + (i >> 8);
+					int height = surface + ((i & 0xF) + ((i >> 4) & 0xF)) / 8;
+					int id;
+					if (y == 0) {
+						id = 7;
+					} else if (y > height) {
+						id = 0;
+					} else if (y == height) {
+						id = 2;
+					} else if (y > height - 4) {
+						id = 3;
+					} else if (r.nextInt(100) == 0) {
+						id = 14 + r.nextInt(3);
+					} else {
+						id = 1;
+					}
+					blocks.set(i, id << 16 | (id == 2 ? r.nextInt(2) : 0));
+				}
+				blocks.compress();
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				blocks.getSnapshot(null).writeTo(new DataOutputStream(bytes));
+				chunks.add(bytes.toByteArray());
+			}
+		}
+		return chunks;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SRFCodecTest {
+
+	private static final SRFCodec[] codecs = {SRFCodec.DEFLATE, SRFCodec.DEFLATE_FAST, SRFCodec.DEFLATE_BEST, SRFCodec.LZ4};
+
+	@Test
+	public void testLookup() {
+		for (SRFCodec codec : codecs) {
+			assertTrue("Codec lookup by id failed", SRFCodec.getCodec(codec.getId()) == codec);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random r = new Random();
+		int[] lengths = {0, 1, 5, 13, 100, 4096, 65536, 65537, 200000};
+		for (SRFCodec codec : codecs) {
+			for (int length : lengths) {
+				checkRoundTrip(codec, createData(r, length, 0.0F));
+				checkRoundTrip(codec, createData(r, length, 0.1F));
+				checkRoundTrip(codec, createData(r, length, 1.0F));
+			}
+		}
+	}
+
+	@Test
+	public void testLZ4Compresses() throws IOException {
+		byte[] data = createData(new Random(), 65536, 0.01F);
+		byte[] compressed = compress(SRFCodec.LZ4, data);
+		assertTrue("LZ4 codec did not compress sparse data", compressed.length < data.length / 4);
+	}
+
+	private static void checkRoundTrip(SRFCodec codec, byte[] data) throws IOException {
+		byte[] compressed = compress(codec, data);
+
+		InputStream in = codec.getInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buf = new byte[1000];
+		int read;
+		while ((read = in.read(buf)) != -1) {
+			result.write(buf, 0, read);
+		}
+		in.close();
+
+		assertEquals("Decompressed length mismatch for codec " + codec.getId(), data.length, result.size());
+		assertArrayEquals("Decompressed data mismatch for codec " + codec.getId(), data, result.toByteArray());
+	}
+
+	static byte[] compress(SRFCodec codec, byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = codec.getOutputStream(bytes);
+		out.write(data, 0, data.length / 2);
+		for (int i = data.length / 2; i < data.length; i++) {
+			out.write(data[i]);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] createData(Random r, int length, float nonZero) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			if (r.nextFloat() < nonZero) {
+				data[i] = (byte) r.nextInt();
+			} else if ((i & 0x1F) == 0) {
+				data[i] = (byte) (i >> 5);
+			}
+		}
+		return data;
+	}
+}
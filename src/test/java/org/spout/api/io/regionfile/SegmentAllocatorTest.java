@@ -0,0 +1,113 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.io.regionfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SegmentAllocatorTest {
+
+	@Test
+	public void testReserveAndRelease() {
+		SegmentAllocator allocator = new SegmentAllocator();
+
+		assertTrue("Unable to reserve free segments", allocator.reserve(10, 100));
+		assertFalse("Overlapping segments reserved", allocator.reserve(100, 20));
+		assertTrue("Failed reservation did not release partially reserved segments", allocator.reserve(110, 10));
+
+		for (int i = 0; i < 130; i++) {
+			boolean expected = i >= 10 && i < 120;
+			assertEquals("Segment " + i + " in wrong state", expected, allocator.isReserved(i));
+		}
+
+		assertTrue("Release of reserved segments failed", allocator.release(50, 20));
+		assertFalse("Release of free segments succeeded", allocator.release(60, 20));
+	}
+
+	@Test
+	public void testAllocate() {
+		SegmentAllocator allocator = new SegmentAllocator();
+
+		assertEquals("First allocation not at start", 0, allocator.allocate(5));
+		assertEquals("Second allocation not after first", 5, allocator.allocate(70));
+		assertEquals("Third allocation not after second", 75, allocator.allocate(1));
+
+		assertTrue(allocator.release(5, 70));
+
+		assertEquals("Allocation did not reuse released segments", 5, allocator.allocate(64));
+		assertEquals("Allocation did not fill the remaining gap", 69, allocator.allocate(6));
+		assertEquals("Allocation did not skip to the end", 76, allocator.allocate(3));
+	}
+
+	@Test
+	public void testConcurrentAllocate() throws InterruptedException {
+		final SegmentAllocator allocator = new SegmentAllocator();
+		final int threads = 8;
+		final int allocations = 2000;
+		final int[][] starts = new int[threads][allocations];
+		final int[][] lengths = new int[threads][allocations];
+		final AtomicInteger failures = new AtomicInteger(0);
+
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					Random r = new Random(id);
+					for (int i = 0; i < allocations; i++) {
+						int length = r.nextInt(16) + 1;
+						starts[id][i] = allocator.allocate(length);
+						lengths[id][i] = length;
+						if ((i & 1) == 1 && !allocator.release(starts[id][i - 1], lengths[id][i - 1])) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertEquals("Segments were released which were not reserved", 0, failures.get());
+
+		SegmentAllocator check = new SegmentAllocator();
+		for (int t = 0; t < threads; t++) {
+			for (int i = 1; i < allocations; i += 2) {
+				assertTrue("Allocations overlap", check.reserve(starts[t][i], lengths[t][i]));
+			}
+		}
+	}
+}
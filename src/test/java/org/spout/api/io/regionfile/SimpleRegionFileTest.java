@@ -28,13 +28,23 @@ package org.spout.api.io.regionfile;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
 
 import org.junit.Test;
 
@@ -163,13 +173,251 @@ public class SimpleRegionFileTest {
 		file.delete();
 	}
 
+	@Test
+	public void testBatch() throws IOException {
+		File file = new File("target/regionfilebatch.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+
+		Random r = new Random();
+
+		srf.startBatch();
+		for (int i = 0; i < desiredEntries; i++) {
+			updateEntry(i, createFakeChunk(chunkBlocks << 3, 0.15F * r.nextFloat()));
+		}
+		srf.endBatch();
+
+		srf.startBatch();
+		for (int i = 0; i < desiredEntries; i += 2) {
+			updateEntry(i, createFakeChunk(chunkBlocks << 4, 0.15F * r.nextFloat()));
+		}
+
+		assertTrue("Unable to close file during a batch", srf.attemptClose());
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+
+		for (int i = 0; i < desiredEntries; i++) {
+			assertTrue("Data written during a batch did not match after reopening", checkEntryMatch(i));
+		}
+
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+	}
+
+	@Test
+	public void testBatchNotEnded() throws IOException {
+		File file = new File("target/regionfilebatchcrash.dat");
+		File copy = new File("target/regionfilebatchcrashcopy.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+
+		Random r = new Random();
+		byte[] original = createFakeChunk(chunkBlocks << 3, 0.5F);
+		updateEntry(0, original);
+
+		srf.startBatch();
+		// The block is moved, and the other blocks are written where it used to be, unless its old segments are still reserved
+		updateEntry(0, createFakeChunk(chunkBlocks << 5, 0.5F));
+		for (int i = 1; i < 8; i++) {
+			updateEntry(i, createFakeChunk(chunkBlocks << 3, 0.5F * r.nextFloat()));
+		}
+
+		// Reopen a copy of the file, as it would be found after a crash during the batch
+		Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		SimpleRegionFile crashed = new SimpleRegionFile(copy, 9, desiredEntries);
+		assertTrue("Block was overwritten before its FAT entry was written", streamMatches(crashed.getInputStream(0), original));
+		assertTrue("Unable to close copy", crashed.attemptClose());
+		copy.delete();
+
+		srf.endBatch();
+		for (int i = 0; i < 8; i++) {
+			assertTrue("Data written during the batch did not match", checkEntryMatch(i));
+		}
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+		dataCache = new byte[desiredEntries][];
+	}
+
+	@Test
+	public void testBatchOwnership() throws Exception {
+		File file = new File("target/regionfilebatchowner.dat");
+		File copy = new File("target/regionfilebatchownercopy.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+
+		byte[] original = createFakeChunk(chunkBlocks << 3, 0.5F);
+		updateEntry(0, original);
+
+		srf.startBatch();
+		updateEntry(0, createFakeChunk(chunkBlocks << 3, 0.5F));
+
+		// Another thread's batch must not end the batch started by this thread
+		Thread other = new Thread() {
+			@Override
+			public void run() {
+				try {
+					srf.startBatch();
+					srf.endBatch();
+					srf.endBatch();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		other.start();
+		other.join();
+
+		Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		SimpleRegionFile copied = new SimpleRegionFile(copy, 9, desiredEntries);
+		assertTrue("Batch was ended by another thread", streamMatches(copied.getInputStream(0), original));
+		assertTrue("Unable to close copy", copied.attemptClose());
+
+		srf.endBatch();
+
+		Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		copied = new SimpleRegionFile(copy, 9, desiredEntries);
+		assertTrue("FAT was not written when the batch ended", streamMatches(copied.getInputStream(0), dataCache[0]));
+		assertTrue("Unable to close copy", copied.attemptClose());
+		copy.delete();
+
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+		dataCache = new byte[desiredEntries][];
+	}
+
+	@Test
+	public void testVectored() throws Exception {
+		File file = new File("target/regionfilevectored.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+
+		Random r = new Random();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		int[] indexes = new int[desiredEntries / 2];
+		byte[][] data = new byte[indexes.length][];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = desiredEntries - 1 - (i * 2);
+			data[i] = createFakeChunk(chunkBlocks << 3, 0.15F * r.nextFloat());
+		}
+
+		for (Future<Void> future : srf.write(indexes, data, executor)) {
+			future.get();
+		}
+
+		for (int i = 0; i < indexes.length; i++) {
+			dataCache[indexes[i]] = data[i];
+		}
+
+		List<Future<InputStream>> futures = srf.getInputStreams(indexes, executor);
+		for (int i = 0; i < indexes.length; i++) {
+			assertTrue("Vectored read did not match written data", streamMatches(futures.get(i).get(), dataCache[indexes[i]]));
+		}
+
+		assertTrue("Empty block was not null", srf.getInputStreams(new int[] {0}, executor).get(0).get() == null);
+
+		executor.shutdown();
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+	}
+
+	@Test
+	public void testCodec() throws IOException {
+		File file = new File("target/regionfilecodec.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries, 120000, SRFCodec.LZ4);
+
+		Random r = new Random();
+		for (int i = 0; i < desiredEntries; i++) {
+			updateEntry(i, createFakeChunk(chunkBlocks << 3, 0.15F * r.nextFloat()));
+		}
+
+		assertTrue("Unable to close file", srf.attemptClose());
+
+		// The codec in the header is used, rather than the requested codec
+		SimpleRegionFile reopened = new SimpleRegionFile(file, 9, desiredEntries, 120000, SRFCodec.DEFLATE);
+		srf = reopened;
+		assertTrue("Codec was not read from the header", reopened.getCodec() == SRFCodec.LZ4);
+
+		for (int i = 0; i < desiredEntries; i++) {
+			assertTrue("Data read, after reopening, from LZ4 file did not match written data", checkEntryMatch(i));
+		}
+
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+	}
+
+	@Test
+	public void testVersionOneFile() throws IOException {
+		File file = new File("target/regionfilev1.dat");
+		if (file.exists()) {
+			file.delete();
+		}
+
+		byte[] data = createFakeChunk(chunkBlocks << 3, 0.15F);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+		deflater.write(data);
+		deflater.close();
+
+		int headerSegments = ((12 + 8 * desiredEntries - 1) >> 9) + 1;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.writeInt(1);
+		raf.writeInt(9);
+		raf.writeInt(desiredEntries);
+		for (int i = 0; i < desiredEntries; i++) {
+			raf.writeInt(i == 3 ? headerSegments : 0);
+			raf.writeInt(i == 3 ? compressed.size() : 0);
+		}
+		raf.seek(headerSegments << 9);
+		raf.write(compressed.toByteArray());
+		raf.close();
+
+		SimpleRegionFile legacy = new SimpleRegionFile(file, 9, desiredEntries);
+		srf = legacy;
+		assertTrue("Version 1 file did not use deflate", legacy.getCodec() == SRFCodec.DEFLATE);
+
+		dataCache[3] = data;
+		assertTrue("Data read from version 1 file did not match", checkEntryMatch(3));
+
+		updateEntry(5, createFakeChunk(chunkBlocks << 3, 0.15F));
+		assertTrue("Unable to close file", srf.attemptClose());
+
+		srf = new SimpleRegionFile(file, 9, desiredEntries);
+		assertTrue("Data read from version 1 file did not match after reopening", checkEntryMatch(3));
+		assertTrue("Data written to version 1 file did not match after reopening", checkEntryMatch(5));
+		assertTrue("Unable to close file", srf.attemptClose());
+		file.delete();
+		dataCache = new byte[desiredEntries][];
+	}
+
 	private boolean checkEntryMatch(int entry) throws IOException {
 		byte[] expected = dataCache[entry];
 		if (expected == null) {
 			return true;
 		}
 		//System.out.println("Checking entry " + entry);
-		DataInputStream in = new DataInputStream(srf.getInputStream(entry));
+		return streamMatches(srf.getInputStream(entry), expected);
+	}
+
+	private boolean streamMatches(InputStream stream, byte[] expected) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
 		for (int i = 0; ; ++i) {
 			final byte b;
 			try {
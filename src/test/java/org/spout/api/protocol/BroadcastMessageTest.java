@@ -0,0 +1,172 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Test;
+
+import org.spout.api.command.Command;
+import org.spout.api.command.CommandArguments;
+import org.spout.api.exception.UnknownPacketException;
+
+public class BroadcastMessageTest {
+	private static final AtomicInteger encodeCount = new AtomicInteger();
+
+	@Test
+	public void testEncodeOnce() throws Exception {
+		TestProtocol protocol = new TestProtocol("BroadcastTest");
+		TestProtocol otherProtocol = new TestProtocol("BroadcastTestOther");
+		encodeCount.set(0);
+
+		BroadcastMessage message = new BroadcastMessage(new TestMessage(42));
+		ChannelBuffer[] outputs = new ChannelBuffer[5];
+		for (int i = 0; i < outputs.length; i++) {
+			CommonEncoder encoder = new CommonEncoder(false);
+			encoder.setProtocol(protocol);
+			EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(encoder);
+			embedder.offer(message);
+			outputs[i] = embedder.poll();
+		}
+		assertEquals("Message was encoded more than once", 1, encodeCount.get());
+		for (ChannelBuffer output : outputs) {
+			assertEquals(7, output.readableBytes());
+			assertEquals(1, output.readByte());
+			assertEquals(2, output.readInt());
+			assertEquals(42, output.readShort());
+		}
+
+		ChannelBuffer other = message.getEncoded(otherProtocol, false);
+		assertEquals(2, encodeCount.get());
+		assertEquals(7, other.readableBytes());
+		message.getEncoded(otherProtocol, false);
+		assertEquals(2, encodeCount.get());
+	}
+
+	private static class TestProtocol extends Protocol {
+		public TestProtocol(String name) throws Exception {
+			super(name, 0, new TestCodecLookupService(), null);
+		}
+
+		@Override
+		public MessageCodec<?> readHeader(ChannelBuffer buf) throws UnknownPacketException {
+			return getCodecLookupService().find(buf.readByte());
+		}
+
+		@Override
+		public ChannelBuffer writeHeader(MessageCodec<?> codec, ChannelBuffer data) {
+			ChannelBuffer header = ChannelBuffers.buffer(5);
+			header.writeByte(codec.getOpcode());
+			header.writeInt(data.readableBytes());
+			return header;
+		}
+
+		@Override
+		public Message getKickMessage(String message) {
+			return null;
+		}
+
+		@Override
+		public Message getCommandMessage(Command command, CommandArguments args) {
+			return null;
+		}
+
+		@Override
+		public Message getIntroductionMessage(String playerName, InetSocketAddress addr) {
+			return null;
+		}
+
+		@Override
+		public void initializeServerSession(ServerSession session) {
+		}
+
+		@Override
+		public void initializeClientSession(ClientSession session) {
+		}
+	}
+
+	private static class TestCodecLookupService extends CodecLookupService {
+		public TestCodecLookupService() throws Exception {
+			super(4);
+			bind(TestCodec.class);
+		}
+	}
+
+	public static class TestCodec extends MessageCodec<TestMessage> {
+		public TestCodec() {
+			super(TestMessage.class, 1);
+		}
+
+		@Override
+		public ChannelBuffer encode(TestMessage message) throws IOException {
+			encodeCount.incrementAndGet();
+			ChannelBuffer buffer = ChannelBuffers.buffer(2);
+			buffer.writeShort(message.value);
+			return buffer;
+		}
+	}
+
+	public static class TestMessage implements Message {
+		private final int value;
+
+		public TestMessage(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean isAsync() {
+			return false;
+		}
+
+		@Override
+		public int getChannelId() {
+			return DEFAULT_CHANNEL;
+		}
+
+		@Override
+		public String toString() {
+			return "TestMessage{" + value + "}";
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof TestMessage && ((TestMessage) other).value == value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value;
+		}
+	}
+}
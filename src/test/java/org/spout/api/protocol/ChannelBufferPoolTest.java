@@ -0,0 +1,89 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ChannelBufferPoolTest {
+
+	@Test
+	public void testReuse() {
+		ChannelBufferPool pool = new ChannelBufferPool(16, 64, 2, true);
+		PooledChannelBuffer buffer = pool.acquire();
+		assertTrue("Buffer is not direct", buffer.isDirect());
+		assertEquals(0, buffer.writerIndex());
+
+		buffer.writeInt(1234);
+		buffer.release();
+		assertEquals(1, pool.getPooledBuffers());
+
+		PooledChannelBuffer reused = pool.acquire();
+		assertSame(buffer, reused);
+		assertEquals(0, reused.readableBytes());
+		assertEquals(0, pool.getPooledBuffers());
+
+		try {
+			reused.release();
+			reused.release();
+			fail("Buffer was released twice");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	@Test
+	public void testLimits() {
+		ChannelBufferPool pool = new ChannelBufferPool(16, 64, 2, false);
+
+		// Buffers which have grown too large are discarded
+		PooledChannelBuffer large = pool.acquire();
+		large.writeBytes(new byte[128]);
+		large.release();
+		assertEquals(0, pool.getPooledBuffers());
+		assertNotSame(large, pool.acquire());
+
+		PooledChannelBuffer[] buffers = new PooledChannelBuffer[3];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = pool.acquire();
+		}
+		for (PooledChannelBuffer buffer : buffers) {
+			buffer.release();
+		}
+		assertEquals(2, pool.getPooledBuffers());
+
+		try {
+			new ChannelBufferPool(16, 64, 2, false).release(buffers[0]);
+			fail("Buffer was released to the wrong pool");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.spout.api.protocol.EntityTransformTrackerTest.FULL_TRANSFORM_LENGTH;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.spout.api.geo.discrete.Transform;
+
+/**
+ * Measures the bandwidth and update cost of the transform tracker over a replayed set of entities.<br/>
+ * Only run by the benchmark profile.
+ */
+public class EntityTransformTrackerBenchmark {
+	private static final int ENTITIES = 1000;
+	private static final int TICKS = 1000;
+
+	@Test
+	public void benchmarkReplay() {
+		Random random = new Random(42);
+		EntityTransformTracker tracker = new EntityTransformTracker();
+		tracker.setPositionThreshold(0.05F);
+		tracker.setRotationThreshold(2F);
+
+		float[][] positions = new float[ENTITIES][3];
+		float[] yaws = new float[ENTITIES];
+		Transform[] transforms = new Transform[ENTITIES];
+		long fullBytes = 0;
+		long trackedBytes = 0;
+		long time = 0;
+		for (int tick = 0; tick < TICKS; tick++) {
+			for (int id = 0; id < ENTITIES; id++) {
+				float[] position = positions[id];
+				EntityTransformTrackerTest.move(random, id, tick, position, yaws);
+				transforms[id] = EntityTransformTrackerTest.transform(position[0], position[1], position[2], yaws[id]);
+			}
+			long startTime = System.nanoTime();
+			for (int id = 0; id < ENTITIES; id++) {
+				TransformUpdate update = tick == 0 ? tracker.spawn(id, transforms[id]) : tracker.update(id, transforms[id]);
+				if (update != null) {
+					trackedBytes += update.getEncodedLength();
+				}
+			}
+			time += System.nanoTime() - startTime;
+			fullBytes += ENTITIES * FULL_TRANSFORM_LENGTH;
+		}
+
+		System.out.println("Full transforms: " + fullBytes + " bytes");
+		System.out.println("Tracked updates: " + trackedBytes + " bytes (" + (100 * trackedBytes / fullBytes) + "%), " + (time / (double) (ENTITIES * TICKS)) + "ns per update");
+		System.out.println("Absolute: " + tracker.getAbsoluteUpdates() + ", delta: " + tracker.getDeltaUpdates() + ", skipped: " + tracker.getSkippedUpdates());
+	}
+}
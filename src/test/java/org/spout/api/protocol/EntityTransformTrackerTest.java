@@ -0,0 +1,192 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.geo.discrete.Transform;
+import org.spout.api.math.Quaternion;
+import org.spout.api.math.QuaternionMath;
+import org.spout.api.math.Vector3;
+
+public class EntityTransformTrackerTest {
+	static final int FULL_TRANSFORM_LENGTH = 7 * 4;
+
+	@Test
+	public void testDeltas() {
+		EntityTransformTracker tracker = new EntityTransformTracker();
+		tracker.setPositionThreshold(0.1F);
+
+		TransformUpdate update = tracker.spawn(1, transform(10, 64, -10, 0));
+		assertTrue(update.isAbsolute());
+		assertEquals(320, update.getX());
+		assertEquals(64 * 32, update.getY());
+		assertEquals(-320, update.getZ());
+
+		assertNull(tracker.update(1, transform(10.05F, 64, -10, 0)));
+		assertEquals(1, tracker.getSkippedUpdates());
+
+		update = tracker.update(1, transform(10.5F, 64, -10, 0));
+		assertNotNull(update);
+		assertFalse(update.isAbsolute());
+		assertTrue(update.isPositionChanged());
+		assertFalse(update.isRotationChanged());
+		assertEquals(16, update.getX());
+		assertEquals(0, update.getY());
+
+		update = tracker.update(1, transform(10.5F, 64, -10, 90));
+		assertFalse(update.isPositionChanged());
+		assertTrue(update.isRotationChanged());
+		assertEquals(64, update.getYaw());
+
+		update = tracker.update(1, transform(30, 64, -10, 90));
+		assertTrue(update.isAbsolute());
+
+		assertEquals(2, tracker.getAbsoluteUpdates());
+		assertEquals(2, tracker.getDeltaUpdates());
+	}
+
+	@Test
+	public void testKeyframes() {
+		EntityTransformTracker tracker = new EntityTransformTracker();
+		tracker.setKeyframeInterval(5);
+		tracker.spawn(1, transform(0, 0, 0, 0));
+		int absolute = 0;
+		for (int i = 1; i <= 20; i++) {
+			if (tracker.update(1, transform(i, 0, 0, 0)).isAbsolute()) {
+				absolute++;
+			}
+		}
+		assertEquals(4, absolute);
+
+		tracker.remove(1);
+		assertFalse(tracker.isTracked(1));
+		assertTrue(tracker.update(1, transform(0, 0, 0, 0)).isAbsolute());
+	}
+
+	@Test
+	public void testEncoding() {
+		EntityTransformTracker tracker = new EntityTransformTracker();
+		TransformUpdate[] updates = {tracker.spawn(1, transform(1, 2, 3, 45)), tracker.update(1, transform(0, 2, 4, 45)), tracker.update(1, transform(0, 2, 4, -45))};
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		for (TransformUpdate update : updates) {
+			int start = buffer.writerIndex();
+			update.write(buffer);
+			assertEquals(update.getEncodedLength(), buffer.writerIndex() - start);
+		}
+		for (TransformUpdate update : updates) {
+			TransformUpdate read = TransformUpdate.read(1, buffer);
+			assertEquals(update.isAbsolute(), read.isAbsolute());
+			assertEquals(update.isPositionChanged(), read.isPositionChanged());
+			assertEquals(update.isRotationChanged(), read.isRotationChanged());
+			assertEquals(update.getX(), read.getX());
+			assertEquals(update.getY(), read.getY());
+			assertEquals(update.getZ(), read.getZ());
+			if (update.isRotationChanged()) {
+				assertEquals(update.getYaw(), read.getYaw());
+			}
+		}
+		assertEquals(0, buffer.readableBytes());
+		assertEquals(-32, updates[2].getYaw());
+	}
+
+	/**
+	 * Replays walking, idle and teleporting entities, checking the position held by the observer stays within the threshold
+	 */
+	@Test
+	public void testReplay() {
+		final int entities = 200;
+		final int ticks = 1000;
+		Random random = new Random(42);
+		EntityTransformTracker tracker = new EntityTransformTracker();
+		tracker.setPositionThreshold(0.05F);
+		tracker.setRotationThreshold(2F);
+
+		float[][] positions = new float[entities][3];
+		float[] yaws = new float[entities];
+		int[][] observed = new int[entities][3];
+		long fullBytes = 0;
+		long trackedBytes = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int id = 0; id < entities; id++) {
+				float[] position = positions[id];
+				move(random, id, tick, position, yaws);
+				Transform transform = transform(position[0], position[1], position[2], yaws[id]);
+				fullBytes += FULL_TRANSFORM_LENGTH;
+				TransformUpdate update = tick == 0 ? tracker.spawn(id, transform) : tracker.update(id, transform);
+				if (update != null) {
+					trackedBytes += update.getEncodedLength();
+					update.applyPosition(observed[id]);
+				}
+				Point seen = TransformUpdate.getPosition(null, observed[id], tracker.getPositionScale());
+				float tolerance = tracker.getPositionThreshold() + 0.5F / tracker.getPositionScale() + 0.001F;
+				assertEquals(position[0], seen.getX(), tolerance);
+				assertEquals(position[1], seen.getY(), tolerance);
+				assertEquals(position[2], seen.getZ(), tolerance);
+			}
+		}
+		assertTrue(trackedBytes * 4 < fullBytes);
+	}
+
+	/**
+	 * Moves an entity for one tick of the replay.  Half the entities walk, most of the rest idle and some teleport.
+	 */
+	static void move(Random random, int id, int tick, float[] position, float[] yaws) {
+		if (tick == 0) {
+			position[0] = random.nextFloat() * 1000;
+			position[1] = 64;
+			position[2] = random.nextFloat() * 1000;
+		} else if (id % 10 < 5) {
+			// Walking, slowly turning
+			yaws[id] += random.nextFloat() * 4 - 2;
+			position[0] += 0.2F * (float) Math.sin(Math.toRadians(yaws[id]));
+			position[2] += 0.2F * (float) Math.cos(Math.toRadians(yaws[id]));
+		} else if (id % 10 < 9) {
+			// Idle, with a little jitter
+			position[1] = 64 + random.nextFloat() * 0.01F;
+		} else if (random.nextInt(200) == 0) {
+			// Teleporting
+			position[0] += random.nextFloat() * 200 - 100;
+		}
+	}
+
+	static Transform transform(float x, float y, float z, float yaw) {
+		Quaternion rotation = QuaternionMath.rotation(0, yaw, 0);
+		return new Transform(new Point(null, x, y, z), rotation, Vector3.ONE);
+	}
+}
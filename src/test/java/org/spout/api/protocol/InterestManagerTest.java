@@ -0,0 +1,143 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.spout.api.math.IntVector3;
+import org.spout.api.util.OutwardIterator;
+
+public class InterestManagerTest {
+
+	@Test
+	public void testRandomMoves() {
+		InterestManager<String> manager = new InterestManager<String>();
+		Random random = new Random(7);
+		String[] players = {"a", "b", "c"};
+		int[][] positions = new int[players.length][];
+		int[] distances = new int[players.length];
+		for (int i = 0; i < 200; i++) {
+			int p = random.nextInt(players.length);
+			int[] position;
+			int oldDistance = distances[p];
+			if (positions[p] == null || random.nextInt(10) == 0) {
+				position = new int[] {random.nextInt(40) - 20, random.nextInt(8), random.nextInt(40) - 20};
+				distances[p] = 2 + random.nextInt(5);
+			} else {
+				position = positions[p].clone();
+				position[random.nextInt(3)] += random.nextBoolean() ? 1 : -1;
+			}
+			Set<String> before = positions[p] == null ? new HashSet<String>() : keys(volume(positions[p], oldDistance));
+			Set<String> after = keys(volume(position, distances[p]));
+			InterestChange change = manager.update(players[p], position[0], position[1], position[2], distances[p]);
+			positions[p] = position;
+
+			Set<String> expectedAdded = new HashSet<String>(after);
+			expectedAdded.removeAll(before);
+			Set<String> expectedRemoved = new HashSet<String>(before);
+			expectedRemoved.removeAll(after);
+			assertEquals(expectedAdded, keys(change.getAdded()));
+			assertEquals(expectedAdded.size(), change.getAdded().size());
+			assertEquals(expectedRemoved, keys(change.getRemoved()));
+			assertEquals(expectedRemoved.size(), change.getRemoved().size());
+			assertSorted(change.getAdded(), position);
+		}
+
+		for (int p = 0; p < players.length; p++) {
+			for (IntVector3 v : volume(positions[p], distances[p])) {
+				assertTrue(manager.getObservers(v.getX(), v.getY(), v.getZ()).contains(players[p]));
+				assertTrue(manager.isObserving(players[p], v.getX(), v.getY(), v.getZ()));
+			}
+		}
+		assertEquals(players.length, manager.getObserverCount());
+
+		for (int p = 0; p < players.length; p++) {
+			InterestChange change = manager.remove(players[p]);
+			assertEquals(volume(positions[p], distances[p]).size(), change.getRemoved().size());
+			assertTrue(change.getAdded().isEmpty());
+		}
+		assertEquals(0, manager.getObserverCount());
+		for (int p = 0; p < players.length; p++) {
+			assertTrue(manager.getObservers(positions[p][0], positions[p][1], positions[p][2]).isEmpty());
+		}
+	}
+
+	@Test
+	public void testIncremental() {
+		InterestManager<String> manager = new InterestManager<String>();
+		assertEquals(volume(new int[3], 8).size(), manager.update("a", 0, 0, 0, 8).getAdded().size());
+		assertTrue(manager.update("a", 0, 0, 0, 8).isEmpty());
+
+		InterestChange change = manager.update("a", 1, 0, 0, 8);
+		// Moving one chunk exchanges one face of the octahedron for the other
+		assertEquals(change.getAdded().size(), change.getRemoved().size());
+		assertEquals(145, change.getAdded().size());
+		assertFalse(manager.isObserving("a", -8, 0, 0));
+		assertTrue(manager.isObserving("a", 9, 0, 0));
+	}
+
+	private static void assertSorted(List<IntVector3> added, int[] center) {
+		int last = 0;
+		for (IntVector3 v : added) {
+			int distance = Math.abs(v.getX() - center[0]) + Math.abs(v.getY() - center[1]) + Math.abs(v.getZ() - center[2]);
+			assertTrue(distance >= last);
+			last = distance;
+		}
+	}
+
+	/**
+	 * IntVector3 does not override hashCode, so the coordinates are compared as strings
+	 */
+	private static Set<String> keys(Collection<IntVector3> vectors) {
+		Set<String> set = new HashSet<String>();
+		for (IntVector3 v : vectors) {
+			set.add(v.toString());
+		}
+		return set;
+	}
+
+	private static List<IntVector3> volume(int[] center, int distance) {
+		List<IntVector3> set = new ArrayList<IntVector3>();
+		Iterator<IntVector3> i = new OutwardIterator(center[0], center[1], center[2], distance);
+		while (i.hasNext()) {
+			set.add(i.next().copy());
+		}
+		return set;
+	}
+}
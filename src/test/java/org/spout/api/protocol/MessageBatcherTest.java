@@ -0,0 +1,119 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class MessageBatcherTest {
+
+	@Test
+	public void testBatching() {
+		MessageBatcher batcher = new MessageBatcher(60000, 1024);
+		EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(batcher);
+
+		for (int i = 0; i < 10; i++) {
+			embedder.offer(ChannelBuffers.wrappedBuffer(new byte[] {(byte) i, (byte) i}));
+		}
+		assertNull("Messages were written before the batch was flushed", embedder.peek());
+
+		batcher.flush();
+		ChannelBuffer batch = embedder.poll();
+		assertEquals(20, batch.readableBytes());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, batch.readByte());
+			assertEquals(i, batch.readByte());
+		}
+		assertNull(embedder.poll());
+
+		assertEquals(1, batcher.getFlushes());
+		assertEquals(10.0, batcher.getMessagesPerFlush(), 0.0);
+		assertEquals(20.0, batcher.getBytesPerFlush(), 0.0);
+
+		// Large batches are written without waiting for a flush
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[600]));
+		assertNull(embedder.peek());
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[600]));
+		assertEquals(1200, embedder.poll().readableBytes());
+		assertEquals(2, batcher.getFlushes());
+
+		// Disabling batching writes messages as they are sent
+		batcher.setEnabled(false);
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[5]));
+		assertEquals(5, embedder.poll().readableBytes());
+		assertEquals(2, batcher.getFlushes());
+	}
+
+	@Test
+	public void testWindow() throws InterruptedException {
+		MessageBatcher batcher = new MessageBatcher(20, 1024);
+		EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(batcher);
+
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[3]));
+		long end = System.currentTimeMillis() + 5000;
+		while (embedder.peek() == null && System.currentTimeMillis() < end) {
+			Thread.sleep(5);
+		}
+		assertEquals("Batch was not flushed after the window", 1, batcher.getFlushes());
+		assertEquals(3, embedder.poll().readableBytes());
+	}
+
+	@Test
+	public void testTickFlush() {
+		final MessageBatcher batcher = new MessageBatcher(60000, 1024);
+		EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(batcher);
+
+		Session session = mock(Session.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				batcher.flush();
+				return null;
+			}
+		}).when(session).flush();
+		NetworkSynchronizer synchronizer = new NetworkSynchronizer(session) {
+		};
+
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[4]));
+		embedder.offer(ChannelBuffers.wrappedBuffer(new byte[4]));
+		assertNull(embedder.peek());
+
+		// The end of tick flush writes the batch without waiting for the window
+		synchronizer.flush();
+		assertEquals(8, embedder.poll().readableBytes());
+		assertEquals(1, batcher.getFlushes());
+	}
+}
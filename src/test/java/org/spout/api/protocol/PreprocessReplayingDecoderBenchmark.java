@@ -0,0 +1,138 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.junit.Test;
+import org.spout.api.protocol.fake.FakeChannelHandlerContext;
+import org.spout.api.util.VarInt;
+
+/**
+ * Compares framed decoding with the replay path, on a capture of chunk sized frames split into TCP sized segments.<br/>
+ * Only run by the benchmark profile.
+ */
+public class PreprocessReplayingDecoderBenchmark {
+	private static final int FRAMES = 200;
+	private static final int SEGMENT_SIZE = 1460;
+	private static final int PASSES = 20;
+
+	@Test
+	public void benchmarkDecode() throws Exception {
+		Random r = new Random(1);
+		ChannelBuffer stream = ChannelBuffers.dynamicBuffer();
+		ChannelBufferOutputStream out = new ChannelBufferOutputStream(stream);
+		for (int i = 0; i < FRAMES; i++) {
+			// Mostly chunk packets, with some small packets in between
+			byte[] frame = new byte[(r.nextInt(3) == 0 ? r.nextInt(50) : 5000 + r.nextInt(5000)) << 2];
+			r.nextBytes(frame);
+			VarInt.writeInt(out, frame.length);
+			out.write(frame);
+		}
+		int bytes = stream.readableBytes();
+		List<ChannelBuffer> segments = new ArrayList<ChannelBuffer>();
+		while (stream.readable()) {
+			segments.add(stream.readBytes(Math.min(stream.readableBytes(), 1 + r.nextInt(SEGMENT_SIZE))));
+		}
+
+		List<ChannelEvent> output = new LinkedList<ChannelEvent>();
+		ChannelHandlerContext ctx = new FakeChannelHandlerContext(output);
+		long replayTime = 0, framedTime = 0, replayDecodes = 0, framedDecodes = 0;
+		// The first pass warms up both paths
+		for (int pass = 0; pass <= PASSES; pass++) {
+			ChunkDecoder replay = new ChunkDecoder(false);
+			long start = System.nanoTime();
+			replay(replay, ctx, segments);
+			if (pass > 0) {
+				replayTime += System.nanoTime() - start;
+				replayDecodes += replay.decodeCount;
+			}
+			assertEquals(FRAMES, output.size());
+			output.clear();
+
+			ChunkDecoder framed = new ChunkDecoder(true);
+			start = System.nanoTime();
+			replay(framed, ctx, segments);
+			if (pass > 0) {
+				framedTime += System.nanoTime() - start;
+				framedDecodes += framed.decodeCount;
+			}
+			assertEquals(FRAMES, output.size());
+			output.clear();
+		}
+
+		long captures = PASSES;
+		System.out.println(FRAMES + " frames, " + bytes + " bytes in " + segments.size() + " segments, replay: " + (replayTime / captures / 1000) + "us (" + (replayDecodes / captures) + " decode calls), framed: " + (framedTime / captures / 1000) + "us (" + (framedDecodes / captures) + " decode calls) per capture");
+	}
+
+	private static void replay(ChunkDecoder decoder, ChannelHandlerContext ctx, List<ChannelBuffer> segments) throws Exception {
+		for (ChannelBuffer segment : segments) {
+			decoder.messageReceived(ctx, PreprocessReplayingDecoderTest.createMessageEvent(segment.duplicate()));
+		}
+	}
+
+	/**
+	 * Decodes a length prefixed frame of ints, the way a chunk message decodes its block arrays
+	 */
+	private static class ChunkDecoder extends PreprocessReplayingDecoder {
+		private final boolean framed;
+		private int decodeCount = 0;
+
+		public ChunkDecoder(boolean framed) {
+			super(512);
+			this.framed = framed;
+		}
+
+		@Override
+		protected int getFrameLength(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) {
+			return framed ? Protocol.getVarIntFrameLength(buffer, 0) : Protocol.FRAME_LENGTH_UNKNOWN;
+		}
+
+		@Override
+		public Object decodeProcessed(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+			decodeCount++;
+			int length = VarInt.getInt(buffer, buffer.readerIndex());
+			buffer.skipBytes(VarInt.getEncodedLength(buffer, buffer.readerIndex()));
+			int[] data = new int[length >> 2];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = buffer.readInt();
+			}
+			return data;
+		}
+	}
+}
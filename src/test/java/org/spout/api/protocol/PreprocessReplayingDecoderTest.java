@@ -26,14 +26,20 @@
  */
 package org.spout.api.protocol;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
@@ -43,6 +49,7 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.UpstreamMessageEvent;
 import org.junit.Test;
 import org.spout.api.protocol.fake.FakeChannelHandlerContext;
+import org.spout.api.util.VarInt;
 
 public class PreprocessReplayingDecoderTest {
 
@@ -83,30 +90,8 @@ public class PreprocessReplayingDecoderTest {
 			buf.writeBytes(input, i, burstSize);
 			i += burstSize;
 			
-			MessageEvent e = new MessageEvent() {
+			MessageEvent e = createMessageEvent(buf);
 
-				@Override
-				public Channel getChannel() {
-					return null;
-				}
-
-				@Override
-				public ChannelFuture getFuture() {
-					return null;
-				}
-
-				@Override
-				public Object getMessage() {
-					return buf;
-				}
-
-				@Override
-				public SocketAddress getRemoteAddress() {
-					return null;
-				}
-
-			};
-			
 			p.messageReceived(fake, e);
 		}
 
@@ -137,6 +122,112 @@ public class PreprocessReplayingDecoderTest {
 
 	}
 
+	@Test
+	public void testFramed() throws Exception {
+		FramedPreprocessor p = new FramedPreprocessor(512);
+
+		List<ChannelEvent> outputList = new LinkedList<ChannelEvent>();
+
+		ChannelHandlerContext fake = new FakeChannelHandlerContext(outputList);
+
+		Random r = new Random();
+
+		// Frames of the size of chunk packets, with some small packets in between
+		List<byte[]> frames = new ArrayList<byte[]>();
+		ChannelBuffer stream = ChannelBuffers.dynamicBuffer();
+		ChannelBufferOutputStream out = new ChannelBufferOutputStream(stream);
+		for (int i = 0; i < 40; i++) {
+			byte[] frame = new byte[r.nextInt(3) == 0 ? r.nextInt(200) : 20000 + r.nextInt(20000)];
+			r.nextBytes(frame);
+			frames.add(frame);
+			VarInt.writeInt(out, frame.length);
+			out.write(frame);
+		}
+
+		// Split the stream into TCP sized segments
+		while (stream.readable()) {
+			int segmentSize = Math.min(stream.readableBytes(), 1 + r.nextInt(1460));
+			p.messageReceived(fake, createMessageEvent(stream.readBytes(segmentSize)));
+		}
+
+		assertEquals("Frames were decoded more than once", frames.size(), p.getDecodeCount());
+		assertEquals(frames.size(), outputList.size());
+		for (int i = 0; i < frames.size(); i++) {
+			byte[] array = (byte[]) ((UpstreamMessageEvent) outputList.get(i)).getMessage();
+			assertArrayEquals("Frame " + i + " mismatch", frames.get(i), array);
+		}
+
+		// Frames longer than the maximum are rejected as soon as their length is known
+		ChannelBuffer header = ChannelBuffers.dynamicBuffer();
+		VarInt.writeInt(new ChannelBufferOutputStream(header), 2000);
+		assertEquals(2002, Protocol.getVarIntFrameLength(header, 0));
+		assertEquals(Protocol.FRAME_INVALID, Protocol.getVarIntFrameLength(header, 0, 1024));
+		p = new FramedPreprocessor(512);
+		p.setMaxFrameLength(1024);
+		try {
+			p.messageReceived(fake, createMessageEvent(header));
+			fail("Frame longer than the maximum was accepted");
+		} catch (IOException e) {
+			assertEquals(0, p.getDecodeCount());
+		}
+	}
+
+	static MessageEvent createMessageEvent(final ChannelBuffer buf) {
+		return new MessageEvent() {
+
+			@Override
+			public Channel getChannel() {
+				return null;
+			}
+
+			@Override
+			public ChannelFuture getFuture() {
+				return null;
+			}
+
+			@Override
+			public Object getMessage() {
+				return buf;
+			}
+
+			@Override
+			public SocketAddress getRemoteAddress() {
+				return null;
+			}
+
+		};
+	}
+
+	private static class FramedPreprocessor extends PreprocessReplayingDecoder {
+
+		private int decodeCount = 0;
+
+		public FramedPreprocessor(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		protected int getFrameLength(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) {
+			return Protocol.getVarIntFrameLength(buffer, 0);
+		}
+
+		@Override
+		public Object decodeProcessed(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+			decodeCount++;
+			int length = VarInt.getInt(buffer, buffer.readerIndex());
+			buffer.skipBytes(VarInt.getEncodedLength(buffer, buffer.readerIndex()));
+			assertEquals("Frame buffer contains extra bytes", length, buffer.readableBytes());
+			byte[] frame = new byte[length];
+			buffer.readBytes(frame);
+			return frame;
+		}
+
+		public int getDecodeCount() {
+			return decodeCount;
+		}
+
+	}
+
 	private static class Preprocessor extends PreprocessReplayingDecoder {
 
 		private final int breakPoint;
@@ -0,0 +1,86 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol.builder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import static org.spout.api.protocol.builder.CompiledMessageLayoutTest.CHAT;
+import static org.spout.api.protocol.builder.CompiledMessageLayoutTest.MOVE;
+
+/**
+ * Compares reading messages through the interpreted field tree and through compiled layouts.<br/>
+ * Only run by the benchmark profile.
+ */
+public class CompiledMessageLayoutBenchmark {
+	private static final int COUNT = 1000000;
+
+	@Test
+	public void benchmarkRead() throws Exception {
+		CompiledMessageLayout moveLayout = MOVE.compile();
+		CompiledMessageLayout chatLayout = CHAT.compile();
+		ChannelBuffer move = ChannelBuffers.dynamicBuffer();
+		CompiledMessageLayoutTest.writeMove(moveLayout, move, 1234);
+		ChannelBuffer chat = ChannelBuffers.dynamicBuffer();
+		CompiledMessageLayoutTest.writeChat(chat, 42, "Hello", "World!");
+
+		long interpreted = 0;
+		long compiled = 0;
+		// The first pass warms up both paths
+		for (int pass = 0; pass < 2; pass++) {
+			long sum = 0;
+			long startTime = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				move.readerIndex(0);
+				Object[] values = MOVE.read(move);
+				sum += (Integer) values[0] + (Long) values[5];
+				chat.readerIndex(0);
+				values = CHAT.read(chat);
+				sum += (Long) values[4];
+			}
+			interpreted = System.nanoTime() - startTime;
+
+			int[] indexes = new int[chatLayout.getFieldCount()];
+			startTime = System.nanoTime();
+			for (int i = 0; i < COUNT; i++) {
+				move.readerIndex(0);
+				moveLayout.skip(move);
+				sum -= moveLayout.getInt(move, 0, null, 0) + moveLayout.getLong(move, 0, null, 5);
+				chat.readerIndex(0);
+				chatLayout.skip(chat, indexes);
+				sum -= chatLayout.getLong(chat, 0, indexes, 4);
+			}
+			compiled = System.nanoTime() - startTime;
+			assertEquals(0, sum);
+		}
+
+		System.out.println("Message layouts: interpreted " + (interpreted / (double) COUNT) + "ns, compiled " + (compiled / (double) COUNT) + "ns per message pair");
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.protocol.builder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.UnsupportedEncodingException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+public class CompiledMessageLayoutTest {
+	static final CompoundMessageField MOVE = new CompoundMessageField(new MessageField[] {
+			new IntMessageField(), new ByteMessageField(), new ByteMessageField(), new ByteMessageField(), new ShortMessageField(), new LongMessageField()});
+
+	static final CompoundMessageField CHAT = new CompoundMessageField(new MessageField[] {
+			new IntMessageField(), new StringField(), new ByteMessageField(), new StringField(), new LongMessageField()});
+
+	@Test
+	public void testFixedLayout() {
+		CompiledMessageLayout layout = MOVE.compile();
+		assertEquals(6, layout.getFieldCount());
+		assertEquals(17, layout.getFixedLength());
+		assertEquals(0, layout.getFixedOffset(0));
+		assertEquals(7, layout.getFixedOffset(4));
+		assertEquals(9, layout.getFixedOffset(5));
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		buffer.writeByte(99);
+		int start = buffer.writerIndex();
+		writeMove(layout, buffer, 1234);
+		buffer.readerIndex(start);
+		assertEquals(17, layout.getLength(buffer));
+		assertEquals(start, buffer.readerIndex());
+
+		assertEquals(1234, layout.getInt(buffer, start, null, 0));
+		assertEquals(-1, layout.getByte(buffer, start, null, 1));
+		assertEquals(255, layout.getUnsignedByte(buffer, start, null, 1));
+		assertEquals(300, layout.getShort(buffer, start, null, 4));
+		assertEquals(1L << 40, layout.getLong(buffer, start, null, 5));
+		assertEquals(Byte.valueOf((byte) 7), layout.read(buffer, start, null, 3));
+		assertEquals(start, buffer.readerIndex());
+
+		assertEquals(17, layout.skip(buffer));
+		assertEquals(start + 17, buffer.readerIndex());
+	}
+
+	@Test
+	public void testVariableLayout() throws Exception {
+		CompiledMessageLayout layout = CHAT.compile();
+		assertEquals(-1, layout.getFixedLength());
+		assertEquals(0, layout.getFixedOffset(0));
+		assertEquals(4, layout.getFixedOffset(1));
+		assertEquals(-1, layout.getFixedOffset(2));
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		writeChat(buffer, 42, "Hello", "World!");
+		int length = buffer.readableBytes();
+
+		int[] expected = new int[5];
+		assertEquals(length, CHAT.skip(buffer, expected));
+		buffer.readerIndex(0);
+
+		int[] indexes = new int[5];
+		assertEquals(length, layout.skip(buffer, indexes));
+		assertEquals(length, buffer.readerIndex());
+		assertArrayEquals(expected, indexes);
+
+		assertEquals(42, layout.getInt(buffer, 0, indexes, 0));
+		assertEquals("Hello", layout.read(buffer, 0, indexes, 1));
+		assertEquals(5, layout.getByte(buffer, 0, indexes, 2));
+		assertEquals("World!", layout.read(buffer, 0, indexes, 3));
+		assertEquals(-5L, layout.getLong(buffer, 0, indexes, 4));
+
+		buffer.readerIndex(0);
+		ChannelBuffer target = ChannelBuffers.dynamicBuffer();
+		layout.transfer(buffer, target);
+		assertEquals(length, target.readableBytes());
+		assertEquals(length, buffer.readerIndex());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testVariableOffsetRequiresIndexes() throws Exception {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		writeChat(buffer, 42, "Hello", "World!");
+		CHAT.compile().getLong(buffer, 0, null, 4);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIncomplete() throws Exception {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		writeChat(buffer, 42, "Hello", "World!");
+		CHAT.compile().skip(buffer.slice(0, buffer.readableBytes() - 1));
+	}
+
+	static void writeMove(CompiledMessageLayout layout, ChannelBuffer buffer, int id) {
+		layout.writeInt(buffer, 0, id);
+		layout.writeUnsignedByte(buffer, 1, (short) 255);
+		layout.writeByte(buffer, 2, (byte) 0);
+		layout.writeByte(buffer, 3, (byte) 7);
+		layout.writeShort(buffer, 4, (short) 300);
+		layout.writeLong(buffer, 5, 1L << 40);
+	}
+
+	static void writeChat(ChannelBuffer buffer, int id, String first, String second) {
+		CHAT.write(buffer, new Object[] {id, first, (byte) 5, second, -5L});
+	}
+
+	/**
+	 * A string with a short length prefix
+	 */
+	static class StringField extends MessageFieldImpl {
+		@Override
+		public MessageField getCompressed() {
+			return null;
+		}
+
+		@Override
+		public int getLength(ChannelBuffer buffer) {
+			return 2 + buffer.getUnsignedShort(buffer.readerIndex());
+		}
+
+		@Override
+		public int skip(ChannelBuffer buffer) {
+			int length = buffer.readUnsignedShort();
+			buffer.skipBytes(length);
+			return length + 2;
+		}
+
+		@Override
+		public Object read(ChannelBuffer buffer) {
+			byte[] bytes = new byte[buffer.readUnsignedShort()];
+			buffer.readBytes(bytes);
+			try {
+				return new String(bytes, "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void write(ChannelBuffer buffer, Object value) {
+			try {
+				byte[] bytes = ((String) value).getBytes("UTF-8");
+				buffer.writeShort(bytes.length);
+				buffer.writeBytes(bytes);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void transfer(ChannelBuffer sourceBuffer, ChannelBuffer targetBuffer) {
+			sourceBuffer.readBytes(targetBuffer, getLength(sourceBuffer));
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of SpoutAPI.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * SpoutAPI is licensed under the Spout License Version 1.
+ *
+ * SpoutAPI is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * SpoutAPI is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.api.util.map.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.spout.api.math.IntVector3;
+import org.spout.api.util.map.concurrent.palette.AtomicPaletteBlockStore;
+
+public class AtomicPaletteBlockStoreTest {
+
+	@Test
+	public void subBlockDirtyTest() {
+		AtomicPaletteBlockStore store = new AtomicPaletteBlockStore(4, false, true, 10);
+		store.resetDirtyArrays();
+
+		for (int i = 0; i < 11; i++) {
+			store.setBlock(15, 15, i, (short) 1, (short) 0);
+		}
+		store.setBlock(0, 0, 0, (short) 1, (short) 0);
+		store.setBlock(5, 1, 2, (short) 1, (short) 0);
+		store.setBlock(1, 2, 6, (short) 1, (short) 0);
+		store.setBlock(7, 3, 7, (short) 1, (short) 0);
+
+		assertTrue("Dirty arrays did not overflow", store.isDirtyOverflow());
+		assertTrue("Sub-block not marked dirty", store.isSubBlockDirty(3, 3, 3));
+		assertTrue("Sub-block not marked dirty", store.isSubBlockDirty(12, 12, 8));
+		assertFalse("Clean sub-block marked dirty", store.isSubBlockDirty(8, 0, 0));
+		assertFalse("Clean sub-block marked dirty", store.isSubBlockDirty(15, 15, 15));
+
+		int[] bx = new int[32];
+		int[] by = new int[32];
+		int[] bz = new int[32];
+		int[] tx = new int[32];
+		int[] ty = new int[32];
+		int[] tz = new int[32];
+		int count = store.getDirtyRanges(bx, by, bz, tx, ty, tz);
+
+		assertEquals("Dirty sub-blocks not coalesced", 2, count);
+		checkRange(0, 0, 0, 8, 4, 8, bx[0], by[0], bz[0], tx[0], ty[0], tz[0]);
+		checkRange(12, 12, 0, 16, 16, 12, bx[1], by[1], bz[1], tx[1], ty[1], tz[1]);
+
+		int blocks = 0;
+		for (IntVector3 v : store.getDirtyRegions()) {
+			assertTrue("Block in dirty region was not in a dirty sub-block", store.isSubBlockDirty(v.getX(), v.getY(), v.getZ()));
+			blocks++;
+		}
+		assertEquals("Dirty region block count", 8 * 4 * 8 + 4 * 4 * 12, blocks);
+
+		assertEquals("Too short arrays not detected", -1, store.getDirtyRanges(new int[1], new int[1], new int[1], new int[1], new int[1], new int[1]));
+
+		store.resetDirtyArrays();
+		assertFalse("Sub-block dirty after reset", store.isSubBlockDirty(0, 0, 0));
+		assertEquals("Dirty ranges after reset", 0, store.getDirtyRanges(bx, by, bz, tx, ty, tz));
+	}
+
+	private static void checkRange(int ebx, int eby, int ebz, int etx, int ety, int etz, int bx, int by, int bz, int tx, int ty, int tz) {
+		String range = "(" + bx + ", " + by + ", " + bz + ") to (" + tx + ", " + ty + ", " + tz + ")";
+		assertTrue("Unexpected dirty range " + range, bx == ebx && by == eby && bz == ebz && tx == etx && ty == ety && tz == etz);
+	}
+}
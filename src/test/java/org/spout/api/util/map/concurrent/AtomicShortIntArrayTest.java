@@ -28,10 +28,19 @@ package org.spout.api.util.map.concurrent;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Test;
 import org.spout.api.util.map.concurrent.palette.AtomicShortIntArray;
+import org.spout.api.util.map.concurrent.palette.PaletteSnapshot;
 
 public class AtomicShortIntArrayTest {
 	
@@ -236,6 +245,141 @@ public class AtomicShortIntArrayTest {
 		
 	}
 	
+	@Test
+	public void snapshotTest() {
+		
+		printTest("Snapshot Test");
+		
+		Random r = new Random();
+		
+		PaletteSnapshot snapshot = new PaletteSnapshot(a.length());
+		int[] values = new int[a.length()];
+		
+		for (int unique : new int[] {1, 2, 13, 64, 256}) {
+			int base = r.nextInt();
+			for (int i = 0; i < 256; i++) {
+				set(i, base + (i % unique));
+			}
+			a.compress();
+			
+			int[] palette = snapshot.getPalette();
+			int[] packed = snapshot.getPacked();
+			assertTrue("Snapshot was not reused", a.getSnapshot(snapshot) == snapshot);
+			assertTrue("Snapshot arrays were reallocated", palette == snapshot.getPalette() && packed == snapshot.getPacked());
+			assertTrue("Snapshot width mismatch", snapshot.getWidth() == a.width());
+			
+			AtomicShortIntArray loaded = new AtomicShortIntArray(a.length());
+			loaded.set(Arrays.copyOf(snapshot.getPalette(), snapshot.getPaletteLength()), snapshot.getWidth(), Arrays.copyOf(snapshot.getPacked(), snapshot.getPackedLength()));
+			
+			assertTrue("Bulk copy did not reuse array", a.getArray(values) == values);
+			
+			for (int i = 0; i < 256; i++) {
+				assertTrue("Array loaded from snapshot did not match at " + i, loaded.get(i) == copy[i]);
+				assertTrue("Bulk copy did not match at " + i, values[i] == copy[i]);
+			}
+		}
+	}
+	
+	@Test
+	public void serializeTest() throws IOException {
+		
+		printTest("Serialize Test");
+		
+		Random r = new Random();
+		
+		ChannelBuffer uniform = ChannelBuffers.dynamicBuffer();
+		new AtomicShortIntArray(a.length()).getSnapshot(null).writeTo(uniform);
+		assertTrue("Uniform array serialized to " + uniform.readableBytes() + " bytes", uniform.readableBytes() == 13);
+		
+		for (int unique : new int[] {1, 13, 256}) {
+			int base = r.nextInt();
+			for (int i = 0; i < 256; i++) {
+				set(i, base + (i % unique));
+			}
+			a.compress();
+			
+			PaletteSnapshot snapshot = a.getSnapshot(null);
+			
+			ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+			snapshot.writeTo(buffer);
+			assertTrue("Serialized size mismatch", buffer.readableBytes() == snapshot.getSerializedSize());
+			
+			PaletteSnapshot bufferSnapshot = new PaletteSnapshot();
+			bufferSnapshot.readFrom(buffer);
+			assertTrue("Buffer was not fully read", buffer.readableBytes() == 0);
+			
+			ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+			snapshot.writeTo(new DataOutputStream(byteOut));
+			assertTrue("Stream and buffer sizes do not match", byteOut.size() == snapshot.getSerializedSize());
+			
+			PaletteSnapshot streamSnapshot = new PaletteSnapshot();
+			streamSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(byteOut.toByteArray())));
+			
+			for (PaletteSnapshot read : new PaletteSnapshot[] {bufferSnapshot, streamSnapshot}) {
+				AtomicShortIntArray loaded = new AtomicShortIntArray(a.length());
+				loaded.set(read);
+				assertTrue("Width mismatch after load", loaded.width() == a.width());
+				for (int i = 0; i < 256; i++) {
+					assertTrue("Loaded array did not match at " + i, loaded.get(i) == copy[i]);
+				}
+				int width = loaded.width();
+				loaded.set(0, base - 1);
+				assertTrue("Value added after load was lost", loaded.get(0) == base - 1);
+				if (unique > 1 && unique < 16) {
+					assertTrue("Palette was resized after adding one entry", loaded.width() == width);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void invalidSnapshotTest() throws IOException {
+		
+		printTest("Invalid Snapshot Test");
+		
+		ChannelBuffer oversized = snapshotBuffer(4, 2, 100000000);
+		try {
+			new PaletteSnapshot().readFrom(new DataInputStream(new ByteArrayInputStream(oversized.array(), 0, oversized.writerIndex())));
+			assertTrue("Oversized stream snapshot was read", false);
+		} catch (IOException e) {
+		}
+		try {
+			new PaletteSnapshot().readFrom(oversized);
+			assertTrue("Oversized buffer snapshot was read", false);
+		} catch (IllegalArgumentException e) {
+		}
+		
+		ChannelBuffer outsidePalette = snapshotBuffer(2, 3, 16);
+		outsidePalette.setInt(9 + 3 * 4, 3);
+		checkRejected("Entry outside palette", outsidePalette);
+		checkRejected("Wrong flat length", snapshotBuffer(16, 0, 100));
+		checkRejected("Width too small for palette", snapshotBuffer(2, 5, 16));
+		checkRejected("Wrong packed length", snapshotBuffer(4, 3, 16));
+		checkRejected("Packed uniform snapshot", snapshotBuffer(0, 1, 1));
+	}
+	
+	private ChannelBuffer snapshotBuffer(int width, int paletteLength, int packedLength) {
+		ChannelBuffer buffer = ChannelBuffers.buffer(9 + ((paletteLength + Math.min(packedLength, 256)) << 2));
+		buffer.writeByte(width);
+		buffer.writeInt(paletteLength);
+		buffer.writeInt(packedLength);
+		for (int i = 0; i < paletteLength; i++) {
+			buffer.writeInt(i * 7);
+		}
+		buffer.writerIndex(buffer.capacity());
+		return buffer;
+	}
+	
+	private void checkRejected(String message, ChannelBuffer buffer) {
+		PaletteSnapshot snapshot = new PaletteSnapshot();
+		snapshot.readFrom(buffer);
+		try {
+			new AtomicShortIntArray(a.length()).set(snapshot);
+			assertTrue(message + " was loaded", false);
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
 	private void checkCompress(int unique, int expWidth, int base) {
 		System.out.println("Setting 256 values from a set of " + unique);
 		